@@ -162,6 +162,10 @@ public class OConfigurationHandler {
 
         List<String> aggregationColumns = sourceTable.field("aggregationColumns");
         List<String> primaryKeyColumns = sourceTable.field("primaryKey");
+        Integer fetchSize = sourceTable.field("fetchSize");
+        Integer partitions = sourceTable.field("partitions");
+        String watermarkColumn = sourceTable.field("watermarkColumn");
+        Boolean changeCapture = sourceTable.field("changeCapture");
 
         if (aggregationFunction != null && aggregationColumns == null) {
           OTeleporterContext.getInstance().getMessageHandler().error(this,
@@ -179,6 +183,10 @@ public class OConfigurationHandler {
           currentSourceTable.setAggregationColumns(aggregationColumns);
         }
         currentSourceTable.setPrimaryKeyColumns(primaryKeyColumns);
+        currentSourceTable.setFetchSize(fetchSize);
+        currentSourceTable.setPartitions(partitions);
+        currentSourceTable.setWatermarkColumn(watermarkColumn);
+        currentSourceTable.setChangeCapture(changeCapture);
         sourceTables.add(currentSourceTable);
 
         i++;
@@ -547,6 +555,18 @@ public class OConfigurationHandler {
         if (currSourceTable.getPrimaryKeyColumns() != null) {
           currSourceTableDoc.field("primaryKey", currSourceTable.getPrimaryKeyColumns());
         }
+        if (currSourceTable.getFetchSize() != null) {
+          currSourceTableDoc.field("fetchSize", currSourceTable.getFetchSize());
+        }
+        if (currSourceTable.getPartitions() != null) {
+          currSourceTableDoc.field("partitions", currSourceTable.getPartitions());
+        }
+        if (currSourceTable.getWatermarkColumn() != null) {
+          currSourceTableDoc.field("watermarkColumn", currSourceTable.getWatermarkColumn());
+        }
+        if (currSourceTable.getChangeCapture() != null) {
+          currSourceTableDoc.field("changeCapture", currSourceTable.getChangeCapture());
+        }
         sourceTablesDoc.add(currSourceTableDoc);
       }
       currVertexMappingDoc.field("sourceTables", sourceTablesDoc);
@@ -752,6 +772,12 @@ public class OConfigurationHandler {
       sourceTable.setDataSource(currSourceDBInfo.getSourceIdName());
       sourceTable.setTableName(currentEntity.getName());
       sourceTable.setPrimaryKeyColumns(primaryKeyColumns);
+      sourceTable.setFetchSize(currentEntity.getFetchSize());
+      sourceTable.setPartitions(currentEntity.getPartitions());
+      sourceTable.setWatermarkColumn(currentEntity.getWatermarkColumn());
+      if (currentEntity.isChangeCapture()) {
+        sourceTable.setChangeCapture(true);
+      }
       sourceTables.add(sourceTable);
       vertexMappingInfo.setSourceTables(sourceTables);
       currConfiguredVertexClass.setMapping(vertexMappingInfo);
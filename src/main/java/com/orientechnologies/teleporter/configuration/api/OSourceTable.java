@@ -34,6 +34,10 @@ public class OSourceTable {
   private String                    tableName;          // mandatory
   private List<String>              aggregationColumns; // optional (not present when there is not any aggregation)
   private List<String>              primaryKeyColumns;
+  private Integer                   fetchSize;          // optional (rows fetched per round-trip while reading the table)
+  private Integer                   partitions;         // optional (number of key ranges imported in parallel)
+  private String                    watermarkColumn;    // optional (change-tracking column read by the incremental sync)
+  private Boolean                   changeCapture;      // optional (changes captured by triggers in a change-log table)
   private OVertexMappingInformation belongingMapping;
 
   public OSourceTable(String sourceIdName, OVertexMappingInformation belongingMapping) {
@@ -81,6 +85,38 @@ public class OSourceTable {
     this.primaryKeyColumns = primaryKeyColumns;
   }
 
+  public Integer getFetchSize() {
+    return this.fetchSize;
+  }
+
+  public void setFetchSize(Integer fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public Integer getPartitions() {
+    return this.partitions;
+  }
+
+  public void setPartitions(Integer partitions) {
+    this.partitions = partitions;
+  }
+
+  public String getWatermarkColumn() {
+    return this.watermarkColumn;
+  }
+
+  public void setWatermarkColumn(String watermarkColumn) {
+    this.watermarkColumn = watermarkColumn;
+  }
+
+  public Boolean getChangeCapture() {
+    return this.changeCapture;
+  }
+
+  public void setChangeCapture(Boolean changeCapture) {
+    this.changeCapture = changeCapture;
+  }
+
   public OVertexMappingInformation getBelongingMapping() {
     return belongingMapping;
   }
@@ -24,12 +24,19 @@ import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
 import com.orientechnologies.orient.output.OPluginMessageHandler;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphBatchWriter;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexKeyCache;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
 import com.orientechnologies.teleporter.nameresolver.ONameResolver;
 import com.orientechnologies.teleporter.persistence.handler.ODriverDataTypeHandler;
+import com.orientechnologies.teleporter.persistence.util.OSourceConnectionPool;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Context class for Drakkar execution.
@@ -50,16 +57,48 @@ public class OTeleporterContext {
   private String                 driverDependencyPath;
   private String                 executionStrategy;
   private ODBQueryEngine         dbQueryEngine;
+  private int                    sourceConnectionPoolSize;
+  private int                    vertexKeyCacheCapacity;
+  private int                    graphBatchSize;
+  private long                   graphBatchBytes;
+  private int                    graphWriters;
+  private boolean                twoPhaseImport;
+  private boolean                freshImport;
+  private boolean                deferredIndexBuild;
+  private int                    schemaIntrospectionThreads;
+  private boolean                exactRecordCount;
+  private boolean                deletePropagation;
+  private boolean                resumedImport;
+  private boolean                tableFingerprinting;
+  private long                   keyMapMemoryBudget;
+  private String                 keyMapSpillDirectory;
+  private final Map<OSourceDatabaseInfo, OSourceConnectionPool> sourceConnectionPools;
 
   public OTeleporterContext(OrientDB orientDBInstance) {
     this.statistics = new OTeleporterStatistics();
     this.orient = orientDBInstance;
     this.executionStrategy = "not_specified";
+    this.sourceConnectionPoolSize = OSourceConnectionPool.DEFAULT_MAX_SIZE;
+    this.vertexKeyCacheCapacity = OVertexKeyCache.DEFAULT_CAPACITY;
+    this.graphBatchSize = OGraphBatchWriter.DEFAULT_BATCH_SIZE;
+    this.graphBatchBytes = 0;
+    this.graphWriters = 1;
+    this.schemaIntrospectionThreads = 1;
+    this.keyMapMemoryBudget = OVertexRidMap.DEFAULT_MEMORY_BUDGET;
+    this.sourceConnectionPools = new HashMap<OSourceDatabaseInfo, OSourceConnectionPool>();
   }
 
   public OTeleporterContext(String url) {
     this.statistics = new OTeleporterStatistics();
     this.executionStrategy = "not_specified";
+    this.sourceConnectionPoolSize = OSourceConnectionPool.DEFAULT_MAX_SIZE;
+    this.vertexKeyCacheCapacity = OVertexKeyCache.DEFAULT_CAPACITY;
+    this.graphBatchSize = OGraphBatchWriter.DEFAULT_BATCH_SIZE;
+    this.graphBatchBytes = 0;
+    this.graphWriters = 1;
+    this.schemaIntrospectionThreads = 1;
+    this.keyMapMemoryBudget = OVertexRidMap.DEFAULT_MEMORY_BUDGET;
+    this.sourceConnectionPools = new HashMap<OSourceDatabaseInfo, OSourceConnectionPool>();
     this.initOrientDBInstance(url);
   }
 
@@ -68,11 +107,17 @@ public class OTeleporterContext {
   }
 
   public static OTeleporterContext newInstance(OrientDB orientDBInstance) {
+    if (instance != null) {
+      instance.closeSourceConnectionPools();
+    }
     instance = new OTeleporterContext(orientDBInstance);
     return instance;
   }
 
   public static OTeleporterContext newInstance(String url) {
+    if (instance != null) {
+      instance.closeSourceConnectionPools();
+    }
     instance = new OTeleporterContext(url);
     return instance;
   }
@@ -158,6 +203,243 @@ public class OTeleporterContext {
     this.dbQueryEngine = dbQueryEngine;
   }
 
+  public int getSourceConnectionPoolSize() {
+    return this.sourceConnectionPoolSize;
+  }
+
+  /**
+   * Sets the max number of connections opened towards each source database. It affects only the pools built afterwards.
+   *
+   * @param sourceConnectionPoolSize
+   */
+  public void setSourceConnectionPoolSize(int sourceConnectionPoolSize) {
+    this.sourceConnectionPoolSize = sourceConnectionPoolSize;
+  }
+
+  public int getVertexKeyCacheCapacity() {
+    return this.vertexKeyCacheCapacity;
+  }
+
+  /**
+   * Sets the max number of keys cached for each vertex class during the import, 0 disables the cache.
+   *
+   * @param vertexKeyCacheCapacity
+   */
+  public void setVertexKeyCacheCapacity(int vertexKeyCacheCapacity) {
+    this.vertexKeyCacheCapacity = vertexKeyCacheCapacity;
+  }
+
+  public int getGraphBatchSize() {
+    return this.graphBatchSize;
+  }
+
+  /**
+   * Sets the max number of source records imported in a single transaction, values lower than 2 disable the transactions
+   * (unless a bytes threshold is set).
+   *
+   * @param graphBatchSize
+   */
+  public void setGraphBatchSize(int graphBatchSize) {
+    this.graphBatchSize = graphBatchSize;
+  }
+
+  public long getGraphBatchBytes() {
+    return this.graphBatchBytes;
+  }
+
+  /**
+   * Sets the max amount of source data (in bytes) imported in a single transaction, 0 means no limit.
+   *
+   * @param graphBatchBytes
+   */
+  public void setGraphBatchBytes(long graphBatchBytes) {
+    this.graphBatchBytes = graphBatchBytes;
+  }
+
+  public int getGraphWriters() {
+    return this.graphWriters;
+  }
+
+  /**
+   * Sets the number of workers writing the records in the graph database, each one through its own session and clusters.
+   * 1 means the records are written by the importing thread.
+   *
+   * @param graphWriters
+   */
+  public void setGraphWriters(int graphWriters) {
+    this.graphWriters = graphWriters;
+  }
+
+  public boolean isTwoPhaseImport() {
+    return this.twoPhaseImport;
+  }
+
+  /**
+   * Enables the two-phase import: on an empty target database all the vertices are inserted first, then the edges are built
+   * from the ids of the inserted vertices. It's implied by the fresh import, always performed on an empty target database.
+   *
+   * @param twoPhaseImport
+   */
+  public void setTwoPhaseImport(boolean twoPhaseImport) {
+    this.twoPhaseImport = twoPhaseImport;
+  }
+
+  public boolean isFreshImport() {
+    return this.freshImport;
+  }
+
+  /**
+   * Forces the fresh import even if the target database already contains vertices: the records are inserted without checking
+   * whether they were imported by a previous migration. A fresh import is performed anyway when the target database is empty.
+   *
+   * @param freshImport
+   */
+  public void setFreshImport(boolean freshImport) {
+    this.freshImport = freshImport;
+  }
+
+  public boolean isDeferredIndexBuild() {
+    return this.deferredIndexBuild;
+  }
+
+  /**
+   * Enables the deferred index build: when the target database is empty the classes are written without indexes, the data
+   * is loaded looking the vertices up in the in-process key maps, then all the indexes are built at the end of the import.
+   *
+   * @param deferredIndexBuild
+   */
+  public void setDeferredIndexBuild(boolean deferredIndexBuild) {
+    this.deferredIndexBuild = deferredIndexBuild;
+  }
+
+  public int getSchemaIntrospectionThreads() {
+    return this.schemaIntrospectionThreads;
+  }
+
+  /**
+   * Sets the number of source tables whose metadata are read in parallel while building the source database schema, each one
+   * on a connection of the source connection pool. With 1 thread the tables are read one by one on a single connection.
+   *
+   * @param schemaIntrospectionThreads
+   */
+  public void setSchemaIntrospectionThreads(int schemaIntrospectionThreads) {
+    this.schemaIntrospectionThreads = schemaIntrospectionThreads;
+  }
+
+  public boolean isExactRecordCount() {
+    return this.exactRecordCount;
+  }
+
+  /**
+   * Enables the exact counting of the source records while building the source database schema. By default the number of
+   * records of each table is read from the statistics of the source DBMS where available, avoiding a scan of every table just
+   * to size the progress of the import.
+   *
+   * @param exactRecordCount
+   */
+  public void setExactRecordCount(boolean exactRecordCount) {
+    this.exactRecordCount = exactRecordCount;
+  }
+
+  public boolean isDeletePropagation() {
+    return this.deletePropagation;
+  }
+
+  /**
+   * Enables the propagation of the deletes: at the end of a sync the vertices whose records are no more in the source tables
+   * are deleted, together with their edges. By default the sync only inserts and updates.
+   *
+   * @param deletePropagation
+   */
+  public void setDeletePropagation(boolean deletePropagation) {
+    this.deletePropagation = deletePropagation;
+  }
+
+  public boolean isResumedImport() {
+    return this.resumedImport;
+  }
+
+  /**
+   * Makes the import resumable: its progress is stored in a checkpoint, and the checkpoint stored by the last import, if it
+   * was interrupted, is resumed: the vertex and edge classes it completed are skipped and the tables it was reading are read
+   * again from the last committed key. Without a checkpoint a whole import is performed. Off by default, so the tables are
+   * read without ordering and no checkpoint is written.
+   *
+   * @param resumedImport
+   */
+  public void setResumedImport(boolean resumedImport) {
+    this.resumedImport = resumedImport;
+  }
+
+  public boolean isTableFingerprinting() {
+    return this.tableFingerprinting;
+  }
+
+  /**
+   * Enables the table fingerprints: before a sync the number of records and an aggregate hash of the columns of each table are
+   * computed by the source database, and the tables whose fingerprint is the same stored by the last sync are not read.
+   * Supported by the DBMSs providing a hash function (not by HSQLDB).
+   *
+   * @param tableFingerprinting
+   */
+  public void setTableFingerprinting(boolean tableFingerprinting) {
+    this.tableFingerprinting = tableFingerprinting;
+  }
+
+  public long getKeyMapMemoryBudget() {
+    return this.keyMapMemoryBudget;
+  }
+
+  /**
+   * Sets the max amount of direct memory (in bytes) used by each map from vertex keys to record ids, beyond it the map spills
+   * to memory-mapped files.
+   *
+   * @param keyMapMemoryBudget
+   */
+  public void setKeyMapMemoryBudget(long keyMapMemoryBudget) {
+    this.keyMapMemoryBudget = keyMapMemoryBudget;
+  }
+
+  public String getKeyMapSpillDirectory() {
+    return this.keyMapSpillDirectory;
+  }
+
+  /**
+   * Sets the directory of the files the key maps spill to, null means the temporary directory of the JVM.
+   *
+   * @param keyMapSpillDirectory
+   */
+  public void setKeyMapSpillDirectory(String keyMapSpillDirectory) {
+    this.keyMapSpillDirectory = keyMapSpillDirectory;
+  }
+
+  /**
+   * Returns the connection pool for the source database, building it (and loading the driver) at the first request.
+   *
+   * @param sourceDBInfo
+   *
+   * @return
+   */
+  public synchronized OSourceConnectionPool getSourceConnectionPool(OSourceDatabaseInfo sourceDBInfo) {
+    OSourceConnectionPool pool = this.sourceConnectionPools.get(sourceDBInfo);
+    if (pool == null || pool.isClosed()) {
+      pool = new OSourceConnectionPool(sourceDBInfo, this.sourceConnectionPoolSize, OSourceConnectionPool.DEFAULT_BORROW_TIMEOUT,
+          OSourceConnectionPool.DEFAULT_VALIDATION_TIMEOUT);
+      this.sourceConnectionPools.put(sourceDBInfo, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Closes all the source connection pools built during the current job.
+   */
+  public synchronized void closeSourceConnectionPools() {
+    for (OSourceConnectionPool pool : this.sourceConnectionPools.values()) {
+      pool.close();
+    }
+    this.sourceConnectionPools.clear();
+  }
+
   /**
    * Prints the error message for a caught exception according to a level passed as argument. It's composed of:
    * - defined error message
@@ -0,0 +1,373 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.context;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphBatchWriter;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Tuning settings of an import job, coming from the command line arguments or from the job document of the HTTP command.
+ * They are applied to the context when the job starts.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OTeleporterSettings {
+
+  private int     graphBatchSize;     // source records imported in a transaction
+  private long    graphBatchBytes;    // bytes read from the source imported in a transaction, 0 means no limit
+  private int     graphWriters;       // workers writing in the graph database
+  private boolean twoPhaseImport;     // vertices first, then edges (empty target database only)
+  private boolean freshImport;        // pure insert, without checking the records already in the target database
+  private boolean deferIndexes;       // indexes built after the first import instead of with the schema
+  private int     introspectionThreads; // source tables whose metadata are read in parallel
+  private boolean exactCount;         // source records counted instead of estimated from the DBMS statistics
+  private boolean propagateDeletes;   // vertices of the records deleted from the source deleted by the sync
+  private boolean resume;             // import restarted from the checkpoint of the last interrupted one
+  private boolean fingerprints;       // tables whose fingerprint didn't change since the last sync skipped
+  private long    keyMapMemory;       // bytes of direct memory of each key map
+  private String  spillDirectory;     // directory of the files the key maps spill to
+
+  public OTeleporterSettings() {
+    this.graphBatchSize = OGraphBatchWriter.DEFAULT_BATCH_SIZE;
+    this.graphBatchBytes = 0;
+    this.graphWriters = 1;
+    this.twoPhaseImport = false;
+    this.freshImport = false;
+    this.deferIndexes = false;
+    this.introspectionThreads = 1;
+    this.exactCount = false;
+    this.propagateDeletes = false;
+    this.resume = false;
+    this.fingerprints = false;
+    this.keyMapMemory = OVertexRidMap.DEFAULT_MEMORY_BUDGET;
+  }
+
+  /**
+   * Reads the settings from the command line arguments:
+   * -batchsize <records>   max number of source records imported in a single transaction (0 or 1 disables the transactions)
+   * -batchbytes <bytes>    max amount of source data imported in a single transaction
+   * -writers <workers>     number of workers writing in parallel in the graph database
+   * -twophase <true|false> imports all the vertices before the edges when the target database is empty (implied by -fresh)
+   * -fresh <true|false>    inserts the records without checking the target database, even if it's not empty
+   * -deferindexes <true|false> builds the indexes after the data when the target database is empty
+   * -introspectionthreads <n> number of source tables whose metadata are read in parallel
+   * -exactcount <true|false> counts the source records instead of reading the estimates of the DBMS statistics
+   * -propagatedeletes <true|false> deletes the vertices whose records are no more in the source database
+   * -resume <true|false>   checkpoints the import and resumes the last interrupted one, skipping the work already completed
+   * -fingerprints <true|false> skips the tables whose fingerprint (record count and hash) didn't change since the last sync
+   * -keymapmemory <bytes>  max direct memory of each map from vertex keys to record ids
+   * -spilldir <path>       directory of the files the key maps spill to when they exceed their memory
+   *
+   * @param arguments
+   *
+   * @return
+   *
+   * @throws IllegalArgumentException if a value is not valid
+   */
+  public static OTeleporterSettings fromArguments(Map<String, String> arguments) {
+
+    OTeleporterSettings settings = new OTeleporterSettings();
+    if (arguments.get("-batchsize") != null) {
+      settings.setGraphBatchSize(intArgument(arguments, "-batchsize"));
+    }
+    if (arguments.get("-batchbytes") != null) {
+      settings.setGraphBatchBytes(longArgument(arguments, "-batchbytes"));
+    }
+    if (arguments.get("-writers") != null) {
+      settings.setGraphWriters(intArgument(arguments, "-writers"));
+    }
+    if (arguments.get("-twophase") != null) {
+      settings.setTwoPhaseImport(booleanArgument(arguments, "-twophase"));
+    }
+    if (arguments.get("-fresh") != null) {
+      settings.setFreshImport(booleanArgument(arguments, "-fresh"));
+    }
+    if (arguments.get("-deferindexes") != null) {
+      settings.setDeferIndexes(booleanArgument(arguments, "-deferindexes"));
+    }
+    if (arguments.get("-introspectionthreads") != null) {
+      settings.setIntrospectionThreads(intArgument(arguments, "-introspectionthreads"));
+    }
+    if (arguments.get("-exactcount") != null) {
+      settings.setExactCount(booleanArgument(arguments, "-exactcount"));
+    }
+    if (arguments.get("-propagatedeletes") != null) {
+      settings.setPropagateDeletes(booleanArgument(arguments, "-propagatedeletes"));
+    }
+    if (arguments.get("-resume") != null) {
+      settings.setResume(booleanArgument(arguments, "-resume"));
+    }
+    if (arguments.get("-fingerprints") != null) {
+      settings.setFingerprints(booleanArgument(arguments, "-fingerprints"));
+    }
+    if (arguments.get("-keymapmemory") != null) {
+      settings.setKeyMapMemory(longArgument(arguments, "-keymapmemory"));
+    }
+    if (arguments.get("-spilldir") != null) {
+      settings.setSpillDirectory(arguments.get("-spilldir"));
+    }
+    return settings;
+  }
+
+  /**
+   * Reads the settings from the job document of the HTTP command ("batchSize", "batchBytes", "writers", "twoPhase",
+   * "fresh", "deferIndexes", "introspectionThreads", "exactCount", "propagateDeletes", "resume", "fingerprints", "keyMapMemory"
+   * and "spillDir" fields).
+   *
+   * @param jobDocument
+   *
+   * @return
+   */
+  public static OTeleporterSettings fromDocument(ODocument jobDocument) {
+
+    OTeleporterSettings settings = new OTeleporterSettings();
+    Number batchSize = jobDocument.field("batchSize");
+    if (batchSize != null) {
+      settings.setGraphBatchSize(batchSize.intValue());
+    }
+    Number batchBytes = jobDocument.field("batchBytes");
+    if (batchBytes != null) {
+      settings.setGraphBatchBytes(batchBytes.longValue());
+    }
+    Number writers = jobDocument.field("writers");
+    if (writers != null) {
+      settings.setGraphWriters(writers.intValue());
+    }
+    Boolean twoPhase = jobDocument.field("twoPhase");
+    if (twoPhase != null) {
+      settings.setTwoPhaseImport(twoPhase);
+    }
+    Boolean fresh = jobDocument.field("fresh");
+    if (fresh != null) {
+      settings.setFreshImport(fresh);
+    }
+    Boolean deferIndexes = jobDocument.field("deferIndexes");
+    if (deferIndexes != null) {
+      settings.setDeferIndexes(deferIndexes);
+    }
+    Number introspectionThreads = jobDocument.field("introspectionThreads");
+    if (introspectionThreads != null) {
+      settings.setIntrospectionThreads(introspectionThreads.intValue());
+    }
+    Boolean exactCount = jobDocument.field("exactCount");
+    if (exactCount != null) {
+      settings.setExactCount(exactCount);
+    }
+    Boolean propagateDeletes = jobDocument.field("propagateDeletes");
+    if (propagateDeletes != null) {
+      settings.setPropagateDeletes(propagateDeletes);
+    }
+    Boolean resume = jobDocument.field("resume");
+    if (resume != null) {
+      settings.setResume(resume);
+    }
+    Boolean fingerprints = jobDocument.field("fingerprints");
+    if (fingerprints != null) {
+      settings.setFingerprints(fingerprints);
+    }
+    Number keyMapMemory = jobDocument.field("keyMapMemory");
+    if (keyMapMemory != null) {
+      settings.setKeyMapMemory(keyMapMemory.longValue());
+    }
+    String spillDirectory = jobDocument.field("spillDir");
+    if (spillDirectory != null) {
+      settings.setSpillDirectory(spillDirectory);
+    }
+    return settings;
+  }
+
+  private static int intArgument(Map<String, String> arguments, String flag) {
+    try {
+      return Integer.parseInt(arguments.get(flag));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not valid value of " + flag + ": " + arguments.get(flag), e);
+    }
+  }
+
+  private static long longArgument(Map<String, String> arguments, String flag) {
+    try {
+      return Long.parseLong(arguments.get(flag));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not valid value of " + flag + ": " + arguments.get(flag), e);
+    }
+  }
+
+  private static boolean booleanArgument(Map<String, String> arguments, String flag) {
+    try {
+      return parseBoolean(arguments.get(flag));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Not valid value of " + flag + ": " + arguments.get(flag), e);
+    }
+  }
+
+  private static boolean parseBoolean(String value) {
+    if (value.equalsIgnoreCase("true")) {
+      return true;
+    } else if (value.equalsIgnoreCase("false")) {
+      return false;
+    }
+    throw new IllegalArgumentException("Not valid boolean value: " + value);
+  }
+
+  public void applyTo(OTeleporterContext context) {
+    context.setGraphBatchSize(this.graphBatchSize);
+    context.setGraphBatchBytes(this.graphBatchBytes);
+    context.setGraphWriters(this.graphWriters);
+    context.setTwoPhaseImport(this.twoPhaseImport);
+    context.setFreshImport(this.freshImport);
+    context.setDeferredIndexBuild(this.deferIndexes);
+    context.setSchemaIntrospectionThreads(this.introspectionThreads);
+    context.setExactRecordCount(this.exactCount);
+    context.setDeletePropagation(this.propagateDeletes);
+    context.setResumedImport(this.resume);
+    context.setTableFingerprinting(this.fingerprints);
+    context.setKeyMapMemoryBudget(this.keyMapMemory);
+    context.setKeyMapSpillDirectory(this.spillDirectory);
+  }
+
+  public int getGraphBatchSize() {
+    return this.graphBatchSize;
+  }
+
+  public void setGraphBatchSize(int graphBatchSize) {
+    if (graphBatchSize < 0) {
+      throw new IllegalArgumentException("The batch size can't be negative");
+    }
+    this.graphBatchSize = graphBatchSize;
+  }
+
+  public long getGraphBatchBytes() {
+    return this.graphBatchBytes;
+  }
+
+  public void setGraphBatchBytes(long graphBatchBytes) {
+    if (graphBatchBytes < 0) {
+      throw new IllegalArgumentException("The batch bytes can't be negative");
+    }
+    this.graphBatchBytes = graphBatchBytes;
+  }
+
+  public int getGraphWriters() {
+    return this.graphWriters;
+  }
+
+  public void setGraphWriters(int graphWriters) {
+    if (graphWriters < 1) {
+      throw new IllegalArgumentException("At least one graph writer is needed");
+    }
+    this.graphWriters = graphWriters;
+  }
+
+  public boolean isTwoPhaseImport() {
+    return this.twoPhaseImport;
+  }
+
+  public void setTwoPhaseImport(boolean twoPhaseImport) {
+    this.twoPhaseImport = twoPhaseImport;
+  }
+
+  public boolean isFreshImport() {
+    return this.freshImport;
+  }
+
+  public void setFreshImport(boolean freshImport) {
+    this.freshImport = freshImport;
+  }
+
+  public boolean isDeferIndexes() {
+    return this.deferIndexes;
+  }
+
+  public void setDeferIndexes(boolean deferIndexes) {
+    this.deferIndexes = deferIndexes;
+  }
+
+  public int getIntrospectionThreads() {
+    return this.introspectionThreads;
+  }
+
+  public void setIntrospectionThreads(int introspectionThreads) {
+    if (introspectionThreads < 1) {
+      throw new IllegalArgumentException("At least one introspection thread is needed");
+    }
+    this.introspectionThreads = introspectionThreads;
+  }
+
+  public boolean isExactCount() {
+    return this.exactCount;
+  }
+
+  public void setExactCount(boolean exactCount) {
+    this.exactCount = exactCount;
+  }
+
+  public boolean isPropagateDeletes() {
+    return this.propagateDeletes;
+  }
+
+  public void setPropagateDeletes(boolean propagateDeletes) {
+    this.propagateDeletes = propagateDeletes;
+  }
+
+  public boolean isResume() {
+    return this.resume;
+  }
+
+  public void setResume(boolean resume) {
+    this.resume = resume;
+  }
+
+  public boolean isFingerprints() {
+    return this.fingerprints;
+  }
+
+  public void setFingerprints(boolean fingerprints) {
+    this.fingerprints = fingerprints;
+  }
+
+  public long getKeyMapMemory() {
+    return this.keyMapMemory;
+  }
+
+  public void setKeyMapMemory(long keyMapMemory) {
+    if (keyMapMemory < 0) {
+      throw new IllegalArgumentException("The key map memory can't be negative");
+    }
+    this.keyMapMemory = keyMapMemory;
+  }
+
+  public String getSpillDirectory() {
+    return this.spillDirectory;
+  }
+
+  public void setSpillDirectory(String spillDirectory) {
+    if (spillDirectory != null && !new File(spillDirectory).isDirectory()) {
+      throw new IllegalArgumentException("Not valid spill directory: " + spillDirectory);
+    }
+    this.spillDirectory = spillDirectory;
+  }
+
+}
@@ -71,6 +71,7 @@ public class OTeleporterStatistics {
   public volatile int  orientAddedVertices;
   public volatile int  orientUpdatedVertices;
   public volatile int  orientAddedEdges;
+  public volatile int  orientDeletedVertices;
   public volatile Date startWork4Time;
 
   // Logical Relationships
@@ -80,6 +81,19 @@ public class OTeleporterStatistics {
   public volatile int  doneLeftVerticesCurrentLogicalRelationship;
   public volatile Date startWork5Time;
 
+  // Source connection pool
+  public volatile int  sourceConnectionsBorrowed;
+  public volatile long sourceConnectionsBorrowWaitTime;      // cumulative wait, in milliseconds
+  public volatile long sourceConnectionsMaxBorrowWaitTime;   // in milliseconds
+  public volatile int  activeSourceConnections;
+  public volatile int  idleSourceConnections;
+  public volatile int  preparedStatementsCreated;
+  public volatile int  preparedStatementsReused;
+
+  // Vertex key cache
+  public volatile long vertexKeyCacheHits;
+  public volatile long vertexKeyCacheMisses;
+
   // Warnings and Error Messages
   public volatile Set<String> warningMessages;
   public volatile Set<String> errorMessages;
@@ -89,8 +103,8 @@ public class OTeleporterStatistics {
 
   public OTeleporterStatistics() {
     this.init();
-    this.warningMessages = new HashSet<String>();
-    this.errorMessages = new HashSet<String>();
+    this.warningMessages = Collections.synchronizedSet(new HashSet<String>());
+    this.errorMessages = Collections.synchronizedSet(new HashSet<String>());
     this.listeners = new ArrayList<OStatisticsListener>();
   }
 
@@ -120,18 +134,68 @@ public class OTeleporterStatistics {
     this.analyzedRecords = 0;
     this.orientAddedVertices = 0;
     this.orientAddedEdges = 0;
+    this.orientDeletedVertices = 0;
 
     this.totalNumberOfLogicalRelationships = 0;
     this.doneLogicalRelationships = 0;
     this.leftVerticesCurrentLogicalRelationship = 0;
     this.doneLeftVerticesCurrentLogicalRelationship = 0;
 
+    this.sourceConnectionsBorrowed = 0;
+    this.sourceConnectionsBorrowWaitTime = 0;
+    this.sourceConnectionsMaxBorrowWaitTime = 0;
+    this.activeSourceConnections = 0;
+    this.idleSourceConnections = 0;
+    this.preparedStatementsCreated = 0;
+    this.preparedStatementsReused = 0;
+
+    this.vertexKeyCacheHits = 0;
+    this.vertexKeyCacheMisses = 0;
+
   }
 
   public void reset() {
     this.init();
   }
 
+  /*
+   * Counters updated by the import workers: several partitions can be imported concurrently, so these updates must be atomic.
+   */
+
+  public synchronized void incrementAnalyzedRecords(int delta) {
+    this.analyzedRecords += delta;
+  }
+
+  public synchronized void incrementOrientAddedVertices() {
+    this.orientAddedVertices++;
+  }
+
+  public synchronized void incrementOrientUpdatedVertices() {
+    this.orientUpdatedVertices++;
+  }
+
+  public synchronized void incrementOrientAddedEdges() {
+    this.orientAddedEdges++;
+  }
+
+  public synchronized void incrementOrientDeletedVertices() {
+    this.orientDeletedVertices++;
+  }
+
+  public synchronized void incrementOrientElements(int addedVertices, int updatedVertices, int addedEdges) {
+    this.orientAddedVertices += addedVertices;
+    this.orientUpdatedVertices += updatedVertices;
+    this.orientAddedEdges += addedEdges;
+  }
+
+  public synchronized void incrementPreparedStatements(boolean reused) {
+    if (reused) {
+      this.preparedStatementsReused++;
+    } else {
+      this.preparedStatementsCreated++;
+    }
+  }
+
   /*
    * Publisher-Subscribers
    */
@@ -179,14 +243,35 @@ public class OTeleporterStatistics {
     s += "\nAdded Vertices on OrientDB: " + this.orientAddedVertices;
     s += "\nUpdated Vertices on OrientDB: " + this.orientUpdatedVertices;
     s += "\nAdded Edges on OrientDB: " + this.orientAddedEdges;
+    s += "\nDeleted Vertices on OrientDB: " + this.orientDeletedVertices;
 
     return s;
   }
 
+  public String sourceConnectionPoolUsage() {
+    String s = "Source Connection Pool\n";
+    s += "Borrowed Connections: " + this.sourceConnectionsBorrowed;
+    s += "\nBorrow Wait Time (total/max): " + this.sourceConnectionsBorrowWaitTime + "/" + this.sourceConnectionsMaxBorrowWaitTime + " ms";
+    s += "\nActive Connections: " + this.activeSourceConnections;
+    s += "\nIdle Connections: " + this.idleSourceConnections;
+    s += "\nPrepared Statements (created/reused): " + this.preparedStatementsCreated + "/" + this.preparedStatementsReused;
+    return s;
+  }
+
+  public String vertexKeyCacheUsage() {
+    long lookups = this.vertexKeyCacheHits + this.vertexKeyCacheMisses;
+    String s = "Vertex Key Cache\n";
+    s += "Hits/Misses: " + this.vertexKeyCacheHits + "/" + this.vertexKeyCacheMisses;
+    if (lookups > 0) {
+      s += "\nHit Ratio: " + (this.vertexKeyCacheHits * 100 / lookups) + "%";
+    }
+    return s;
+  }
+
   public String toString() {
     String s = "\n\nSUMMARY\n\n";
     s += this.sourceDbSchemaBuildingProgress() + "\n\n" + this.orientSchemaWritingProgress() + "\n\n" + this.importingProgress()
-        + "\n\n";
+        + "\n\n" + this.sourceConnectionPoolUsage() + "\n\n" + this.vertexKeyCacheUsage() + "\n\n";
 
     // printing error messages
     if (this.errorMessages.size() > 0) {
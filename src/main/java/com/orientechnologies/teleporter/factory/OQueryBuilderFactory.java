@@ -23,8 +23,10 @@ package com.orientechnologies.teleporter.factory;
 import com.orientechnologies.teleporter.context.OTeleporterContext;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OCommonQueryBuilder;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OMysqlQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OOracleQueryBuilder;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OPostgreSQLQueryBuilder;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OSQLServerQueryBuilder;
 
 /**
  * @author Gabriele Ponzi
@@ -39,11 +41,11 @@ public class OQueryBuilderFactory {
     switch (driver) {
 
     case "oracle.jdbc.driver.OracleDriver":
-      queryBuilder = new OCommonQueryBuilder();
+      queryBuilder = new OOracleQueryBuilder();
       break;
 
     case "com.microsoft.sqlserver.jdbc.SQLServerDriver":
-      queryBuilder = new OCommonQueryBuilder();
+      queryBuilder = new OSQLServerQueryBuilder();
       break;
 
     case "com.mysql.jdbc.Driver":
@@ -25,6 +25,7 @@ import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.output.OPluginMessageHandler;
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.context.OTeleporterSettings;
 import com.orientechnologies.teleporter.exception.OTeleporterIOException;
 import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
 import com.orientechnologies.teleporter.main.OTeleporter;
@@ -84,6 +85,7 @@ public class OTeleporterJob implements Callable<ODocument> {
     final List<String> includedTables = cfg.field("includedTables");
     final List<String> excludedTable = null;
     final String migrationConfig = cfg.field("migrationConfig");
+    final OTeleporterSettings settings = OTeleporterSettings.fromDocument(cfg);
     status = Status.RUNNING;
 
     OrientDB orientDBInstance = currentServerInstance.getContext();
@@ -104,7 +106,7 @@ public class OTeleporterJob implements Callable<ODocument> {
       if (chosenStrategy.equals("interactive") || chosenStrategy.equals("interactive-aggr")) {
         executionResult = OTeleporter
             .executeJob(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver,
-                outputLevel, includedTables, excludedTable, migrationConfig, this.messageHandler, orientDBInstance);
+                outputLevel, includedTables, excludedTable, migrationConfig, this.messageHandler, orientDBInstance, settings);
 
         synchronized (listener) {
           status = Status.FINISHED;
@@ -121,7 +123,8 @@ public class OTeleporterJob implements Callable<ODocument> {
             try {
               OTeleporter
                   .executeJob(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver,
-                      outputLevel, includedTables, excludedTable, migrationConfig, new OTeleporterMessageHandler(stream, 2), orientDBInstance);
+                      outputLevel, includedTables, excludedTable, migrationConfig, new OTeleporterMessageHandler(stream, 2), orientDBInstance,
+                      settings);
             } catch (OTeleporterIOException e) {
               e.printStackTrace();
             }
@@ -21,9 +21,11 @@
 package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
 
 import com.orientechnologies.teleporter.model.dbschema.OAttribute;
+import com.orientechnologies.teleporter.model.dbschema.OChangeLog;
 import com.orientechnologies.teleporter.model.dbschema.OEntity;
 import com.orientechnologies.teleporter.model.dbschema.OHierarchicalBag;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -55,8 +57,19 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     return query;
   }
 
+  /**
+   * No estimate is available in standard SQL, so the records are counted.
+   */
   @Override
-  public String getRecordById(OEntity entity, String[] propertyOfKey, String[] valueOfKey) {
+  public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+    return null;
+  }
+
+  /**
+   * Template with a parameter for each property of the key.
+   */
+  @Override
+  public String getRecordById(OEntity entity, String[] propertyOfKey) {
     String query;
 
     String entityName = entity.getName();
@@ -67,11 +80,39 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     else
       query = "select * from " + this.quote + entityName + this.quote + " where ";
 
-    query += this.quote + propertyOfKey[0] + this.quote + " = '" + valueOfKey[0] + "'";
+    query += this.quote + propertyOfKey[0] + this.quote + " = ?";
 
     if (propertyOfKey.length > 1) {
       for (int i = 1; i < propertyOfKey.length; i++) {
-        query += " and " + this.quote + propertyOfKey[i] + this.quote + " = '" + valueOfKey[i] + "'";
+        query += " and " + this.quote + propertyOfKey[i] + this.quote + " = ?";
+      }
+    }
+
+    return query;
+  }
+
+  @Override
+  public String getRecordsByKeys(OEntity entity, String[] propertyOfKey, int keys) {
+
+    String query = "select ";
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      query += (i > 0 ? ", " : "") + this.quote + propertyOfKey[i] + this.quote;
+    }
+    query += " from " + this.qualifyName(entity.getSchemaName(), entity.getName()) + " where ";
+
+    if (propertyOfKey.length == 1) {
+      query += this.quote + propertyOfKey[0] + this.quote + " in (";
+      for (int k = 0; k < keys; k++) {
+        query += (k > 0 ? ", ?" : "?");
+      }
+      query += ")";
+    } else {
+      for (int k = 0; k < keys; k++) {
+        query += (k > 0 ? " or (" : "(");
+        for (int i = 0; i < propertyOfKey.length; i++) {
+          query += (i > 0 ? " and " : "") + this.quote + propertyOfKey[i] + this.quote + " = ?";
+        }
+        query += ")";
       }
     }
 
@@ -80,15 +121,31 @@ public class OCommonQueryBuilder implements OQueryBuilder {
 
   @Override
   public String getRecordsByEntity(OEntity entity) {
+    return this.getRecordsByEntity(entity, null);
+  }
+
+  /**
+   * Selects just the passed columns, or all of them if no column is passed.
+   */
+  @Override
+  public String getRecordsByEntity(OEntity entity, List<String> columns) {
     String query;
 
     String entityName = entity.getName();
     String entitySchema = entity.getSchemaName();
 
+    String projection = "*";
+    if (columns != null && columns.size() > 0) {
+      projection = this.quote + columns.get(0) + this.quote;
+      for (int i = 1; i < columns.size(); i++) {
+        projection += ", " + this.quote + columns.get(i) + this.quote;
+      }
+    }
+
     if (entitySchema != null)
-      query = "select * from " + entitySchema + "." + this.quote + entityName + this.quote;
+      query = "select " + projection + " from " + entitySchema + "." + this.quote + entityName + this.quote;
     else
-      query = "select * from " + this.quote + entityName + this.quote;
+      query = "select " + projection + " from " + this.quote + entityName + this.quote;
 
     return query;
   }
@@ -123,9 +180,11 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     return query;
   }
 
+  /**
+   * Template with a parameter for the discriminator value.
+   */
   @Override
-  public String getRecordsFromSingleTableByDiscriminatorValue(String discriminatorColumn, String currentDiscriminatorValue,
-      OEntity entity) {
+  public String getRecordsFromSingleTableByDiscriminatorValue(String discriminatorColumn, OEntity entity) {
     String query;
 
     String entityName = entity.getName();
@@ -136,14 +195,16 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     else
       query = "select * from " + this.quote + entityName + this.quote;
 
-    query += " where " + this.quote + discriminatorColumn + this.quote + "='" + currentDiscriminatorValue + "'";
+    query += " where " + this.quote + discriminatorColumn + this.quote + " = ?";
 
     return query;
   }
 
+  /**
+   * Template with a parameter for each property of the key.
+   */
   @Override
-  public String getEntityTypeFromSingleTable(String discriminatorColumn, OEntity physicalEntity, String[] propertyOfKey,
-      String[] valueOfKey) {
+  public String getEntityTypeFromSingleTable(String discriminatorColumn, OEntity physicalEntity, String[] propertyOfKey) {
     String query;
 
     String physicalEntityName = physicalEntity.getName();
@@ -155,11 +216,11 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     else
       query = "select " + discriminatorColumn + " from " + this.quote + physicalEntityName + this.quote + " where ";
 
-    query += this.quote + propertyOfKey[0] + this.quote + " = '" + valueOfKey[0] + "'";
+    query += this.quote + propertyOfKey[0] + this.quote + " = ?";
 
     if (propertyOfKey.length > 1) {
       for (int i = 1; i < propertyOfKey.length; i++) {
-        query += " and " + this.quote + propertyOfKey[i] + this.quote + " = '" + valueOfKey[i] + "'";
+        query += " and " + this.quote + propertyOfKey[i] + this.quote + " = ?";
       }
     }
 
@@ -168,15 +229,46 @@ public class OCommonQueryBuilder implements OQueryBuilder {
 
   @Override
   public String buildAggregateTableFromHierarchicalBag(OHierarchicalBag bag) {
+    return "select * " + this.buildHierarchicalBagJoins(bag);
+  }
+
+  /**
+   * Same join of the aggregate table, with a marker column for each subclass entity appended after all the columns of the
+   * tables. The i-th marker holds the first primary key column of the i-th entity returned by
+   * {@link OHierarchicalBag#getSubclassEntities()}, thus it's not null when the record belongs to that entity's table.
+   *
+   * @param bag
+   *
+   * @return
+   */
+  @Override
+  public String getRecordsFromHierarchicalBag(OHierarchicalBag bag) {
+
+    List<OEntity> subclassEntities = bag.getSubclassEntities();
+
+    String query = "select t0.*";
+    for (int i = 1; i <= subclassEntities.size(); i++) {
+      query += ", t" + i + ".*";
+    }
+    for (int i = 1; i <= subclassEntities.size(); i++) {
+      String keyColumn = subclassEntities.get(i - 1).getPrimaryKey().getInvolvedAttributes().get(0).getName();
+      query += ", t" + i + "." + this.quote + keyColumn + this.quote + " as subclass_marker_" + i;
+    }
+    query += " " + this.buildHierarchicalBagJoins(bag);
+
+    return query;
+  }
+
+  private String buildHierarchicalBagJoins(OHierarchicalBag bag) {
     String query;
 
     Iterator<OEntity> it = bag.getDepth2entities().get(0).iterator();
     OEntity rootEntity = it.next();
 
     if (rootEntity.getSchemaName() != null)
-      query = "select * from " + rootEntity.getSchemaName() + "." + this.quote + rootEntity.getName() + this.quote + " as t0\n";
+      query = "from " + rootEntity.getSchemaName() + "." + this.quote + rootEntity.getName() + this.quote + " as t0\n";
     else
-      query = "select * from " + this.quote + rootEntity.getName() + this.quote + " as t0\n";
+      query = "from " + this.quote + rootEntity.getName() + this.quote + " as t0\n";
 
     String[] rootEntityPropertyOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes()
         .size()];  // collects the attributes of the root-entity's primary key
@@ -189,38 +281,247 @@ public class OCommonQueryBuilder implements OQueryBuilder {
     String[] currentEntityPropertyOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes()
         .size()];  // collects the attributes of the current-entity's primary key
 
-    OEntity currentEntity;
     int thTable = 1;
-    for (int i = 1; i < bag.getDepth2entities().size(); i++) {
-      it = bag.getDepth2entities().get(i).iterator();
+    for (OEntity currentEntity : bag.getSubclassEntities()) {
 
-      while (it.hasNext()) {
+      int index = 0;
+      for (OAttribute attribute : currentEntity.getPrimaryKey().getInvolvedAttributes()) {
+        currentEntityPropertyOfKey[index] = attribute.getName();
+        index++;
+      }
 
-        currentEntity = it.next();
-        int index = 0;
-        for (OAttribute attribute : currentEntity.getPrimaryKey().getInvolvedAttributes()) {
-          currentEntityPropertyOfKey[index] = attribute.getName();
-          index++;
-        }
+      if (currentEntity.getSchemaName() != null)
+        query += "left join " + currentEntity.getSchemaName() + "." + this.quote + currentEntity.getName() + this.quote;
+      else
+        query += "left join " + this.quote + currentEntity.getName() + this.quote;
 
-        if (currentEntity.getSchemaName() != null)
-          query += "left join " + currentEntity.getSchemaName() + "." + this.quote + currentEntity.getName() + this.quote;
-        else
-          query += "left join " + this.quote + currentEntity.getName() + this.quote;
+      query += " as t" + thTable + " on t0." + this.quote + rootEntityPropertyOfKey[0] + this.quote + " = t" + thTable + "."
+          + this.quote + currentEntityPropertyOfKey[0] + this.quote;
 
-        query += " as t" + thTable + " on t0." + this.quote + rootEntityPropertyOfKey[0] + this.quote + " = t" + thTable + "."
-            + this.quote + currentEntityPropertyOfKey[0] + this.quote;
+      for (int k = 1; k < currentEntityPropertyOfKey.length; k++) {
+        query += " and t0." + this.quote + rootEntityPropertyOfKey[k] + this.quote + " = t" + thTable + "." + this.quote
+            + currentEntityPropertyOfKey[k] + this.quote;
+      }
 
-        for (int k = 1; k < currentEntityPropertyOfKey.length; k++) {
-          query += " and " + this.quote + rootEntityPropertyOfKey[k] + this.quote + " = t" + thTable + "." + this.quote
-              + currentEntityPropertyOfKey[0] + this.quote;
-        }
+      query += "\n";
+      thTable++;
+    }
 
-        query += "\n";
-        thTable++;
-      }
+    return query;
+  }
+
+  @Override
+  public String getKeyRange(OEntity entity, String keyColumn) {
+    String query;
+
+    String entityName = entity.getName();
+    String entitySchema = entity.getSchemaName();
+
+    query = "select min(" + this.quote + keyColumn + this.quote + "), max(" + this.quote + keyColumn + this.quote + ") from ";
+    if (entitySchema != null)
+      query += entitySchema + "." + this.quote + entityName + this.quote;
+    else
+      query += this.quote + entityName + this.quote;
+
+    return query;
+  }
+
+  /**
+   * Returns the upper bound of each of the tiles in which the records are split by ntile() over the key, ordered by tile.
+   *
+   * @param entity
+   * @param keyColumn
+   * @param tiles
+   *
+   * @return
+   */
+  @Override
+  public String getKeyTileBoundaries(OEntity entity, String keyColumn, int tiles) {
+    String query;
+
+    String entityName = entity.getName();
+    String entitySchema = entity.getSchemaName();
+    String key = this.quote + keyColumn + this.quote;
+
+    query = "select max(" + key + ") from (select " + key + ", ntile(" + tiles + ") over (order by " + key + ") as tile from ";
+    if (entitySchema != null)
+      query += entitySchema + "." + this.quote + entityName + this.quote;
+    else
+      query += this.quote + entityName + this.quote;
+    query += ") t group by tile order by tile";
+
+    return query;
+  }
+
+  /**
+   * Template returning all the records with the key in the range (exclusive lower bound, inclusive upper bound], with a
+   * parameter for each bound. A missing bound means the range is unbounded on that side.
+   *
+   * @param entity
+   * @param keyColumn
+   * @param lowerBound true if the range has the exclusive lower bound parameter
+   * @param upperBound true if the range has the inclusive upper bound parameter
+   *
+   * @return
+   */
+  @Override
+  public String getRecordsByEntityInKeyRange(OEntity entity, List<String> columns, String keyColumn, boolean lowerBound,
+      boolean upperBound) {
+
+    String query = this.getRecordsByEntity(entity, columns);
+    String key = this.quote + keyColumn + this.quote;
+
+    if (lowerBound && upperBound)
+      query += " where " + key + " > ? and " + key + " <= ?";
+    else if (lowerBound)
+      query += " where " + key + " > ?";
+    else if (upperBound)
+      query += " where " + key + " <= ?";
+
+    return query;
+  }
+
+  @Override
+  public String getWatermarkMaximum(OEntity entity, String watermarkColumn) {
+    String query;
+
+    String entityName = entity.getName();
+    String entitySchema = entity.getSchemaName();
+
+    query = "select max(" + this.quote + watermarkColumn + this.quote + ") from ";
+    if (entitySchema != null)
+      query += entitySchema + "." + this.quote + entityName + this.quote;
+    else
+      query += this.quote + entityName + this.quote;
+
+    return query;
+  }
+
+  @Override
+  public String getRecordsByEntityInWatermarkRange(OEntity entity, List<String> columns, String watermarkColumn,
+      boolean lowerBound, boolean upperBound) {
+
+    String query = this.getRecordsByEntity(entity, columns);
+    String watermark = this.quote + watermarkColumn + this.quote;
+
+    if (lowerBound && upperBound)
+      query += " where " + watermark + " > ? and " + watermark + " <= ?";
+    else if (lowerBound)
+      query += " where " + watermark + " > ?";
+    else if (upperBound)
+      query += " where " + watermark + " <= ?";
+
+    return query;
+  }
+
+  @Override
+  public String getRecordsByEntityInKeyOrder(OEntity entity, List<String> columns, String keyColumn, boolean lowerBound) {
+
+    String query = this.getRecordsByEntity(entity, columns);
+    String key = this.quote + keyColumn + this.quote;
+
+    if (lowerBound)
+      query += " where " + key + " > ?";
+    query += " order by " + key;
+
+    return query;
+  }
+
+  /**
+   * SQL standard triggers, as accepted by HSQLDB.
+   */
+  @Override
+  public List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) {
+
+    List<String> statements = new ArrayList<String>();
+    String table = this.qualifyName(entity.getSchemaName(), entity.getName());
+    String changeLog = this.qualifyName(entity.getSchemaName(), changeLogTable);
+
+    String query = "create table " + changeLog + " (" + this.quote + OChangeLog.CHANGE_ID_COLUMN + this.quote
+        + " bigint generated by default as identity primary key, " + this.quote + OChangeLog.OPERATION_COLUMN + this.quote
+        + " char(1) not null";
+    for (String keyColumn : keyColumns) {
+      query += ", " + this.quote + keyColumn + this.quote + " varchar(4000)";
+    }
+    query += ")";
+    statements.add(query);
+
+    String insert = "insert into " + changeLog + " (" + this.quote + OChangeLog.OPERATION_COLUMN + this.quote;
+    for (String keyColumn : keyColumns) {
+      insert += ", " + this.quote + keyColumn + this.quote;
+    }
+    insert += ") values ";
+
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_INS") + " after insert on "
+        + table + " referencing new row as newrow for each row " + insert + this.buildChangeRow("'I'", "newrow", keyColumns));
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_UPD") + " after update on "
+        + table + " referencing old row as oldrow new row as newrow for each row " + insert + this.buildChangeRow("'U'", "oldrow",
+        keyColumns) + ", " + this.buildChangeRow("'U'", "newrow", keyColumns));
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_DEL") + " after delete on "
+        + table + " referencing old row as oldrow for each row " + insert + this.buildChangeRow("'D'", "oldrow", keyColumns));
+
+    return statements;
+  }
+
+  /**
+   * Values of a row of the change-log table: the operation (as SQL expression) and the key of the passed transition row, as
+   * strings.
+   */
+  protected String buildChangeRow(String operation, String row, List<String> keyColumns) {
+    String values = "(" + operation;
+    for (String keyColumn : keyColumns) {
+      values += ", cast(" + row + "." + this.quote + keyColumn + this.quote + " as varchar(4000))";
+    }
+    return values + ")";
+  }
+
+  @Override
+  public String getChangeLogMinimum(OEntity entity, String changeLogTable) {
+    return "select min(" + this.quote + OChangeLog.CHANGE_ID_COLUMN + this.quote + ") from " + this
+        .qualifyName(entity.getSchemaName(), changeLogTable);
+  }
+
+  @Override
+  public String getChangeLogMaximum(OEntity entity, String changeLogTable) {
+    return "select max(" + this.quote + OChangeLog.CHANGE_ID_COLUMN + this.quote + ") from " + this
+        .qualifyName(entity.getSchemaName(), changeLogTable);
+  }
+
+  @Override
+  public String getChangesInLog(OEntity entity, String changeLogTable, List<String> keyColumns) {
+    String changeId = this.quote + OChangeLog.CHANGE_ID_COLUMN + this.quote;
+
+    String query = "select " + changeId;
+    for (String keyColumn : keyColumns) {
+      query += ", " + this.quote + keyColumn + this.quote;
     }
+    query += " from " + this.qualifyName(entity.getSchemaName(), changeLogTable) + " where " + changeId + " > ? and " + changeId
+        + " <= ? order by "
+        + changeId;
 
     return query;
   }
+
+  @Override
+  public String purgeChangeLog(OEntity entity, String changeLogTable) {
+    return "delete from " + this.qualifyName(entity.getSchemaName(), changeLogTable) + " where " + this.quote
+        + OChangeLog.CHANGE_ID_COLUMN + this.quote + " <= ?";
+  }
+
+  /**
+   * No standard hash function (HSQLDB provides none), so the fingerprint is not supported.
+   *
+   * @return null
+   */
+  @Override
+  public String getTableFingerprint(OEntity entity, List<String> columns) {
+    return null;
+  }
+
+  protected String qualifyName(String schema, String name) {
+    if (schema != null)
+      return schema + "." + this.quote + name + this.quote;
+    else
+      return this.quote + name + this.quote;
+  }
 }
@@ -21,18 +21,30 @@
 package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
 
 import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
 import com.orientechnologies.teleporter.factory.OQueryBuilderFactory;
 import com.orientechnologies.teleporter.importengine.ODataSourceQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OChangeLog;
 import com.orientechnologies.teleporter.model.dbschema.OEntity;
 import com.orientechnologies.teleporter.model.dbschema.OHierarchicalBag;
 import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
-import com.orientechnologies.teleporter.persistence.util.ODBSourceConnection;
+import com.orientechnologies.teleporter.model.dbschema.OWatermark;
 import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+import com.orientechnologies.teleporter.persistence.util.OSourceConnectionPool;
 
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,12 +56,41 @@ import java.util.List;
 
 public class ODBQueryEngine implements ODataSourceQueryEngine {
 
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
   private OQueryBuilderFactory queryBuilderFactory;
   private OQueryBuilder        queryBuilder;
+  private int                  defaultFetchSize;
 
   public ODBQueryEngine(String driver) {
     this.queryBuilderFactory = new OQueryBuilderFactory();
     this.queryBuilder = this.queryBuilderFactory.buildQueryBuilder(driver);
+    this.defaultFetchSize = DEFAULT_FETCH_SIZE;
+  }
+
+  /**
+   * Query engine adopting the passed query builder instead of the one built by the factory for the driver.
+   *
+   * @param queryBuilder
+   */
+  public ODBQueryEngine(OQueryBuilder queryBuilder) {
+    this.queryBuilderFactory = new OQueryBuilderFactory();
+    this.queryBuilder = queryBuilder;
+    this.defaultFetchSize = DEFAULT_FETCH_SIZE;
+  }
+
+  public int getDefaultFetchSize() {
+    return this.defaultFetchSize;
+  }
+
+  /**
+   * Sets the fetch size used by the full table scans when no fetch size is configured for the table.
+   * A value <= 0 disables the streaming mode, so the driver default fetching is used.
+   *
+   * @param defaultFetchSize
+   */
+  public void setDefaultFetchSize(int defaultFetchSize) {
+    this.defaultFetchSize = defaultFetchSize;
   }
 
   public OQueryResult countTableRecords(OSourceDatabaseInfo sourceDBInfo, String currentTableName, String currentTableSchema) {
@@ -58,6 +99,31 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
     return this.executeQuery(query, sourceDBInfo);
   }
 
+  /**
+   * Reads the number of records of the table estimated by the statistics of the source DBMS, without scanning the table.
+   * The estimate may be stale, or null if the table was never analyzed.
+   *
+   * @param sourceDBInfo
+   * @param currentTableName
+   * @param currentTableSchema
+   *
+   * @return null if the source DBMS doesn't provide an estimate
+   */
+  public OQueryResult estimateTableRecords(OSourceDatabaseInfo sourceDBInfo, String currentTableName,
+      String currentTableSchema) {
+
+    String template = queryBuilder.estimateTableRecords(currentTableName, currentTableSchema);
+    if (template == null) {
+      return null;
+    }
+    String[] params;
+    if (currentTableSchema != null)
+      params = new String[] { currentTableName, currentTableSchema };
+    else
+      params = new String[] { currentTableName };
+    return this.executePreparedQuery(template, params, sourceDBInfo, 0);
+  }
+
   /**
    * @param entity
    * @param propertyOfKey
@@ -69,16 +135,307 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
 
     OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
     // TODO: queryBuilder fetching
-    String query = queryBuilder.getRecordById(entity, propertyOfKey, valueOfKey);
-    return this.executeQuery(query, sourceDBInfo);
+    String query = queryBuilder.getRecordById(entity, propertyOfKey);
+    return this.executePreparedQuery(query, valueOfKey, sourceDBInfo, 0);
+  }
+
+  /**
+   * Returns the key columns of the records of the entity whose key is one of the passed keys, binding the key values with their
+   * own type (as read from the graph database). All the keys are looked up with a single query.
+   *
+   * @param entity
+   * @param propertyOfKey
+   * @param valuesOfKeys
+   *
+   * @return
+   */
+  public OQueryResult getRecordsByKeys(OEntity entity, String[] propertyOfKey, List<Object[]> valuesOfKeys) {
+
+    String query = queryBuilder.getRecordsByKeys(entity, propertyOfKey, valuesOfKeys.size());
+    Object[] params = new Object[propertyOfKey.length * valuesOfKeys.size()];
+    int param = 0;
+    for (Object[] valueOfKey : valuesOfKeys) {
+      for (Object value : valueOfKey) {
+        params[param++] = value;
+      }
+    }
+    return this.executePreparedQuery(query, params, entity.getSourceDataseInfo(), 0);
   }
 
   public OQueryResult getRecordsByEntity(OEntity entity) {
+    return this.getRecordsByEntity(entity, null);
+  }
+
+  /**
+   * Returns the records of the entity projected on the passed columns (all the columns if null).
+   *
+   * @param entity
+   * @param columns
+   *
+   * @return
+   */
+  public OQueryResult getRecordsByEntity(OEntity entity, List<String> columns) {
 
     OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
     // TODO: queryBuilder fetching
-    String query = queryBuilder.getRecordsByEntity(entity);
-    return this.executeQuery(query, sourceDBInfo);
+    String query = queryBuilder.getRecordsByEntity(entity, columns);
+    return this.executeQuery(query, sourceDBInfo, this.resolveFetchSize(entity));
+  }
+
+  /**
+   * Returns the records of the entity projected on the passed columns (all the columns if null) whose watermark column lies
+   * in the range of the watermark of the entity. If the entity has no watermark all its records are returned.
+   *
+   * @param entity
+   * @param columns
+   *
+   * @return
+   */
+  public OQueryResult getChangedRecordsByEntity(OEntity entity, List<String> columns) {
+
+    OWatermark watermark = entity.getWatermark();
+    if (watermark == null) {
+      return this.getRecordsByEntity(entity, columns);
+    }
+
+    OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
+    List<Object> bounds = new ArrayList<Object>();
+    if (watermark.getLowerBound() != null) {
+      bounds.add(watermark.getLowerBound());
+    }
+    if (watermark.getUpperBound() != null) {
+      bounds.add(watermark.getUpperBound());
+    }
+    String template = queryBuilder
+        .getRecordsByEntityInWatermarkRange(entity, columns, watermark.getColumn(), watermark.getLowerBound() != null,
+            watermark.getUpperBound() != null);
+    return this.executePreparedQuery(template, bounds.toArray(), sourceDBInfo, this.resolveFetchSize(entity));
+  }
+
+  /**
+   * Reads the current maximum of the watermark column of the entity.
+   *
+   * @param entity
+   * @param watermarkColumn
+   *
+   * @return the maximum, with the JDBC type of the column, or null if the column has no value
+   *
+   * @throws SQLException
+   */
+  public Object getWatermarkMaximum(OEntity entity, String watermarkColumn) throws SQLException {
+
+    String query = queryBuilder.getWatermarkMaximum(entity, watermarkColumn);
+    OQueryResult result = this.executeQuery(query, entity.getSourceDataseInfo());
+    try {
+      ResultSet maximum = result.getResult();
+      if (maximum == null) {
+        throw new SQLException("Not valid watermark column '" + watermarkColumn + "' for the table " + entity.getName() + ".");
+      }
+      return maximum.next() ? maximum.getObject(1) : null;
+    } finally {
+      result.closeAll();
+    }
+  }
+
+  /**
+   * Computes the fingerprint of the entity on the source side: the number of records and an aggregate hash of the passed
+   * columns, so that an unchanged table can be detected without transferring its records.
+   *
+   * @param entity
+   * @param columns
+   *
+   * @return the fingerprint as "<records>:<hash>", null if the DBMS provides no hash function
+   *
+   * @throws SQLException
+   */
+  public String getTableFingerprint(OEntity entity, List<String> columns) throws SQLException {
+
+    String query = queryBuilder.getTableFingerprint(entity, columns);
+    if (query == null) {
+      return null;
+    }
+    OQueryResult result = this.executeQuery(query, entity.getSourceDataseInfo());
+    try {
+      ResultSet fingerprint = result.getResult();
+      if (fingerprint == null || !fingerprint.next()) {
+        throw new SQLException("Not valid fingerprint of the table " + entity.getName() + ".");
+      }
+      return fingerprint.getString(1) + ":" + fingerprint.getString(2);
+    } finally {
+      result.closeAll();
+    }
+  }
+
+  /**
+   * Checks whether the change-log table of the entity is present in the source database.
+   *
+   * @param entity
+   * @param changeLogTable
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  public boolean existsChangeLog(OEntity entity, String changeLogTable) throws SQLException {
+
+    OSourceConnectionPool connectionPool = OTeleporterContext.getInstance().getSourceConnectionPool(entity.getSourceDataseInfo());
+    Connection dbConnection = connectionPool.borrowConnection();
+    ResultSet tables = null;
+    try {
+      DatabaseMetaData metaData = dbConnection.getMetaData();
+      tables = metaData.getTables(null, entity.getSchemaName(), changeLogTable, new String[] { "TABLE" });
+      return tables.next();
+    } finally {
+      if (tables != null) {
+        tables.close();
+      }
+      connectionPool.releaseConnection(dbConnection);
+    }
+  }
+
+  /**
+   * Creates the change-log table of the entity and the triggers filling it.
+   *
+   * @param entity
+   * @param changeLogTable
+   * @param keyColumns
+   *
+   * @return false if the DBMS doesn't support the change capture
+   *
+   * @throws SQLException
+   */
+  public boolean installChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) throws SQLException {
+
+    List<String> statements = queryBuilder.buildChangeCapture(entity, changeLogTable, keyColumns);
+    if (statements == null) {
+      return false;
+    }
+    this.executeUpdates(statements, entity.getSourceDataseInfo());
+    return true;
+  }
+
+  /**
+   * Reads the first change id in the change-log table of the entity.
+   *
+   * @param entity
+   * @param changeLogTable
+   *
+   * @return the change id, null if the change-log table is empty
+   *
+   * @throws SQLException
+   */
+  public Long getChangeLogMinimum(OEntity entity, String changeLogTable) throws SQLException {
+    return this.readChangeId(queryBuilder.getChangeLogMinimum(entity, changeLogTable), entity, changeLogTable);
+  }
+
+  /**
+   * Reads the last change id in the change-log table of the entity.
+   *
+   * @param entity
+   * @param changeLogTable
+   *
+   * @return the change id, null if the change-log table is empty
+   *
+   * @throws SQLException
+   */
+  public Long getChangeLogMaximum(OEntity entity, String changeLogTable) throws SQLException {
+    return this.readChangeId(queryBuilder.getChangeLogMaximum(entity, changeLogTable), entity, changeLogTable);
+  }
+
+  private Long readChangeId(String query, OEntity entity, String changeLogTable) throws SQLException {
+
+    OQueryResult result = this.executeQuery(query, entity.getSourceDataseInfo());
+    try {
+      ResultSet changeIdResult = result.getResult();
+      if (changeIdResult == null) {
+        throw new SQLException("Not valid change-log table '" + changeLogTable + "' for the table " + entity.getName() + ".");
+      }
+      if (changeIdResult.next()) {
+        long changeId = changeIdResult.getLong(1);
+        return changeIdResult.wasNull() ? null : changeId;
+      }
+      return null;
+    } finally {
+      result.closeAll();
+    }
+  }
+
+  /**
+   * Returns the change id and the key columns of the changes in the change-log of the entity whose change id lies in the
+   * passed range, in change order.
+   *
+   * @param entity
+   * @param changeLog
+   * @param lowerBound exclusive
+   * @param upperBound inclusive
+   *
+   * @return
+   */
+  public OQueryResult getChangesInLog(OEntity entity, OChangeLog changeLog, long lowerBound, long upperBound) {
+
+    String template = queryBuilder.getChangesInLog(entity, changeLog.getTableName(), changeLog.getKeyColumns());
+    return this.executePreparedQuery(template, new Object[] { lowerBound, upperBound }, entity.getSourceDataseInfo(),
+        this.resolveFetchSize(entity));
+  }
+
+  /**
+   * Deletes the changes consumed by the current sync from the change-log table of the entity.
+   *
+   * @param entity
+   * @param changeLog
+   *
+   * @return the number of purged changes
+   *
+   * @throws SQLException
+   */
+  public int purgeChangeLog(OEntity entity, OChangeLog changeLog) throws SQLException {
+
+    OSourceConnectionPool connectionPool = OTeleporterContext.getInstance().getSourceConnectionPool(entity.getSourceDataseInfo());
+    Connection dbConnection = connectionPool.borrowConnection();
+    PreparedStatement statement = null;
+    try {
+      statement = dbConnection.prepareStatement(queryBuilder.purgeChangeLog(entity, changeLog.getTableName()));
+      statement.setLong(1, changeLog.getUpperBound());
+      int purged = statement.executeUpdate();
+      if (!dbConnection.getAutoCommit()) {
+        dbConnection.commit();
+      }
+      return purged;
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+      connectionPool.releaseConnection(dbConnection);
+    }
+  }
+
+  /**
+   * Executes the statements in order through a single connection, committing them at the end.
+   *
+   * @param statements
+   * @param sourceDBInfo
+   *
+   * @throws SQLException
+   */
+  private void executeUpdates(List<String> statements, OSourceDatabaseInfo sourceDBInfo) throws SQLException {
+
+    OSourceConnectionPool connectionPool = OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo);
+    Connection dbConnection = connectionPool.borrowConnection();
+    Statement statement = null;
+    try {
+      statement = dbConnection.createStatement();
+      for (String currentStatement : statements) {
+        statement.execute(currentStatement);
+      }
+      if (!dbConnection.getAutoCommit()) {
+        dbConnection.commit();
+      }
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+      connectionPool.releaseConnection(dbConnection);
+    }
   }
 
   public OQueryResult getRecordsFromMultipleEntities(List<OEntity> mappedEntities, String[][] columns) {
@@ -87,7 +444,7 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
         .getSourceDataseInfo();   // all the entities belong to the same source database
     // TODO: queryBuilder fetching
     String query = queryBuilder.getRecordsFromMultipleEntities(mappedEntities, columns);
-    return this.executeQuery(query, sourceDBInfo);
+    return this.executeQuery(query, sourceDBInfo, this.resolveFetchSize(mappedEntities.get(0)));
   }
 
   /**
@@ -98,9 +455,9 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
 
     OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
     // TODO: queryBuilder fetching
-    String query = queryBuilder
-        .getRecordsFromSingleTableByDiscriminatorValue(discriminatorColumn, currentDiscriminatorValue, entity);
-    return this.executeQuery(query, sourceDBInfo);
+    String query = queryBuilder.getRecordsFromSingleTableByDiscriminatorValue(discriminatorColumn, entity);
+    return this.executePreparedQuery(query, new String[] { currentDiscriminatorValue }, sourceDBInfo,
+        this.resolveFetchSize(entity));
   }
 
   public OQueryResult getEntityTypeFromSingleTable(String discriminatorColumn, OEntity entity, String[] propertyOfKey,
@@ -108,8 +465,8 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
 
     OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
     // TODO: queryBuilder fetching
-    String query = queryBuilder.getEntityTypeFromSingleTable(discriminatorColumn, entity, propertyOfKey, valueOfKey);
-    return this.executeQuery(query, sourceDBInfo);
+    String query = queryBuilder.getEntityTypeFromSingleTable(discriminatorColumn, entity, propertyOfKey);
+    return this.executePreparedQuery(query, valueOfKey, sourceDBInfo, 0);
   }
 
   /**
@@ -122,24 +479,198 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
     OSourceDatabaseInfo sourceDBInfo = bag.getSourceDataseInfo();
     // TODO: queryBuilder fetching
     String query = queryBuilder.buildAggregateTableFromHierarchicalBag(bag);
-    return this.executeQuery(query, sourceDBInfo);
+    return this.executeQuery(query, sourceDBInfo, this.defaultFetchSize);
+  }
+
+  /**
+   * Returns in a single stream all the records of a "table per type" hierarchy, each one joined with the rows of the subclass
+   * tables sharing its key (see {@link OQueryBuilder#getRecordsFromHierarchicalBag(OHierarchicalBag)}).
+   *
+   * @param bag
+   *
+   * @return
+   */
+  public OQueryResult getRecordsFromHierarchicalBag(OHierarchicalBag bag) {
+
+    OSourceDatabaseInfo sourceDBInfo = bag.getSourceDataseInfo();
+    String query = queryBuilder.getRecordsFromHierarchicalBag(bag);
+    return this.executeQuery(query, sourceDBInfo, this.defaultFetchSize);
+  }
+
+  /**
+   * Returns the records of the entity projected on the passed columns (all the columns if null) ordered by the key column,
+   * starting after the passed key (from the first record if null). So a scan interrupted after a key can be resumed from it.
+   *
+   * @param entity
+   * @param columns
+   * @param keyColumn
+   * @param exclusiveLowerBound
+   *
+   * @return
+   */
+  public OQueryResult getRecordsByEntityInKeyOrder(OEntity entity, List<String> columns, String keyColumn,
+      Object exclusiveLowerBound) {
+
+    OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
+    String template = queryBuilder.getRecordsByEntityInKeyOrder(entity, columns, keyColumn, exclusiveLowerBound != null);
+    Object[] params = exclusiveLowerBound != null ? new Object[] { exclusiveLowerBound } : new Object[0];
+    return this.executePreparedQuery(template, params, sourceDBInfo, this.resolveFetchSize(entity));
+  }
+
+  /**
+   * Returns the records of the entity whose single-column primary key is in the passed key partition
+   * (see {@link #buildKeyPartitions(OEntity, int)}).
+   *
+   * @param entity
+   * @param keyPartition
+   * @param columns      projected columns, all the columns if null
+   *
+   * @return
+   */
+  public OQueryResult getRecordsByEntityInKeyPartition(OEntity entity, Object[] keyPartition, List<String> columns) {
+
+    OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
+    String keyColumn = entity.getPrimaryKey().getInvolvedAttributes().get(0).getName();
+    String template = queryBuilder
+        .getRecordsByEntityInKeyRange(entity, columns, keyColumn, keyPartition[0] != null, keyPartition[1] != null);
+    List<Object> bounds = new ArrayList<Object>();
+    for (Object bound : keyPartition) {
+      if (bound != null) {
+        bounds.add(bound);
+      }
+    }
+    return this.executePreparedQuery(template, bounds.toArray(), sourceDBInfo, this.resolveFetchSize(entity));
+  }
+
+  /**
+   * Splits the records of the entity in (at most) the requested number of partitions on its primary key.
+   * Each partition is returned as [exclusive lower bound, inclusive upper bound], both typed as the key read from the source
+   * (bound as statement parameters, so they're compared as keys and not as text) and null when unbounded, so the first and
+   * the last partitions catch all the records out of the estimated key range.
+   * - numeric keys: the [min, max] range is split in equal-width ranges
+   * - other keys: the boundaries are the upper keys of the tiles computed through ntile()
+   * Composite keys and keys that cannot be split lead to an empty list, that is the entity is read with a single scan.
+   *
+   * @param entity
+   * @param partitions
+   *
+   * @return
+   */
+  public List<Object[]> buildKeyPartitions(OEntity entity, int partitions) {
+
+    List<Object[]> keyPartitions = new ArrayList<Object[]>();
+    if (partitions < 2 || entity.getPrimaryKey() == null || entity.getPrimaryKey().getInvolvedAttributes().size() != 1) {
+      return keyPartitions;
+    }
+
+    OSourceDatabaseInfo sourceDBInfo = entity.getSourceDataseInfo();
+    String keyColumn = entity.getPrimaryKey().getInvolvedAttributes().get(0).getName();
+    List<Object> splitPoints = new ArrayList<Object>();
+    OQueryResult queryResult = this.executeQuery(queryBuilder.getKeyRange(entity, keyColumn), sourceDBInfo);
+
+    try {
+      ResultSet range = queryResult.getResult();
+      if (range != null && range.next()) {
+        if (this.isIntegerType(range.getMetaData(), 1)) {
+          BigInteger min = range.getBigDecimal(1) != null ? range.getBigDecimal(1).toBigInteger() : null;
+          BigInteger max = range.getBigDecimal(2) != null ? range.getBigDecimal(2).toBigInteger() : null;
+          if (min != null && max != null) {
+            BigInteger width = max.subtract(min);
+            BigInteger splits = BigInteger.valueOf(partitions);
+            for (int i = 1; i < partitions; i++) {
+              BigDecimal splitPoint = new BigDecimal(min.add(width.multiply(BigInteger.valueOf(i)).divide(splits)));
+              if (!splitPoints.contains(splitPoint)) {
+                splitPoints.add(splitPoint);
+              }
+            }
+          }
+        } else {
+          queryResult.closeAll();
+          String tilesQuery = queryBuilder.getKeyTileBoundaries(entity, keyColumn, partitions);
+          if (tilesQuery != null) {
+            queryResult = this.executeQuery(tilesQuery, sourceDBInfo);
+            ResultSet boundaries = queryResult.getResult();
+            if (boundaries != null) {
+              while (boundaries.next()) {
+                Object splitPoint = boundaries.getObject(1);
+                if (splitPoint != null && !splitPoints.contains(splitPoint)) {
+                  splitPoints.add(splitPoint);
+                }
+              }
+            }
+            // the upper bound of the last tile is not a split point
+            if (splitPoints.size() > 0) {
+              splitPoints.remove(splitPoints.size() - 1);
+            }
+          } else {
+            OTeleporterContext.getInstance().getMessageHandler()
+                .warn(this, "\nThe '%s' table cannot be partitioned on its key, it will be read with a single scan.\n", entity.getName());
+          }
+        }
+      }
+    } catch (SQLException e) {
+      String mess = "The '" + entity.getName() + "' table cannot be partitioned on its key, it will be read with a single scan.";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "warn");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+      splitPoints.clear();
+    } finally {
+      queryResult.closeAll();
+    }
+
+    if (splitPoints.size() > 0) {
+      Object lowerBound = null;
+      for (Object splitPoint : splitPoints) {
+        keyPartitions.add(new Object[] { lowerBound, splitPoint });
+        lowerBound = splitPoint;
+      }
+      keyPartitions.add(new Object[] { lowerBound, null });
+    }
+    return keyPartitions;
+  }
+
+  private boolean isIntegerType(ResultSetMetaData metaData, int column) throws SQLException {
+
+    switch (metaData.getColumnType(column)) {
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+      return true;
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+      return metaData.getScale(column) == 0;
+    default:
+      return false;
+    }
   }
 
   public OQueryResult executeQuery(String query, OSourceDatabaseInfo sourceDBInfo) {
+    return this.executeQuery(query, sourceDBInfo, 0);
+  }
+
+  /**
+   * Executes the query. When fetchSize is greater than 0 the result set is read in streaming mode (see
+   * {@link #enableStreaming(Connection, Statement, String, int)}), so that the whole table is not materialized in memory.
+   *
+   * @param query
+   * @param sourceDBInfo
+   * @param fetchSize
+   *
+   * @return
+   */
+  public OQueryResult executeQuery(String query, OSourceDatabaseInfo sourceDBInfo, int fetchSize) {
 
     ResultSet result = null;
     Connection dbConnection = null;
     Statement statement = null;
+    OSourceConnectionPool connectionPool = OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo);
 
     try {
-      try {
-        dbConnection = ODBSourceConnection.getConnection(sourceDBInfo);
-      } catch (Exception e) {
-        String mess = "";
-        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-        OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
-      }
+      dbConnection = this.borrowConnection(connectionPool, sourceDBInfo);
       statement = dbConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      if (fetchSize > 0) {
+        this.enableStreaming(dbConnection, statement, sourceDBInfo.getDriverName(), fetchSize);
+      }
       result = statement.executeQuery(query);
 
     } catch (SQLException e) {
@@ -148,8 +679,169 @@ public class ODBQueryEngine implements ODataSourceQueryEngine {
       OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
     }
 
-    OQueryResult queryResult = new OQueryResult(dbConnection, statement, result);
+    OQueryResult queryResult = new OQueryResult(dbConnection, statement, result, connectionPool);
+    return queryResult;
+  }
+
+  /**
+   * Executes a query template as prepared statement, binding the passed values to its parameters in order (strings coming
+   * from the graph model, or values read from the source database with their JDBC type).
+   * The statement is taken from the cache of the borrowed connection, so the source database parses and plans each
+   * template once per connection, and values never need to be quoted or escaped.
+   *
+   * @param template
+   * @param params
+   * @param sourceDBInfo
+   * @param fetchSize
+   *
+   * @return
+   */
+  public OQueryResult executePreparedQuery(String template, Object[] params, OSourceDatabaseInfo sourceDBInfo, int fetchSize) {
+
+    ResultSet result = null;
+    Connection dbConnection = null;
+    PreparedStatement statement = null;
+    OSourceConnectionPool connectionPool = OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo);
+
+    try {
+      dbConnection = this.borrowConnection(connectionPool, sourceDBInfo);
+      statement = connectionPool.prepareStatement(dbConnection, template);
+      if (fetchSize > 0) {
+        this.enableStreaming(dbConnection, statement, sourceDBInfo.getDriverName(), fetchSize);
+      } else {
+        statement.setFetchSize(0);   // the cached statement may have been used in streaming mode before
+      }
+      for (int i = 0; i < params.length; i++) {
+        this.bindParameter(statement, i + 1, params[i], sourceDBInfo.getDriverName());
+      }
+      result = statement.executeQuery();
+
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+    }
+
+    OQueryResult queryResult = new OQueryResult(dbConnection, statement, result, connectionPool, true);
     return queryResult;
   }
 
+  /**
+   * Borrows a connection from the pool of the source. A failure (borrow timeout expired, pool closed, connection not opened)
+   * is reported and rethrown: the query can't be executed without a connection.
+   *
+   * @param connectionPool
+   * @param sourceDBInfo
+   *
+   * @return
+   */
+  private Connection borrowConnection(OSourceConnectionPool connectionPool, OSourceDatabaseInfo sourceDBInfo) {
+    try {
+      return connectionPool.borrowConnection();
+    } catch (RuntimeException e) {
+      String mess = "Source connection pool exhausted: no connection to the source '" + sourceDBInfo.getSourceIdName()
+          + "' could be borrowed.";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+      throw new OTeleporterRuntimeException(mess, e);
+    }
+  }
+
+  /**
+   * Binds a value to a statement parameter. Values read from the source database are bound with their own type, values read
+   * from the graph model are strings: PostgreSQL does not cast implicitly a varchar parameter to the type of the compared
+   * column, so the value is sent untyped and the server infers it; the other DBMSs convert the string to the column type on
+   * their own.
+   *
+   * @param statement
+   * @param index
+   * @param value
+   * @param driver
+   *
+   * @throws SQLException
+   */
+  private void bindParameter(PreparedStatement statement, int index, Object value, String driver) throws SQLException {
+
+    if (value == null) {
+      statement.setNull(index, Types.VARCHAR);
+      return;
+    }
+    if (value instanceof java.util.Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+      statement.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));   // date read from the graph
+      return;
+    }
+    if (!(value instanceof String)) {
+      statement.setObject(index, value);   // typed value, as a watermark
+      return;
+    }
+
+    switch (driver) {
+
+    case "org.postgresql.Driver":
+      statement.setObject(index, value, Types.OTHER);
+      break;
+
+    default:
+      statement.setString(index, value);
+      break;
+    }
+  }
+
+  private int resolveFetchSize(OEntity entity) {
+    if (entity.getFetchSize() != null) {
+      return entity.getFetchSize();
+    }
+    return this.defaultFetchSize;
+  }
+
+  /**
+   * Sets connection and statement up for reading the results through a server-side cursor, according to the driver:
+   * - PostgreSQL: the cursor is used only with auto-commit disabled and a positive fetch size
+   * - MySQL: rows are streamed one by one only with Integer.MIN_VALUE as fetch size
+   * - Oracle: the fetch size sets the row prefetch
+   * - SQL Server: adaptive response buffering plus fetch size
+   * The auto-commit mode is restored when the connection is given back to the pool.
+   *
+   * @param connection
+   * @param statement
+   * @param driver
+   * @param fetchSize
+   *
+   * @throws SQLException
+   */
+  private void enableStreaming(Connection connection, Statement statement, String driver, int fetchSize) throws SQLException {
+
+    switch (driver) {
+
+    case "org.postgresql.Driver":
+      connection.setAutoCommit(false);
+      statement.setFetchSize(fetchSize);
+      break;
+
+    case "com.mysql.jdbc.Driver":
+      statement.setFetchSize(Integer.MIN_VALUE);
+      break;
+
+    case "oracle.jdbc.driver.OracleDriver":
+      statement.setFetchSize(fetchSize);
+      break;
+
+    case "com.microsoft.sqlserver.jdbc.SQLServerDriver":
+      try {
+        // driver classes are loaded at runtime from the driver dependency path, so no compile-time dependency is possible
+        Method setResponseBuffering = statement.getClass().getMethod("setResponseBuffering", String.class);
+        setResponseBuffering.invoke(statement, "adaptive");
+      } catch (Exception e) {
+        String mess = "Adaptive response buffering not available, default buffering will be used.";
+        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "debug");
+      }
+      statement.setFetchSize(fetchSize);
+      break;
+
+    default:
+      statement.setFetchSize(fetchSize);
+      break;
+    }
+  }
+
 }
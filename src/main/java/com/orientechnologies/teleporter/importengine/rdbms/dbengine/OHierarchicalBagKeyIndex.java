@@ -0,0 +1,347 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
+
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.model.dbschema.OAttribute;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OHierarchicalBag;
+import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the most specific entity of a hierarchical bag containing the record with a given key.
+ * The first resolution loads the keys of the whole bag with a scan of each table (a single scan of the physical table for
+ * "table per hierarchy"), so all the following resolutions are lookups in memory. When the bag has more keys than the
+ * preloading limit, each key is resolved with the lookup queries and kept in a bounded LRU cache.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OHierarchicalBagKeyIndex {
+
+  public static final int DEFAULT_MAX_PRELOADED_KEYS = 1000000;
+  public static final int DEFAULT_CACHE_CAPACITY     = 10000;
+
+  // cached for the keys not present in the bag, entity names are never empty
+  private static final String NOT_FOUND = "";
+
+  private final OHierarchicalBag    bag;
+  private final ODBQueryEngine      dbQueryEngine;
+  private final int                 maxPreloadedKeys;
+  private final OEntity             physicalEntity;
+  private final List<String>        physicalEntityPropertyOfKey;
+  private final Map<String, String> cache;
+  private Map<String, String>       key2entityName;
+  private boolean                   preloadAttempted;
+
+  public OHierarchicalBagKeyIndex(OHierarchicalBag bag, ODBQueryEngine dbQueryEngine) {
+    this(bag, dbQueryEngine, DEFAULT_MAX_PRELOADED_KEYS, DEFAULT_CACHE_CAPACITY);
+  }
+
+  public OHierarchicalBagKeyIndex(OHierarchicalBag bag, ODBQueryEngine dbQueryEngine, int maxPreloadedKeys,
+      final int cacheCapacity) {
+    this.bag = bag;
+    this.dbQueryEngine = dbQueryEngine;
+    this.maxPreloadedKeys = maxPreloadedKeys;
+    this.physicalEntity = bag.getDepth2entities().get(0).iterator().next();
+    this.physicalEntityPropertyOfKey = new ArrayList<String>();
+    for (OAttribute attribute : this.physicalEntity.getPrimaryKey().getInvolvedAttributes()) {
+      this.physicalEntityPropertyOfKey.add(attribute.getName());
+    }
+    this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return this.size() > cacheCapacity;
+      }
+    };
+  }
+
+  /**
+   * @param propertyOfKey the columns of the parent table referenced by the foreign key
+   * @param valueOfKey    the values of the foreign key
+   *
+   * @return the name of the most specific entity containing the record, null if the record is not present in the bag
+   */
+  public synchronized String resolveEntityName(String[] propertyOfKey, String[] valueOfKey) {
+
+    if (!this.preloadAttempted) {
+      this.preloadAttempted = true;
+      this.key2entityName = this.preload();
+    }
+
+    // only the lookups on the primary key can be answered by the preloaded keys
+    boolean onPrimaryKey = this.isPrimaryKey(propertyOfKey);
+    String key = buildKey(valueOfKey);
+    if (this.key2entityName != null && onPrimaryKey) {
+      String entityName = this.key2entityName.get(key);
+      if (entityName != null) {
+        return entityName;
+      }
+      // the key may be rendered differently in the foreign table (e.g. numeric types with a different scale)
+    }
+
+    String cacheKey = onPrimaryKey ? key : buildKey(propertyOfKey) + '\u0001' + key;
+    String entityName = this.cache.get(cacheKey);
+    if (entityName == null) {
+      entityName = this.lookupEntityName(propertyOfKey, valueOfKey);
+      this.cache.put(cacheKey, entityName != null ? entityName : NOT_FOUND);
+    } else if (entityName.equals(NOT_FOUND)) {
+      entityName = null;
+    }
+    return entityName;
+  }
+
+  /**
+   * @return the preloaded keys of the bag, null if they exceed the limit or the lookup is not supported for the bag
+   */
+  private Map<String, String> preload() {
+
+    Map<String, String> key2entityName = new HashMap<String, String>();
+    boolean complete;
+
+    switch (this.bag.getInheritancePattern()) {
+
+    case "table-per-hierarchy":
+      complete = this.preloadFromSingleTable(key2entityName);
+      break;
+
+    case "table-per-type":
+    case "table-per-concrete-type":
+      complete = this.preloadFromTables(key2entityName);
+      break;
+
+    default:
+      complete = false;
+    }
+
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler().debug(this,
+          "\nKeys of the hierarchical bag with root '%s' %s.\n", this.physicalEntity.getName(),
+          complete ? "preloaded (" + key2entityName.size() + ")" : "resolved on demand");
+    }
+    return complete ? key2entityName : null;
+  }
+
+  private boolean preloadFromSingleTable(Map<String, String> key2entityName) {
+
+    String discriminatorColumn = this.bag.getDiscriminatorColumn();
+    Map<String, String> discriminatorValue2entityName = new HashMap<String, String>();
+    for (Map.Entry<String, String> entry : this.bag.getEntityName2discriminatorValue().entrySet()) {
+      if (!discriminatorValue2entityName.containsKey(entry.getValue())) {
+        discriminatorValue2entityName.put(entry.getValue(), entry.getKey());
+      }
+    }
+
+    List<String> columns = new ArrayList<String>(this.physicalEntityPropertyOfKey);
+    columns.add(discriminatorColumn);
+    String[] valueOfKey = new String[this.physicalEntityPropertyOfKey.size()];
+
+    OQueryResult queryResult = this.dbQueryEngine.getRecordsByEntity(this.physicalEntity, columns);
+    try {
+      ResultSet records = queryResult.getResult();
+      while (records.next()) {
+        for (int i = 0; i < valueOfKey.length; i++) {
+          valueOfKey[i] = records.getString(i + 1);
+        }
+        String entityName = discriminatorValue2entityName.get(records.getString(valueOfKey.length + 1));
+        if (entityName != null) {
+          key2entityName.put(buildKey(valueOfKey), entityName);
+          if (key2entityName.size() > this.maxPreloadedKeys) {
+            return false;
+          }
+        }
+      }
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    } finally {
+      queryResult.closeAll();
+    }
+    return true;
+  }
+
+  private boolean preloadFromTables(Map<String, String> key2entityName) {
+
+    // the deepest entity containing a key wins
+    for (int i = this.bag.getDepth2entities().size() - 1; i >= 0; i--) {
+      for (OEntity currentEntity : this.bag.getDepth2entities().get(i)) {
+
+        List<String> columns = new ArrayList<String>();
+        for (OAttribute attribute : currentEntity.getPrimaryKey().getInvolvedAttributes()) {
+          columns.add(attribute.getName());
+        }
+        String[] valueOfKey = new String[columns.size()];
+
+        OQueryResult queryResult = this.dbQueryEngine.getRecordsByEntity(currentEntity, columns);
+        try {
+          ResultSet records = queryResult.getResult();
+          while (records.next()) {
+            for (int j = 0; j < valueOfKey.length; j++) {
+              valueOfKey[j] = records.getString(j + 1);
+            }
+            String key = buildKey(valueOfKey);
+            if (!key2entityName.containsKey(key)) {
+              key2entityName.put(key, currentEntity.getName());
+              if (key2entityName.size() > this.maxPreloadedKeys) {
+                return false;
+              }
+            }
+          }
+        } catch (SQLException e) {
+          String mess = "";
+          OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+          OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+          throw new OTeleporterRuntimeException(e);
+        } finally {
+          queryResult.closeAll();
+        }
+      }
+    }
+    return true;
+  }
+
+  private String lookupEntityName(String[] propertyOfKey, String[] valueOfKey) {
+
+    switch (this.bag.getInheritancePattern()) {
+
+    case "table-per-hierarchy":
+      return this.lookupEntityNameFromSingleTable(propertyOfKey, valueOfKey);
+
+    case "table-per-type":
+    case "table-per-concrete-type":
+      return this.lookupEntityNameFromTables(valueOfKey);
+
+    }
+
+    return null;
+  }
+
+  private String lookupEntityNameFromSingleTable(String[] propertyOfKey, String[] valueOfKey) {
+
+    String discriminatorColumn = this.bag.getDiscriminatorColumn();
+    String entityName = null;
+
+    try {
+
+      OQueryResult queryResult = this.dbQueryEngine
+          .getEntityTypeFromSingleTable(discriminatorColumn, this.physicalEntity, propertyOfKey, valueOfKey);
+      ResultSet result = queryResult.getResult();
+      String discriminatorValue = null;
+      if (result != null && result.next()) {
+        discriminatorValue = result.getString(discriminatorColumn);
+      }
+      queryResult.closeAll();
+
+      for (String currentEntityName : this.bag.getEntityName2discriminatorValue().keySet()) {
+        if (this.bag.getEntityName2discriminatorValue().get(currentEntityName).equals(discriminatorValue)) {
+          entityName = currentEntityName;
+          break;
+        }
+      }
+
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+
+    return entityName;
+  }
+
+  private String lookupEntityNameFromTables(String[] valueOfKey) {
+
+    try {
+
+      for (int i = this.bag.getDepth2entities().size() - 1; i >= 0; i--) {
+        for (OEntity currentEntity : this.bag.getDepth2entities().get(i)) {
+
+          String[] propertyOfKey = new String[currentEntity.getPrimaryKey().getInvolvedAttributes().size()];
+          for (int j = 0; j < propertyOfKey.length; j++) {
+            propertyOfKey[j] = currentEntity.getPrimaryKey().getInvolvedAttributes().get(j).getName();
+          }
+
+          OQueryResult queryResult = this.dbQueryEngine.getRecordById(currentEntity, propertyOfKey, valueOfKey);
+          ResultSet result = queryResult.getResult();
+          boolean found = result != null && result.next();
+          queryResult.closeAll();
+
+          if (found) {
+            return currentEntity.getName();
+          }
+        }
+      }
+
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+
+    return null;
+  }
+
+  private boolean isPrimaryKey(String[] propertyOfKey) {
+
+    if (!this.bag.getInheritancePattern().equals("table-per-hierarchy")) {
+      // the lookups in the tables of the bag are always performed on their primary keys
+      return true;
+    }
+    if (propertyOfKey.length != this.physicalEntityPropertyOfKey.size()) {
+      return false;
+    }
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      if (!this.physicalEntityPropertyOfKey.get(i).equalsIgnoreCase(propertyOfKey[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String buildKey(String[] values) {
+
+    if (values.length == 1) {
+      return String.valueOf(values[0]);
+    }
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        key.append('\u0000');
+      }
+      key.append(values[i]);
+    }
+    return key.toString();
+  }
+}
@@ -20,8 +20,10 @@
 
 package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
 
+import com.orientechnologies.teleporter.model.dbschema.OChangeLog;
 import com.orientechnologies.teleporter.model.dbschema.OEntity;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,6 +39,22 @@ public class OMysqlQueryBuilder extends OCommonQueryBuilder {
     this.quote = "`";
   }
 
+  /**
+   * Rows estimated by the storage engine (exact for MyISAM, sampled for InnoDB). The database of the connection is used when
+   * the schema is unknown.
+   */
+  @Override
+  public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+    String query = "select TABLE_ROWS from information_schema.TABLES where TABLE_NAME = ?";
+
+    if (currentTableSchema != null)
+      query += " and TABLE_SCHEMA = ?";
+    else
+      query += " and TABLE_SCHEMA = database()";
+
+    return query;
+  }
+
   /**
    * MySQL does not allow full outer join, so this query is expressed as UNION of LEFT and RIGHT JOIN.
    *
@@ -98,4 +116,78 @@ public class OMysqlQueryBuilder extends OCommonQueryBuilder {
     return query;
   }
 
+  /**
+   * Window functions are not available before MySQL 8, so non-numeric keys are not split in tiles.
+   *
+   * @return null
+   */
+  @Override
+  public String getKeyTileBoundaries(OEntity entity, String keyColumn, int tiles) {
+    return null;
+  }
+
+  /**
+   * Sum of the first 60 bits of the md5 of each record, as unsigned integers so that the sum is an exact decimal. Each value
+   * is cast to its full text representation (numeric values with their fractional part) and nulls are replaced by a marker.
+   */
+  @Override
+  public String getTableFingerprint(OEntity entity, List<String> columns) {
+    String row = "concat_ws('|'";
+    for (String column : columns) {
+      row += ", ifnull(cast(" + quote + column + quote + " as char), '-')";
+    }
+    row += ")";
+
+    return "select count(*), coalesce(sum(cast(conv(substring(md5(" + row + "), 1, 15), 16, 10) as unsigned)), 0) from " + this
+        .qualifyName(entity.getSchemaName(), entity.getName());
+  }
+
+  /**
+   * A trigger for each operation, without transition row aliases. Key values are stored as text, as a row can't exceed 64KB.
+   */
+  @Override
+  public List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) {
+
+    List<String> statements = new ArrayList<String>();
+    String table = this.qualifyName(entity.getSchemaName(), entity.getName());
+    String changeLog = this.qualifyName(entity.getSchemaName(), changeLogTable);
+
+    String query = "create table " + changeLog + " (" + this.quote + OChangeLog.CHANGE_ID_COLUMN + this.quote
+        + " bigint not null auto_increment primary key, " + this.quote + OChangeLog.OPERATION_COLUMN + this.quote
+        + " char(1) not null";
+    for (String keyColumn : keyColumns) {
+      query += ", " + this.quote + keyColumn + this.quote + " text";
+    }
+    query += ")";
+    statements.add(query);
+
+    String insert = "insert into " + changeLog + " (" + this.quote + OChangeLog.OPERATION_COLUMN + this.quote;
+    for (String keyColumn : keyColumns) {
+      insert += ", " + this.quote + keyColumn + this.quote;
+    }
+    insert += ") values ";
+
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_INS") + " after insert on "
+        + table + " for each row " + insert + this.buildChangeRow("'I'", "new", keyColumns));
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_UPD") + " after update on "
+        + table + " for each row " + insert + this.buildChangeRow("'U'", "old", keyColumns) + ", " + this
+        .buildChangeRow("'U'", "new", keyColumns));
+    statements.add("create trigger " + this.qualifyName(entity.getSchemaName(), changeLogTable + "_DEL") + " after delete on "
+        + table + " for each row " + insert + this.buildChangeRow("'D'", "old", keyColumns));
+
+    return statements;
+  }
+
+  /**
+   * MySQL casts to char only, without length.
+   */
+  @Override
+  protected String buildChangeRow(String operation, String row, List<String> keyColumns) {
+    String values = "(" + operation;
+    for (String keyColumn : keyColumns) {
+      values += ", cast(" + row + "." + this.quote + keyColumn + this.quote + " as char)";
+    }
+    return values + ")";
+  }
+
 }
@@ -0,0 +1,77 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
+
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+
+import java.util.List;
+
+/**
+ * Query Builder for Oracle DBMS. It extends the OCommonQueryBuilder class and overrides only the needed methods.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OOracleQueryBuilder extends OCommonQueryBuilder {
+
+  /**
+   * Rows counted by the last statistics gathering (null if the statistics were never gathered). The tables of the user are
+   * considered when the schema is unknown.
+   */
+  @Override
+  public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+    String query;
+
+    if (currentTableSchema != null)
+      query = "select NUM_ROWS from ALL_TABLES where TABLE_NAME = ? and OWNER = ?";
+    else
+      query = "select NUM_ROWS from USER_TABLES where TABLE_NAME = ?";
+
+    return query;
+  }
+
+  /**
+   * Sum of the first 60 bits of the SHA-256 standard_hash of each record (Oracle 12c and later), with the values concatenated
+   * as text (LOB columns are not supported). The sum of the numbers is exact.
+   */
+  @Override
+  public String getTableFingerprint(OEntity entity, List<String> columns) {
+    String row = "";
+    for (int i = 0; i < columns.size(); i++) {
+      row += (i > 0 ? " || '|' || " : "") + quote + columns.get(i) + quote;
+    }
+
+    return "select count(*), coalesce(sum(to_number(substr(rawtohex(standard_hash(" + row
+        + ", 'SHA256')), 1, 15), 'XXXXXXXXXXXXXXX')), 0) from " + this.qualifyName(entity.getSchemaName(), entity.getName());
+  }
+
+  /**
+   * Change capture not supported yet (a sequence and PL/SQL trigger blocks are needed to fill the change-log table), the table
+   * is read with a full scan.
+   *
+   * @return null
+   */
+  @Override
+  public List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) {
+    return null;
+  }
+}
@@ -22,8 +22,10 @@ package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
 
 import com.orientechnologies.teleporter.context.OTeleporterContext;
 import com.orientechnologies.teleporter.model.dbschema.OAttribute;
+import com.orientechnologies.teleporter.model.dbschema.OChangeLog;
 import com.orientechnologies.teleporter.model.dbschema.OEntity;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,6 +36,75 @@ import java.util.List;
  */
 public class OPostgreSQLQueryBuilder extends OCommonQueryBuilder {
 
+  /**
+   * Rows estimated by the last vacuum or analyze (negative if the table was never analyzed). The tables in the search path are
+   * considered when the schema is unknown.
+   */
+  @Override
+  public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+    String query = "select cast(c.reltuples as bigint) from pg_catalog.pg_class c "
+        + "join pg_catalog.pg_namespace n on n.oid = c.relnamespace where c.relkind = 'r' and c.relname = ?";
+
+    if (currentTableSchema != null)
+      query += " and n.nspname = ?";
+    else
+      query += " and pg_catalog.pg_table_is_visible(c.oid)";
+
+    return query;
+  }
+
+  /**
+   * Sum of the first 60 bits of the md5 of each record (as row value, so nulls are told apart), summed as numeric without
+   * overflow.
+   */
+  @Override
+  public String getTableFingerprint(OEntity entity, List<String> columns) {
+    String row = "row(";
+    for (int i = 0; i < columns.size(); i++) {
+      row += (i > 0 ? ", " : "") + quote + columns.get(i) + quote;
+    }
+    row += ")::text";
+
+    return "select count(*), coalesce(sum(('x' || substr(md5(" + row + "), 1, 15))::bit(60)::bigint), 0) from " + this
+        .qualifyName(entity.getSchemaName(), entity.getName());
+  }
+
+  /**
+   * A single trigger function, fired after each insert, update and delete on the table: PostgreSQL triggers can't run a
+   * statement directly.
+   */
+  @Override
+  public List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) {
+
+    List<String> statements = new ArrayList<String>();
+    String table = this.qualifyName(entity.getSchemaName(), entity.getName());
+    String changeLog = this.qualifyName(entity.getSchemaName(), changeLogTable);
+    String function = this.qualifyName(entity.getSchemaName(), changeLogTable + "_FN");
+
+    String query = "create table " + changeLog + " (" + quote + OChangeLog.CHANGE_ID_COLUMN + quote + " bigserial primary key, "
+        + quote + OChangeLog.OPERATION_COLUMN + quote + " char(1) not null";
+    for (String keyColumn : keyColumns) {
+      query += ", " + quote + keyColumn + quote + " text";
+    }
+    query += ")";
+    statements.add(query);
+
+    String insert = "insert into " + changeLog + " (" + quote + OChangeLog.OPERATION_COLUMN + quote;
+    for (String keyColumn : keyColumns) {
+      insert += ", " + quote + keyColumn + quote;
+    }
+    insert += ") values ";
+
+    statements.add("create or replace function " + function + "() returns trigger language plpgsql as $$ begin "
+        + "if (TG_OP <> 'INSERT') then " + insert + this.buildChangeRow("left(TG_OP, 1)", "OLD", keyColumns)
+        + "; end if; " + "if (TG_OP <> 'DELETE') then " + insert + this.buildChangeRow("left(TG_OP, 1)", "NEW",
+        keyColumns) + "; end if; return null; end $$");
+    statements.add("create trigger " + quote + changeLogTable + "_TRG" + quote + " after insert or update or delete on " + table
+        + " for each row execute procedure " + function + "()");
+
+    return statements;
+  }
+
   public String buildGeospatialQuery(OEntity entity, List<String> geospatialTypes, OTeleporterContext context) {
 
     String query = "select ";
@@ -27,6 +27,8 @@ import java.util.List;
 
 /**
  * Interface representing the query builder used by the DB Query Engine, hiding specific implementation for each DBMS.
+ * Lookup queries are returned as templates with a '?' placeholder for each value, the values are bound by the engine
+ * executing the template as prepared statement.
  *
  * @author Gabriele Ponzi
  * @email <g.ponzi--at--orientdb.com>
@@ -36,16 +38,88 @@ public interface OQueryBuilder {
 
   String countTableRecords(String currentTableName, String currentTableSchema);
 
-  String getRecordById(OEntity entity, String[] propertyOfKey, String[] valueOfKey);
+  /**
+   * Template reading the number of records of the table estimated by the DBMS statistics, with a parameter for the table name
+   * followed by one for the schema when the schema is not null.
+   *
+   * @return null if the DBMS doesn't provide an estimate
+   */
+  String estimateTableRecords(String currentTableName, String currentTableSchema);
+
+  String getRecordById(OEntity entity, String[] propertyOfKey);
+
+  /**
+   * Template projecting the key columns of the records whose key is one of the passed number of keys, with a parameter for
+   * each key column of each key.
+   */
+  String getRecordsByKeys(OEntity entity, String[] propertyOfKey, int keys);
 
   String getRecordsByEntity(OEntity entity);
 
+  String getRecordsByEntity(OEntity entity, List<String> columns);
+
   String getRecordsFromMultipleEntities(List<OEntity> mappedEntities, String[][] columns);
 
-  String getRecordsFromSingleTableByDiscriminatorValue(String discriminatorColumn, String currentDiscriminatorValue,
-      OEntity entity);
+  String getRecordsFromSingleTableByDiscriminatorValue(String discriminatorColumn, OEntity entity);
 
-  String getEntityTypeFromSingleTable(String discriminatorColumn, OEntity entity, String[] propertyOfKey, String[] valueOfKey);
+  String getEntityTypeFromSingleTable(String discriminatorColumn, OEntity entity, String[] propertyOfKey);
 
   String buildAggregateTableFromHierarchicalBag(OHierarchicalBag bag);
+
+  String getRecordsFromHierarchicalBag(OHierarchicalBag bag);
+
+  String getKeyRange(OEntity entity, String keyColumn);
+
+  String getKeyTileBoundaries(OEntity entity, String keyColumn, int tiles);
+
+  String getRecordsByEntityInKeyRange(OEntity entity, List<String> columns, String keyColumn, boolean lowerBound,
+      boolean upperBound);
+
+  String getWatermarkMaximum(OEntity entity, String watermarkColumn);
+
+  /**
+   * Template with a parameter for the exclusive lower bound and one for the inclusive upper bound of the watermark column,
+   * each one present only if the correspondent flag is set.
+   */
+  String getRecordsByEntityInWatermarkRange(OEntity entity, List<String> columns, String watermarkColumn, boolean lowerBound,
+      boolean upperBound);
+
+  /**
+   * Template returning the records ordered by the key column, with a parameter for the exclusive lower bound of the key
+   * present only if the flag is set.
+   */
+  String getRecordsByEntityInKeyOrder(OEntity entity, List<String> columns, String keyColumn, boolean lowerBound);
+
+  /**
+   * Statements creating the change-log table of the entity and the triggers appending to it the key of each inserted, updated
+   * (both the old and the new key) and deleted record.
+   *
+   * @return null if the DBMS doesn't support the change capture
+   */
+  List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns);
+
+  String getChangeLogMinimum(OEntity entity, String changeLogTable);
+
+  String getChangeLogMaximum(OEntity entity, String changeLogTable);
+
+  /**
+   * Template reading the keys in the change-log table in change order, with a parameter for the exclusive lower bound and one
+   * for the inclusive upper bound of the change id.
+   */
+  String getChangesInLog(OEntity entity, String changeLogTable, List<String> keyColumns);
+
+  /**
+   * Template deleting the consumed changes from the change-log table, with a parameter for the inclusive upper bound of the
+   * change id.
+   */
+  String purgeChangeLog(OEntity entity, String changeLogTable);
+
+  /**
+   * Query computing the fingerprint of the entity on the source side: the number of records and an aggregate hash of the
+   * passed columns, independent of the order of the records. The fingerprint changes when a record is inserted, deleted or
+   * updated in any of the columns.
+   *
+   * @return null if the DBMS provides no hash function
+   */
+  String getTableFingerprint(OEntity entity, List<String> columns);
 }
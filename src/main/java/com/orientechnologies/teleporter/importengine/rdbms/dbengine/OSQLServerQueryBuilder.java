@@ -0,0 +1,81 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.dbengine;
+
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+
+import java.util.List;
+
+/**
+ * Query Builder for SQL Server DBMS. It extends the OCommonQueryBuilder class and overrides only the needed methods.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OSQLServerQueryBuilder extends OCommonQueryBuilder {
+
+  /**
+   * Rows of the heap or clustered index partitions, kept up to date by the storage engine. The default schema of the user is
+   * considered when the schema is unknown.
+   */
+  @Override
+  public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+    String query = "select sum(p.rows) from sys.partitions p join sys.tables t on t.object_id = p.object_id "
+        + "join sys.schemas s on s.schema_id = t.schema_id where p.index_id in (0, 1) and t.name = ?";
+
+    if (currentTableSchema != null)
+      query += " and s.name = ?";
+    else
+      query += " and s.name = schema_name()";
+
+    return query;
+  }
+
+  /**
+   * Sum of the first 56 bits of the SHA-256 hashbytes of each record (SQL Server 2012 and later), summed as decimal without
+   * overflow. The record is serialized as xml, so all the column types are hashed (binary values in base64) and a null column
+   * is told apart by its missing attribute. The hashes are computed by a derived table, as an aggregate can't contain a
+   * subquery.
+   */
+  @Override
+  public String getTableFingerprint(OEntity entity, List<String> columns) {
+    String row = "";
+    for (int i = 0; i < columns.size(); i++) {
+      row += (i > 0 ? ", " : "") + "t." + quote + columns.get(i) + quote;
+    }
+
+    return "select count_big(*), coalesce(sum(cast(cast(substring(h, 1, 7) as bigint) as decimal(38, 0))), 0) from "
+        + "(select hashbytes('SHA2_256', (select " + row + " for xml raw, binary base64)) as h from " + this
+        .qualifyName(entity.getSchemaName(), entity.getName()) + " t) as fingerprints";
+  }
+
+  /**
+   * Change capture not supported yet (triggers are fired once per statement, over the inserted and deleted pseudo-tables),
+   * the table is read with a full scan. A watermark on a rowversion column can be used instead.
+   *
+   * @return null
+   */
+  @Override
+  public List<String> buildChangeCapture(OEntity entity, String changeLogTable, List<String> keyColumns) {
+    return null;
+  }
+}
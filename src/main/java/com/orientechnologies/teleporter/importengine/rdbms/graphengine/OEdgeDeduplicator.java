@@ -0,0 +1,271 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.mapper.rdbms.classmapper.OEVClassMapper;
+import com.orientechnologies.teleporter.model.dbschema.OCanonicalRelationship;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.ORelationship;
+import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks whether an edge is already present before it's upserted, without scanning the out edges of the vertex (and loading
+ * each in vertex), which costs O(degree) for each edge and O(degree^2) for the edges of a hub vertex.
+ * How the check is performed is chosen for each edge class on its first upsert:
+ * - the check is skipped when the edge class is empty and each edge comes from a distinct source record: edges of a split
+ * entity and edges of a single canonical relationship whose foreign table has a primary key and is the only table mapped to
+ * its vertex classes (one edge for each foreign record).
+ * - otherwise the (out, in) pairs of the edge class are kept in an off-heap set, loaded with the edges already present in
+ * the graph, so the check costs O(1). Pairs are packed in 2 words, 16 bits for the cluster id and 48 for the position
+ * of each vertex.
+ * Pairs involving a vertex inserted in the current transaction are checked by scanning the edges of that vertex, which were
+ * all added in the same transaction, and are added to the set on commit, when the ids are persistent. Pairs added in a batch
+ * rolled back are removed from the set.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+final class OEdgeDeduplicator {
+
+  private static final int  POSITION_BITS = 48;
+  private static final long MAX_POSITION  = (1L << POSITION_BITS) - 1;
+  private static final ORID PRESENT       = new ORecordId(0, 0);   // the set doesn't use the record id of the pairs
+
+  private final OER2GraphMapper               mapper;
+  private final OOffHeapMemory                memory;
+  private final Map<String, Boolean>          edgeClass2checked;
+  private final Map<String, OOffHeapRidTable> edgeClass2pairs;
+
+  OEdgeDeduplicator(OER2GraphMapper mapper, long memoryBudget, String spillDirectory) {
+    this.mapper = mapper;
+    this.memory = new OOffHeapMemory(memoryBudget, spillDirectory);
+    this.edgeClass2checked = new ConcurrentHashMap<String, Boolean>();
+    this.edgeClass2pairs = new ConcurrentHashMap<String, OOffHeapRidTable>();
+  }
+
+  /**
+   * Registers the edge going from the 'from' vertex to the 'to' vertex unless it's already present.
+   *
+   * @param orientGraph
+   * @param from
+   * @param to
+   * @param edgeClass
+   *
+   * @return true if the edge must be added, false if it's already present
+   */
+  boolean addIfAbsent(ODatabaseDocument orientGraph, OVertex from, OVertex to, String edgeClass) {
+
+    if (!this.isChecked(orientGraph, edgeClass)) {
+      return true;
+    }
+
+    final ORID fromId = from.getIdentity();
+    final ORID toId = to.getIdentity();
+    if (!fromId.isPersistent() || !toId.isPersistent()) {
+      // the edges of a new vertex were all added in the current transaction
+      if (this.isPresent(from, to, edgeClass, fromId.isPersistent())) {
+        return false;
+      }
+      this.registerInsertedEdge(from, to, edgeClass);
+      return true;
+    }
+    if (!isEncodable(fromId) || !isEncodable(toId)) {
+      return !this.isPresent(from, to, edgeClass, false);
+    }
+
+    final OOffHeapRidTable pairs = this.edgeClass2pairs.get(edgeClass);
+    if (!pairs.putIfAbsent(encode(fromId), encode(toId), PRESENT)) {
+      return false;
+    }
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null) {
+      batchWriter.onRollback(new Runnable() {
+        @Override
+        public void run() {
+          pairs.remove(encode(fromId), encode(toId));
+        }
+      });
+    }
+    return true;
+  }
+
+  /**
+   * Registers an edge added without check, so that the following upserts find it. Nothing is done for the edge classes whose
+   * upserts are not checked.
+   *
+   * @param from
+   * @param to
+   * @param edgeClass
+   */
+  void registerInsertedEdge(OVertex from, OVertex to, String edgeClass) {
+
+    final OOffHeapRidTable pairs = this.edgeClass2pairs.get(edgeClass);
+    if (pairs == null) {
+      return;
+    }
+    final ORID fromId = from.getIdentity();
+    final ORID toId = to.getIdentity();
+    Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        if (isEncodable(fromId) && isEncodable(toId)) {
+          pairs.putIfAbsent(encode(fromId), encode(toId), PRESENT);
+        }
+      }
+    };
+    if (fromId.isPersistent() && toId.isPersistent()) {
+      action.run();
+      return;
+    }
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null && batchWriter.isTransactional()) {
+      batchWriter.afterCommit(action);
+    }
+  }
+
+  /**
+   * Releases the sets of all the edge classes.
+   */
+  synchronized void release() {
+    for (OOffHeapRidTable pairs : this.edgeClass2pairs.values()) {
+      pairs.release();
+    }
+    this.edgeClass2pairs.clear();
+    this.edgeClass2checked.clear();
+  }
+
+  /**
+   * Scans the edges of one of the two vertices: the out edges of 'from' or the in edges of 'to' when 'fromPersistent' (the
+   * 'to' vertex is the new one).
+   */
+  private boolean isPresent(OVertex from, OVertex to, String edgeClass, boolean fromPersistent) {
+
+    ODirection direction = fromPersistent ? ODirection.IN : ODirection.OUT;
+    OVertex scanned = fromPersistent ? to : from;
+    ORID otherId = fromPersistent ? from.getIdentity() : to.getIdentity();
+    for (OEdge edge : scanned.getEdges(direction, edgeClass)) {
+      OVertex other = edge.getVertex(direction == ODirection.OUT ? ODirection.IN : ODirection.OUT);
+      if (other != null && other.getIdentity().equals(otherId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Chooses on the first call for the edge class whether its upserts must be checked, loading the set of its pairs if so.
+   */
+  private boolean isChecked(ODatabaseDocument orientGraph, String edgeClass) {
+
+    Boolean checked = this.edgeClass2checked.get(edgeClass);
+    if (checked == null) {
+      synchronized (this) {
+        checked = this.edgeClass2checked.get(edgeClass);
+        if (checked == null) {
+          boolean empty = !orientGraph.getMetadata().getSchema().existsClass(edgeClass) || orientGraph.countClass(edgeClass) == 0;
+          checked = !(empty && this.isOneEdgePerRecord(edgeClass));
+          if (checked) {
+            this.edgeClass2pairs.put(edgeClass, this.loadPairs(orientGraph, edgeClass, empty));
+          }
+          this.edgeClass2checked.put(edgeClass, checked);
+        }
+      }
+    }
+    return checked;
+  }
+
+  private OOffHeapRidTable loadPairs(ODatabaseDocument orientGraph, String edgeClass, boolean empty) {
+
+    OOffHeapRidTable pairs = new OOffHeapRidTable(this.memory, 2);
+    if (empty) {
+      return pairs;
+    }
+    for (ODocument edge : orientGraph.browseClass(edgeClass)) {
+      OIdentifiable out = edge.getProperty("out");
+      OIdentifiable in = edge.getProperty("in");
+      if (out != null && in != null && isEncodable(out.getIdentity()) && isEncodable(in.getIdentity())) {
+        pairs.putIfAbsent(encode(out.getIdentity()), encode(in.getIdentity()), PRESENT);
+      }
+    }
+    return pairs;
+  }
+
+  /**
+   * An edge class gets at most one edge for each source record (so an edge is never upserted twice) when it represents the
+   * split of an entity or a single canonical relationship whose foreign entity has a primary key and isn't aggregated with
+   * other entities in its vertex classes. Edges aggregating join tables are always checked.
+   */
+  private boolean isOneEdgePerRecord(String edgeClass) {
+
+    if (this.mapper.getAggregatorEdgeByEdgeTypeName(edgeClass) != null) {
+      return false;
+    }
+    OEdgeType edgeType = this.mapper.getGraphModel().getEdgeTypeByName(edgeClass);
+    if (edgeType == null) {
+      return false;
+    }
+    if (edgeType.isSplittingEdge()) {
+      return true;
+    }
+    List<ORelationship> relationships = this.mapper.getEdgeType2relationships().get(edgeType);
+    if (relationships == null || relationships.size() != 1 || !(relationships.get(0) instanceof OCanonicalRelationship)) {
+      return false;
+    }
+    OEntity foreignEntity = relationships.get(0).getForeignEntity();
+    if (foreignEntity.getPrimaryKey() == null || foreignEntity.getPrimaryKey().getInvolvedAttributes().isEmpty()) {
+      return false;
+    }
+    List<OEVClassMapper> classMappers = this.mapper.getEVClassMappersByEntity(foreignEntity);
+    if (classMappers == null || classMappers.isEmpty()) {
+      return false;
+    }
+    for (OEVClassMapper classMapper : classMappers) {
+      if (this.mapper.getEVClassMappersByVertex(classMapper.getVertexType()).size() != 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isEncodable(ORID id) {
+    return id.isPersistent() && id.getClusterId() >= 0 && id.getClusterId() < (1 << (64 - POSITION_BITS))
+        && id.getClusterPosition() <= MAX_POSITION;
+  }
+
+  private static long encode(ORID id) {
+    return ((long) id.getClusterId() << POSITION_BITS) | id.getClusterPosition();
+  }
+
+}
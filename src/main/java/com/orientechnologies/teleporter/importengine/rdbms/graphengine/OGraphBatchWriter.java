@@ -0,0 +1,340 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterStatistics;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.persistence.util.ORecordSnapshot;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the writes performed while importing the records of a result set in transactions on the target graph database:
+ * a transaction is committed (and a new one begun) every 'batchSize' records or every 'batchBytes' bytes read from the source,
+ * whichever comes first, so vertices and edges are not saved with a round-trip each.
+ * If the commit fails because of a concurrent modification (or of a vertex concurrently inserted by another worker), the
+ * batch is rolled back and imported again from the snapshots of its records, up to MAX_BATCH_RETRIES times.
+ * Statistics about the written elements are counted locally and published only when the batch is committed, as well as the
+ * actions depending on the persistent ids of the inserted records (registered through afterCommit()). Actions registered
+ * through onRollback() undo the effects of the batch kept outside the database, e.g. in the engine's in-memory indexes, when
+ * the batch is rolled back.
+ * A batch size lower than 2 without a bytes threshold disables the transactions: each element is saved as soon as it's written.
+ * The writer is bound to the session and to the thread that began it.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OGraphBatchWriter {
+
+  public static final int DEFAULT_BATCH_SIZE  = 1000;  // records
+  public static final int MAX_BATCH_RETRIES   = 10;
+
+  private static final ThreadLocal<OGraphBatchWriter> current = new ThreadLocal<OGraphBatchWriter>();
+
+  private final ODatabaseDocument     orientGraph;
+  private final int                   batchSize;
+  private final long                  batchBytes;
+  private final boolean               transactional;
+  private final List<ORecordSnapshot> batchRecords;
+  private final List<Runnable>        commitActions;
+  private final List<Runnable>        rollbackActions;
+  private       long                  batchRecordsSize;
+  private       ORecordImporter       batchImporter;
+  private       ResultSetMetaData     metaData;
+  private       Map<String, Integer>  label2index;
+  private       ResultSet             indexedRecords;
+
+  // statistics of the current batch, published on commit
+  private int pendingAnalyzedRecords;
+  private int pendingAddedVertices;
+  private int pendingUpdatedVertices;
+  private int pendingAddedEdges;
+
+  /**
+   * Callback importing a single record.
+   */
+  public interface ORecordImporter {
+    void importRecord(ResultSet record) throws Exception;
+  }
+
+  public OGraphBatchWriter(ODatabaseDocument orientGraph) {
+    this(orientGraph, OTeleporterContext.getInstance().getGraphBatchSize(), OTeleporterContext.getInstance().getGraphBatchBytes());
+  }
+
+  public OGraphBatchWriter(ODatabaseDocument orientGraph, int batchSize, long batchBytes) {
+    this.orientGraph = orientGraph;
+    this.batchSize = batchSize;
+    this.batchBytes = batchBytes;
+    this.transactional = batchSize > 1 || batchBytes > 0;
+    this.batchRecords = new ArrayList<ORecordSnapshot>();
+    this.commitActions = new ArrayList<Runnable>();
+    this.rollbackActions = new ArrayList<Runnable>();
+  }
+
+  /**
+   * @return the writer begun on the current thread, null if there isn't
+   */
+  public static OGraphBatchWriter getCurrent() {
+    return current.get();
+  }
+
+  public boolean isTransactional() {
+    return this.transactional;
+  }
+
+  /**
+   * Binds the writer to the current thread and begins the first transaction.
+   */
+  public void begin() {
+    current.set(this);
+    if (this.transactional) {
+      this.orientGraph.activateOnCurrentThread();
+      this.orientGraph.begin();
+    }
+  }
+
+  /**
+   * Imports the current record of the result set through the importer, committing the batch when it's full.
+   *
+   * @param record          the result set positioned on the record to import
+   * @param importer
+   * @param analyzedRecords number of analyzed records to count for this record
+   */
+  public void importRecord(ResultSet record, ORecordImporter importer, int analyzedRecords) throws SQLException {
+
+    if (!this.transactional) {
+      this.execute(importer, record);
+      OTeleporterContext.getInstance().getStatistics().incrementAnalyzedRecords(analyzedRecords);
+      return;
+    }
+
+    // records dispatched by a parallel writer are already snapshots and can be replayed as they are
+    ORecordSnapshot snapshot = ORecordSnapshot.unwrap(record);
+    if (snapshot == null) {
+      if (this.indexedRecords != record) {
+        this.metaData = record.getMetaData();
+        this.label2index = ORecordSnapshot.buildLabelIndex(this.metaData);
+        this.indexedRecords = record;
+      }
+      snapshot = ORecordSnapshot.take(record, this.metaData, this.label2index);
+    }
+    this.batchRecords.add(snapshot);
+    this.batchRecordsSize += snapshot.getEstimatedSize();
+    this.batchImporter = importer;
+
+    // the record is imported through the getters of the source: the snapshot is read only when the batch is replayed
+    this.execute(importer, record);
+    this.pendingAnalyzedRecords += analyzedRecords;
+
+    if ((this.batchSize > 0 && this.batchRecords.size() >= this.batchSize) || (this.batchBytes > 0
+        && this.batchRecordsSize >= this.batchBytes)) {
+      this.commitBatch();
+      this.orientGraph.begin();
+    }
+  }
+
+  /**
+   * Commits the pending batch and unbinds the writer from the current thread.
+   */
+  public void commit() {
+    try {
+      if (this.transactional) {
+        this.commitBatch();
+      }
+    } finally {
+      current.remove();
+    }
+  }
+
+  /**
+   * Rolls the pending batch back, if any, and unbinds the writer from the current thread. Used when the import fails.
+   */
+  public void close() {
+    try {
+      if (this.transactional && this.orientGraph.getTransaction().isActive()) {
+        this.orientGraph.rollback();
+        this.undoBatch();
+      }
+    } finally {
+      this.resetBatch();
+      current.remove();
+    }
+  }
+
+  /**
+   * Registers an action to perform when the current batch is committed, e.g. storing the id of a vertex inserted in the batch,
+   * which is temporary until the commit. Without transactions the action is performed immediately.
+   * The actions of a batch rolled back are discarded: they're registered again when the batch is replayed.
+   *
+   * @param action
+   */
+  public void afterCommit(Runnable action) {
+    if (this.transactional)
+      this.commitActions.add(action);
+    else
+      action.run();
+  }
+
+  /**
+   * Registers an action to perform if the current batch is rolled back, undoing an effect of the batch not stored in the
+   * database. The actions are discarded when the batch is committed. Without transactions the action is never performed.
+   *
+   * @param action
+   */
+  public void onRollback(Runnable action) {
+    if (this.transactional)
+      this.rollbackActions.add(action);
+  }
+
+  /*
+   * Counters of the written elements: while a transaction is open they're published on commit.
+   */
+
+  public void countAddedVertex() {
+    if (this.transactional)
+      this.pendingAddedVertices++;
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientAddedVertices();
+  }
+
+  public void countUpdatedVertex() {
+    if (this.transactional)
+      this.pendingUpdatedVertices++;
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientUpdatedVertices();
+  }
+
+  public void countAddedEdge() {
+    if (this.transactional)
+      this.pendingAddedEdges++;
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientAddedEdges();
+  }
+
+  /**
+   * Commits the transaction, importing again the batch's records in a new transaction when the commit fails because of a
+   * concurrent modification.
+   */
+  private void commitBatch() {
+
+    int attempt = 0;
+    while (true) {
+      try {
+        this.orientGraph.commit();
+        break;
+      } catch (RuntimeException e) {
+        if (this.orientGraph.getTransaction().isActive()) {
+          this.orientGraph.rollback();
+        }
+        this.undoBatch();
+        if (!isRetryable(e) || ++attempt > MAX_BATCH_RETRIES || this.batchRecords.isEmpty()) {
+          String mess = "Problem encountered while committing a batch of " + this.batchRecords.size() + " records.";
+          this.resetBatch();
+          OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+          OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+          throw new OTeleporterRuntimeException(e);
+        }
+        if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+          OTeleporterContext.getInstance().getMessageHandler()
+              .debug(this, "\nConcurrent modification while committing a batch of %s records, retrying (%s/%s).\n",
+                  this.batchRecords.size(), attempt, MAX_BATCH_RETRIES);
+        }
+        this.replayBatch();
+      }
+    }
+
+    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
+    statistics.incrementAnalyzedRecords(this.pendingAnalyzedRecords);
+    statistics.incrementOrientElements(this.pendingAddedVertices, this.pendingUpdatedVertices, this.pendingAddedEdges);
+    for (Runnable action : this.commitActions) {
+      action.run();
+    }
+    this.resetBatch();
+  }
+
+  private void replayBatch() {
+    this.pendingAddedVertices = 0;
+    this.pendingUpdatedVertices = 0;
+    this.pendingAddedEdges = 0;
+    this.commitActions.clear();
+
+    // records cached by the session could be stale
+    this.orientGraph.getLocalCache().clear();
+    this.orientGraph.begin();
+    for (ORecordSnapshot snapshot : this.batchRecords) {
+      this.execute(this.batchImporter, snapshot.asResultSet());
+    }
+  }
+
+  /**
+   * Performs the rollback actions of the batch, latest first.
+   */
+  private void undoBatch() {
+    for (int i = this.rollbackActions.size() - 1; i >= 0; i--) {
+      this.rollbackActions.get(i).run();
+    }
+    this.rollbackActions.clear();
+  }
+
+  private void execute(ORecordImporter importer, ResultSet record) {
+    try {
+      importer.importRecord(record);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  private void resetBatch() {
+    this.batchRecords.clear();
+    this.commitActions.clear();
+    this.rollbackActions.clear();
+    this.batchImporter = null;
+    this.batchRecordsSize = 0;
+    this.pendingAnalyzedRecords = 0;
+    this.pendingAddedVertices = 0;
+    this.pendingUpdatedVertices = 0;
+    this.pendingAddedEdges = 0;
+  }
+
+  private static boolean isRetryable(Throwable e) {
+    while (e != null) {
+      if (e instanceof OConcurrentModificationException || e instanceof ORecordDuplicatedException) {
+        return true;
+      }
+      e = e.getCause();
+    }
+    return false;
+  }
+
+}
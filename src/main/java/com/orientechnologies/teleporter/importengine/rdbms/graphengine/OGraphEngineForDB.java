@@ -21,23 +21,22 @@
 package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
 import com.orientechnologies.orient.core.exception.OValidationException;
-import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OElement;
 import com.orientechnologies.orient.core.record.OVertex;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.executor.OResultSet;
 import com.orientechnologies.orient.output.OOutputStreamManager;
 import com.orientechnologies.teleporter.context.OTeleporterContext;
-import com.orientechnologies.teleporter.context.OTeleporterStatistics;
 import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
 import com.orientechnologies.teleporter.mapper.rdbms.OAggregatorEdge;
 import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
 import com.orientechnologies.teleporter.model.dbschema.OAttribute;
 import com.orientechnologies.teleporter.model.dbschema.OCanonicalRelationship;
 import com.orientechnologies.teleporter.model.dbschema.OEntity;
-import com.orientechnologies.teleporter.model.dbschema.OLogicalRelationship;
 import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
 import com.orientechnologies.teleporter.model.graphmodel.OModelProperty;
 import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
@@ -49,6 +48,9 @@ import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Executes the necessary operations of insert and upsert for the destination Orient DB populating.
@@ -59,12 +61,299 @@ import java.util.*;
 
 public class OGraphEngineForDB {
 
+  private static final int KEY_LOCK_STRIPES  = 64;
+  private static final int MAX_WRITE_RETRIES = 10;
+
   private OER2GraphMapper      mapper;
   private ODBMSDataTypeHandler handler;
+  private Lock[]               keyLocks;      // striped locks on the vertices' keys, used when several workers import concurrently
+  private OVertexKeyCache      vertexKeyCache;
+  private OEdgeDeduplicator    edgeDeduplicator;
+  private OGraphSessionPool    sessionPool;   // set when the writes are spread over several workers
+  private volatile boolean     freshImport;   // the target database was empty: nothing to check against previous migrations
+  private volatile boolean     indexesDeferred;   // no index during the load: vertices are looked up in the key maps only
+  private OVertexRidMap        loadedKeys;        // keys of the vertices inserted while the indexes are deferred
+  private OVertexRidMap        firstPhaseKeys;    // keys of the vertices inserted in the first phase of a two-phase import
+  private final Map<String, ORID>         pendingKeys;        // keys of the vertices inserted in the current transactions
+  private final Map<String, List<String>> class2subclasses;   // vertex class -> itself and its subclasses
+  private final Map<String, ORecordConversionPlan> vertexPlans;           // vertex type -> plan
+  private final Map<String, ORecordConversionPlan> edgePlans;             // edge type (split entities) -> plan
+  private final Map<String, ORecordConversionPlan> aggregatorEdgePlans;   // aggregator edge type -> plan
 
   public OGraphEngineForDB(OER2GraphMapper mapper, ODBMSDataTypeHandler handler) {
     this.mapper = mapper;
     this.handler = handler;
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    this.vertexKeyCache = new OVertexKeyCache(context.getVertexKeyCacheCapacity(), context.getStatistics(),
+        new OVertexRidMap(context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory()));
+    this.edgeDeduplicator = new OEdgeDeduplicator(mapper, context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory());
+    this.vertexPlans = new ConcurrentHashMap<String, ORecordConversionPlan>();
+    this.edgePlans = new ConcurrentHashMap<String, ORecordConversionPlan>();
+    this.aggregatorEdgePlans = new ConcurrentHashMap<String, ORecordConversionPlan>();
+    this.pendingKeys = new ConcurrentHashMap<String, ORID>();
+    this.class2subclasses = new ConcurrentHashMap<String, List<String>>();
+    this.keyLocks = new Lock[KEY_LOCK_STRIPES];
+    for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+      this.keyLocks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Returns the lock guarding lookup and insert of the vertex with the given key, so that the same vertex is never inserted twice
+   * by workers importing different partitions at the same time.
+   *
+   * @param className
+   * @param valueOfKey
+   *
+   * @return
+   */
+  private Lock getKeyLock(String className, String[] valueOfKey) {
+    int hash = 31 * className.hashCode() + Arrays.hashCode(valueOfKey);
+    return this.keyLocks[(hash & 0x7fffffff) % KEY_LOCK_STRIPES];
+  }
+
+  /*
+   * Counters of the written elements: when a batch writer is running on the current thread they are published with the batch
+   * commit.
+   */
+
+  private void countAddedVertex() {
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null)
+      batchWriter.countAddedVertex();
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientAddedVertices();
+  }
+
+  private void countUpdatedVertex() {
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null)
+      batchWriter.countUpdatedVertex();
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientUpdatedVertices();
+  }
+
+  private void countAddedEdge() {
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null)
+      batchWriter.countAddedEdge();
+    else
+      OTeleporterContext.getInstance().getStatistics().incrementOrientAddedEdges();
+  }
+
+  /**
+   * Performs the action when the id of the inserted vertex is persistent: immediately if it's already persistent, on the commit
+   * of the current batch if the vertex was inserted in a transaction. Ids of vertices inserted in a transaction without batch
+   * writer are never stored, so the action is dropped.
+   *
+   * @param vertexId
+   * @param action
+   */
+  private void whenPersistent(ORID vertexId, Runnable action) {
+    if (vertexId.isPersistent()) {
+      action.run();
+      return;
+    }
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter != null && batchWriter.isTransactional()) {
+      batchWriter.afterCommit(action);
+    }
+  }
+
+  private void cacheVertexId(final String vertexClassName, final String[] propertyOfKey, final String[] valueOfKey,
+      final ORID vertexId) {
+    if (this.indexesDeferred) {
+      this.registerLoadedKey(vertexClassName, propertyOfKey, valueOfKey, vertexId);
+    }
+    this.whenPersistent(vertexId, new Runnable() {
+      @Override
+      public void run() {
+        vertexKeyCache.put(vertexClassName, propertyOfKey, valueOfKey, vertexId);
+      }
+    });
+  }
+
+  private void mapVertexId(final OVertexRidMap vertexRidMap, final String vertexClassName, final String[] propertyOfKey,
+      final String[] valueOfKey, final ORID vertexId) {
+    this.whenPersistent(vertexId, new Runnable() {
+      @Override
+      public void run() {
+        vertexRidMap.put(vertexClassName, propertyOfKey, valueOfKey, vertexId);
+      }
+    });
+  }
+
+  /**
+   * Without indexes the key maps are the only way to find the inserted vertices, so the key of a vertex inserted in the current
+   * transaction is kept with its temporary id until the transaction is committed (then it's stored with the persistent id)
+   * or rolled back.
+   */
+  private void registerLoadedKey(final String vertexClassName, final String[] propertyOfKey, final String[] valueOfKey,
+      final ORID vertexId) {
+
+    final OVertexRidMap loadedKeys = this.loadedKeys;
+    if (vertexId.isPersistent()) {
+      loadedKeys.put(vertexClassName, propertyOfKey, valueOfKey, vertexId);
+      return;
+    }
+    OGraphBatchWriter batchWriter = OGraphBatchWriter.getCurrent();
+    if (batchWriter == null || !batchWriter.isTransactional()) {
+      return;
+    }
+    final String pendingKey = vertexClassName + '\u0001' + OVertexKeyCache.buildKey(propertyOfKey, valueOfKey);
+    this.pendingKeys.put(pendingKey, vertexId);
+    batchWriter.afterCommit(new Runnable() {
+      @Override
+      public void run() {
+        pendingKeys.remove(pendingKey);
+        loadedKeys.put(vertexClassName, propertyOfKey, valueOfKey, vertexId);
+      }
+    });
+    batchWriter.onRollback(new Runnable() {
+      @Override
+      public void run() {
+        pendingKeys.remove(pendingKey);
+      }
+    });
+  }
+
+  /**
+   * Looks the key up in the key maps filled during the load (the vertices of the subclasses are found too, as through the
+   * index of the class).
+   *
+   * @return the id of the vertex, null if it was not inserted
+   */
+  private ORID lookupLoadedKey(ODatabaseDocument orientGraph, String[] propertyOfKey, String[] valueOfKey, String vertexClassName) {
+
+    String key = OVertexKeyCache.buildKey(propertyOfKey, valueOfKey);
+    for (String className : this.getClassAndSubclasses(orientGraph, vertexClassName)) {
+      ORID vertexId = this.pendingKeys.get(className + '\u0001' + key);
+      if (vertexId == null) {
+        vertexId = this.loadedKeys.get(className, propertyOfKey, valueOfKey);
+      }
+      OVertexRidMap firstPhaseKeys = this.firstPhaseKeys;
+      if (vertexId == null && firstPhaseKeys != null) {
+        vertexId = firstPhaseKeys.get(className, propertyOfKey, valueOfKey);
+      }
+      if (vertexId != null) {
+        return vertexId;
+      }
+    }
+    return null;
+  }
+
+  private List<String> getClassAndSubclasses(ODatabaseDocument orientGraph, String vertexClassName) {
+
+    List<String> classNames = this.class2subclasses.get(vertexClassName);
+    if (classNames == null) {
+      classNames = new ArrayList<String>();
+      classNames.add(vertexClassName);
+      OClass orientClass = orientGraph.getMetadata().getSchema().getClass(vertexClassName);
+      if (orientClass != null) {
+        for (OClass subclass : orientClass.getAllSubclasses()) {
+          classNames.add(subclass.getName());
+        }
+      }
+      this.class2subclasses.put(vertexClassName, classNames);
+    }
+    return classNames;
+  }
+
+  public boolean isIndexesDeferred() {
+    return this.indexesDeferred;
+  }
+
+  /**
+   * Sets whether the indexes of the target database are built after the load: the vertices are then looked up just in the
+   * key maps of the engine (and in the one of the first phase of a two-phase import), as the target database was empty.
+   * Disabling it releases the key maps.
+   *
+   * @param indexesDeferred
+   * @param firstPhaseKeys  keys of the vertices inserted in the first phase of a two-phase import, null if there's none
+   */
+  public synchronized void setIndexesDeferred(boolean indexesDeferred, OVertexRidMap firstPhaseKeys) {
+    if (indexesDeferred && this.loadedKeys == null) {
+      OTeleporterContext context = OTeleporterContext.getInstance();
+      this.loadedKeys = new OVertexRidMap(context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory());
+    } else if (!indexesDeferred && this.loadedKeys != null) {
+      this.loadedKeys.clear();
+      this.loadedKeys = null;
+      this.pendingKeys.clear();
+    }
+    this.firstPhaseKeys = indexesDeferred ? firstPhaseKeys : null;
+    this.indexesDeferred = indexesDeferred;
+  }
+
+  public boolean isFreshImport() {
+    return this.freshImport;
+  }
+
+  /**
+   * Sets whether the records are imported in a target database without vertices of previous migrations: vertices found by the
+   * upserts were inserted by the current import from the same records, so they're not compared with the records, and the
+   * edges are added without checking whether they're already present.
+   *
+   * @param freshImport
+   */
+  public void setFreshImport(boolean freshImport) {
+    this.freshImport = freshImport;
+  }
+
+  public OVertexKeyCache getVertexKeyCache() {
+    return this.vertexKeyCache;
+  }
+
+  /**
+   * Releases the sets of edges used to check the upserted edges, at the end of the import.
+   */
+  public void releaseEdgeSets() {
+    this.edgeDeduplicator.release();
+  }
+
+  public OGraphSessionPool getSessionPool() {
+    return this.sessionPool;
+  }
+
+  public void setSessionPool(OGraphSessionPool sessionPool) {
+    this.sessionPool = sessionPool;
+  }
+
+  /**
+   * Looks the vertex up by its key, first in the key cache and then on the primary key index of the class (in the key maps of
+   * the load when the indexes are deferred). Vertices found through the index are added to the cache.
+   *
+   * @param orientGraph
+   * @param propertyOfKey
+   * @param valueOfKey
+   * @param vertexClassName
+   *
+   * @return the vertex, null if not present
+   */
+  private OVertex lookupVertex(ODatabaseDocument orientGraph, String[] propertyOfKey, String[] valueOfKey, String vertexClassName) {
+
+    ORID vertexId = this.vertexKeyCache.get(vertexClassName, propertyOfKey, valueOfKey);
+    if (vertexId != null) {
+      OVertex vertex = OGraphCommands.loadVertex(orientGraph, vertexId);
+      if (vertex != null) {
+        return vertex;
+      }
+      this.vertexKeyCache.remove(vertexClassName, propertyOfKey, valueOfKey);
+    }
+
+    if (this.indexesDeferred) {
+      vertexId = this.lookupLoadedKey(orientGraph, propertyOfKey, valueOfKey, vertexClassName);
+      OVertex vertex = vertexId != null ? OGraphCommands.loadVertex(orientGraph, vertexId) : null;
+      if (vertex != null) {
+        this.vertexKeyCache.put(vertexClassName, propertyOfKey, valueOfKey, vertex.getIdentity());
+      }
+      return vertex;
+    }
+
+    OVertex vertex = OGraphCommands.getVertexByIndexedKey(orientGraph, propertyOfKey, valueOfKey, vertexClassName);
+    if (vertex != null) {
+      this.vertexKeyCache.put(vertexClassName, propertyOfKey, valueOfKey, vertex.getIdentity());
+    }
+    return vertex;
   }
 
   /**
@@ -120,7 +409,7 @@ public class OGraphEngineForDB {
       s += propsAndValuesOfKey;
 
       // lookup
-      OVertex vertex = OGraphCommands.getVertexByIndexedKey(orientGraph, propertyOfKey, valueOfKey, vertexType.getName());
+      OVertex vertex = this.lookupVertex(orientGraph, propertyOfKey, valueOfKey, vertexType.getName());
 
       if (vertex != null && vertexType.getAllProperties().size() <= vertex.getPropertyNames().size()) // there aren't properties to add into the vertex (<=)
         return true;
@@ -146,88 +435,37 @@ public class OGraphEngineForDB {
     String[] propertyOfKey = null;
     String[] valueOfKey = null;
     String propsAndValuesOfKey = "";
+    Lock keyLock = null;
 
     try {
 
-      OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
-
       // building keys and values for the lookup
-      propertyOfKey = new String[propertiesOfIndex.size()];
-      valueOfKey = new String[propertiesOfIndex.size()];
-      String currentValue;
+      propertyOfKey = propertiesOfIndex.toArray(new String[propertiesOfIndex.size()]);
+      valueOfKey = this.readKeyValues(record, vertexType, propertyOfKey);
 
-      int cont = 0;
-      for (String property : propertiesOfIndex) {
-        propertyOfKey[cont] = property;
-        String attributeName = this.mapper.getAttributeNameByVertexTypeAndProperty(vertexType, property);
-        currentValue = record.getString(attributeName);
-
-        // converting eventual "t" or "f" values in "true" and "false"
-        OModelProperty prop = vertexType.getPropertyByNameAmongAll(property);
-        if (prop.getOriginalType().equalsIgnoreCase("boolean")) {
-          switch (currentValue) {
-          case "t":
-            currentValue = "true";
-            break;
-          case "f":
-            currentValue = "false";
-            break;
-          default:
-            break;
-          }
-        }
-
-        valueOfKey[cont] = currentValue;
-        cont++;
-      }
-
-      String s = "Keys and values in the lookup (upsertVisitedVertex):\t";
-      for (int i = 0; i < propertyOfKey.length; i++) {
-        propsAndValuesOfKey += propertyOfKey[i] + ":" + valueOfKey[i] + ",";
-      }
-      if (propsAndValuesOfKey.length() > 0)
-        propsAndValuesOfKey = propsAndValuesOfKey.substring(0, propsAndValuesOfKey.length() - 1);
-      else
-        propsAndValuesOfKey = "no identifier for the current record.";
-      s += propsAndValuesOfKey;
+      propsAndValuesOfKey = this.describeKey(propertyOfKey, valueOfKey);
       if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-        OTeleporterContext.getInstance().getMessageHandler().debug(this, "\n" + s + "\n");
+        OTeleporterContext.getInstance().getMessageHandler()
+            .debug(this, "\nKeys and values in the lookup (upsertVisitedVertex):\t" + propsAndValuesOfKey + "\n");
       }
 
-      // lookup (only if properties and values are different from null)
-      if (propertyOfKey.length > 0 && valueOfKey.length > 0)
-        vertex = OGraphCommands.getVertexByIndexedKey(orientGraph, propertyOfKey, valueOfKey, vertexType.getName());
-
       // extraction of inherited and not inherited properties from the record (through "getAllProperties()" method)
-      Map<String, Object> currentProperties = new LinkedHashMap<String, Object>();
+      Map<String, Object> currentProperties = this.readVertexProperties(record, vertexType, propsAndValuesOfKey);
       String currentPropertyType;
-      String currentPropertyName = null;
-
-      for (OModelProperty currentProperty : vertexType.getAllProperties()) {
-
-        if (currentProperty.isIncludedInMigration()) {
-          currentPropertyName = currentProperty.getName();
-          currentPropertyType = OTeleporterContext.getInstance().getDataTypeHandler()
-              .resolveType(currentProperty.getOriginalType().toLowerCase(Locale.ENGLISH)).toString();
-          String currentOriginalType = currentProperty.getOriginalType();
-
-          try {
-            extractPropertiesFromRecordIntoVertex(record, currentProperties, currentPropertyType, currentPropertyName, currentOriginalType,
-                vertexType);
-          } catch (Exception e) {
-            String mess =
-                "Problem encountered during the extraction of the values from the records. Vertex Type: " + vertexType.getName()
-                    + ";\tProperty: " + currentPropertyName + ";\tRecord: " + propsAndValuesOfKey;
-            OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-            OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
-          }
-        }
-      }
+
+      // lookup (only if properties and values are different from null)
+      keyLock = this.getKeyLock(vertexType.getName(), valueOfKey);
+      keyLock.lock();
+      if (propertyOfKey.length > 0 && valueOfKey.length > 0)
+        vertex = this.lookupVertex(orientGraph, propertyOfKey, valueOfKey, vertexType.getName());
 
       if (vertex == null) {
         String classAndClusterName = vertexType.getName();
         vertex = this.addVertexToGraph(orientGraph, classAndClusterName, currentProperties);
-        statistics.orientAddedVertices++;
+        if (vertex != null && propertyOfKey.length > 0) {
+          this.cacheVertexId(classAndClusterName, propertyOfKey, valueOfKey, vertex.getIdentity());
+        }
+        this.countAddedVertex();
         if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
           OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nLoaded properties: %s\n", currentProperties.toString());
           OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew vertex inserted (all props set): %s\n", vertex.toString());
@@ -265,8 +503,8 @@ public class OGraphEngineForDB {
           }
         }
 
-        // UPDATING A FULL VERTEX
-        else {
+        // UPDATING A FULL VERTEX (in a fresh import it was inserted from the same record by the current import)
+        else if (!this.freshImport) {
 
           // comparing old version of vertex with the new one: if the two versions are equals no rewriting is performed
 
@@ -329,7 +567,7 @@ public class OGraphEngineForDB {
 
             // setting new properties and save
             this.setElementProperties(vertex, currentProperties);
-            statistics.orientUpdatedVertices++;
+            this.countUpdatedVertex();
             if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
               OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nLoaded properties: %s\n", currentProperties.toString());
               OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew vertex upserted (all props set): %s\n", vertex.toString());
@@ -343,11 +581,363 @@ public class OGraphEngineForDB {
       OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
       OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
       throw new OTeleporterRuntimeException(e);
+    } finally {
+      if (keyLock != null) {
+        keyLock.unlock();
+      }
     }
 
     return vertex;
   }
 
+  /**
+   * Deletes the vertex with the given key, together with its edges, when the correspondent record was deleted from the
+   * source database.
+   *
+   * @param orientGraph
+   * @param vertexType
+   * @param propertyOfKey
+   * @param valueOfKey
+   *
+   * @return true if the vertex was present
+   */
+  public boolean deleteVisitedVertex(ODatabaseDocument orientGraph, OVertexType vertexType, String[] propertyOfKey,
+      String[] valueOfKey) {
+
+    String propsAndValuesOfKey = this.describeKey(propertyOfKey, valueOfKey);
+    Lock keyLock = this.getKeyLock(vertexType.getName(), valueOfKey);
+    keyLock.lock();
+    try {
+      OVertex vertex = this.lookupVertex(orientGraph, propertyOfKey, valueOfKey, vertexType.getName());
+      if (vertex == null) {
+        return false;
+      }
+      this.deleteVertex(vertex, vertexType, propertyOfKey, valueOfKey, propsAndValuesOfKey);
+      return true;
+    } catch (Exception e) {
+      String mess = "Problem encountered during the deletion of a vertex. Vertex Type: " + vertexType.getName() + ";\tRecord: "
+          + propsAndValuesOfKey;
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  /**
+   * Deletes the vertex with the given id, together with its edges, when the correspondent record is no more in the source
+   * database. The key is passed to clear the key cache.
+   *
+   * @param orientGraph
+   * @param vertexType
+   * @param vertexId
+   * @param propertyOfKey
+   * @param valueOfKey
+   *
+   * @return true if the vertex was present
+   */
+  public boolean deleteVertexById(ODatabaseDocument orientGraph, OVertexType vertexType, ORID vertexId, String[] propertyOfKey,
+      String[] valueOfKey) {
+
+    String propsAndValuesOfKey = this.describeKey(propertyOfKey, valueOfKey);
+    Lock keyLock = this.getKeyLock(vertexType.getName(), valueOfKey);
+    keyLock.lock();
+    try {
+      OVertex vertex = OGraphCommands.loadVertex(orientGraph, vertexId);
+      if (vertex == null) {
+        return false;
+      }
+      this.deleteVertex(vertex, vertexType, propertyOfKey, valueOfKey, propsAndValuesOfKey);
+      return true;
+    } catch (Exception e) {
+      String mess = "Problem encountered during the deletion of a vertex. Vertex Type: " + vertexType.getName() + ";\tRecord: "
+          + propsAndValuesOfKey;
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  private void deleteVertex(OVertex vertex, OVertexType vertexType, String[] propertyOfKey, String[] valueOfKey,
+      String propsAndValuesOfKey) {
+
+    vertex.delete();
+    this.vertexKeyCache.remove(vertexType.getName(), propertyOfKey, valueOfKey);
+    OTeleporterContext.getInstance().getStatistics().incrementOrientDeletedVertices();
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nVertex deleted: %s\n", propsAndValuesOfKey);
+    }
+  }
+
+  /**
+   * Inserts the vertex of the record without looking it up, and records its id in the map. Used in the first phase of a
+   * two-phase import, when the target database is empty and each record is read once.
+   *
+   * @param orientGraph
+   * @param record
+   * @param vertexType
+   * @param propertiesOfIndex
+   * @param vertexRidMap
+   *
+   * @return the inserted vertex
+   */
+  public OVertex insertVisitedVertex(ODatabaseDocument orientGraph, ResultSet record, OVertexType vertexType,
+      Set<String> propertiesOfIndex, OVertexRidMap vertexRidMap) {
+
+    String propsAndValuesOfKey = "";
+
+    try {
+      String[] propertyOfKey = propertiesOfIndex.toArray(new String[propertiesOfIndex.size()]);
+      String[] valueOfKey = this.readKeyValues(record, vertexType, propertyOfKey);
+      propsAndValuesOfKey = this.describeKey(propertyOfKey, valueOfKey);
+
+      Map<String, Object> currentProperties = this.readVertexProperties(record, vertexType, propsAndValuesOfKey);
+      OVertex vertex = this.addVertexToGraph(orientGraph, vertexType.getName(), currentProperties);
+      if (vertex != null && propertyOfKey.length > 0) {
+        this.mapVertexId(vertexRidMap, vertexType.getName(), propertyOfKey, valueOfKey, vertex.getIdentity());
+      }
+      this.countAddedVertex();
+      if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew vertex inserted (all props set): %s\n", vertex);
+      }
+      return vertex;
+
+    } catch (Exception e) {
+      String mess = "Problem encountered during the migration of the records. Vertex Type: " + vertexType.getName() + ";\tRecord: "
+          + propsAndValuesOfKey;
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the id of the vertex inserted for the record during the first phase of a two-phase import.
+   *
+   * @param record
+   * @param vertexType
+   * @param propertiesOfIndex
+   * @param vertexRidMap
+   *
+   * @return the id, null if the vertex was not inserted in the first phase
+   *
+   * @throws SQLException
+   */
+  public ORID getVisitedVertexId(ResultSet record, OVertexType vertexType, Set<String> propertiesOfIndex,
+      OVertexRidMap vertexRidMap) throws SQLException {
+
+    String[] propertyOfKey = propertiesOfIndex.toArray(new String[propertiesOfIndex.size()]);
+    if (propertyOfKey.length == 0) {
+      return null;
+    }
+    return vertexRidMap.get(vertexType.getName(), propertyOfKey, this.readKeyValues(record, vertexType, propertyOfKey));
+  }
+
+  /**
+   * Adds the edge corresponding to the foreign key of the record, resolving the referenced vertex through the map filled in
+   * the first phase of a two-phase import. If the referenced vertex was not inserted in the first phase (e.g. it belongs to a
+   * hierarchy or to a filtered table), it's looked up and, if missing, inserted as reached vertex.
+   *
+   * @param orientGraph
+   * @param foreignRecord
+   * @param relation
+   * @param currentOutVertexId
+   * @param currentInVertexType
+   * @param edgeTypeName
+   * @param vertexRidMap
+   *
+   * @throws SQLException
+   */
+  public void insertEdgeToReachedVertex(ODatabaseDocument orientGraph, ResultSet foreignRecord, OCanonicalRelationship relation,
+      ORID currentOutVertexId, OVertexType currentInVertexType, String edgeTypeName, OVertexRidMap vertexRidMap)
+      throws SQLException {
+
+    // building keys and values for the lookup
+    List<OAttribute> fromColumns = relation.getFromColumns();
+    String[] propertyOfKey = new String[fromColumns.size()];
+    String[] valueOfKey = new String[fromColumns.size()];
+
+    int index = 0;
+    for (OAttribute foreignAttribute : fromColumns) {
+      String attributeName = relation.getToColumns().get(index).getName();
+      propertyOfKey[index] = mapper.getPropertyNameByVertexTypeAndAttribute(currentInVertexType, attributeName);
+      valueOfKey[index] = foreignRecord.getString((foreignAttribute.getName()));
+      if (valueOfKey[index] == null) {
+        // no referenced record
+        return;
+      }
+      index++;
+    }
+
+    OVertex currentOutVertex = OGraphCommands.loadVertex(orientGraph, currentOutVertexId);
+    ORID currentInVertexId = vertexRidMap.get(currentInVertexType.getName(), propertyOfKey, valueOfKey);
+    if (currentInVertexId == null) {
+      this.upsertReachedVertexWithEdge(orientGraph, foreignRecord, relation, currentOutVertex, currentInVertexType, edgeTypeName);
+      return;
+    }
+
+    OVertex currentInVertex = OGraphCommands.loadVertex(orientGraph, currentInVertexId);
+    this.insertNewEdge(orientGraph, currentOutVertex, currentInVertex, edgeTypeName, null, relation.getDirection());
+  }
+
+  /**
+   * Adds the edge corresponding to the record of a join table, resolving both the vertices through the map filled in the first
+   * phase of a two-phase import. Falls back to the lookups of {@link #upsertAggregatorEdge} when a vertex is not in the map.
+   *
+   * @param orientGraph
+   * @param jointTableRecord
+   * @param joinTable
+   * @param aggregatorEdge
+   * @param vertexRidMap
+   *
+   * @throws SQLException
+   */
+  public void insertAggregatorEdge(ODatabaseDocument orientGraph, ResultSet jointTableRecord, OEntity joinTable,
+      OAggregatorEdge aggregatorEdge, OVertexRidMap vertexRidMap) throws SQLException {
+
+    Iterator<OCanonicalRelationship> it = joinTable.getOutCanonicalRelationships().iterator();
+    OCanonicalRelationship relationship1 = it.next();
+    OCanonicalRelationship relationship2 = it.next();
+    String direction = joinTable.getDirectionOfN2NRepresentedRelationship();
+
+    String[] keysOutVertex = this.buildJoinTableKeys(relationship1);
+    String[] valuesOutVertex = this.readJoinTableValues(jointTableRecord, relationship1);
+    String[] keysInVertex = this.buildJoinTableKeys(relationship2);
+    String[] valuesInVertex = this.readJoinTableValues(jointTableRecord, relationship2);
+
+    ORID currentOutVertexId;
+    ORID currentInVertexId;
+    if (direction.equals("direct")) {
+      currentOutVertexId = vertexRidMap.get(aggregatorEdge.getOutVertexClassName(), keysOutVertex, valuesOutVertex);
+      currentInVertexId = vertexRidMap.get(aggregatorEdge.getInVertexClassName(), keysInVertex, valuesInVertex);
+    } else {
+      currentOutVertexId = vertexRidMap.get(aggregatorEdge.getInVertexClassName(), keysOutVertex, valuesOutVertex);
+      currentInVertexId = vertexRidMap.get(aggregatorEdge.getOutVertexClassName(), keysInVertex, valuesInVertex);
+    }
+
+    if (currentOutVertexId == null || currentInVertexId == null) {
+      this.upsertAggregatorEdge(orientGraph, jointTableRecord, joinTable, aggregatorEdge);
+      return;
+    }
+
+    Map<String, Object> properties = this.readAggregatorEdgeProperties(jointTableRecord, joinTable, aggregatorEdge);
+    this.insertNewEdge(orientGraph, OGraphCommands.loadVertex(orientGraph, currentOutVertexId),
+        OGraphCommands.loadVertex(orientGraph, currentInVertexId), aggregatorEdge.getEdgeType().getName(), properties, direction);
+  }
+
+  /**
+   * Adds an edge known to be missing, according to the direction of the relationship.
+   */
+  private void insertNewEdge(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType,
+      Map<String, Object> properties, String direction) {
+
+    try {
+      OEdge edge = null;
+      if (direction != null && direction.equals("direct")) {
+        edge = this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, properties);
+        this.edgeDeduplicator.registerInsertedEdge(currentOutVertex, currentInVertex, edgeType);
+      } else if (direction != null && direction.equals("inverse")) {
+        edge = this.addEdgeToGraph(orientGraph, currentInVertex, currentOutVertex, edgeType, properties);
+        this.edgeDeduplicator.registerInsertedEdge(currentInVertex, currentOutVertex, edgeType);
+      }
+      this.countAddedEdge();
+      if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew edge inserted: %s\n", edge);
+      }
+    } catch (Exception e) {
+      String mess =
+          "Problem encountered during the insert of an edge. Vertex-out: " + currentOutVertex + ";\tVertex-in: " + currentInVertex;
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  /**
+   * Reads the values of the key properties of the vertex from the record, converting the "t"/"f" booleans in "true"/"false".
+   */
+  private String[] readKeyValues(ResultSet record, OVertexType vertexType, String[] propertyOfKey) throws SQLException {
+    return this.getConversionPlan(vertexType).readKeyValues(record, propertyOfKey);
+  }
+
+  private String describeKey(String[] propertyOfKey, String[] valueOfKey) {
+
+    String propsAndValuesOfKey = "";
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      propsAndValuesOfKey += propertyOfKey[i] + ":" + valueOfKey[i] + ",";
+    }
+    if (propsAndValuesOfKey.length() > 0)
+      propsAndValuesOfKey = propsAndValuesOfKey.substring(0, propsAndValuesOfKey.length() - 1);
+    else
+      propsAndValuesOfKey = "no identifier for the current record.";
+    return propsAndValuesOfKey;
+  }
+
+  /**
+   * Extracts the inherited and not inherited properties included in the migration from the record.
+   */
+  private Map<String, Object> readVertexProperties(ResultSet record, final OVertexType vertexType,
+      final String propsAndValuesOfKey) throws SQLException {
+
+    return this.getConversionPlan(vertexType).readProperties(record, new ORecordConversionPlan.OExtractionErrorHandler() {
+      @Override
+      public void onError(String propertyName, Exception e) {
+        String mess = "Problem encountered during the extraction of the values from the records. Vertex Type: " + vertexType.getName()
+            + ";\tProperty: " + propertyName + ";\tRecord: " + propsAndValuesOfKey;
+        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+        OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+      }
+    });
+  }
+
+  /**
+   * Extracts the properties included in the migration of an edge type coming from a split entity from the record.
+   *
+   * @param record
+   * @param edgeType
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  public Map<String, Object> readEdgeProperties(ResultSet record, final OEdgeType edgeType) throws SQLException {
+
+    ORecordConversionPlan plan = this.edgePlans.get(edgeType.getName());
+    if (plan == null) {
+      plan = ORecordConversionPlan.compile(edgeType, this.mapper, this.handler);
+      this.edgePlans.put(edgeType.getName(), plan);
+    }
+    return plan.readProperties(record, new ORecordConversionPlan.OExtractionErrorHandler() {
+      @Override
+      public void onError(String propertyName, Exception e) {
+        String mess = "Problem encountered during the extraction of the values from the records. Edge Type: " + edgeType.getName()
+            + ";\tProperty: " + propertyName;
+        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+        OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+      }
+    });
+  }
+
+  /**
+   * Returns the conversion plan of the vertex type, compiling it at the first request.
+   *
+   * @param vertexType
+   *
+   * @return
+   */
+  private ORecordConversionPlan getConversionPlan(OVertexType vertexType) {
+    ORecordConversionPlan plan = this.vertexPlans.get(vertexType.getName());
+    if (plan == null) {
+      // concurrent compilations of the same plan are harmless, the last one wins
+      plan = ORecordConversionPlan.compile(vertexType, this.mapper, this.handler);
+      this.vertexPlans.put(vertexType.getName(), plan);
+    }
+    return plan;
+  }
+
   public void extractPropertiesFromRecordIntoVertex(ResultSet record, Map<String, Object> properties, String currentPropertyType,
       String currentPropertyName, String currentOriginalType, OVertexType vertexType) throws SQLException {
 
@@ -612,8 +1202,6 @@ public class OGraphEngineForDB {
 
     try {
 
-      OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
-
       // building keys and values for the lookup
       List<OAttribute> fromColumns = relation.getFromColumns();
       String[] propertyOfKey = new String[fromColumns.size()];
@@ -653,34 +1241,43 @@ public class OGraphEngineForDB {
       // all values are different from null, thus vertex is searched in the graph and in case is added if not found.
       if (ok) {
 
-        currentInVertex = OGraphCommands.getVertexByIndexedKey(orientGraph, propertyOfKey, valueOfKey, currentInVertexType.getName());
+        Lock keyLock = this.getKeyLock(currentInVertexType.getName(), valueOfKey);
+        keyLock.lock();
+        try {
+          currentInVertex = this.lookupVertex(orientGraph, propertyOfKey, valueOfKey, currentInVertexType.getName());
 
-        /*
-         *  if the vertex is not already present in the graph it's built, set and inserted to the graph,
-         *  then the edge between the current-out-vertex and the current-in-vertex is added
-         */
-        if (currentInVertex == null) {
+          /*
+           *  if the vertex is not already present in the graph it's built, set and inserted to the graph,
+           *  then the edge between the current-out-vertex and the current-in-vertex is added
+           */
+          if (currentInVertex == null) {
 
-          Map<String, Object> partialProperties = new LinkedHashMap<String, Object>();
+            Map<String, Object> partialProperties = new LinkedHashMap<String, Object>();
 
-          // for each attribute in the foreign key belonging to the relationship, attribute name and correspondent value are added to a 'properties map'
-          for (int i = 0; i < propertyOfKey.length; i++) {
-            partialProperties.put(propertyOfKey[i], valueOfKey[i]);
-          }
+            // for each attribute in the foreign key belonging to the relationship, attribute name and correspondent value are added to a 'properties map'
+            for (int i = 0; i < propertyOfKey.length; i++) {
+              partialProperties.put(propertyOfKey[i], valueOfKey[i]);
+            }
 
-          String classAndClusterName = currentInVertexType.getName();
-          currentInVertex = this.addVertexToGraph(orientGraph, classAndClusterName, partialProperties);
-          statistics.orientAddedVertices++;
-          if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-            OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNEW Reached vertex (id:value) --> %s:%s\n", Arrays.toString(propertyOfKey), Arrays.toString(valueOfKey));
-            OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew vertex inserted (only pk props set): %s\n", currentInVertex.toString());
-          }
+            String classAndClusterName = currentInVertexType.getName();
+            currentInVertex = this.addVertexToGraph(orientGraph, classAndClusterName, partialProperties);
+            if (currentInVertex != null) {
+              this.cacheVertexId(classAndClusterName, propertyOfKey, valueOfKey, currentInVertex.getIdentity());
+            }
+            this.countAddedVertex();
+            if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+              OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNEW Reached vertex (id:value) --> %s:%s\n", Arrays.toString(propertyOfKey), Arrays.toString(valueOfKey));
+              OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew vertex inserted (only pk props set): %s\n", currentInVertex.toString());
+            }
 
-        } else {
-          if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-            OTeleporterContext.getInstance().getMessageHandler()
-                .debug(this, "\nNOT NEW Reached vertex, vertex %s:%s already present in the Orient Graph.\n", Arrays.toString(propertyOfKey), Arrays.toString(valueOfKey));
+          } else {
+            if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+              OTeleporterContext.getInstance().getMessageHandler()
+                  .debug(this, "\nNOT NEW Reached vertex, vertex %s:%s already present in the Orient Graph.\n", Arrays.toString(propertyOfKey), Arrays.toString(valueOfKey));
+            }
           }
+        } finally {
+          keyLock.unlock();
         }
 
         // upsert of the edge between the currentOutVertex and the currentInVertex
@@ -699,133 +1296,41 @@ public class OGraphEngineForDB {
   }
 
   /**
-   * Dead!
+   * Adds the edge unless it's already present. The check doesn't scan the edges of the vertex (see OEdgeDeduplicator) and is
+   * skipped in a fresh import.
    *
    * @param orientGraph
-   * @param relation
    * @param currentOutVertex
-   * @param currentOutVertexType
-   * @param currentInVertexType
-   * @param edgeTypeName
+   * @param currentInVertex
+   * @param edgeType
+   * @param properties
+   * @param direction        "direct" for an edge from the out vertex to the in vertex, "inverse" for the opposite one
    */
-  public void connectVertexToRelatedVertices(ODatabaseDocument orientGraph, OLogicalRelationship relation, OVertex currentOutVertex,
-      OVertexType currentOutVertexType, OVertexType currentInVertexType, String edgeTypeName) {
-
-    String propsAndValuesOfKey = "";
-    String direction = relation.getDirection();
-
-    try {
-
-      // building keys and values for the lookup
-      List<OAttribute> fromColumns = relation.getFromColumns();
-      String[] propertyOfKey = new String[fromColumns.size()];
-      String[] valueOfKey = new String[fromColumns.size()];
-
-      int index = 0;
-      for (OAttribute foreignAttribute : fromColumns) {
-        String attributeName = relation.getToColumns().get(index).getName();
-        propertyOfKey[index] = mapper.getPropertyNameByVertexTypeAndAttribute(currentInVertexType, attributeName);
-
-        String outVertexPropertyName = mapper
-            .getPropertyNameByVertexTypeAndAttribute(currentOutVertexType, foreignAttribute.getName());
-        valueOfKey[index] = currentOutVertex.getProperty(outVertexPropertyName);
-        index++;
-      }
-
-      if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-        String s = "Keys and values in the lookup (upsertVisitedVertex):\t";
-        for (int i = 0; i < propertyOfKey.length; i++) {
-          propsAndValuesOfKey += propertyOfKey[i] + ":" + valueOfKey[i] + ",";
-        }
-        if (propsAndValuesOfKey.length() > 0)
-          propsAndValuesOfKey = propsAndValuesOfKey.substring(0, propsAndValuesOfKey.length() - 1);
-        else
-          propsAndValuesOfKey = "no identifier for the current record.";
-        s += propsAndValuesOfKey;
-        OTeleporterContext.getInstance().getMessageHandler().debug(this, "\n" + s + "\n");
-      }
-
-      // new vertex is added only if all the values in the foreign key are different from null
-      boolean ok = true;
-
-      for (int i = 0; i < valueOfKey.length; i++) {
-        if (valueOfKey[i] == null) {
-          ok = false;
-          break;
-        }
-      }
-
-      // all values are different from null, thus vertex is searched in the graph and in case is added if not found.
-      if (ok) {
-        int verticesCount = (int) orientGraph.countClass(currentInVertexType.getName());
-        OTeleporterContext.getInstance().getStatistics().leftVerticesCurrentLogicalRelationship = verticesCount;
-        OResultSet inVertices = OGraphCommands.getVertices(orientGraph, currentInVertexType.getName(), propertyOfKey, valueOfKey);
-
-        while(inVertices.hasNext()) {
-          OVertex currentInVertex = inVertices.next().getVertex().get();
-          this.insertEdge(orientGraph, currentOutVertex, currentInVertex, edgeTypeName, null, direction);
-        }
-
-        // closing ResultSet
-        inVertices.close();
-      }
-
-    } catch (Exception e) {
-      String mess =
-          "Problem encountered during the insert of the edge between two vertices. outVertexType: " + currentOutVertexType.getName()
-              + ", inVertexType: " + currentInVertexType.getName();
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
-    }
-
-  }
-
   public void upsertEdge(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType,
       Map<String, Object> properties, String direction) {
 
     try {
+      OVertex from;
+      OVertex to;
+      if (direction != null && direction.equals("direct")) {
+        from = currentOutVertex;
+        to = currentInVertex;
+      } else if (direction != null && direction.equals("inverse")) {
+        from = currentInVertex;
+        to = currentOutVertex;
+      } else {
+        return;
+      }
 
-      boolean edgeAlreadyPresent = false;
-      Iterator<OEdge> it = currentOutVertex.getEdges(ODirection.OUT, edgeType).iterator();
-      OEdge currentEdge;
-
-      OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
-
-      if (it.hasNext()) {
-        while (it.hasNext()) {
-          currentEdge = it.next();
-          if (currentEdge.getVertex(ODirection.IN).getIdentity().equals(currentInVertex.getIdentity())) {
-            edgeAlreadyPresent = true;
-            break;
-          }
-        }
-        if (edgeAlreadyPresent) {
-          if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-            OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nEdge between '%s' and '%s' already present.\n", currentOutVertex.toString(), currentInVertex.toString());
-          }
-        } else {
-          OEdge edge = null;
-          if (direction != null && direction.equals("direct")) {
-            edge = this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, properties);
-          } else if (direction != null && direction.equals("inverse")) {
-            edge = this.addEdgeToGraph(orientGraph, currentInVertex, currentOutVertex, edgeType, properties);
-          }
-          statistics.orientAddedEdges++;
-          if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-            OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew edge inserted: %s\n", edge.toString());
-          }
+      if (this.freshImport || this.edgeDeduplicator.addIfAbsent(orientGraph, from, to, edgeType)) {
+        OEdge edge = this.addEdgeToGraph(orientGraph, from, to, edgeType, properties);
+        this.countAddedEdge();
+        if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+          OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew edge inserted: %s\n", edge.toString());
         }
       } else {
-        OEdge edge = null;
-        if (direction != null && direction.equals("direct")) {
-          edge = this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, properties);
-        } else if (direction != null && direction.equals("inverse")) {
-          edge = this.addEdgeToGraph(orientGraph, currentInVertex, currentOutVertex, edgeType, properties);
-        }
-        statistics.orientAddedEdges++;
         if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-          OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew edge inserted: %s\n", edge.toString());
+          OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nEdge between '%s' and '%s' already present.\n", from.toString(), to.toString());
         }
       }
     } catch (Exception e) {
@@ -838,7 +1343,7 @@ public class OGraphEngineForDB {
   }
 
   /**
-   * Dead!
+   * Adds the edge without checking if it's already present, used when the edges are built on an empty edge class.
    *
    * @param orientGraph
    * @param currentOutVertex
@@ -850,17 +1355,16 @@ public class OGraphEngineForDB {
   public void insertEdge(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType,
       Map<String, Object> properties, String direction) {
 
-    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
-
     try {
       OEdge edge = null;
       if (direction != null && direction.equals("direct")) {
         edge = this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, properties);
+        this.edgeDeduplicator.registerInsertedEdge(currentOutVertex, currentInVertex, edgeType);
       } else if (direction != null && direction.equals("inverse")) {
         edge = this.addEdgeToGraph(orientGraph, currentInVertex, currentOutVertex, edgeType, properties);
+        this.edgeDeduplicator.registerInsertedEdge(currentInVertex, currentOutVertex, edgeType);
       }
-      statistics.orientAddedEdges++;
-      statistics.doneLeftVerticesCurrentLogicalRelationship++;
+      this.countAddedEdge();
       if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
         OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nNew edge inserted: %s\n", edge.toString());
       }
@@ -884,30 +1388,12 @@ public class OGraphEngineForDB {
       OCanonicalRelationship relationship2 = it.next();
 
       // Building keys and values for out-vertex lookup
-
-      String[] keysOutVertex = new String[relationship1.getFromColumns().size()];
-      String[] valuesOutVertex = new String[relationship1.getFromColumns().size()];
-
-      int index = 0;
-      for (OAttribute foreignKeyAttribute : relationship1.getFromColumns()) {
-        keysOutVertex[index] = this.mapper.getPropertyNameByEntityAndAttribute(relationship1.getParentEntity(),
-            relationship1.getToColumns().get(index).getName());
-        valuesOutVertex[index] = jointTableRecord.getString(foreignKeyAttribute.getName());
-        index++;
-      }
+      String[] keysOutVertex = this.buildJoinTableKeys(relationship1);
+      String[] valuesOutVertex = this.readJoinTableValues(jointTableRecord, relationship1);
 
       // Building keys and values for in-vertex lookup
-
-      String[] keysInVertex = new String[relationship2.getToColumns().size()];
-      String[] valuesInVertex = new String[relationship2.getToColumns().size()];
-
-      index = 0;
-      for (OAttribute foreignKeyAttribute : relationship2.getFromColumns()) {
-        keysInVertex[index] = this.mapper.getPropertyNameByEntityAndAttribute(relationship2.getParentEntity(),
-            relationship2.getToColumns().get(index).getName());
-        valuesInVertex[index] = jointTableRecord.getString(foreignKeyAttribute.getName());
-        index++;
-      }
+      String[] keysInVertex = this.buildJoinTableKeys(relationship2);
+      String[] valuesInVertex = this.readJoinTableValues(jointTableRecord, relationship2);
 
       // String direction
       String direction = joinTable.getDirectionOfN2NRepresentedRelationship();
@@ -915,39 +1401,15 @@ public class OGraphEngineForDB {
       OVertex currentOutVertex;
       OVertex currentInVertex;
       if (direction.equals("direct")) {
-        currentOutVertex = OGraphCommands.getVertexByIndexedKey(orientGraph, keysOutVertex, valuesOutVertex, aggregatorEdge.getOutVertexClassName());
-        currentInVertex = OGraphCommands
-            .getVertexByIndexedKey(orientGraph, keysInVertex, valuesInVertex, aggregatorEdge.getInVertexClassName());
+        currentOutVertex = this.lookupVertex(orientGraph, keysOutVertex, valuesOutVertex, aggregatorEdge.getOutVertexClassName());
+        currentInVertex = this.lookupVertex(orientGraph, keysInVertex, valuesInVertex, aggregatorEdge.getInVertexClassName());
       } else {
-        currentOutVertex = OGraphCommands.getVertexByIndexedKey(orientGraph, keysOutVertex, valuesOutVertex, aggregatorEdge.getInVertexClassName());
-        currentInVertex = OGraphCommands.getVertexByIndexedKey(orientGraph, keysInVertex, valuesInVertex, aggregatorEdge.getOutVertexClassName());
+        currentOutVertex = this.lookupVertex(orientGraph, keysOutVertex, valuesOutVertex, aggregatorEdge.getInVertexClassName());
+        currentInVertex = this.lookupVertex(orientGraph, keysInVertex, valuesInVertex, aggregatorEdge.getOutVertexClassName());
       }
 
       // extracting edge properties from the join table
-      Map<String, Object> properties = new LinkedHashMap<String, Object>();
-      OEdgeType edgeType = aggregatorEdge.getEdgeType();
-
-      for (OModelProperty currentProperty : edgeType.getAllProperties()) {
-
-        String currentPropertyName = currentProperty.getName();
-        String currentPropertyType = currentProperty.getOrientdbType();
-        if (currentProperty.getOrientdbType() == null) { // superfluous ?!
-          currentPropertyType = OTeleporterContext.getInstance().getDataTypeHandler()
-              .resolveType(currentProperty.getOriginalType().toLowerCase(Locale.ENGLISH)).toString();
-        }
-        String currentOriginalType = currentProperty.getOriginalType();
-        OVertexType joinVertexType = this.mapper.getJoinVertexTypeByAggregatorEdge(edgeType.getName());
-
-        try {
-          extractPropertiesFromRecordIntoVertex(jointTableRecord, properties, currentPropertyType, currentPropertyName,
-              currentOriginalType, joinVertexType);
-        } catch (Exception e) {
-          String mess = "Problem encountered during the extraction of the values from the records. Edge Type: " + edgeType.getName()
-              + ";\tProperty: " + currentProperty.getName() + ";\tOriginal join table: " + joinTable.getName();
-          OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-          OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
-        }
-      }
+      Map<String, Object> properties = this.readAggregatorEdgeProperties(jointTableRecord, joinTable, aggregatorEdge);
 
       this.upsertEdge(orientGraph, currentOutVertex, currentInVertex, aggregatorEdge.getEdgeType().getName(), properties,
           direction);
@@ -960,6 +1422,48 @@ public class OGraphEngineForDB {
     }
   }
 
+  private String[] buildJoinTableKeys(OCanonicalRelationship relationship) {
+
+    String[] keys = new String[relationship.getToColumns().size()];
+    for (int index = 0; index < keys.length; index++) {
+      keys[index] = this.mapper.getPropertyNameByEntityAndAttribute(relationship.getParentEntity(),
+          relationship.getToColumns().get(index).getName());
+    }
+    return keys;
+  }
+
+  private String[] readJoinTableValues(ResultSet jointTableRecord, OCanonicalRelationship relationship) throws SQLException {
+
+    String[] values = new String[relationship.getFromColumns().size()];
+    int index = 0;
+    for (OAttribute foreignKeyAttribute : relationship.getFromColumns()) {
+      values[index] = jointTableRecord.getString(foreignKeyAttribute.getName());
+      index++;
+    }
+    return values;
+  }
+
+  private Map<String, Object> readAggregatorEdgeProperties(ResultSet jointTableRecord, final OEntity joinTable,
+      OAggregatorEdge aggregatorEdge) throws SQLException {
+
+    final OEdgeType edgeType = aggregatorEdge.getEdgeType();
+    ORecordConversionPlan plan = this.aggregatorEdgePlans.get(edgeType.getName());
+    if (plan == null) {
+      OVertexType joinVertexType = this.mapper.getJoinVertexTypeByAggregatorEdge(edgeType.getName());
+      plan = ORecordConversionPlan.compile(edgeType, joinVertexType, this.mapper, this.handler);
+      this.aggregatorEdgePlans.put(edgeType.getName(), plan);
+    }
+    return plan.readProperties(jointTableRecord, new ORecordConversionPlan.OExtractionErrorHandler() {
+      @Override
+      public void onError(String propertyName, Exception e) {
+        String mess = "Problem encountered during the extraction of the values from the records. Edge Type: " + edgeType.getName()
+            + ";\tProperty: " + propertyName + ";\tOriginal join table: " + joinTable.getName();
+        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+        OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+      }
+    });
+  }
+
   private OVertex addVertexToGraph(ODatabaseDocument orientGraph, String classAndClusterName) {
     return this.addVertexToGraph(orientGraph,classAndClusterName, null);
   }
@@ -967,59 +1471,120 @@ public class OGraphEngineForDB {
   private OVertex addVertexToGraph(ODatabaseDocument orientGraph, String classAndClusterName, Map<String, Object> properties) {
 
     OVertex vertex = null;
+    String workerCluster = this.getWorkerCluster(classAndClusterName);
     boolean alreadySaved = false;
     try {
       if (classAndClusterName != null) {
         vertex = orientGraph.newVertex(classAndClusterName);
         if(properties != null) {
-          this.setElementProperties(vertex, properties);
-          alreadySaved = true;
+          if (workerCluster != null) {
+            // the first save decides the cluster of the new vertex
+            for (String property : properties.keySet()) {
+              vertex.setProperty(property, properties.get(property));
+            }
+          } else {
+            this.setElementProperties(vertex, properties);
+            alreadySaved = true;
+          }
         }
       }
     } catch (OValidationException e) {
       OTeleporterContext.getInstance().getStatistics().errorMessages.add(e.getMessage());
     }
     if(!alreadySaved) {
-      vertex.save();
+      this.saveElement(vertex, workerCluster);
     }
     return vertex;
   }
 
-  private OEdge addEdgeToGraph(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType) {
-    return this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, null);
+  /**
+   * @param className
+   *
+   * @return the cluster of the class reserved to the graph writer worker running on the current thread, null if no worker is
+   * running on it
+   */
+  private String getWorkerCluster(String className) {
+    return this.sessionPool != null ? this.sessionPool.getWorkerCluster(className) : null;
   }
 
-  private OEdge addEdgeToGraph(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType, Map<String, Object> properties) {
-
-    OEdge edge = null;
-    boolean alreadySaved = false;
+  private void saveElement(OElement element, String cluster) {
     try {
-      edge = orientGraph.newEdge(currentOutVertex, currentInVertex, edgeType);
-      if(properties != null) {
-        this.setElementProperties(edge, properties);
-        alreadySaved = true;
+      if (cluster != null) {
+        element.save(cluster);
+      } else {
+        element.save();
       }
     } catch (OValidationException e) {
       OTeleporterContext.getInstance().getStatistics().errorMessages.add(e.getMessage());
     }
-    if(!alreadySaved) {
-      edge.save();
+  }
+
+  private OEdge addEdgeToGraph(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType) {
+    return this.addEdgeToGraph(orientGraph, currentOutVertex, currentInVertex, edgeType, null);
+  }
+
+  /**
+   * Adds the edge between the two vertices. The in-vertex can be shared with other import workers, so when a concurrent
+   * modification is detected both the vertices are reloaded and the insert is retried.
+   */
+  private OEdge addEdgeToGraph(ODatabaseDocument orientGraph, OVertex currentOutVertex, OVertex currentInVertex, String edgeType, Map<String, Object> properties) {
+
+    String workerCluster = this.getWorkerCluster(edgeType);
+    for (int attempt = 1; ; attempt++) {
+      OEdge edge = null;
+      boolean alreadySaved = false;
+      try {
+        try {
+          edge = orientGraph.newEdge(currentOutVertex, currentInVertex, edgeType);
+          if(properties != null) {
+            if (workerCluster != null) {
+              for (String property : properties.keySet()) {
+                edge.setProperty(property, properties.get(property));
+              }
+            } else {
+              this.setElementProperties(edge, properties);
+              alreadySaved = true;
+            }
+          }
+        } catch (OValidationException e) {
+          OTeleporterContext.getInstance().getStatistics().errorMessages.add(e.getMessage());
+        }
+        if(!alreadySaved) {
+          this.saveElement(edge, workerCluster);
+        }
+        return edge;
+      } catch (OConcurrentModificationException e) {
+        if (attempt >= MAX_WRITE_RETRIES) {
+          throw e;
+        }
+        currentOutVertex.reload();
+        currentInVertex.reload();
+      }
     }
-    return edge;
   }
 
   private void setElementProperties(OElement element, Map<String, Object> properties) {
 
-    try {
+    for (int attempt = 1; ; attempt++) {
+      try {
 
-      for(String property: properties.keySet()) {
-        Object value = properties.get(property);
-        element.setProperty(property, value);
+        for(String property: properties.keySet()) {
+          Object value = properties.get(property);
+          element.setProperty(property, value);
+        }
+        element.save();
+        return;
+
+      } catch (OValidationException e) {
+        OTeleporterContext.getInstance().getStatistics().errorMessages.add(e.getMessage());
+        return;
+      } catch (OConcurrentModificationException e) {
+        // the element was updated by another worker (e.g. a new edge): reloading and setting the properties again
+        if (attempt >= MAX_WRITE_RETRIES || !element.getIdentity().isPersistent()) {
+          throw e;
+        }
+        element.reload();
       }
-      element.save();
-
-    } catch (OValidationException e) {
-      OTeleporterContext.getInstance().getStatistics().errorMessages.add(e.getMessage());
     }
   }
 
@@ -0,0 +1,188 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabasePool;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Pool of the sessions used by the graph writer workers. Each worker acquires its session together with a free worker number,
+ * and the vertices and edges it saves are routed to a cluster of their class reserved to that worker number, so concurrent
+ * inserts of different workers never append to the same cluster.
+ * The clusters are added to the vertex and edge classes when the pool is opened, as schema changes can't run concurrently
+ * with the import.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OGraphSessionPool {
+
+  private final ODatabasePool          pool;
+  private final int                    workers;
+  private final Map<String, String[]>  class2workerClusters;   // lower case class name -> cluster of each worker number
+  private final ThreadLocal<Integer>   currentWorker;
+  private final BlockingQueue<Integer> freeWorkers;            // worker numbers not bound to any thread
+
+  /**
+   * Opens the pool and prepares a cluster per worker in each vertex and edge class of the schema.
+   *
+   * @param orientDBInstance
+   * @param dbName
+   * @param orientGraph      session used to prepare the clusters, active on the current thread
+   * @param workers
+   */
+  public OGraphSessionPool(OrientDB orientDBInstance, String dbName, ODatabaseDocument orientGraph, int workers) {
+    this.workers = workers;
+    this.class2workerClusters = new HashMap<String, String[]>();
+    this.currentWorker = new ThreadLocal<Integer>();
+    this.freeWorkers = new LinkedBlockingQueue<Integer>();
+    for (int i = 0; i < workers; i++) {
+      this.freeWorkers.add(i);
+    }
+    this.prepareWorkerClusters(orientGraph);
+    OrientDBConfig config = OrientDBConfig.builder().addConfig(OGlobalConfiguration.DB_POOL_MAX, workers).build();
+    this.pool = new ODatabasePool(orientDBInstance, dbName, "admin", "admin", config);
+  }
+
+  private void prepareWorkerClusters(ODatabaseDocument orientGraph) {
+
+    OSchema schema = orientGraph.getMetadata().getSchema();
+    for (OClass currentClass : schema.getClasses()) {
+      if (currentClass.isAbstract() || !(currentClass.isSubClassOf("V") || currentClass.isSubClassOf("E")) || currentClass
+          .getName().equals("V") || currentClass.getName().equals("E")) {
+        continue;
+      }
+
+      // the clusters already owned by the class are used first, the missing ones are added
+      int[] clusterIds = currentClass.getClusterIds();
+      for (int i = clusterIds.length; i < this.workers; i++) {
+        String clusterName = currentClass.getName().toLowerCase(Locale.ENGLISH) + "_w" + i;
+        int clusterId = orientGraph.getClusterIdByName(clusterName);
+        if (clusterId == -1) {
+          clusterId = orientGraph.addCluster(clusterName);
+        }
+        currentClass.addClusterId(clusterId);
+      }
+
+      clusterIds = currentClass.getClusterIds();
+      Arrays.sort(clusterIds);
+      String[] workerClusters = new String[this.workers];
+      for (int i = 0; i < this.workers; i++) {
+        workerClusters[i] = orientGraph.getClusterNameById(clusterIds[i]);
+      }
+      this.class2workerClusters.put(currentClass.getName().toLowerCase(Locale.ENGLISH), workerClusters);
+    }
+
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\nPrepared %s worker clusters for %s classes.\n", this.workers, this.class2workerClusters.size());
+    }
+  }
+
+  public int getWorkers() {
+    return this.workers;
+  }
+
+  /**
+   * Acquires a session together with a free worker number, bound to the current thread until the session is released.
+   * Waits while all the worker numbers are taken.
+   *
+   * @return the session, active on the current thread
+   */
+  public ODatabaseDocument acquire() {
+    int worker;
+    try {
+      worker = this.freeWorkers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OTeleporterRuntimeException(e);
+    }
+    try {
+      ODatabaseSession session = this.pool.acquire();
+      this.currentWorker.set(worker);
+      return session;
+    } catch (RuntimeException e) {
+      this.freeWorkers.add(worker);
+      throw e;
+    }
+  }
+
+  /**
+   * Gives the session back to the pool and frees the worker number bound to the current thread.
+   *
+   * @param session
+   */
+  public void release(ODatabaseDocument session) {
+    try {
+      session.activateOnCurrentThread();
+      session.close();
+    } finally {
+      Integer worker = this.currentWorker.get();
+      this.currentWorker.remove();
+      if (worker != null) {
+        this.freeWorkers.add(worker);
+      }
+    }
+  }
+
+  /**
+   * @return true if a worker number is bound to the current thread
+   */
+  public boolean isWorkerThread() {
+    return this.currentWorker.get() != null;
+  }
+
+  /**
+   * @param className
+   *
+   * @return the cluster reserved to the worker running on the current thread in the class, null if no worker is running on it
+   * or the class was not prepared
+   */
+  public String getWorkerCluster(String className) {
+    Integer worker = this.currentWorker.get();
+    if (worker == null || className == null) {
+      return null;
+    }
+    String[] workerClusters = this.class2workerClusters.get(className.toLowerCase(Locale.ENGLISH));
+    return workerClusters != null ? workerClusters[worker] : null;
+  }
+
+  public void close() {
+    this.pool.close();
+  }
+
+}
@@ -0,0 +1,406 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterStatistics;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OAttribute;
+import com.orientechnologies.teleporter.model.dbschema.OLogicalRelationship;
+import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
+import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the edges representing a logical relationship with a hash join between the vertex classes of the two entities.
+ * The smaller class is scanned once to build a hash table from the values of the join properties to the vertex ids, then the
+ * other class is streamed and each vertex is connected to the vertices with the same values.
+ * When the hash table would exceed the memory budget, both the classes are partitioned on disk by the hash of the join
+ * values, and the partitions are joined one at a time (grace hash join).
+ * The progress is published through the step-5 counters of the statistics: the vertices of the streamed class are the
+ * "left vertices" of the current logical relationship.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OLogicalRelationshipJoin {
+
+  private static final int  MAX_PARTITIONS = 256;
+  private static final long ENTRY_BYTES    = 112;   // estimated size of an hash table entry with one id, key's chars excluded
+  private static final long ID_BYTES       = 40;    // estimated size of each further id
+
+  private final OGraphEngineForDB graphEngine;
+  private final OER2GraphMapper   mapper;
+  private final long              memoryBudget;
+  private final File              spillDirectory;
+  private final int               batchSize;
+  private       int               pendingEdges;
+
+  /**
+   * Side of the join: a vertex class with the properties mapped from the columns of the relationship.
+   */
+  private static class OJoinSide {
+    private final String   className;
+    private final String[] properties;
+    private final long     count;
+
+    private OJoinSide(String className, String[] properties, long count) {
+      this.className = className;
+      this.properties = properties;
+      this.count = count;
+    }
+  }
+
+  public OLogicalRelationshipJoin(OGraphEngineForDB graphEngine, OER2GraphMapper mapper, long memoryBudget, String spillDirectory,
+      int batchSize) {
+    this.graphEngine = graphEngine;
+    this.mapper = mapper;
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = new File(spillDirectory != null ? spillDirectory : System.getProperty("java.io.tmpdir"));
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Builds the edges of the logical relationship. Edges already present are not duplicated when the edge class is not empty.
+   *
+   * @param orientGraph
+   * @param relationship
+   * @param foreignVertexType the vertex type mapped with the foreign entity
+   * @param parentVertexType  the vertex type mapped with the parent entity
+   */
+  public void execute(ODatabaseDocument orientGraph, OLogicalRelationship relationship, OVertexType foreignVertexType,
+      OVertexType parentVertexType) {
+
+    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
+    OEdgeType edgeType = this.mapper.getRelationship2edgeType().get(relationship);
+    String edgeTypeName = edgeType.getName();
+    boolean inverse = "inverse".equals(relationship.getDirection());
+    boolean transactional = this.batchSize > 1;
+
+    try {
+
+      String[] foreignProperties = new String[relationship.getFromColumns().size()];
+      String[] parentProperties = new String[relationship.getToColumns().size()];
+      int index = 0;
+      for (OAttribute foreignAttribute : relationship.getFromColumns()) {
+        foreignProperties[index] = this.mapper
+            .getPropertyNameByVertexTypeAndAttribute(foreignVertexType, foreignAttribute.getName());
+        parentProperties[index] = this.mapper
+            .getPropertyNameByVertexTypeAndAttribute(parentVertexType, relationship.getToColumns().get(index).getName());
+        index++;
+      }
+      OJoinSide foreignSide = new OJoinSide(foreignVertexType.getName(), foreignProperties,
+          orientGraph.countClass(foreignVertexType.getName()));
+      OJoinSide parentSide = new OJoinSide(parentVertexType.getName(), parentProperties,
+          orientGraph.countClass(parentVertexType.getName()));
+
+      // the hash table is built on the smaller class
+      boolean buildOnParent = parentSide.count <= foreignSide.count;
+      OJoinSide buildSide = buildOnParent ? parentSide : foreignSide;
+      OJoinSide probeSide = buildOnParent ? foreignSide : parentSide;
+      boolean upsert = orientGraph.getMetadata().getSchema().existsClass(edgeTypeName) && orientGraph.countClass(edgeTypeName) > 0;
+
+      statistics.leftVerticesCurrentLogicalRelationship = (int) probeSide.count;
+      statistics.doneLeftVerticesCurrentLogicalRelationship = 0;
+      statistics.notifyListeners();
+
+      if (transactional) {
+        orientGraph.begin();
+      }
+      this.pendingEdges = 0;
+
+      Map<String, List<ORID>> hashTable = this.buildHashTable(orientGraph, buildSide);
+      if (hashTable != null) {
+        for (ODocument probeDocument : orientGraph.browseClass(probeSide.className)) {
+          String key = buildKey(probeDocument, probeSide.properties);
+          List<ORID> matches = key != null ? hashTable.get(key) : null;
+          if (matches != null) {
+            for (ORID buildId : matches) {
+              this.connect(orientGraph, buildOnParent, buildId, probeDocument.getIdentity(), inverse, edgeTypeName, upsert);
+            }
+          }
+          statistics.doneLeftVerticesCurrentLogicalRelationship++;
+        }
+      } else {
+        this.partitionedJoin(orientGraph, buildSide, probeSide, buildOnParent, inverse, edgeTypeName, upsert);
+      }
+
+      if (transactional) {
+        orientGraph.commit();
+      }
+      statistics.doneLeftVerticesCurrentLogicalRelationship = statistics.leftVerticesCurrentLogicalRelationship;
+
+    } catch (Exception e) {
+      if (transactional && orientGraph.getTransaction().isActive()) {
+        orientGraph.rollback();
+      }
+      String mess = "Problem encountered while building the edges of the logical relationship between " + relationship
+          .getForeignEntity().getName() + " and " + relationship.getParentEntity().getName() + ". Edge type: " + edgeTypeName;
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  /**
+   * @return the hash table from the join values to the ids of the vertices, null if it doesn't fit the memory budget
+   */
+  private Map<String, List<ORID>> buildHashTable(ODatabaseDocument orientGraph, OJoinSide buildSide) {
+
+    Map<String, List<ORID>> hashTable = new HashMap<String, List<ORID>>();
+    long estimatedBytes = 0;
+
+    for (ODocument buildDocument : orientGraph.browseClass(buildSide.className)) {
+      String key = buildKey(buildDocument, buildSide.properties);
+      if (key == null) {
+        continue;
+      }
+      List<ORID> ids = hashTable.get(key);
+      if (ids == null) {
+        ids = new ArrayList<ORID>(1);
+        hashTable.put(key, ids);
+        estimatedBytes += ENTRY_BYTES + 2L * key.length();
+      } else {
+        estimatedBytes += ID_BYTES;
+      }
+      ids.add(buildDocument.getIdentity());
+
+      if (estimatedBytes > this.memoryBudget) {
+        return null;
+      }
+    }
+    return hashTable;
+  }
+
+  private void partitionedJoin(ODatabaseDocument orientGraph, OJoinSide buildSide, OJoinSide probeSide, boolean buildOnParent,
+      boolean inverse, String edgeTypeName, boolean upsert) throws IOException {
+
+    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
+
+    // partitions sized to fit the budget assuming the hash table grows linearly with the vertices
+    long estimatedBytes = buildSide.count * (ENTRY_BYTES + 32);
+    int partitions = (int) Math.min(MAX_PARTITIONS, Math.max(2, 2 * (estimatedBytes / Math.max(1, this.memoryBudget) + 1)));
+
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\nHash table of %s exceeds the memory budget: joining on %s partitions.\n", buildSide.className,
+              partitions);
+    }
+
+    File[] buildPartitions = null;
+    File[] probePartitions = null;
+    try {
+      buildPartitions = this.partition(orientGraph, buildSide, partitions);
+      probePartitions = this.partition(orientGraph, probeSide, partitions);
+
+      for (int i = 0; i < partitions; i++) {
+
+        Map<String, List<ORID>> hashTable = new HashMap<String, List<ORID>>();
+        DataInputStream buildInput = openPartition(buildPartitions[i]);
+        try {
+          String key;
+          while ((key = readKey(buildInput)) != null) {
+            ORID id = readId(buildInput);
+            List<ORID> ids = hashTable.get(key);
+            if (ids == null) {
+              ids = new ArrayList<ORID>(1);
+              hashTable.put(key, ids);
+            }
+            ids.add(id);
+          }
+        } finally {
+          buildInput.close();
+        }
+
+        DataInputStream probeInput = openPartition(probePartitions[i]);
+        try {
+          String key;
+          while ((key = readKey(probeInput)) != null) {
+            ORID probeId = readId(probeInput);
+            List<ORID> matches = hashTable.get(key);
+            if (matches != null) {
+              for (ORID buildId : matches) {
+                this.connect(orientGraph, buildOnParent, buildId, probeId, inverse, edgeTypeName, upsert);
+              }
+            }
+            statistics.doneLeftVerticesCurrentLogicalRelationship++;
+          }
+        } finally {
+          probeInput.close();
+        }
+      }
+    } finally {
+      deletePartitions(buildPartitions);
+      deletePartitions(probePartitions);
+    }
+  }
+
+  /**
+   * Writes the join values and the id of each vertex of the class in the partition chosen by the hash of the values.
+   */
+  private File[] partition(ODatabaseDocument orientGraph, OJoinSide side, int partitions) throws IOException {
+
+    File[] files = new File[partitions];
+    DataOutputStream[] outputs = new DataOutputStream[partitions];
+    try {
+      for (int i = 0; i < partitions; i++) {
+        files[i] = File.createTempFile("teleporter-join-", ".spill", this.spillDirectory);
+        outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i]), 1 << 16));
+      }
+
+      for (ODocument document : orientGraph.browseClass(side.className)) {
+        String key = buildKey(document, side.properties);
+        if (key != null) {
+          DataOutputStream output = outputs[(int) ((OOffHeapRidTable.mix(key.hashCode()) & 0x7fffffff) % partitions)];
+          byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+          output.writeInt(keyBytes.length);
+          output.write(keyBytes);
+          output.writeInt(document.getIdentity().getClusterId());
+          output.writeLong(document.getIdentity().getClusterPosition());
+        }
+      }
+    } catch (IOException e) {
+      deletePartitions(files);
+      throw e;
+    } finally {
+      for (DataOutputStream output : outputs) {
+        if (output != null) {
+          output.close();
+        }
+      }
+    }
+    return files;
+  }
+
+  private static DataInputStream openPartition(File file) throws IOException {
+    return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+  }
+
+  private static String readKey(DataInputStream input) throws IOException {
+    int length;
+    try {
+      length = input.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    byte[] keyBytes = new byte[length];
+    input.readFully(keyBytes);
+    return new String(keyBytes, StandardCharsets.UTF_8);
+  }
+
+  private static ORID readId(DataInputStream input) throws IOException {
+    int clusterId = input.readInt();
+    long clusterPosition = input.readLong();
+    return new ORecordId(clusterId, clusterPosition);
+  }
+
+  private static void deletePartitions(File[] files) {
+    if (files != null) {
+      for (File file : files) {
+        if (file != null) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the edge between the matched vertices, from the foreign to the parent vertex unless the relationship is inverse.
+   */
+  private void connect(ODatabaseDocument orientGraph, boolean buildOnParent, ORID buildId, ORID probeId, boolean inverse,
+      String edgeTypeName, boolean upsert) {
+
+    ORID foreignId = buildOnParent ? probeId : buildId;
+    ORID parentId = buildOnParent ? buildId : probeId;
+    OVertex outVertex = OGraphCommands.loadVertex(orientGraph, inverse ? parentId : foreignId);
+    OVertex inVertex = OGraphCommands.loadVertex(orientGraph, inverse ? foreignId : parentId);
+
+    if (upsert) {
+      this.graphEngine.upsertEdge(orientGraph, outVertex, inVertex, edgeTypeName, null, "direct");
+    } else {
+      this.graphEngine.insertEdge(orientGraph, outVertex, inVertex, edgeTypeName, null, "direct");
+    }
+
+    if (this.batchSize > 1 && ++this.pendingEdges >= this.batchSize) {
+      orientGraph.commit();
+      orientGraph.begin();
+      this.pendingEdges = 0;
+    }
+  }
+
+  /**
+   * @return the join values of the vertex, null if any of them is null (the vertex doesn't join)
+   */
+  private static String buildKey(ODocument document, String[] properties) {
+
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < properties.length; i++) {
+      Object value = document.getProperty(properties[i]);
+      if (value == null) {
+        return null;
+      }
+      if (i > 0) {
+        key.append('\u0000');
+      }
+      key.append(normalize(value));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Numbers are compared by value, as the SQL engine does, so an integer property joins a long or decimal one.
+   */
+  private static String normalize(Object value) {
+    if (value instanceof Number) {
+      try {
+        BigDecimal number = new BigDecimal(value.toString());
+        return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+      } catch (NumberFormatException e) {
+        // NaN and infinite values
+      }
+    }
+    return value.toString();
+  }
+}
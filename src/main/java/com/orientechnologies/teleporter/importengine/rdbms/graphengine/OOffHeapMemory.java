@@ -0,0 +1,126 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Allocator of the off-heap segments of the key maps. Segments are allocated as direct buffers until the memory budget is
+ * reached, then as buffers mapped on temporary files in the spill directory, so the amount of keys is bound by the disk and
+ * not by the heap. Spill files are deleted as soon as they're mapped: their space is released when the buffer is
+ * garbage collected.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+final class OOffHeapMemory {
+
+  static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+  private final long            budget;           // bytes of direct memory
+  private final File            spillDirectory;
+  private final Set<ByteBuffer> spilledSegments;
+  private       long            allocatedBytes;
+  private       long            spilledBytes;
+
+  OOffHeapMemory(long budget, String spillDirectory) {
+    this.budget = budget;
+    this.spillDirectory = new File(spillDirectory != null ? spillDirectory : System.getProperty("java.io.tmpdir"));
+    this.spilledSegments = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+  }
+
+  /**
+   * Allocates a zero-filled segment.
+   *
+   * @param bytes at most MAX_SEGMENT_BYTES
+   *
+   * @return
+   */
+  synchronized ByteBuffer allocate(int bytes) {
+
+    if (this.allocatedBytes + bytes <= this.budget) {
+      try {
+        ByteBuffer segment = ByteBuffer.allocateDirect(bytes);
+        this.allocatedBytes += bytes;
+        return segment;
+      } catch (OutOfMemoryError e) {
+        // the direct memory limit of the JVM is lower than the budget
+      }
+    }
+
+    ByteBuffer segment = this.map(bytes);
+    this.spilledSegments.add(segment);
+    this.spilledBytes += bytes;
+    return segment;
+  }
+
+  synchronized void release(ByteBuffer segment) {
+    if (this.spilledSegments.remove(segment)) {
+      this.spilledBytes -= segment.capacity();
+    } else {
+      this.allocatedBytes -= segment.capacity();
+    }
+  }
+
+  synchronized long getAllocatedBytes() {
+    return this.allocatedBytes;
+  }
+
+  synchronized long getSpilledBytes() {
+    return this.spilledBytes;
+  }
+
+  private ByteBuffer map(int bytes) {
+
+    File file = null;
+    RandomAccessFile spillFile = null;
+    try {
+      file = File.createTempFile("teleporter-keys-", ".spill", this.spillDirectory);
+      spillFile = new RandomAccessFile(file, "rw");
+      spillFile.setLength(bytes);
+      return spillFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+    } catch (IOException e) {
+      throw new OTeleporterRuntimeException("Unable to spill the key map in the directory " + this.spillDirectory, e);
+    } finally {
+      if (spillFile != null) {
+        try {
+          spillFile.close();
+        } catch (IOException e) {
+          // the mapping stays valid
+        }
+      }
+      if (file != null && !file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+}
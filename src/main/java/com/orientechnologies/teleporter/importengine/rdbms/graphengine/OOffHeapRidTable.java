@@ -0,0 +1,258 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open addressing hash table (linear probing) stored in off-heap segments, mapping fixed-width keys to record ids.
+ * Keys are either a long (1 word) or a 128 bit fingerprint (2 words). Each slot holds the key words followed by the record
+ * id packed in 10 bytes: the cluster id plus 1 (2 bytes, 0 marks a free slot) and the cluster position (8 bytes).
+ * The capacity is a power of two and doubles when the load exceeds MAX_LOAD; removals shift back the following entries of
+ * the probe sequence, so no tombstone is needed.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+final class OOffHeapRidTable {
+
+  static final int RID_BYTES = 10;
+
+  private static final int   INITIAL_CAPACITY = 1 << 10;  // slots
+  private static final float MAX_LOAD         = 0.7f;
+
+  private final OOffHeapMemory memory;
+  private final int            keyWords;
+  private final int            keyBytes;
+  private final int            slotBytes;
+  private       ByteBuffer[]   segments;
+  private       int            segmentShift;              // log2 of the slots of a segment
+  private       long           capacity;
+  private       long           size;
+
+  OOffHeapRidTable(OOffHeapMemory memory, int keyWords) {
+    this.memory = memory;
+    this.keyWords = keyWords;
+    this.keyBytes = keyWords * 8;
+    this.slotBytes = this.keyBytes + RID_BYTES;
+    this.allocate(INITIAL_CAPACITY);
+  }
+
+  /**
+   * @param key1
+   * @param key2 ignored for 1 word keys
+   * @param vertexId persistent record id
+   */
+  synchronized void put(long key1, long key2, ORID vertexId) {
+
+    long slot = this.findSlot(key1, key2);
+    if (slot < 0) {
+      if (this.size + 1 > this.capacity * MAX_LOAD) {
+        this.grow();
+        slot = this.findSlot(key1, key2);
+      }
+      slot = -slot - 1;
+      this.size++;
+    }
+    this.writeSlot(slot, key1, key2, vertexId.getClusterId(), vertexId.getClusterPosition());
+  }
+
+  /**
+   * @param key1
+   * @param key2     ignored for 1 word keys
+   * @param vertexId persistent record id
+   *
+   * @return true if the key was added, false if it was already present (its record id is left as it is)
+   */
+  synchronized boolean putIfAbsent(long key1, long key2, ORID vertexId) {
+
+    long slot = this.findSlot(key1, key2);
+    if (slot >= 0) {
+      return false;
+    }
+    if (this.size + 1 > this.capacity * MAX_LOAD) {
+      this.grow();
+      slot = this.findSlot(key1, key2);
+    }
+    slot = -slot - 1;
+    this.size++;
+    this.writeSlot(slot, key1, key2, vertexId.getClusterId(), vertexId.getClusterPosition());
+    return true;
+  }
+
+  synchronized ORID get(long key1, long key2) {
+
+    long slot = this.findSlot(key1, key2);
+    if (slot < 0) {
+      return null;
+    }
+    ByteBuffer segment = this.segmentOf(slot);
+    int offset = this.offsetOf(slot);
+    return new ORecordId((segment.getShort(offset + this.keyBytes) & 0xffff) - 1, segment.getLong(offset + this.keyBytes + 2));
+  }
+
+  synchronized boolean remove(long key1, long key2) {
+
+    long slot = this.findSlot(key1, key2);
+    if (slot < 0) {
+      return false;
+    }
+
+    // backward shift: the entries following the removed one are moved back unless their home slot lies between them
+    long mask = this.capacity - 1;
+    long free = slot;
+    long next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      ByteBuffer segment = this.segmentOf(next);
+      int offset = this.offsetOf(next);
+      if (segment.getShort(offset + this.keyBytes) == 0) {
+        break;
+      }
+      long home = this.hash(segment.getLong(offset), this.keyWords > 1 ? segment.getLong(offset + 8) : 0) & mask;
+      boolean inPlace = free <= next ? free < home && home <= next : free < home || home <= next;
+      if (!inPlace) {
+        this.copySlot(next, free);
+        free = next;
+      }
+    }
+    ByteBuffer segment = this.segmentOf(free);
+    segment.putShort(this.offsetOf(free) + this.keyBytes, (short) 0);
+    this.size--;
+    return true;
+  }
+
+  synchronized long size() {
+    return this.size;
+  }
+
+  /**
+   * Releases the segments: the table can't be used afterwards.
+   */
+  synchronized void release() {
+    for (ByteBuffer segment : this.segments) {
+      this.memory.release(segment);
+    }
+    this.segments = new ByteBuffer[0];
+    this.capacity = 0;
+    this.size = 0;
+  }
+
+  /**
+   * @return the slot of the key, or (-slot - 1) where slot is the free slot the key would be placed in
+   */
+  private long findSlot(long key1, long key2) {
+
+    long mask = this.capacity - 1;
+    long slot = this.hash(key1, key2) & mask;
+    while (true) {
+      ByteBuffer segment = this.segmentOf(slot);
+      int offset = this.offsetOf(slot);
+      if (segment.getShort(offset + this.keyBytes) == 0) {
+        return -slot - 1;
+      }
+      if (segment.getLong(offset) == key1 && (this.keyWords == 1 || segment.getLong(offset + 8) == key2)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void grow() {
+
+    ByteBuffer[] oldSegments = this.segments;
+    int oldSegmentShift = this.segmentShift;
+    long oldCapacity = this.capacity;
+
+    this.allocate(oldCapacity << 1);
+    int oldSegmentMask = (1 << oldSegmentShift) - 1;
+    for (long slot = 0; slot < oldCapacity; slot++) {
+      ByteBuffer segment = oldSegments[(int) (slot >>> oldSegmentShift)];
+      int offset = (int) (slot & oldSegmentMask) * this.slotBytes;
+      int clusterId = segment.getShort(offset + this.keyBytes) & 0xffff;
+      if (clusterId != 0) {
+        long key1 = segment.getLong(offset);
+        long key2 = this.keyWords > 1 ? segment.getLong(offset + 8) : 0;
+        this.writeSlot(-this.findSlot(key1, key2) - 1, key1, key2, clusterId - 1, segment.getLong(offset + this.keyBytes + 2));
+      }
+    }
+    for (ByteBuffer segment : oldSegments) {
+      this.memory.release(segment);
+    }
+  }
+
+  private void allocate(long capacity) {
+    int segmentSlots = (int) Math.min(capacity, Integer.highestOneBit(OOffHeapMemory.MAX_SEGMENT_BYTES / this.slotBytes));
+    this.segmentShift = Integer.numberOfTrailingZeros(segmentSlots);
+    this.segments = new ByteBuffer[(int) (capacity / segmentSlots)];
+    for (int i = 0; i < this.segments.length; i++) {
+      this.segments[i] = this.memory.allocate(segmentSlots * this.slotBytes);
+    }
+    this.capacity = capacity;
+  }
+
+  private ByteBuffer segmentOf(long slot) {
+    return this.segments[(int) (slot >>> this.segmentShift)];
+  }
+
+  private int offsetOf(long slot) {
+    return (int) (slot & ((1 << this.segmentShift) - 1)) * this.slotBytes;
+  }
+
+  private void writeSlot(long slot, long key1, long key2, int clusterId, long clusterPosition) {
+    ByteBuffer segment = this.segmentOf(slot);
+    int offset = this.offsetOf(slot);
+    segment.putLong(offset, key1);
+    if (this.keyWords > 1) {
+      segment.putLong(offset + 8, key2);
+    }
+    segment.putShort(offset + this.keyBytes, (short) (clusterId + 1));
+    segment.putLong(offset + this.keyBytes + 2, clusterPosition);
+  }
+
+  private void copySlot(long from, long to) {
+    ByteBuffer source = this.segmentOf(from);
+    int offset = this.offsetOf(from);
+    this.writeSlot(to, source.getLong(offset), this.keyWords > 1 ? source.getLong(offset + 8) : 0,
+        (source.getShort(offset + this.keyBytes) & 0xffff) - 1, source.getLong(offset + this.keyBytes + 2));
+  }
+
+  private long hash(long key1, long key2) {
+    return mix(key1 ^ Long.rotateLeft(key2, 32));
+  }
+
+  /**
+   * Finalization step of MurmurHash3 (64 bit).
+   */
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
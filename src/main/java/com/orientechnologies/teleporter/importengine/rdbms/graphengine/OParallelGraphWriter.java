@@ -0,0 +1,224 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.persistence.util.ORecordSnapshot;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports the records of a result set through several graph writer workers: the result set is read by the calling thread,
+ * and each record is handed, as a snapshot, to the worker owning its routing key. Records with the same key always reach
+ * the same worker, so a vertex is never inserted by two workers at the same time.
+ * Each worker writes through its own session acquired from the session pool (so its inserts go to its own clusters) and
+ * through its own batch writer. Edges between vertices owned by different workers update both the vertices: the conflicts
+ * are detected by the optimistic concurrency control of OrientDB and the element (or the whole batch, when transactional)
+ * is written again.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OParallelGraphWriter {
+
+  private static final int             QUEUE_CAPACITY = 1000;   // records waiting for each worker
+  private static final ORecordSnapshot END_OF_RECORDS = null;
+  private static final int             WORKERS_STOP_TIMEOUT = 60;   // seconds waited for the workers after a failure
+
+  private final OGraphSessionPool sessionPool;
+
+  /**
+   * Builds the importer of a worker, bound to the session of the worker.
+   */
+  public interface ORecordImporterFactory {
+    OGraphBatchWriter.ORecordImporter create(ODatabaseDocument session);
+  }
+
+  public OParallelGraphWriter(OGraphSessionPool sessionPool) {
+    this.sessionPool = sessionPool;
+  }
+
+  /**
+   * Imports all the records of the result set.
+   *
+   * @param records
+   * @param routingColumns  columns whose values route a record to its worker, records are spread round-robin if null
+   * @param importerFactory
+   * @param analyzedRecords number of analyzed records to count for each record
+   *
+   * @throws SQLException
+   */
+  public void importRecords(ResultSet records, String[] routingColumns, final ORecordImporterFactory importerFactory,
+      final int analyzedRecords) throws SQLException {
+
+    final int workers = this.sessionPool.getWorkers();
+    final OTeleporterContext context = OTeleporterContext.getInstance();
+    List<BlockingQueue<ORecordWrapper>> queues = new ArrayList<BlockingQueue<ORecordWrapper>>();
+    List<Future<Void>> workerResults = new ArrayList<Future<Void>>();
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    boolean completed = false;
+
+    try {
+      for (int i = 0; i < workers; i++) {
+        final BlockingQueue<ORecordWrapper> queue = new ArrayBlockingQueue<ORecordWrapper>(QUEUE_CAPACITY);
+        queues.add(queue);
+        workerResults.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            ODatabaseDocument session = sessionPool.acquire();
+            try {
+              OGraphBatchWriter.ORecordImporter importer = importerFactory.create(session);
+              OGraphBatchWriter batchWriter = new OGraphBatchWriter(session);
+              batchWriter.begin();
+              try {
+                ORecordWrapper wrapper = queue.take();
+                while (wrapper.snapshot != END_OF_RECORDS) {
+                  batchWriter.importRecord(wrapper.snapshot.asResultSet(), importer, analyzedRecords);
+                  wrapper = queue.take();
+                }
+                batchWriter.commit();
+              } finally {
+                batchWriter.close();
+              }
+            } finally {
+              sessionPool.release(session);
+            }
+            return null;
+          }
+        }));
+      }
+
+      // reading the records and dispatching them to the workers
+      ResultSetMetaData metaData = records.getMetaData();
+      Map<String, Integer> label2index = ORecordSnapshot.buildLabelIndex(metaData);
+      Object[] routingValues = routingColumns != null ? new Object[routingColumns.length] : null;
+      long dispatched = 0;
+      while (records.next()) {
+        int worker;
+        if (routingValues != null) {
+          for (int i = 0; i < routingColumns.length; i++) {
+            routingValues[i] = records.getString(routingColumns[i]);
+          }
+          worker = (Arrays.hashCode(routingValues) & 0x7fffffff) % workers;
+        } else {
+          worker = (int) (dispatched % workers);
+        }
+        this.dispatch(new ORecordWrapper(ORecordSnapshot.take(records, metaData, label2index)), queues.get(worker), workerResults);
+        dispatched++;
+      }
+      for (int i = 0; i < workers; i++) {
+        this.dispatch(new ORecordWrapper(END_OF_RECORDS), queues.get(i), workerResults);
+      }
+
+      for (Future<Void> workerResult : workerResults) {
+        workerResult.get();
+      }
+      completed = true;
+    } catch (ExecutionException e) {
+      String mess = "Problem encountered by a graph writer worker.";
+      Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      context.printExceptionMessage(cause, mess, "error");
+      context.printExceptionStackTrace(cause, "error");
+      throw new OTeleporterRuntimeException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OTeleporterRuntimeException(e);
+    } catch (SQLException e) {
+      String mess = "Problem encountered while reading the records for the graph writer workers.";
+      context.printExceptionMessage(e, mess, "error");
+      context.printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    } catch (RuntimeException e) {
+      String mess = "Problem encountered while reading the records for the graph writer workers.";
+      context.printExceptionMessage(e, mess, "error");
+      context.printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    } finally {
+      if (completed) {
+        executor.shutdown();
+      } else {
+        // the workers still waiting on their queues are interrupted, so they roll back and release their sessions
+        this.stopWorkers(executor);
+      }
+    }
+  }
+
+  /**
+   * Interrupts the workers and waits for their end, so that no session is still in use when the import fails.
+   */
+  private void stopWorkers(ExecutorService executor) {
+
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(WORKERS_STOP_TIMEOUT, TimeUnit.SECONDS)) {
+        OTeleporterContext.getInstance().getStatistics().warningMessages
+            .add("Some graph writer workers didn't stop within " + WORKERS_STOP_TIMEOUT + " seconds after the failure of the import.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Puts the record in the queue of the worker, waiting while the queue is full. If a worker failed meanwhile, its failure is
+   * raised, so the reading stops.
+   */
+  private void dispatch(ORecordWrapper wrapper, BlockingQueue<ORecordWrapper> queue, List<Future<Void>> workerResults)
+      throws InterruptedException, ExecutionException {
+
+    while (!queue.offer(wrapper, 100, TimeUnit.MILLISECONDS)) {
+      for (Future<Void> workerResult : workerResults) {
+        if (workerResult.isDone()) {
+          workerResult.get();
+        }
+      }
+    }
+  }
+
+  /**
+   * Queue element: the end of the records is signalled by an empty wrapper, as queues don't accept nulls.
+   */
+  private static class ORecordWrapper {
+
+    private final ORecordSnapshot snapshot;
+
+    private ORecordWrapper(ORecordSnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+
+}
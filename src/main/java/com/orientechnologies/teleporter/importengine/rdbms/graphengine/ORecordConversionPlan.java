@@ -0,0 +1,424 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
+import com.orientechnologies.teleporter.model.graphmodel.OModelProperty;
+import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
+import com.orientechnologies.teleporter.persistence.handler.ODBMSDataTypeHandler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Conversion of the source records into the properties of a vertex or edge type, compiled once for the type: the OrientDB
+ * type of each property is resolved and turned into an extractor reading the value through the matching ResultSet getter,
+ * and the source column of each property is resolved through the mapper. The column indexes are bound to the metadata of the
+ * result set the first time a record is read and then reused for all its records, so the values are read by index.
+ * Plans are immutable but for the column binding, which is replaced atomically, so they can be shared by the import workers.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ORecordConversionPlan {
+
+  private final String               typeName;
+  private final String[]             attributeNames;      // source column of each property
+  private final String[]             propertyNames;
+  private final OValueExtractor[]    extractors;          // null for the properties excluded from the migration
+  private final boolean[]            booleanProperties;   // original type is boolean
+  private final Map<String, Integer> property2slot;
+  private volatile OColumnBinding    binding;
+
+  /**
+   * Reads the value of a column into the properties map.
+   */
+  abstract static class OValueExtractor {
+    abstract void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException;
+  }
+
+  /**
+   * Callback notified when the value of a property can't be extracted.
+   */
+  public interface OExtractionErrorHandler {
+    void onError(String propertyName, Exception e);
+  }
+
+  private static class OColumnBinding {
+    private final ResultSet         records;
+    private final ResultSetMetaData metaData;
+    private final int[]             columns;              // 0 if the column is not in the result set
+
+    private OColumnBinding(ResultSet records, ResultSetMetaData metaData, int[] columns) {
+      this.records = records;
+      this.metaData = metaData;
+      this.columns = columns;
+    }
+  }
+
+  private ORecordConversionPlan(String typeName, int size) {
+    this.typeName = typeName;
+    this.attributeNames = new String[size];
+    this.propertyNames = new String[size];
+    this.extractors = new OValueExtractor[size];
+    this.booleanProperties = new boolean[size];
+    this.property2slot = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Compiles the plan of a vertex type: all the properties (inherited included) can be read as keys, the ones included in the
+   * migration are extracted as properties.
+   *
+   * @param vertexType
+   * @param mapper
+   * @param handler
+   *
+   * @return
+   */
+  public static ORecordConversionPlan compile(OVertexType vertexType, OER2GraphMapper mapper, ODBMSDataTypeHandler handler) {
+
+    ORecordConversionPlan plan = new ORecordConversionPlan(vertexType.getName(), vertexType.getAllProperties().size());
+    int slot = 0;
+    for (OModelProperty property : vertexType.getAllProperties()) {
+      String attributeName = mapper.getAttributeNameByVertexTypeAndProperty(vertexType, property.getName());
+      OValueExtractor extractor = null;
+      if (property.isIncludedInMigration()) {
+        extractor = buildExtractor(resolveType(property, handler, false), property.getOriginalType(), handler, false);
+      }
+      plan.setSlot(slot++, property, attributeName, extractor);
+    }
+    return plan;
+  }
+
+  /**
+   * Compiles the plan of an edge type coming from a split entity: the properties included in the migration are extracted.
+   *
+   * @param edgeType
+   * @param mapper
+   * @param handler
+   *
+   * @return
+   */
+  public static ORecordConversionPlan compile(OEdgeType edgeType, OER2GraphMapper mapper, ODBMSDataTypeHandler handler) {
+
+    ORecordConversionPlan plan = new ORecordConversionPlan(edgeType.getName(), edgeType.getAllProperties().size());
+    int slot = 0;
+    for (OModelProperty property : edgeType.getAllProperties()) {
+      String attributeName = mapper.getAttributeNameByEdgeTypeAndProperty(edgeType, property.getName());
+      OValueExtractor extractor = null;
+      if (property.isIncludedInMigration()) {
+        extractor = buildExtractor(resolveType(property, handler, false), property.getOriginalType(), handler, true);
+      }
+      plan.setSlot(slot++, property, attributeName, extractor);
+    }
+    return plan;
+  }
+
+  /**
+   * Compiles the plan of an aggregator edge: all its properties are extracted from the columns of the join table, mapped on
+   * the join vertex type.
+   *
+   * @param edgeType
+   * @param joinVertexType
+   * @param mapper
+   * @param handler
+   *
+   * @return
+   */
+  public static ORecordConversionPlan compile(OEdgeType edgeType, OVertexType joinVertexType, OER2GraphMapper mapper,
+      ODBMSDataTypeHandler handler) {
+
+    ORecordConversionPlan plan = new ORecordConversionPlan(edgeType.getName(), edgeType.getAllProperties().size());
+    int slot = 0;
+    for (OModelProperty property : edgeType.getAllProperties()) {
+      String attributeName = mapper.getAttributeNameByVertexTypeAndProperty(joinVertexType, property.getName());
+      OValueExtractor extractor = buildExtractor(resolveType(property, handler, true), property.getOriginalType(), handler, false);
+      plan.setSlot(slot++, property, attributeName, extractor);
+    }
+    return plan;
+  }
+
+  private void setSlot(int slot, OModelProperty property, String attributeName, OValueExtractor extractor) {
+    this.attributeNames[slot] = attributeName;
+    this.propertyNames[slot] = property.getName();
+    this.extractors[slot] = extractor;
+    this.booleanProperties[slot] = property.getOriginalType().equalsIgnoreCase("boolean");
+    if (!this.property2slot.containsKey(property.getName())) {
+      this.property2slot.put(property.getName(), slot);
+    }
+  }
+
+  public String getTypeName() {
+    return this.typeName;
+  }
+
+  /**
+   * Extracts the properties from the record.
+   *
+   * @param record
+   * @param errorHandler notified of the properties whose value can't be read, which are skipped
+   *
+   * @return the properties, in the order of the type's properties
+   *
+   * @throws SQLException if the result set's metadata can't be read
+   */
+  public Map<String, Object> readProperties(ResultSet record, OExtractionErrorHandler errorHandler) throws SQLException {
+
+    int[] columns = this.bind(record);
+    Map<String, Object> properties = new LinkedHashMap<String, Object>();
+    for (int slot = 0; slot < this.extractors.length; slot++) {
+      OValueExtractor extractor = this.extractors[slot];
+      if (extractor != null) {
+        try {
+          extractor.extract(record, this.column(columns, slot), this.propertyNames[slot], properties);
+        } catch (Exception e) {
+          errorHandler.onError(this.propertyNames[slot], e);
+        }
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Reads the values of the key properties from the record, converting the "t"/"f" booleans in "true"/"false".
+   *
+   * @param record
+   * @param propertyOfKey
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  public String[] readKeyValues(ResultSet record, String[] propertyOfKey) throws SQLException {
+
+    int[] columns = this.bind(record);
+    String[] valueOfKey = new String[propertyOfKey.length];
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      Integer slot = this.property2slot.get(propertyOfKey[i]);
+      if (slot == null) {
+        throw new SQLException("The property " + propertyOfKey[i] + " doesn't belong to the type " + this.typeName);
+      }
+      String currentValue = record.getString(this.column(columns, slot));
+      if (this.booleanProperties[slot] && currentValue != null) {
+        switch (currentValue) {
+        case "t":
+          currentValue = "true";
+          break;
+        case "f":
+          currentValue = "false";
+          break;
+        default:
+          break;
+        }
+      }
+      valueOfKey[i] = currentValue;
+    }
+    return valueOfKey;
+  }
+
+  private int column(int[] columns, int slot) throws SQLException {
+    int column = columns[slot];
+    if (column == 0) {
+      throw new SQLException("Column not found: " + this.attributeNames[slot]);
+    }
+    return column;
+  }
+
+  /**
+   * Returns the indexes of the columns of the properties in the result set. The binding is reused for all the records of the
+   * same result set, and for all the records sharing the same metadata (e.g. the snapshots of a result set's records).
+   */
+  private int[] bind(ResultSet record) throws SQLException {
+
+    OColumnBinding binding = this.binding;
+    if (binding != null && binding.records == record) {
+      return binding.columns;
+    }
+    ResultSetMetaData metaData = record.getMetaData();
+    if (binding != null && binding.metaData == metaData) {
+      return binding.columns;
+    }
+
+    Map<String, Integer> label2index = new HashMap<String, Integer>();
+    for (int i = metaData.getColumnCount(); i >= 1; i--) {
+      // the first column wins when labels are duplicated, as in ResultSet.findColumn()
+      label2index.put(metaData.getColumnLabel(i).toUpperCase(Locale.ENGLISH), i);
+    }
+    int[] columns = new int[this.attributeNames.length];
+    for (int slot = 0; slot < columns.length; slot++) {
+      Integer column = this.attributeNames[slot] != null ? label2index.get(this.attributeNames[slot].toUpperCase(Locale.ENGLISH)) : null;
+      columns[slot] = column != null ? column : 0;
+    }
+    this.binding = new OColumnBinding(record, metaData, columns);
+    return columns;
+  }
+
+  private static OType resolveType(OModelProperty property, ODBMSDataTypeHandler handler, boolean orientdbTypeFirst) {
+
+    if (orientdbTypeFirst && property.getOrientdbType() != null) {
+      try {
+        return OType.valueOf(property.getOrientdbType().toUpperCase(Locale.ENGLISH));
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+    return handler.resolveType(property.getOriginalType().toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Chooses the extractor of a property according to its OrientDB type.
+   *
+   * @param type
+   * @param originalType
+   * @param handler
+   * @param edgeBooleans booleans of the edges keep the source value, the ones of the vertices are set only if "t" or "f"
+   *
+   * @return
+   */
+  private static OValueExtractor buildExtractor(OType type, String originalType, final ODBMSDataTypeHandler handler,
+      final boolean edgeBooleans) {
+
+    if (type != null) {
+      switch (type) {
+      case DATE:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getDate(column));
+          }
+        };
+      case DATETIME:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getTimestamp(column));
+          }
+        };
+      case BINARY:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getBytes(column));
+          }
+        };
+      case BOOLEAN:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            String value = record.getString(column);
+            switch (value) {
+            case "t":
+              properties.put(propertyName, "true");
+              break;
+            case "f":
+              properties.put(propertyName, "false");
+              break;
+            default:
+              break;
+            }
+            if (edgeBooleans) {
+              properties.put(propertyName, value);
+            }
+          }
+        };
+      case EMBEDDED:
+        if (handler.jsonImplemented) {
+          return new OValueExtractor() {
+            @Override
+            void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+              properties.put(propertyName, handler.convertJSONToDocument(propertyName, record.getString(column)));
+            }
+          };
+        }
+        break;
+      case DECIMAL:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getBigDecimal(column));
+          }
+        };
+      case DOUBLE:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getDouble(column));
+          }
+        };
+      case FLOAT:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getFloat(column));
+          }
+        };
+      case INTEGER:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getInt(column));
+          }
+        };
+      case LONG:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getLong(column));
+          }
+        };
+      case SHORT:
+        return new OValueExtractor() {
+          @Override
+          void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+            properties.put(propertyName, record.getShort(column));
+          }
+        };
+      default:
+        break;
+      }
+    }
+
+    if (handler.geospatialImplemented && handler.isGeospatial(originalType)) {
+      return new OValueExtractor() {
+        @Override
+        void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+          // to change with transformation from wkt into embedded
+          properties.put(propertyName, null);
+        }
+      };
+    }
+    return new OValueExtractor() {
+      @Override
+      void extract(ResultSet record, int column, String propertyName, Map<String, Object> properties) throws SQLException {
+        properties.put(propertyName, record.getString(column));
+      }
+    };
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.teleporter.context.OTeleporterStatistics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache mapping the external key of a vertex to its record id, kept for each vertex class.
+ * It's filled when a vertex is inserted or found through a lookup, so the following lookups of the same key (one for each
+ * record plus one for each foreign key of each record) don't hit the database. Each class keeps at most 'capacity' keys,
+ * evicting the least recently used one.
+ * When built with a backing map, all the keys are also stored off-heap in the map: the keys evicted from the per-class caches
+ * are still found there (and moved back to the cache), so the heap usage stays bound while no key is lost.
+ * The cache is shared by all the workers importing in parallel, so all the operations are synchronized.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OVertexKeyCache {
+
+  public static final int DEFAULT_CAPACITY = 100000;   // keys per vertex class
+
+  private final int                            capacity;
+  private final Map<String, Map<String, ORID>> class2cache;
+  private final OTeleporterStatistics          statistics;
+  private final OVertexRidMap                  backingMap;
+
+  public OVertexKeyCache(int capacity, OTeleporterStatistics statistics) {
+    this(capacity, statistics, null);
+  }
+
+  /**
+   * @param capacity
+   * @param statistics
+   * @param backingMap off-heap map storing all the cached keys, null for none
+   */
+  public OVertexKeyCache(int capacity, OTeleporterStatistics statistics, OVertexRidMap backingMap) {
+    this.capacity = capacity;
+    this.class2cache = new HashMap<String, Map<String, ORID>>();
+    this.statistics = statistics;
+    this.backingMap = backingMap;
+  }
+
+  /**
+   * Returns the record id cached for the key, null if not present.
+   *
+   * @param vertexClassName
+   * @param keys
+   * @param values
+   *
+   * @return
+   */
+  public synchronized ORID get(String vertexClassName, String[] keys, String[] values) {
+
+    if (this.capacity <= 0) {
+      return null;
+    }
+
+    ORID vertexId = null;
+    Map<String, ORID> cache = this.class2cache.get(vertexClassName);
+    if (cache != null) {
+      vertexId = cache.get(buildKey(keys, values));
+    }
+    if (vertexId == null && this.backingMap != null) {
+      vertexId = this.backingMap.get(vertexClassName, keys, values);
+      if (vertexId != null) {
+        this.cache(vertexClassName, keys, values, vertexId);
+      }
+    }
+
+    if (vertexId != null) {
+      this.statistics.vertexKeyCacheHits++;
+    } else {
+      this.statistics.vertexKeyCacheMisses++;
+    }
+    return vertexId;
+  }
+
+  public synchronized void put(String vertexClassName, String[] keys, String[] values, ORID vertexId) {
+
+    if (this.capacity <= 0 || !vertexId.isPersistent()) {
+      // temporary ids change when the transaction is committed
+      return;
+    }
+
+    this.cache(vertexClassName, keys, values, vertexId.copy());
+    if (this.backingMap != null) {
+      this.backingMap.put(vertexClassName, keys, values, vertexId);
+    }
+  }
+
+  private void cache(String vertexClassName, String[] keys, String[] values, ORID vertexId) {
+
+    Map<String, ORID> cache = this.class2cache.get(vertexClassName);
+    if (cache == null) {
+      cache = new LinkedHashMap<String, ORID>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ORID> eldest) {
+          return this.size() > capacity;
+        }
+      };
+      this.class2cache.put(vertexClassName, cache);
+    }
+    cache.put(buildKey(keys, values), vertexId);
+  }
+
+  public synchronized void remove(String vertexClassName, String[] keys, String[] values) {
+
+    Map<String, ORID> cache = this.class2cache.get(vertexClassName);
+    if (cache != null) {
+      cache.remove(buildKey(keys, values));
+    }
+    if (this.backingMap != null) {
+      this.backingMap.remove(vertexClassName, keys, values);
+    }
+  }
+
+  /**
+   * Removes all the keys, releasing the memory of the backing map.
+   */
+  public synchronized void clear() {
+    this.class2cache.clear();
+    if (this.backingMap != null) {
+      this.backingMap.clear();
+    }
+  }
+
+  public synchronized int size(String vertexClassName) {
+    Map<String, ORID> cache = this.class2cache.get(vertexClassName);
+    return cache == null ? 0 : cache.size();
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  public OVertexRidMap getBackingMap() {
+    return this.backingMap;
+  }
+
+  /**
+   * Builds the cache key from the property-value pairs sorted by property name, so the same vertex is found whatever
+   * the order of the passed keys (external key of the vertex type or columns of a foreign key).
+   */
+  static String buildKey(final String[] keys, String[] values) {
+
+    if (keys.length == 1) {
+      return keys[0] + '\u0000' + values[0];
+    }
+
+    Integer[] order = new Integer[keys.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i, Integer j) {
+        return keys[i].compareTo(keys[j]);
+      }
+    });
+
+    StringBuilder key = new StringBuilder();
+    for (int i : order) {
+      key.append(keys[i]).append('\u0000').append(values[i]).append('\u0000');
+    }
+    return key.toString();
+  }
+
+}
@@ -0,0 +1,215 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.importengine.rdbms.graphengine;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map from the external key of a vertex to its record id, stored off-heap so it can hold a key for each vertex of the largest
+ * tables. Used in the second phase of a two-phase import to build the edges without looking the vertices up in the graph
+ * database, and as backing store of the vertex key cache.
+ * Keys made of a single integer value are stored as they are in a table of long keys (one for each class and key property);
+ * the other keys (composite or not integer) are hashed to 128 bit fingerprints in a table for each class. The chance of two
+ * different keys sharing a fingerprint is negligible even with billions of keys (about 2^-64 with 4 billion keys).
+ * Record ids are packed in 10 bytes, so a long key takes 18 bytes and a fingerprint 26, plus the free slots of the tables.
+ * Tables are allocated as direct memory up to the memory budget, beyond it they spill to memory-mapped files.
+ * Only persistent ids are stored: the ids of vertices inserted in a transaction must be put after the commit.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OVertexRidMap {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;   // bytes
+
+  private static final int  MAX_LONG_KEY_DIGITS = 18;
+  private static final long FINGERPRINT_SEED_1  = 0x9e3779b97f4a7c15L;
+  private static final long FINGERPRINT_SEED_2  = 0xc2b2ae3d27d4eb4fL;
+
+  private final OOffHeapMemory                 memory;
+  private final Map<String, OOffHeapRidTable> longKeyTables;       // class and key property -> table
+  private final Map<String, OOffHeapRidTable> fingerprintTables;   // class -> table
+
+  /**
+   * @param memoryBudget   max bytes of direct memory, beyond them the map spills to disk
+   * @param spillDirectory directory of the spill files, null for the temporary directory
+   */
+  public OVertexRidMap(long memoryBudget, String spillDirectory) {
+    this.memory = new OOffHeapMemory(memoryBudget, spillDirectory);
+    this.longKeyTables = new ConcurrentHashMap<String, OOffHeapRidTable>();
+    this.fingerprintTables = new ConcurrentHashMap<String, OOffHeapRidTable>();
+  }
+
+  /**
+   * Stores the id of the vertex, temporary ids are ignored.
+   *
+   * @param vertexClassName
+   * @param keys
+   * @param values
+   * @param vertexId
+   */
+  public void put(String vertexClassName, String[] keys, String[] values, ORID vertexId) {
+
+    if (!vertexId.isPersistent()) {
+      return;
+    }
+    if (isLongKey(keys, values)) {
+      this.getTable(this.longKeyTables, vertexClassName + '\u0000' + keys[0], 1, true)
+          .put(Long.parseLong(values[0]), 0, vertexId);
+    } else {
+      String key = OVertexKeyCache.buildKey(keys, values);
+      this.getTable(this.fingerprintTables, vertexClassName, 2, true)
+          .put(fingerprint(key, FINGERPRINT_SEED_1, 31), fingerprint(key, FINGERPRINT_SEED_2, 27), vertexId);
+    }
+  }
+
+  /**
+   * @param vertexClassName
+   * @param keys
+   * @param values
+   *
+   * @return the record id of the vertex, null if not present
+   */
+  public ORID get(String vertexClassName, String[] keys, String[] values) {
+
+    if (isLongKey(keys, values)) {
+      OOffHeapRidTable table = this.getTable(this.longKeyTables, vertexClassName + '\u0000' + keys[0], 1, false);
+      return table != null ? table.get(Long.parseLong(values[0]), 0) : null;
+    }
+    OOffHeapRidTable table = this.getTable(this.fingerprintTables, vertexClassName, 2, false);
+    if (table == null) {
+      return null;
+    }
+    String key = OVertexKeyCache.buildKey(keys, values);
+    return table.get(fingerprint(key, FINGERPRINT_SEED_1, 31), fingerprint(key, FINGERPRINT_SEED_2, 27));
+  }
+
+  public void remove(String vertexClassName, String[] keys, String[] values) {
+
+    if (isLongKey(keys, values)) {
+      OOffHeapRidTable table = this.getTable(this.longKeyTables, vertexClassName + '\u0000' + keys[0], 1, false);
+      if (table != null) {
+        table.remove(Long.parseLong(values[0]), 0);
+      }
+      return;
+    }
+    OOffHeapRidTable table = this.getTable(this.fingerprintTables, vertexClassName, 2, false);
+    if (table != null) {
+      String key = OVertexKeyCache.buildKey(keys, values);
+      table.remove(fingerprint(key, FINGERPRINT_SEED_1, 31), fingerprint(key, FINGERPRINT_SEED_2, 27));
+    }
+  }
+
+  public long size() {
+    long size = 0;
+    for (OOffHeapRidTable table : this.longKeyTables.values()) {
+      size += table.size();
+    }
+    for (OOffHeapRidTable table : this.fingerprintTables.values()) {
+      size += table.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return bytes of direct memory allocated by the map
+   */
+  public long getAllocatedBytes() {
+    return this.memory.getAllocatedBytes();
+  }
+
+  /**
+   * @return bytes of the map spilled to memory-mapped files
+   */
+  public long getSpilledBytes() {
+    return this.memory.getSpilledBytes();
+  }
+
+  /**
+   * Removes all the keys, releasing their memory.
+   */
+  public synchronized void clear() {
+    for (OOffHeapRidTable table : this.longKeyTables.values()) {
+      table.release();
+    }
+    for (OOffHeapRidTable table : this.fingerprintTables.values()) {
+      table.release();
+    }
+    this.longKeyTables.clear();
+    this.fingerprintTables.clear();
+  }
+
+  private OOffHeapRidTable getTable(Map<String, OOffHeapRidTable> tables, String name, int keyWords, boolean create) {
+
+    OOffHeapRidTable table = tables.get(name);
+    if (table == null && create) {
+      synchronized (this) {
+        table = tables.get(name);
+        if (table == null) {
+          table = new OOffHeapRidTable(this.memory, keyWords);
+          tables.put(name, table);
+        }
+      }
+    }
+    return table;
+  }
+
+  /**
+   * A key is stored as a long when it's made of a single value written as a canonical integer (no sign '+', no leading
+   * zeros), so that the value can be rebuilt from the long.
+   */
+  private static boolean isLongKey(String[] keys, String[] values) {
+
+    if (keys.length != 1 || values[0] == null) {
+      return false;
+    }
+    String value = values[0];
+    int start = value.startsWith("-") ? 1 : 0;
+    int digits = value.length() - start;
+    if (digits == 0 || digits > MAX_LONG_KEY_DIGITS || (value.charAt(start) == '0' && (digits > 1 || start > 0))) {
+      return false;
+    }
+    for (int i = start; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 64 bit hash of the key, two of them with different seeds and rotations make the 128 bit fingerprint.
+   */
+  private static long fingerprint(String key, long seed, int rotation) {
+    long h = seed ^ key.length();
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= seed | 1;
+      h = Long.rotateLeft(h, rotation);
+    }
+    return OOffHeapRidTable.mix(h);
+  }
+
+}
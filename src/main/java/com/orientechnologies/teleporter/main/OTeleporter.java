@@ -33,6 +33,7 @@ import com.orientechnologies.orient.server.network.OServerNetworkListener;
 import com.orientechnologies.orient.server.network.protocol.http.ONetworkProtocolHttpAbstract;
 import com.orientechnologies.orient.server.plugin.OServerPluginAbstract;
 import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterSettings;
 import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
 import com.orientechnologies.teleporter.exception.OTeleporterIOException;
 import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
@@ -170,6 +171,19 @@ public class OTeleporter extends OServerPluginAbstract {
       throw new OTeleporterIOException();
     }
 
+    OTeleporterSettings settings;
+    try {
+      settings = OTeleporterSettings.fromArguments(arguments);
+    } catch (IllegalArgumentException e) {
+      messageHandler.error(OTeleporter.class,
+          e.getMessage() + ". Use '-batchsize <records>', '-batchbytes <bytes>' and '-keymapmemory <bytes>' with "
+              + "non-negative integer values, '-writers <workers>' and '-introspectionthreads <n>' with positive integer values, "
+              + "'-twophase <true|false>', '-fresh <true|false>', '-deferindexes <true|false>', '-exactcount <true|false>', "
+              + "'-propagatedeletes <true|false>', '-resume <true|false>', '-fingerprints <true|false>', '-spilldir <path>' with an "
+              + "existing directory.\n");
+      throw new OTeleporterIOException(e);
+    }
+
     if (arguments.get("-conf") != null) {
       File file = new File(arguments.get("-conf"));
       try {
@@ -218,7 +232,7 @@ public class OTeleporter extends OServerPluginAbstract {
 
     OTeleporter
         .execute(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver, outputLevel,
-            includedTables, excludedTables, configurationPath, messageHandler);
+            includedTables, excludedTables, configurationPath, messageHandler, settings);
   }
 
   /**
@@ -243,6 +257,22 @@ public class OTeleporter extends OServerPluginAbstract {
       String chosenMapper, String xmlPath, String nameResolver, String outputLevel, List<String> includedTables,
       List<String> excludedTables, String configurationPath, OPluginMessageHandler messageHandler) throws OTeleporterIOException {
 
+    execute(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver, outputLevel,
+        includedTables, excludedTables, configurationPath, messageHandler, new OTeleporterSettings());
+  }
+
+  /**
+   * Executes the import of the source DB in a OrientDB Graph applying the passed tuning settings.
+   *
+   * @param settings tuning settings of the job (e.g. size of the transactional batches)
+   * @throws OTeleporterIOException
+   */
+
+  public static void execute(String driver, String jurl, String username, String password, String outDbUrl, String chosenStrategy,
+      String chosenMapper, String xmlPath, String nameResolver, String outputLevel, List<String> includedTables,
+      List<String> excludedTables, String configurationPath, OPluginMessageHandler messageHandler, OTeleporterSettings settings)
+      throws OTeleporterIOException {
+
     // trying to load the configuration starting from the input configurationPath
     ODocument migrationConfigDoc = null;
     String jsonMigrationConfig = null;
@@ -258,7 +288,7 @@ public class OTeleporter extends OServerPluginAbstract {
     }
 
     executeJob(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver, outputLevel,
-        includedTables, excludedTables, jsonMigrationConfig, messageHandler, null);
+        includedTables, excludedTables, jsonMigrationConfig, messageHandler, null, settings);
   }
 
   /**
@@ -284,6 +314,22 @@ public class OTeleporter extends OServerPluginAbstract {
       List<String> includedTables, List<String> excludedTables, String jsonMigrationConfig, OPluginMessageHandler messageHandler,
       OrientDB orientDBInstance) throws OTeleporterIOException {
 
+    return executeJob(driver, jurl, username, password, outDbUrl, chosenStrategy, chosenMapper, xmlPath, nameResolver, outputLevel,
+        includedTables, excludedTables, jsonMigrationConfig, messageHandler, orientDBInstance, new OTeleporterSettings());
+  }
+
+  /**
+   * Executes the import of the source DB in a OrientDB Graph applying the passed tuning settings.
+   *
+   * @param settings tuning settings of the job (e.g. size of the transactional batches)
+   * @throws OTeleporterIOException
+   */
+
+  public static ODocument executeJob(String driver, String jurl, String username, String password, String outDbUrl,
+      String chosenStrategy, String chosenMapper, String xmlPath, String nameResolver, String outputLevel,
+      List<String> includedTables, List<String> excludedTables, String jsonMigrationConfig, OPluginMessageHandler messageHandler,
+      OrientDB orientDBInstance, OTeleporterSettings settings) throws OTeleporterIOException {
+
     // REGISTER THE BINARY RECORD SERIALIZER TO SUPPORT ANY OF THE EXTERNAL FIELDS
     ORecordSerializerFactory.instance().register("ORecordSerializerBinary", new ORecordSerializerBinary());
 
@@ -319,6 +365,9 @@ public class OTeleporter extends OServerPluginAbstract {
       OTeleporterContext.newInstance(orientDBInstance);
     }
     OTeleporterContext.getInstance().setMessageHandler(messageHandler);
+    if (settings != null) {
+      settings.applyTo(OTeleporterContext.getInstance());
+    }
 
     /**
      * Checking if the execution is allowed:
@@ -462,7 +511,7 @@ public class OTeleporter extends OServerPluginAbstract {
 
     } finally {
       timer.cancel();
-
+      OTeleporterContext.getInstance().closeSourceConnectionPools();
     }
     return executionResult;
   }
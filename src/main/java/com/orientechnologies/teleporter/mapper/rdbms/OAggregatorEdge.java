@@ -21,13 +21,16 @@
 package com.orientechnologies.teleporter.mapper.rdbms;
 
 import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
+import com.orientechnologies.teleporter.util.OChangeNotifier;
 
 /**
  * @author Gabriele Ponzi
  * @email <g.ponzi--at--orientdb.com>
  */
 
-public class OAggregatorEdge {
+public class OAggregatorEdge implements OChangeNotifier.ONotifyingElement {
+
+  private final OChangeNotifier changeNotifier = new OChangeNotifier();   // notifies its changes to the lists and indexes containing it
 
   private String    outVertexClassName;
   private String    inVertexClassName;
@@ -61,6 +64,12 @@ public class OAggregatorEdge {
 
   public void setEdgeType(OEdgeType edgeType) {
     this.edgeType = edgeType;
+    this.changeNotifier.notifyChange();
+  }
+
+  @Override
+  public OChangeNotifier getChangeNotifier() {
+    return this.changeNotifier;
   }
 
 }
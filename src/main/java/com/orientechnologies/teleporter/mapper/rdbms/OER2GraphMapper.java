@@ -25,7 +25,6 @@ import com.orientechnologies.teleporter.configuration.api.*;
 import com.orientechnologies.teleporter.context.OTeleporterContext;
 import com.orientechnologies.teleporter.context.OTeleporterStatistics;
 import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
-import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
 import com.orientechnologies.teleporter.mapper.OSource2GraphMapper;
 import com.orientechnologies.teleporter.mapper.rdbms.classmapper.OEEClassMapper;
 import com.orientechnologies.teleporter.mapper.rdbms.classmapper.OEVClassMapper;
@@ -33,11 +32,12 @@ import com.orientechnologies.teleporter.model.dbschema.*;
 import com.orientechnologies.teleporter.model.graphmodel.*;
 import com.orientechnologies.teleporter.nameresolver.ONameResolver;
 import com.orientechnologies.teleporter.persistence.util.ODBSourceConnection;
-import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+import com.orientechnologies.teleporter.util.OChangeNotifier;
 
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementation of OSource2GraphMapper that manages the source DB schema and the destination graph model with their
@@ -65,6 +65,14 @@ public class OER2GraphMapper extends OSource2GraphMapper {
   protected Map<OEdgeType, LinkedList<ORelationship>> edgeType2relationships;
   protected Map<String, Integer>                      edgeTypeName2count;
   protected Map<OVertexType, OAggregatorEdge>         joinVertex2aggregatorEdges;
+  private volatile OAggregatorEdgeIndex               aggregatorEdgeIndex;
+  private final AtomicLong                            aggregatorEdgeChanges = new AtomicLong();
+  private final OChangeNotifier.OChangeListener       aggregatorEdgeListener = new OChangeNotifier.OChangeListener() {
+    @Override
+    public void elementChanged() {
+      aggregatorEdgeChanges.incrementAndGet();
+    }
+  };
 
   // filters
   protected List<String> includedTables;
@@ -75,6 +83,42 @@ public class OER2GraphMapper extends OSource2GraphMapper {
 
   public final int DEFAULT_CLASS_MAPPER_INDEX = 0;
 
+  /**
+   * Join vertex types and aggregator edges indexed by name, valid as long as the joinVertex2aggregatorEdges map and its elements
+   * (names of the types, edge types of the aggregator edges) are unchanged.
+   */
+  private static class OAggregatorEdgeIndex {
+
+    private final Map<OVertexType, OAggregatorEdge> joinVertex2aggregatorEdges;
+    private final int                               size;
+    private final long                              changes;
+    private final Map<String, OAggregatorEdge>      joinVertexTypeName2aggregatorEdge;
+    private final Map<String, OVertexType>          edgeTypeName2joinVertexType;
+    private final Map<String, OAggregatorEdge>      edgeTypeName2aggregatorEdge;
+
+    private OAggregatorEdgeIndex(Map<OVertexType, OAggregatorEdge> joinVertex2aggregatorEdges, long changes) {
+      this.joinVertex2aggregatorEdges = joinVertex2aggregatorEdges;
+      this.size = joinVertex2aggregatorEdges.size();
+      this.changes = changes;
+      this.joinVertexTypeName2aggregatorEdge = new HashMap<String, OAggregatorEdge>();
+      this.edgeTypeName2joinVertexType = new HashMap<String, OVertexType>();
+      this.edgeTypeName2aggregatorEdge = new HashMap<String, OAggregatorEdge>();
+
+      // the first entry wins, as in the linear scans the index replaces
+      for (Map.Entry<OVertexType, OAggregatorEdge> entry : joinVertex2aggregatorEdges.entrySet()) {
+        String joinVertexTypeName = entry.getKey().getName();
+        String edgeTypeName = entry.getValue().getEdgeType().getName();
+        if (!this.joinVertexTypeName2aggregatorEdge.containsKey(joinVertexTypeName)) {
+          this.joinVertexTypeName2aggregatorEdge.put(joinVertexTypeName, entry.getValue());
+        }
+        if (!this.edgeTypeName2joinVertexType.containsKey(edgeTypeName)) {
+          this.edgeTypeName2joinVertexType.put(edgeTypeName, entry.getKey());
+          this.edgeTypeName2aggregatorEdge.put(edgeTypeName, entry.getValue());
+        }
+      }
+    }
+  }
+
   public OER2GraphMapper(OSourceDatabaseInfo sourceDatabaseInfo, List<String> includedTables, List<String> excludedTables,
       OConfiguration migrationConfig) {
 
@@ -239,13 +283,21 @@ public class OER2GraphMapper extends OSource2GraphMapper {
        *  Entity building
        */
 
-      int numberOfTables = this.buildEntities(databaseMetaData, connection);
+      OSchemaIntrospector introspector = new OSchemaIntrospector(this.sourceDBInfo,
+          OTeleporterContext.getInstance().getSchemaIntrospectionThreads());
+      if (introspector.getThreads() > 1
+          && OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .debug(this, "\nReading the metadata of the tables with %s threads.\n", introspector.getThreads());
+      }
+
+      int numberOfTables = this.buildEntities(databaseMetaData, introspector);
 
       /*
        *  Building Out-relationships
        */
 
-      buildOutRelationships(databaseMetaData, numberOfTables);
+      buildOutRelationships(databaseMetaData, introspector, numberOfTables);
 
 
       /*
@@ -260,30 +312,12 @@ public class OER2GraphMapper extends OSource2GraphMapper {
       OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
       throw new OTeleporterRuntimeException(e);
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (SQLException e) {
-        String mess = "";
-        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-        OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
-      }
-    }
-
-    try {
-      if (connection.isClosed()) {
+      if (connection != null) {
+        ODBSourceConnection.releaseConnection(sourceDBInfo, connection);
         if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
-          OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nConnection to DB closed.\n");
+          OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nConnection to DB released.\n");
         }
       }
-      else {
-        statistics.warningMessages.add("\nConnection to DB not closed.\n");
-      }
-    } catch (SQLException e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
     }
     statistics.notifyListeners();
     statistics.runningStepNumber = -1;
@@ -293,15 +327,17 @@ public class OER2GraphMapper extends OSource2GraphMapper {
    * MICRO EXECUTION BLOCK: BUILD SOURCE DATABASE SCHEMA - BUILD ENTITIES
    * Builds the Entities starting from the source database metadata.
    *
+   * The metadata of the tables are read through the introspector, then the entities are built in the order of the tables.
+   *
    * @param databaseMetaData
-   * @param sourceDBConnection
+   * @param introspector
    *
    * @return
    *
    * @throws SQLException
    */
 
-  private int buildEntities(DatabaseMetaData databaseMetaData, Connection sourceDBConnection) throws SQLException {
+  private int buildEntities(DatabaseMetaData databaseMetaData, OSchemaIntrospector introspector) throws SQLException {
 
     OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
     Map<String, String> tablesName2schema = new LinkedHashMap<String, String>();
@@ -339,9 +375,9 @@ public class OER2GraphMapper extends OSource2GraphMapper {
       OTeleporterContext.getInstance().getMessageHandler().debug(this, "\n%s tables found.\n", numberOfTables);
     }
 
-    // Variables for records counting
-    Statement statement = sourceDBConnection.createStatement();
-    ODBQueryEngine dbQueryEngine = OTeleporterContext.getInstance().getDbQueryEngine();
+    // Reading record counts, columns and primary keys of the tables
+    Map<String, OSchemaIntrospector.OTableMetadata> tableName2metadata = introspector
+        .fetchTables(databaseMetaData, tablesName2schema, tableSchemaPattern);
     int totalNumberOfRecord = 0;
 
     int iteration = 1;
@@ -352,39 +388,20 @@ public class OER2GraphMapper extends OSource2GraphMapper {
             .debug("\nBuilding '%s' entity (%s/%s)...\n", currentTableName, iteration, numberOfTables);
       }
 
-      // Counting current-table's record
       String currentTableSchema = tablesName2schema.get(currentTableName);
-      String sql;
-
-      OQueryResult result = dbQueryEngine.countTableRecords(sourceDBInfo, currentTableName, currentTableSchema);
-
-      ResultSet currentTableRecordAmount = result.getResult();
-      if (currentTableRecordAmount.next()) {
-        totalNumberOfRecord += currentTableRecordAmount.getInt(1);
-      }
-      this.closeCursor(currentTableRecordAmount);
+      OSchemaIntrospector.OTableMetadata currentTableMetadata = tableName2metadata.get(currentTableName);
+      totalNumberOfRecord += currentTableMetadata.getRecordCount();
 
       // creating entity
       OEntity currentEntity = new OEntity(currentTableName, currentTableSchema, this.sourceDBInfo);
 
       // adding attributes and primary keys
       OPrimaryKey pKey = new OPrimaryKey(currentEntity);
+      List<String> currentPrimaryKeys = currentTableMetadata.getPrimaryKeyColumns();
 
-      String columnCatalog = null;
-      String columnSchemaPattern = null;
-      String columnNamePattern = null;
-      String primaryKeyCatalog = null;
-      String primaryKeySchema = currentTableSchema;
-
-      ResultSet resultColumns = databaseMetaData
-          .getColumns(columnCatalog, columnSchemaPattern, currentTableName, columnNamePattern);
-      ResultSet resultPrimaryKeys = databaseMetaData.getPrimaryKeys(primaryKeyCatalog, primaryKeySchema, currentTableName);
-
-      List<String> currentPrimaryKeys = this.getPrimaryKeysFromResulset(resultPrimaryKeys);
-
-      while (resultColumns.next()) {
-        OAttribute currentAttribute = new OAttribute(resultColumns.getString("COLUMN_NAME"),
-            resultColumns.getInt("ORDINAL_POSITION"), resultColumns.getString("TYPE_NAME"), currentEntity);
+      for (OSchemaIntrospector.OColumnMetadata column : currentTableMetadata.getColumns()) {
+        OAttribute currentAttribute = new OAttribute(column.getName(), column.getOrdinalPosition(), column.getTypeName(),
+            currentEntity);
         currentEntity.addAttribute(currentAttribute);
 
         // if the current attribute is involved in the primary key, it will be added to the attributes of pKey.
@@ -392,8 +409,6 @@ public class OER2GraphMapper extends OSource2GraphMapper {
           pKey.addAttribute(currentAttribute);
         }
       }
-      this.closeCursor(resultColumns);
-      this.closeCursor(resultPrimaryKeys);
 
       currentEntity.setPrimaryKey(pKey);
 
@@ -413,7 +428,6 @@ public class OER2GraphMapper extends OSource2GraphMapper {
       statistics.builtEntities++;
       statistics.totalNumberOfRecords = totalNumberOfRecord;
     }
-    statement.close();
 
     return numberOfTables;
   }
@@ -423,39 +437,40 @@ public class OER2GraphMapper extends OSource2GraphMapper {
    * Builds the references to the "Out Relationships" starting from the source database metadata.
    *
    * @param databaseMetaData
+   * @param introspector
    * @param numberOfTables
    *
    * @throws SQLException
    */
 
-  private void buildOutRelationships(DatabaseMetaData databaseMetaData, int numberOfTables) throws SQLException {
+  private void buildOutRelationships(DatabaseMetaData databaseMetaData, OSchemaIntrospector introspector, int numberOfTables)
+      throws SQLException {
 
     OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
 
+    // Reading the imported keys of all the entities
+    Map<OEntity, List<LinkedHashMap<String, String>>> entity2foreignKeys = introspector
+        .fetchImportedKeys(databaseMetaData, this.dataBaseSchema.getEntities());
+
     int iteration = 1;
     for (OEntity currentForeignEntity : this.dataBaseSchema.getEntities()) {
 
       String currentForeignEntityName = currentForeignEntity.getName();
-      String foreignSchema = currentForeignEntity.getSchemaName();
       if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
         OTeleporterContext.getInstance().getMessageHandler()
             .debug("\nBuilding OUT relationships starting from '%s' entity (%s/%s)...\n", currentForeignEntityName, iteration,
                 numberOfTables);
       }
 
-      String foreignCatalog = null;
-      ResultSet resultForeignKeys = databaseMetaData.getImportedKeys(foreignCatalog, foreignSchema, currentForeignEntityName);
-
-      // copy of Resultset in a HashLinkedMap
-      List<LinkedHashMap<String, String>> currentEntityRelationships1 = this.fromResultSetToList(resultForeignKeys);
+      // copy of the imported keys, filtered according to "include/exclude-lists"
+      List<LinkedHashMap<String, String>> currentEntityRelationships1 = this
+          .filterForeignKeys(entity2foreignKeys.get(currentForeignEntity));
       List<LinkedHashMap<String, String>> currentEntityRelationships2 = new LinkedList<LinkedHashMap<String, String>>();
 
       for (LinkedHashMap<String, String> row : currentEntityRelationships1) {
         currentEntityRelationships2.add(row);
       }
 
-      this.closeCursor(resultForeignKeys);
-
       Iterator<LinkedHashMap<String, String>> it1 = currentEntityRelationships1.iterator();
       Iterator<LinkedHashMap<String, String>> it2 = currentEntityRelationships2.iterator();
 
@@ -535,16 +550,6 @@ public class OER2GraphMapper extends OSource2GraphMapper {
     }
   }
 
-  private List<String> getPrimaryKeysFromResulset(ResultSet resultPrimaryKeys) throws SQLException {
-
-    List<String> currentPrimaryKeys = new LinkedList<String>();
-
-    while (resultPrimaryKeys.next()) {
-      currentPrimaryKeys.add(resultPrimaryKeys.getString(4));
-    }
-    return currentPrimaryKeys;
-  }
-
   /**
    * @param result
    */
@@ -561,34 +566,16 @@ public class OER2GraphMapper extends OSource2GraphMapper {
 
 
   /*
-   * Transforms a ResultSet in a List, filtering relationships according to "include/exclude-lists"
+   * Filters the imported keys according to "include/exclude-lists"
    */
 
-  private List<LinkedHashMap<String, String>> fromResultSetToList(ResultSet resultForeignKeys) {
+  private List<LinkedHashMap<String, String>> filterForeignKeys(List<LinkedHashMap<String, String>> foreignKeys) {
 
     List<LinkedHashMap<String, String>> rows = new LinkedList<LinkedHashMap<String, String>>();
-
-    try {
-      int columnsAmount = resultForeignKeys.getMetaData().getColumnCount();
-
-      while (resultForeignKeys.next()) {
-
-        if (this.isTableAllowed(resultForeignKeys.getString("pktable_name"))
-            && this.dataBaseSchema.getEntityByName(resultForeignKeys.getString("pktable_name")) != null) {
-          //          if(this.isTableAllowed(resultForeignKeys.getString("pktable_name")) && this.dataBaseSchema.getEntityByName(resultForeignKeys.getString("pktable_name")) != null) {
-
-          LinkedHashMap<String, String> row = new LinkedHashMap<String, String>();
-          for (int i = 1; i <= columnsAmount; i++) {
-            row.put(resultForeignKeys.getMetaData().getColumnName(i).toLowerCase(Locale.ENGLISH), resultForeignKeys.getString(i));
-          }
-          rows.add(row);
-        }
+    for (LinkedHashMap<String, String> row : foreignKeys) {
+      if (this.isTableAllowed(row.get("pktable_name")) && this.dataBaseSchema.getEntityByName(row.get("pktable_name")) != null) {
+        rows.add(row);
       }
-    } catch (SQLException e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
     }
     return rows;
   }
@@ -903,6 +890,7 @@ public class OER2GraphMapper extends OSource2GraphMapper {
           String currSourceIdName = currentSourceTable.getSourceIdName();
           String currTableName = currentSourceTable.getTableName();
           sourceId2tableName.put(currSourceIdName, currTableName);
+          this.applySourceTableOptions(currentSourceTable);
         }
 
         // no-aggregation case
@@ -933,6 +921,30 @@ public class OER2GraphMapper extends OSource2GraphMapper {
     }
   }
 
+  /**
+   * Copies the per-table import options stated in the migration config (e.g. fetch size, partitions) on the correspondent entity.
+   *
+   * @param sourceTable
+   */
+  private void applySourceTableOptions(OSourceTable sourceTable) {
+
+    OEntity entity = this.dataBaseSchema.getEntityByName(sourceTable.getTableName());
+    if (entity != null) {
+      if (sourceTable.getFetchSize() != null) {
+        entity.setFetchSize(sourceTable.getFetchSize());
+      }
+      if (sourceTable.getPartitions() != null) {
+        entity.setPartitions(sourceTable.getPartitions());
+      }
+      if (sourceTable.getWatermarkColumn() != null) {
+        entity.setWatermarkColumn(sourceTable.getWatermarkColumn());
+      }
+      if (sourceTable.getChangeCapture() != null) {
+        entity.setChangeCapture(sourceTable.getChangeCapture());
+      }
+    }
+  }
+
   private void performOne2OneMapping(Map<String, String> sourceId2tableName, OConfiguredVertexClass currentConfiguredVertexClass,
       List<String> externalKeyProps) {
 
@@ -1988,6 +2000,7 @@ public class OER2GraphMapper extends OSource2GraphMapper {
         // adding entry to the map
         this.joinVertex2aggregatorEdges
             .put(currentVertexType, new OAggregatorEdge(outVertexType.getName(), inVertexType.getName(), newAggregatorEdge));
+        this.aggregatorEdgeIndex = null;
 
         // removing old vertex
         it.remove();
@@ -2061,6 +2074,59 @@ public class OER2GraphMapper extends OSource2GraphMapper {
     }
   }
 
+  /**
+   * Returns the columns of the entity that are actually read while importing its records into the vertex type: the
+   * attributes mapped with the external key and with the properties included in the migration, plus the foreign key
+   * columns needed to build the edges of the outgoing canonical relationships.
+   * If a needed attribute doesn't belong to the entity the projection can't be built and null is returned, so that all the
+   * columns are fetched.
+   *
+   * @param entity
+   * @param vertexType
+   *
+   * @return the projected columns, in the order of the entity's attributes, or null
+   */
+  public List<String> getProjectedAttributes(OEntity entity, OVertexType vertexType) {
+
+    Set<String> neededAttributes = new HashSet<String>();
+
+    for (String keyProperty : vertexType.getExternalKey()) {
+      String attributeName = this.getAttributeNameByVertexTypeAndProperty(vertexType, keyProperty);
+      if (attributeName == null) {
+        return null;
+      }
+      neededAttributes.add(attributeName);
+    }
+
+    for (OModelProperty currentProperty : vertexType.getAllProperties()) {
+      if (currentProperty.isIncludedInMigration()) {
+        String attributeName = this.getAttributeNameByVertexTypeAndProperty(vertexType, currentProperty.getName());
+        if (attributeName == null) {
+          return null;
+        }
+        neededAttributes.add(attributeName);
+      }
+    }
+
+    for (OCanonicalRelationship currentRelationship : entity.getOutCanonicalRelationships()) {
+      for (OAttribute foreignAttribute : currentRelationship.getFromColumns()) {
+        neededAttributes.add(foreignAttribute.getName());
+      }
+    }
+
+    List<String> projection = new ArrayList<String>();
+    for (OAttribute currentAttribute : entity.getAttributes()) {
+      if (neededAttributes.remove(currentAttribute.getName())) {
+        projection.add(currentAttribute.getName());
+      }
+    }
+
+    if (!neededAttributes.isEmpty() || projection.isEmpty()) {
+      return null;
+    }
+    return projection;
+  }
+
   public String getAttributeNameByVertexTypeAndProperty(OVertexType vertexType, String propertyName) {
 
     String attributeName = null;
@@ -2158,47 +2224,37 @@ public class OER2GraphMapper extends OSource2GraphMapper {
    */
 
   public OVertexType getJoinVertexTypeByAggregatorEdge(String edgeType) {
-
-    for (Map.Entry<OVertexType, OAggregatorEdge> entry : this.joinVertex2aggregatorEdges.entrySet()) {
-      if (entry.getValue().getEdgeType().getName().equals(edgeType)) {
-        OVertexType joinVertexType = entry.getKey();
-        return joinVertexType;
-      }
-    }
-    return null;
+    return this.getAggregatorEdgeIndex().edgeTypeName2joinVertexType.get(edgeType);
   }
 
   public OAggregatorEdge getAggregatorEdgeByJoinVertexTypeName(String vertexTypeName) {
-
-    for (OVertexType currentVertexType : this.joinVertex2aggregatorEdges.keySet()) {
-      if (currentVertexType.getName().equals(vertexTypeName)) {
-        return this.joinVertex2aggregatorEdges.get(currentVertexType);
-      }
-    }
-    return null;
+    return this.getAggregatorEdgeIndex().joinVertexTypeName2aggregatorEdge.get(vertexTypeName);
   }
 
   public OAggregatorEdge getAggregatorEdgeByEdgeTypeName(String edgeTypeName) {
+    return this.getAggregatorEdgeIndex().edgeTypeName2aggregatorEdge.get(edgeTypeName);
+  }
+
+  private OAggregatorEdgeIndex getAggregatorEdgeIndex() {
 
-    for (OAggregatorEdge currAggregatorEdge : this.joinVertex2aggregatorEdges.values()) {
-      if (currAggregatorEdge.getEdgeType().getName().equals(edgeTypeName)) {
-        return currAggregatorEdge;
+    OAggregatorEdgeIndex index = this.aggregatorEdgeIndex;
+    long changes = this.aggregatorEdgeChanges.get();
+    if (index == null || index.joinVertex2aggregatorEdges != this.joinVertex2aggregatorEdges
+        || index.size != this.joinVertex2aggregatorEdges.size() || index.changes != changes) {
+      for (Map.Entry<OVertexType, OAggregatorEdge> entry : this.joinVertex2aggregatorEdges.entrySet()) {
+        OChangeNotifier.listen(entry.getKey(), this.aggregatorEdgeListener);
+        OChangeNotifier.listen(entry.getValue(), this.aggregatorEdgeListener);
+        OChangeNotifier.listen(entry.getValue().getEdgeType(), this.aggregatorEdgeListener);
       }
+      index = new OAggregatorEdgeIndex(this.joinVertex2aggregatorEdges, changes);
+      this.aggregatorEdgeIndex = index;
     }
-    return null;
+    return index;
   }
 
   public List<ORelationship> getRelationshipsByForeignAndParentTables(String currentForeignEntity, String currentParentEntity) {
-
-    List<ORelationship> relationships = new LinkedList<ORelationship>();
-
-    for (ORelationship currentRelationship : this.dataBaseSchema.getCanonicalRelationships()) {
-      if (currentRelationship.getForeignEntity().getName().equals(currentForeignEntity) && currentRelationship.getParentEntity()
-          .getName().equals(currentParentEntity)) {
-        relationships.add(currentRelationship);
-      }
-    }
-    return relationships;
+    return new LinkedList<ORelationship>(
+        this.dataBaseSchema.getCanonicalRelationshipsByEntities(currentForeignEntity, currentParentEntity));
   }
 
   public Map<ORelationship, OEdgeType> getRelationship2edgeType() {
@@ -2231,6 +2287,7 @@ public class OER2GraphMapper extends OSource2GraphMapper {
 
   public void setJoinVertex2aggregatorEdges(Map<OVertexType, OAggregatorEdge> joinVertex2aggregatorEdges) {
     this.joinVertex2aggregatorEdges = joinVertex2aggregatorEdges;
+    this.aggregatorEdgeIndex = null;
   }
 
   public List<String> getIncludedTables() {
@@ -2259,6 +2316,10 @@ public class OER2GraphMapper extends OSource2GraphMapper {
 
   public boolean isTableAllowed(String tableName) {
 
+    // change-log tables filled by the triggers of the change capture are never migrated
+    if (tableName.endsWith(OChangeLog.TABLE_SUFFIX))
+      return false;
+
     if (this.includedTables.size() > 0)
       return this.includedTables.contains(tableName);
     else if (this.excludedTables.size() > 0)
@@ -0,0 +1,493 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.mapper.rdbms;
+
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.persistence.util.ODBSourceConnection;
+import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the metadata of the source tables needed to build the database schema: record count, columns and primary key of each
+ * table, and the imported (foreign) keys. The record count is read from the statistics of the source DBMS where available,
+ * unless the exact counting is enabled in the context.
+ * With a single thread the metadata are read table by table on the passed connection. With more threads the calls for each
+ * table are spread over the connections of the source connection pool; where the driver supports it (PostgreSQL, HyperSQL and,
+ * for the columns, Oracle) the metadata of all the tables are read with a single call (null table pattern) and grouped by
+ * table, falling back to the calls for each table if the driver refuses it.
+ * The metadata are returned keyed by table, so the schema built from them doesn't depend on the order the calls complete.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OSchemaIntrospector {
+
+  private final OSourceDatabaseInfo sourceDBInfo;
+  private final int                 threads;
+
+  /**
+   * Column of a table.
+   */
+  public static class OColumnMetadata {
+
+    private final String name;
+    private final int    ordinalPosition;
+    private final String typeName;
+
+    public OColumnMetadata(String name, int ordinalPosition, String typeName) {
+      this.name = name;
+      this.ordinalPosition = ordinalPosition;
+      this.typeName = typeName;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public int getOrdinalPosition() {
+      return this.ordinalPosition;
+    }
+
+    public String getTypeName() {
+      return this.typeName;
+    }
+  }
+
+  /**
+   * Record count, columns (by ordinal position) and primary key columns of a table.
+   */
+  public static class OTableMetadata {
+
+    private volatile int                   recordCount;
+    private final    List<OColumnMetadata> columns;
+    private final    List<String>          primaryKeyColumns;
+
+    public OTableMetadata() {
+      this.columns = new ArrayList<OColumnMetadata>();
+      this.primaryKeyColumns = new ArrayList<String>();
+    }
+
+    public int getRecordCount() {
+      return this.recordCount;
+    }
+
+    public List<OColumnMetadata> getColumns() {
+      return this.columns;
+    }
+
+    public List<String> getPrimaryKeyColumns() {
+      return this.primaryKeyColumns;
+    }
+  }
+
+  /**
+   * @param sourceDBInfo
+   * @param threads      number of tables introspected at the same time, bound by the size of the source connection pool
+   */
+  public OSchemaIntrospector(OSourceDatabaseInfo sourceDBInfo, int threads) {
+    this.sourceDBInfo = sourceDBInfo;
+    int poolSize = OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo).getMaxSize();
+    // the caller keeps a connection of the pool
+    this.threads = Math.max(1, Math.min(threads, poolSize - 1));
+  }
+
+  public int getThreads() {
+    return this.threads;
+  }
+
+  /**
+   * Reads record count, columns and primary key of the tables.
+   *
+   * @param databaseMetaData  metadata of the connection of the caller
+   * @param tablesName2schema tables to read, with their schema
+   * @param schemaPattern     schema of the tables, null if unknown
+   *
+   * @return the metadata of each table, in the order of tablesName2schema
+   *
+   * @throws SQLException
+   */
+  public Map<String, OTableMetadata> fetchTables(DatabaseMetaData databaseMetaData, final Map<String, String> tablesName2schema,
+      String schemaPattern) throws SQLException {
+
+    final Map<String, OTableMetadata> tableName2metadata = new LinkedHashMap<String, OTableMetadata>();
+    for (String tableName : tablesName2schema.keySet()) {
+      tableName2metadata.put(tableName, new OTableMetadata());
+    }
+
+    if (this.threads == 1) {
+      for (Map.Entry<String, OTableMetadata> entry : tableName2metadata.entrySet()) {
+        String tableSchema = tablesName2schema.get(entry.getKey());
+        entry.getValue().recordCount = this.countRecords(entry.getKey(), tableSchema);
+        this.readColumns(databaseMetaData, entry.getKey(), entry.getValue());
+        this.readPrimaryKey(databaseMetaData, entry.getKey(), tableSchema, entry.getValue());
+      }
+      return tableName2metadata;
+    }
+
+    final boolean allColumnsRead = this.supportsColumnsOfAllTables() && this
+        .readColumnsOfAllTables(databaseMetaData, schemaPattern, tablesName2schema, tableName2metadata);
+    final boolean allPrimaryKeysRead = this.supportsKeysOfAllTables() && this
+        .readPrimaryKeysOfAllTables(databaseMetaData, tablesName2schema, tableName2metadata);
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (final Map.Entry<String, OTableMetadata> entry : tableName2metadata.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          String tableSchema = tablesName2schema.get(entry.getKey());
+          entry.getValue().recordCount = countRecords(entry.getKey(), tableSchema);
+          if (!allColumnsRead || !allPrimaryKeysRead) {
+            Connection connection = ODBSourceConnection.getConnection(sourceDBInfo);
+            try {
+              DatabaseMetaData metaData = connection.getMetaData();
+              if (!allColumnsRead) {
+                readColumns(metaData, entry.getKey(), entry.getValue());
+              }
+              if (!allPrimaryKeysRead) {
+                readPrimaryKey(metaData, entry.getKey(), tableSchema, entry.getValue());
+              }
+            } finally {
+              ODBSourceConnection.releaseConnection(sourceDBInfo, connection);
+            }
+          }
+          return null;
+        }
+      });
+    }
+    this.runAll(tasks);
+    return tableName2metadata;
+  }
+
+  /**
+   * Reads the imported keys of the entities, as rows with the lower case names of the columns of the result set returned by
+   * DatabaseMetaData.getImportedKeys().
+   *
+   * @param databaseMetaData metadata of the connection of the caller
+   * @param entities
+   *
+   * @return the rows of each entity, ordered as returned by getImportedKeys() (by parent table and key sequence)
+   *
+   * @throws SQLException
+   */
+  public Map<OEntity, List<LinkedHashMap<String, String>>> fetchImportedKeys(DatabaseMetaData databaseMetaData,
+      List<OEntity> entities) throws SQLException {
+
+    final Map<OEntity, List<LinkedHashMap<String, String>>> entity2rows = new LinkedHashMap<OEntity, List<LinkedHashMap<String, String>>>();
+    for (OEntity entity : entities) {
+      entity2rows.put(entity, new LinkedList<LinkedHashMap<String, String>>());
+    }
+
+    if (this.threads == 1) {
+      for (Map.Entry<OEntity, List<LinkedHashMap<String, String>>> entry : entity2rows.entrySet()) {
+        this.readImportedKeys(databaseMetaData, entry.getKey(), entry.getValue());
+      }
+      return entity2rows;
+    }
+
+    if (this.supportsKeysOfAllTables() && this.readImportedKeysOfAllTables(databaseMetaData, entity2rows)) {
+      return entity2rows;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (final Map.Entry<OEntity, List<LinkedHashMap<String, String>>> entry : entity2rows.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Connection connection = ODBSourceConnection.getConnection(sourceDBInfo);
+          try {
+            readImportedKeys(connection.getMetaData(), entry.getKey(), entry.getValue());
+          } finally {
+            ODBSourceConnection.releaseConnection(sourceDBInfo, connection);
+          }
+          return null;
+        }
+      });
+    }
+    this.runAll(tasks);
+    return entity2rows;
+  }
+
+  /*
+   * Calls for a single table (the same ones performed by the sequential introspection).
+   */
+
+  private int countRecords(String tableName, String tableSchema) throws SQLException {
+
+    ODBQueryEngine dbQueryEngine = OTeleporterContext.getInstance().getDbQueryEngine();
+
+    // the estimate of the DBMS statistics is used if available, so the tables are not scanned
+    if (!OTeleporterContext.getInstance().isExactRecordCount()) {
+      OQueryResult estimate = dbQueryEngine.estimateTableRecords(this.sourceDBInfo, tableName, tableSchema);
+      if (estimate != null) {
+        try {
+          ResultSet currentTableRecordAmount = estimate.getResult();
+          if (currentTableRecordAmount != null && currentTableRecordAmount.next()) {
+            long recordAmount = currentTableRecordAmount.getLong(1);
+            if (!currentTableRecordAmount.wasNull() && recordAmount >= 0) {
+              return (int) Math.min(recordAmount, Integer.MAX_VALUE);
+            }
+          }
+        } finally {
+          estimate.closeAll();
+        }
+        // table never analyzed
+        if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+          OTeleporterContext.getInstance().getMessageHandler()
+              .debug(this, "\nNo estimate of the records of '%s' is available, they will be counted.\n", tableName);
+        }
+      }
+    }
+
+    OQueryResult result = dbQueryEngine.countTableRecords(this.sourceDBInfo, tableName, tableSchema);
+    try {
+      ResultSet currentTableRecordAmount = result.getResult();
+      return currentTableRecordAmount.next() ? currentTableRecordAmount.getInt(1) : 0;
+    } finally {
+      result.closeAll();
+    }
+  }
+
+  private void readColumns(DatabaseMetaData databaseMetaData, String tableName, OTableMetadata metadata) throws SQLException {
+
+    ResultSet resultColumns = databaseMetaData.getColumns(null, null, tableName, null);
+    try {
+      while (resultColumns.next()) {
+        metadata.columns.add(new OColumnMetadata(resultColumns.getString("COLUMN_NAME"), resultColumns.getInt("ORDINAL_POSITION"),
+            resultColumns.getString("TYPE_NAME")));
+      }
+    } finally {
+      resultColumns.close();
+    }
+  }
+
+  private void readPrimaryKey(DatabaseMetaData databaseMetaData, String tableName, String tableSchema, OTableMetadata metadata)
+      throws SQLException {
+
+    ResultSet resultPrimaryKeys = databaseMetaData.getPrimaryKeys(null, tableSchema, tableName);
+    try {
+      while (resultPrimaryKeys.next()) {
+        metadata.primaryKeyColumns.add(resultPrimaryKeys.getString(4));
+      }
+    } finally {
+      resultPrimaryKeys.close();
+    }
+  }
+
+  private void readImportedKeys(DatabaseMetaData databaseMetaData, OEntity entity, List<LinkedHashMap<String, String>> rows)
+      throws SQLException {
+
+    ResultSet resultForeignKeys = databaseMetaData.getImportedKeys(null, entity.getSchemaName(), entity.getName());
+    try {
+      while (resultForeignKeys.next()) {
+        rows.add(readRow(resultForeignKeys));
+      }
+    } finally {
+      resultForeignKeys.close();
+    }
+  }
+
+  /*
+   * Calls for all the tables, grouped by schema and table name. They return false if the driver refuses the call.
+   */
+
+  private boolean readColumnsOfAllTables(DatabaseMetaData databaseMetaData, String schemaPattern,
+      Map<String, String> tablesName2schema, Map<String, OTableMetadata> tableName2metadata) {
+
+    try {
+      ResultSet resultColumns = databaseMetaData.getColumns(null, schemaPattern, null, null);
+      try {
+        while (resultColumns.next()) {
+          OTableMetadata metadata = this
+              .getTableMetadata(resultColumns.getString("TABLE_SCHEM"), resultColumns.getString("TABLE_NAME"), tablesName2schema,
+                  tableName2metadata);
+          if (metadata != null) {
+            metadata.columns.add(new OColumnMetadata(resultColumns.getString("COLUMN_NAME"), resultColumns.getInt("ORDINAL_POSITION"),
+                resultColumns.getString("TYPE_NAME")));
+          }
+        }
+      } finally {
+        resultColumns.close();
+      }
+      return true;
+    } catch (SQLException e) {
+      this.notifyTableByTableFallback("columns", e);
+      for (OTableMetadata metadata : tableName2metadata.values()) {
+        metadata.columns.clear();
+      }
+      return false;
+    }
+  }
+
+  private boolean readPrimaryKeysOfAllTables(DatabaseMetaData databaseMetaData, Map<String, String> tablesName2schema,
+      Map<String, OTableMetadata> tableName2metadata) {
+
+    try {
+      ResultSet resultPrimaryKeys = databaseMetaData.getPrimaryKeys(null, null, null);
+      try {
+        while (resultPrimaryKeys.next()) {
+          OTableMetadata metadata = this
+              .getTableMetadata(resultPrimaryKeys.getString("TABLE_SCHEM"), resultPrimaryKeys.getString("TABLE_NAME"),
+                  tablesName2schema, tableName2metadata);
+          if (metadata != null) {
+            metadata.primaryKeyColumns.add(resultPrimaryKeys.getString(4));
+          }
+        }
+      } finally {
+        resultPrimaryKeys.close();
+      }
+      return true;
+    } catch (SQLException e) {
+      this.notifyTableByTableFallback("primary keys", e);
+      for (OTableMetadata metadata : tableName2metadata.values()) {
+        metadata.primaryKeyColumns.clear();
+      }
+      return false;
+    }
+  }
+
+  private boolean readImportedKeysOfAllTables(DatabaseMetaData databaseMetaData,
+      Map<OEntity, List<LinkedHashMap<String, String>>> entity2rows) {
+
+    Map<String, List<LinkedHashMap<String, String>>> table2rows = new LinkedHashMap<String, List<LinkedHashMap<String, String>>>();
+    for (Map.Entry<OEntity, List<LinkedHashMap<String, String>>> entry : entity2rows.entrySet()) {
+      table2rows.put(buildTableKey(entry.getKey().getSchemaName(), entry.getKey().getName()), entry.getValue());
+    }
+
+    try {
+      ResultSet resultForeignKeys = databaseMetaData.getImportedKeys(null, null, null);
+      try {
+        while (resultForeignKeys.next()) {
+          List<LinkedHashMap<String, String>> rows = table2rows
+              .get(buildTableKey(resultForeignKeys.getString("FKTABLE_SCHEM"), resultForeignKeys.getString("FKTABLE_NAME")));
+          if (rows != null) {
+            rows.add(readRow(resultForeignKeys));
+          }
+        }
+      } finally {
+        resultForeignKeys.close();
+      }
+      return true;
+    } catch (SQLException e) {
+      this.notifyTableByTableFallback("foreign keys", e);
+      for (List<LinkedHashMap<String, String>> rows : entity2rows.values()) {
+        rows.clear();
+      }
+      return false;
+    }
+  }
+
+  private OTableMetadata getTableMetadata(String tableSchema, String tableName, Map<String, String> tablesName2schema,
+      Map<String, OTableMetadata> tableName2metadata) {
+
+    if (!tablesName2schema.containsKey(tableName)) {
+      return null;
+    }
+    String expectedSchema = tablesName2schema.get(tableName);
+    if (expectedSchema != null && tableSchema != null && !expectedSchema.equals(tableSchema)) {
+      return null;   // same table name in another schema
+    }
+    return tableName2metadata.get(tableName);
+  }
+
+  private static String buildTableKey(String tableSchema, String tableName) {
+    return (tableSchema != null ? tableSchema : "") + '\u0000' + tableName;
+  }
+
+  /**
+   * Drivers whose metadata are qualified by schema, so the columns of all the tables can be read with a single call.
+   */
+  private boolean supportsColumnsOfAllTables() {
+    String driverName = this.sourceDBInfo.getDriverName().toLowerCase(Locale.ENGLISH);
+    return driverName.contains("postgresql") || driverName.contains("hsqldb") || driverName.contains("oracle");
+  }
+
+  /**
+   * Drivers accepting a null table in getPrimaryKeys() and getImportedKeys() (other drivers reject it or return no key).
+   */
+  private boolean supportsKeysOfAllTables() {
+    String driverName = this.sourceDBInfo.getDriverName().toLowerCase(Locale.ENGLISH);
+    return driverName.contains("postgresql") || driverName.contains("hsqldb");
+  }
+
+  private void notifyTableByTableFallback(String metadata, SQLException e) {
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\nThe %s of all the tables can't be read with a single call (%s), they will be read table by table.\n",
+              metadata, e.getMessage());
+    }
+  }
+
+  private static LinkedHashMap<String, String> readRow(ResultSet resultSet) throws SQLException {
+
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    LinkedHashMap<String, String> row = new LinkedHashMap<String, String>();
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      row.put(metaData.getColumnName(i).toLowerCase(Locale.ENGLISH), resultSet.getString(i));
+    }
+    return row;
+  }
+
+  private void runAll(List<Callable<Void>> tasks) throws SQLException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, Math.max(1, tasks.size())));
+    try {
+      List<Future<Void>> futures = executor.invokeAll(tasks);
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Schema introspection interrupted.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SQLException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
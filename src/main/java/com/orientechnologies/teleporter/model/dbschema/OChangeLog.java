@@ -0,0 +1,76 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.model.dbschema;
+
+import java.util.List;
+
+/**
+ * Change-log table of an entity whose changes are captured by triggers: each insert, update and delete on the entity appends
+ * the key of the changed record (for an update both the old and the new one) to the change-log table, with an increasing
+ * change id. A sync consumes the changes up to the maximum change id read when it started, and purges them once the import
+ * is complete.
+ * Key values are stored as strings, as they are compared in the lookups of the graph model.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OChangeLog {
+
+  public static final String TABLE_SUFFIX     = "_TLP_CHANGES";
+  public static final String CHANGE_ID_COLUMN = "TLP_CHANGE_ID";
+  public static final String OPERATION_COLUMN = "TLP_CHANGE_OP";
+
+  private final String       tableName;
+  private final List<String> keyColumns;
+  private final Long         upperBound;    // inclusive, null if there's no change to consume
+  private final boolean      incremental;   // false if the entity is read with a full scan
+
+  public OChangeLog(String tableName, List<String> keyColumns, Long upperBound, boolean incremental) {
+    this.tableName = tableName;
+    this.keyColumns = keyColumns;
+    this.upperBound = upperBound;
+    this.incremental = incremental;
+  }
+
+  public static String buildTableName(OEntity entity) {
+    return entity.getName() + TABLE_SUFFIX;
+  }
+
+  public String getTableName() {
+    return this.tableName;
+  }
+
+  public List<String> getKeyColumns() {
+    return this.keyColumns;
+  }
+
+  public Long getUpperBound() {
+    return this.upperBound;
+  }
+
+  /**
+   * @return true if just the records whose key is in the change-log table are read
+   */
+  public boolean isIncremental() {
+    return this.incremental;
+  }
+}
@@ -21,9 +21,16 @@
 package com.orientechnologies.teleporter.model.dbschema;
 
 import com.orientechnologies.teleporter.model.ODataSourceSchemaInfo;
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+import com.orientechnologies.teleporter.util.ONameIndexedList;
+import com.orientechnologies.teleporter.util.OVersionedList;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * It represents the schema of a source DB with all its elements.
@@ -34,16 +41,50 @@ import java.util.List;
 
 public class ODataBaseSchema implements ODataSourceSchemaInfo {
 
-  private int                          majorVersion;
-  private int                          minorVersion;
-  private int                          driverMajorVersion;
-  private int                          driverMinorVersion;
-  private String                       productName;
-  private String                       productVersion;
-  private List<OEntity>                entities;
-  private List<OCanonicalRelationship> canonicalRelationships;
-  private List<OLogicalRelationship>   logicalRelationships;
-  private List<OHierarchicalBag>       hierarchicalBags;
+  private static final ONameIndexedList.ONameReader<OEntity> ENTITY_NAME = new ONameIndexedList.ONameReader<OEntity>() {
+    @Override
+    public String getName(OEntity entity) {
+      return entity.getName();
+    }
+  };
+
+  private int                                    majorVersion;
+  private int                                    minorVersion;
+  private int                                    driverMajorVersion;
+  private int                                    driverMinorVersion;
+  private String                                 productName;
+  private String                                 productVersion;
+  private ONameIndexedList<OEntity>              entities;
+  private OVersionedList<OCanonicalRelationship> canonicalRelationships;
+  private volatile ORelationshipIndex            relationshipIndex;
+  private final AtomicLong                       relationshipEntityChanges = new AtomicLong();
+  private final OChangeNotifier.OChangeListener  relationshipEntityListener = new OChangeNotifier.OChangeListener() {
+    @Override
+    public void elementChanged() {
+      relationshipEntityChanges.incrementAndGet();
+    }
+  };
+  private List<OLogicalRelationship>             logicalRelationships;
+  private List<OHierarchicalBag>                 hierarchicalBags;
+
+  /**
+   * Canonical relationships grouped by the names of their foreign and parent entities, valid as long as the relationships list
+   * (including the entities of the relationships) and the names of the entities involved are unchanged.
+   */
+  private static class ORelationshipIndex {
+
+    private final List<OCanonicalRelationship>              relationships;
+    private final long                                      version;
+    private final long                                      entityChanges;
+    private final Map<String, List<OCanonicalRelationship>> entities2relationships;
+
+    private ORelationshipIndex(List<OCanonicalRelationship> relationships, long version, long entityChanges) {
+      this.relationships = relationships;
+      this.version = version;
+      this.entityChanges = entityChanges;
+      this.entities2relationships = new HashMap<String, List<OCanonicalRelationship>>();
+    }
+  }
 
   public ODataBaseSchema(int majorVersion, int minorVersion, int driverMajorVersion, int driverMinorVersion, String productName,
       String productVersion) {
@@ -53,15 +94,15 @@ public class ODataBaseSchema implements ODataSourceSchemaInfo {
     this.driverMinorVersion = driverMinorVersion;
     this.productName = productName;
     this.productVersion = productVersion;
-    this.entities = new ArrayList<OEntity>();
-    this.canonicalRelationships = new ArrayList<OCanonicalRelationship>();
+    this.entities = new ONameIndexedList<OEntity>(ENTITY_NAME);
+    this.canonicalRelationships = new OVersionedList<OCanonicalRelationship>();
     this.logicalRelationships = new ArrayList<OLogicalRelationship>();
     this.hierarchicalBags = new ArrayList<OHierarchicalBag>();
   }
 
   public ODataBaseSchema() {
-    this.entities = new ArrayList<OEntity>();
-    this.canonicalRelationships = new ArrayList<OCanonicalRelationship>();
+    this.entities = new ONameIndexedList<OEntity>(ENTITY_NAME);
+    this.canonicalRelationships = new OVersionedList<OCanonicalRelationship>();
     this.logicalRelationships = new ArrayList<OLogicalRelationship>();
     this.hierarchicalBags = new ArrayList<OHierarchicalBag>();
   }
@@ -119,7 +160,7 @@ public class ODataBaseSchema implements ODataSourceSchemaInfo {
   }
 
   public void setEntities(List<OEntity> entitiess) {
-    this.entities = entitiess;
+    this.entities = new ONameIndexedList<OEntity>(ENTITY_NAME, entitiess);
   }
 
   public List<OCanonicalRelationship> getCanonicalRelationships() {
@@ -127,7 +168,7 @@ public class ODataBaseSchema implements ODataSourceSchemaInfo {
   }
 
   public void setCanonicalRelationships(List<OCanonicalRelationship> canonicalRelationships) {
-    this.canonicalRelationships = canonicalRelationships;
+    this.canonicalRelationships = new OVersionedList<OCanonicalRelationship>(canonicalRelationships);
   }
 
   public List<OLogicalRelationship> getLogicalRelationships() {
@@ -147,35 +188,56 @@ public class ODataBaseSchema implements ODataSourceSchemaInfo {
   }
 
   public OEntity getEntityByName(String entityName) {
-
-    for (OEntity currentEntity : this.entities) {
-      if (currentEntity.getName().equals(entityName))
-        return currentEntity;
-    }
-
-    return null;
+    return this.entities.getByName(entityName);
   }
 
   public OEntity getEntityByNameIgnoreCase(String entityName) {
+    return this.entities.getByNameIgnoreCase(entityName);
+  }
 
-    for (OEntity currentEntity : this.entities) {
-      if (currentEntity.getName().equalsIgnoreCase(entityName))
-        return currentEntity;
+  /**
+   * Returns the canonical relationships between the two entities, looked up in an index rebuilt only when the relationships
+   * or their entities change.
+   *
+   * @param foreignEntityName
+   * @param parentEntityName
+   *
+   * @return the relationships, in the order they were added (empty list if there aren't)
+   */
+  public List<OCanonicalRelationship> getCanonicalRelationshipsByEntities(String foreignEntityName, String parentEntityName) {
+
+    ORelationshipIndex index = this.relationshipIndex;
+    long version = this.canonicalRelationships.getVersion();
+    long entityChanges = this.relationshipEntityChanges.get();
+    if (index == null || index.relationships != this.canonicalRelationships || index.version != version
+        || index.entityChanges != entityChanges) {
+      index = new ORelationshipIndex(this.canonicalRelationships, version, entityChanges);
+      for (OCanonicalRelationship currentRelationship : this.canonicalRelationships) {
+        OChangeNotifier.listen(currentRelationship.getForeignEntity(), this.relationshipEntityListener);
+        OChangeNotifier.listen(currentRelationship.getParentEntity(), this.relationshipEntityListener);
+        String key = currentRelationship.getForeignEntity().getName() + '\u0000' + currentRelationship.getParentEntity().getName();
+        List<OCanonicalRelationship> relationships = index.entities2relationships.get(key);
+        if (relationships == null) {
+          relationships = new ArrayList<OCanonicalRelationship>(1);
+          index.entities2relationships.put(key, relationships);
+        }
+        relationships.add(currentRelationship);
+      }
+      this.relationshipIndex = index;
     }
 
-    return null;
+    List<OCanonicalRelationship> relationships = index.entities2relationships.get(foreignEntityName + '\u0000' + parentEntityName);
+    return relationships != null ? Collections.unmodifiableList(relationships) : Collections.<OCanonicalRelationship>emptyList();
   }
 
   public ORelationship getRelationshipByInvolvedEntitiesAndAttributes(OEntity currentForeignEntity, OEntity currentParentEntity,
       List<String> fromColumns, List<String> toColumns) {
 
-    for (ORelationship currentRelationship : this.canonicalRelationships) {
-      if (currentRelationship.getForeignEntity().getName().equals(currentForeignEntity.getName()) && currentRelationship
-          .getParentEntity().getName().equals(currentParentEntity.getName())) {
-        if (sameAttributesInvolved(currentRelationship.getFromColumns(), fromColumns) && sameAttributesInvolved(
-            currentRelationship.getToColumns(), toColumns)) {
-          return currentRelationship;
-        }
+    for (ORelationship currentRelationship : this.getCanonicalRelationshipsByEntities(currentForeignEntity.getName(),
+        currentParentEntity.getName())) {
+      if (sameAttributesInvolved(currentRelationship.getFromColumns(), fromColumns) && sameAttributesInvolved(
+          currentRelationship.getToColumns(), toColumns)) {
+        return currentRelationship;
       }
     }
     return null;
@@ -20,6 +20,8 @@
 
 package com.orientechnologies.teleporter.model.dbschema;
 
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+
 import java.util.*;
 
 /**
@@ -29,7 +31,9 @@ import java.util.*;
  * @email <g.ponzi--at--orientdb.com>
  */
 
-public class OEntity implements Comparable<OEntity> {
+public class OEntity implements Comparable<OEntity>, OChangeNotifier.ONotifyingElement {
+
+  private final OChangeNotifier changeNotifier = new OChangeNotifier();   // notifies its changes to the lists and indexes containing it
 
   private String              name;
   private OSourceDatabaseInfo sourceDbInfo;
@@ -64,6 +68,14 @@ public class OEntity implements Comparable<OEntity> {
   private int              inheritanceLevel;
   private OHierarchicalBag hierarchicalBag;
 
+  // Import options coming from the migration config
+  private Integer          fetchSize;                                  // rows fetched per round-trip, null for the default one, <= 0 to disable streaming
+  private Integer          partitions;                                 // number of key ranges read in parallel during the import, null for a single scan
+  private String           watermarkColumn;                            // change-tracking column read by the incremental sync, null for a full scan
+  private OWatermark       watermark;                                  // range of the change-tracking column read by the current sync
+  private boolean          changeCapture;                              // true if the changes are captured by triggers in a change-log table
+  private OChangeLog       changeLog;                                  // changes of the change-log table consumed by the current sync
+
   public OEntity(String name, String schemaName, OSourceDatabaseInfo sourceDbInfo) {
     this.name = name;
     this.sourceDbInfo = sourceDbInfo;
@@ -177,6 +189,7 @@ public class OEntity implements Comparable<OEntity> {
 
   public void setName(String name) {
     this.name = name;
+    this.changeNotifier.notifyChange();
   }
 
   public OSourceDatabaseInfo getSourceDataseInfo() {
@@ -473,6 +486,54 @@ public class OEntity implements Comparable<OEntity> {
     this.hierarchicalBag = hierarchicalBag;
   }
 
+  public Integer getFetchSize() {
+    return this.fetchSize;
+  }
+
+  public void setFetchSize(Integer fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public Integer getPartitions() {
+    return this.partitions;
+  }
+
+  public void setPartitions(Integer partitions) {
+    this.partitions = partitions;
+  }
+
+  public String getWatermarkColumn() {
+    return this.watermarkColumn;
+  }
+
+  public void setWatermarkColumn(String watermarkColumn) {
+    this.watermarkColumn = watermarkColumn;
+  }
+
+  public OWatermark getWatermark() {
+    return this.watermark;
+  }
+
+  public void setWatermark(OWatermark watermark) {
+    this.watermark = watermark;
+  }
+
+  public boolean isChangeCapture() {
+    return this.changeCapture;
+  }
+
+  public void setChangeCapture(boolean changeCapture) {
+    this.changeCapture = changeCapture;
+  }
+
+  public OChangeLog getChangeLog() {
+    return this.changeLog;
+  }
+
+  public void setChangeLog(OChangeLog changeLog) {
+    this.changeLog = changeLog;
+  }
+
   public void renumberAttributesOrdinalPositions() {
     int i = 1;
     for (OAttribute attribute : this.attributes) {
@@ -552,4 +613,9 @@ public class OEntity implements Comparable<OEntity> {
     return this.name.equals(that.getName()) && this.getSourceDataseInfo().equals(that.getSourceDataseInfo());
   }
 
+  @Override
+  public OChangeNotifier getChangeNotifier() {
+    return this.changeNotifier;
+  }
+
 }
@@ -20,9 +20,11 @@
 
 package com.orientechnologies.teleporter.model.dbschema;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -62,6 +64,21 @@ public class OHierarchicalBag {
     this.depth2entities = depth2entities;
   }
 
+  /**
+   * It returns the entities of the bag except the root, by increasing depth. It's the order the entities are joined to the root
+   * entity in the aggregate table of the bag.
+   *
+   * @return
+   */
+  public List<OEntity> getSubclassEntities() {
+
+    List<OEntity> subclassEntities = new ArrayList<OEntity>();
+    for (int i = 1; i < this.depth2entities.size(); i++) {
+      subclassEntities.addAll(this.depth2entities.get(i));
+    }
+    return subclassEntities;
+  }
+
   public String getInheritancePattern() {
     return this.inheritancePattern;
   }
@@ -20,6 +20,8 @@
 
 package com.orientechnologies.teleporter.model.dbschema;
 
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+
 import java.util.List;
 
 /**
@@ -29,7 +31,9 @@ import java.util.List;
  * @email <g.ponzi--at--orientdb.com>
  */
 
-public abstract class ORelationship {
+public abstract class ORelationship implements OChangeNotifier.ONotifyingElement {
+
+  private final OChangeNotifier changeNotifier = new OChangeNotifier();   // notifies its changes to the lists and indexes containing it
 
   protected OEntity foreignEntity;        // Entity importing the key (starting entity)
   protected OEntity parentEntity;            // Entity exporting the key (arrival entity)
@@ -41,6 +45,7 @@ public abstract class ORelationship {
 
   public void setForeignEntity(OEntity foreignEntity) {
     this.foreignEntity = foreignEntity;
+    this.changeNotifier.notifyChange();
   }
 
   public OEntity getParentEntity() {
@@ -49,6 +54,7 @@ public abstract class ORelationship {
 
   public void setParentEntity(OEntity parentEntity) {
     this.parentEntity = parentEntity;
+    this.changeNotifier.notifyChange();
   }
 
   public String getDirection() {
@@ -72,4 +78,10 @@ public abstract class ORelationship {
     result = prime * result + ((parentEntity == null) ? 0 : parentEntity.hashCode());
     return result;
   }
+
+  @Override
+  public OChangeNotifier getChangeNotifier() {
+    return this.changeNotifier;
+  }
+
 }
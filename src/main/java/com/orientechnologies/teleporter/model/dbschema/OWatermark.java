@@ -0,0 +1,138 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.model.dbschema;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Range of values of the change-tracking column of an entity read during an incremental sync: the records whose column is
+ * greater than the mark stored by the last sync and not greater than the maximum read when the current sync started.
+ * A null lower bound means that the entity is read from the beginning (first sync), a null upper bound that the column had
+ * no value when the sync started.
+ * Values are kept with their JDBC type (timestamp, number or binary, as a SQL Server rowversion), so they're compared by
+ * the source DBMS without any conversion.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OWatermark {
+
+  public static final String TIMESTAMP_TYPE = "timestamp";
+  public static final String NUMBER_TYPE    = "number";
+  public static final String BINARY_TYPE    = "binary";
+  public static final String STRING_TYPE    = "string";
+
+  private final String column;
+  private final Object lowerBound;   // exclusive
+  private final Object upperBound;   // inclusive
+
+  public OWatermark(String column, Object lowerBound, Object upperBound) {
+    this.column = column;
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+  }
+
+  public String getColumn() {
+    return this.column;
+  }
+
+  public Object getLowerBound() {
+    return this.lowerBound;
+  }
+
+  public Object getUpperBound() {
+    return this.upperBound;
+  }
+
+  /**
+   * @return true if just the records changed since the last sync are read
+   */
+  public boolean isIncremental() {
+    return this.lowerBound != null;
+  }
+
+  /**
+   * @return the mark to store for the next sync
+   */
+  public Object getNextMark() {
+    return this.upperBound != null ? this.upperBound : this.lowerBound;
+  }
+
+  /**
+   * @param value a value read from the change-tracking column through ResultSet.getObject()
+   *
+   * @return the type stored along with the encoded value
+   */
+  public static String typeOf(Object value) {
+    if (value instanceof java.util.Date) {
+      return TIMESTAMP_TYPE;
+    } else if (value instanceof Number) {
+      return NUMBER_TYPE;
+    } else if (value instanceof byte[]) {
+      return BINARY_TYPE;
+    }
+    return STRING_TYPE;
+  }
+
+  public static String encode(Object value) {
+    if (value instanceof Timestamp) {
+      return value.toString();   // nanoseconds included
+    } else if (value instanceof java.util.Date) {
+      return new Timestamp(((java.util.Date) value).getTime()).toString();
+    } else if (value instanceof byte[]) {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : (byte[]) value) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    }
+    return value.toString();
+  }
+
+  /**
+   * @param type
+   * @param encodedValue
+   *
+   * @return the value to bind to the statement parameters
+   *
+   * @throws IllegalArgumentException if the value is not valid for its type
+   */
+  public static Object decode(String type, String encodedValue) {
+    if (TIMESTAMP_TYPE.equals(type)) {
+      return Timestamp.valueOf(encodedValue);
+    } else if (NUMBER_TYPE.equals(type)) {
+      return new BigDecimal(encodedValue);
+    } else if (BINARY_TYPE.equals(type)) {
+      if (encodedValue.length() % 2 != 0) {
+        throw new IllegalArgumentException("Not valid binary value: " + encodedValue);
+      }
+      byte[] bytes = new byte[encodedValue.length() / 2];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) Integer.parseInt(encodedValue.substring(2 * i, 2 * i + 2), 16);
+      }
+      return bytes;
+    }
+    return encodedValue;
+  }
+
+}
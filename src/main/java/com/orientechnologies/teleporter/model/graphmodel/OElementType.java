@@ -20,9 +20,11 @@
 
 package com.orientechnologies.teleporter.model.graphmodel;
 
+import com.orientechnologies.teleporter.util.ONameIndexedList;
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -34,19 +36,29 @@ import java.util.Set;
  * @email <g.ponzi--at--orientdb.com>
  */
 
-public class OElementType implements Comparable<OElementType> {
+public class OElementType implements Comparable<OElementType>, OChangeNotifier.ONotifyingElement {
+
+  private final OChangeNotifier changeNotifier = new OChangeNotifier();   // notifies its changes to the lists and indexes containing it
+
+  private static final ONameIndexedList.ONameReader<OModelProperty> PROPERTY_NAME =
+      new ONameIndexedList.ONameReader<OModelProperty>() {
+        @Override
+        public String getName(OModelProperty property) {
+          return property.getName();
+        }
+      };
 
-  protected String               name;
-  protected List<OModelProperty> properties;
-  protected List<OModelProperty> inheritedProperties;
+  protected String                           name;
+  protected ONameIndexedList<OModelProperty> properties;
+  protected ONameIndexedList<OModelProperty> inheritedProperties;
   protected Set<OModelProperty>  allProperties;
   protected OElementType         parentType;
   protected int                  inheritanceLevel;
 
   public OElementType(String type) {
     this.name = type;
-    this.properties = new LinkedList<OModelProperty>();
-    this.inheritedProperties = new LinkedList<OModelProperty>();
+    this.properties = new ONameIndexedList<OModelProperty>(PROPERTY_NAME);
+    this.inheritedProperties = new ONameIndexedList<OModelProperty>(PROPERTY_NAME);
     this.allProperties = null;
   }
 
@@ -56,6 +68,7 @@ public class OElementType implements Comparable<OElementType> {
 
   public void setName(String type) {
     this.name = type;
+    this.changeNotifier.notifyChange();
   }
 
   public List<OModelProperty> getProperties() {
@@ -63,7 +76,7 @@ public class OElementType implements Comparable<OElementType> {
   }
 
   public void setProperties(List<OModelProperty> properties) {
-    this.properties = properties;
+    this.properties = new ONameIndexedList<OModelProperty>(PROPERTY_NAME, properties);
   }
 
   public List<OModelProperty> getInheritedProperties() {
@@ -71,7 +84,7 @@ public class OElementType implements Comparable<OElementType> {
   }
 
   public void setInheritedProperties(List<OModelProperty> inheritedProperties) {
-    this.inheritedProperties = inheritedProperties;
+    this.inheritedProperties = new ONameIndexedList<OModelProperty>(PROPERTY_NAME, inheritedProperties);
   }
 
   public OElementType getParentType() {
@@ -111,39 +124,28 @@ public class OElementType implements Comparable<OElementType> {
   }
 
   public OModelProperty getPropertyByName(String name) {
-    for (OModelProperty property : this.properties) {
-      if (property.getName().equals(name)) {
-        return property;
-      }
-    }
-    return null;
+    return this.properties.getByName(name);
   }
 
   public OModelProperty getInheritedPropertyByName(String name) {
-    for (OModelProperty property : this.inheritedProperties) {
-      if (property.getName().equals(name)) {
-        return property;
-      }
-    }
-    return null;
+    return this.inheritedProperties.getByName(name);
   }
 
+  // inherited properties come first, as in getAllProperties()
   public OModelProperty getPropertyByNameAmongAll(String name) {
-    for (OModelProperty property : this.getAllProperties()) {
-      if (property.getName().equals(name)) {
-        return property;
-      }
-    }
-    return null;
+    OModelProperty property = this.inheritedProperties.getByName(name);
+    return property != null ? property : this.properties.getByName(name);
   }
 
   // Returns properties and inherited properties
   public Set<OModelProperty> getAllProperties() {
 
     if (allProperties == null) {
-      allProperties = new LinkedHashSet<OModelProperty>();
-      allProperties.addAll(this.inheritedProperties);
-      allProperties.addAll(this.properties);
+      // built aside and then published, as the set can be requested concurrently by the import workers
+      Set<OModelProperty> builtProperties = new LinkedHashSet<OModelProperty>();
+      builtProperties.addAll(this.inheritedProperties);
+      builtProperties.addAll(this.properties);
+      allProperties = builtProperties;
     }
 
     return allProperties;
@@ -161,4 +163,9 @@ public class OElementType implements Comparable<OElementType> {
 
   }
 
+  @Override
+  public OChangeNotifier getChangeNotifier() {
+    return this.changeNotifier;
+  }
+
 }
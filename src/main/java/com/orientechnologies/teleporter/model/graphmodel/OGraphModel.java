@@ -20,7 +20,8 @@
 
 package com.orientechnologies.teleporter.model.graphmodel;
 
-import java.util.ArrayList;
+import com.orientechnologies.teleporter.util.ONameIndexedList;
+
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,36 +34,34 @@ import java.util.List;
 
 public class OGraphModel {
 
-  private List<OVertexType> verticesType;
-  private List<OEdgeType>   edgesType;
+  private static final ONameIndexedList.ONameReader<OVertexType> VERTEX_TYPE_NAME = new ONameIndexedList.ONameReader<OVertexType>() {
+    @Override
+    public String getName(OVertexType vertexType) {
+      return vertexType.getName();
+    }
+  };
+
+  private static final ONameIndexedList.ONameReader<OEdgeType> EDGE_TYPE_NAME = new ONameIndexedList.ONameReader<OEdgeType>() {
+    @Override
+    public String getName(OEdgeType edgeType) {
+      return edgeType.getName();
+    }
+  };
+
+  private ONameIndexedList<OVertexType> verticesType;
+  private ONameIndexedList<OEdgeType>   edgesType;
 
   public OGraphModel() {
-    this.verticesType = new ArrayList<OVertexType>();
-    this.edgesType = new ArrayList<OEdgeType>();
+    this.verticesType = new ONameIndexedList<OVertexType>(VERTEX_TYPE_NAME);
+    this.edgesType = new ONameIndexedList<OEdgeType>(EDGE_TYPE_NAME);
   }
 
   public OVertexType getVertexTypeByName(String name) {
-    OVertexType vertex = null;
-
-    for (OVertexType currentVertex : this.verticesType) {
-      if (currentVertex.getName().equals(name)) {
-        vertex = currentVertex;
-        break;
-      }
-    }
-    return vertex;
+    return this.verticesType.getByName(name);
   }
 
   public OVertexType getVertexTypeByNameIgnoreCase(String name) {
-    OVertexType vertex = null;
-
-    for (OVertexType currentVertex : this.verticesType) {
-      if (currentVertex.getName().equalsIgnoreCase(name)) {
-        vertex = currentVertex;
-        break;
-      }
-    }
-    return vertex;
+    return this.verticesType.getByNameIgnoreCase(name);
   }
 
   public List<OVertexType> getVerticesType() {
@@ -70,7 +69,7 @@ public class OGraphModel {
   }
 
   public void setVerticesType(List<OVertexType> verticesType) {
-    this.verticesType = verticesType;
+    this.verticesType = new ONameIndexedList<OVertexType>(VERTEX_TYPE_NAME, verticesType);
   }
 
   public List<OEdgeType> getEdgesType() {
@@ -78,25 +77,15 @@ public class OGraphModel {
   }
 
   public void setEdgesType(List<OEdgeType> edgesType) {
-    this.edgesType = edgesType;
+    this.edgesType = new ONameIndexedList<OEdgeType>(EDGE_TYPE_NAME, edgesType);
   }
 
   public OEdgeType getEdgeTypeByName(String name) {
-    for (OEdgeType currentEdgetype : this.edgesType) {
-      if (currentEdgetype.getName().equals(name)) {
-        return currentEdgetype;
-      }
-    }
-    return null;
+    return this.edgesType.getByName(name);
   }
 
   public OEdgeType getEdgeTypeByNameIgnoreCase(String name) {
-    for (OEdgeType currentEdgetype : this.edgesType) {
-      if (currentEdgetype.getName().equalsIgnoreCase(name)) {
-        return currentEdgetype;
-      }
-    }
-    return null;
+    return this.edgesType.getByNameIgnoreCase(name);
   }
 
   public boolean removeVertexTypeByName(String vertexName) {
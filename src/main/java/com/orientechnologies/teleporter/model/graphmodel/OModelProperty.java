@@ -20,6 +20,8 @@
 
 package com.orientechnologies.teleporter.model.graphmodel;
 
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+
 /**
  * Class which holds all the attributes of a vertex property obtained from
  * the transformation of an attribute belonging to an entity of the source DB schema.
@@ -28,7 +30,9 @@ package com.orientechnologies.teleporter.model.graphmodel;
  * @email <g.ponzi--at--orientdb.com>
  */
 
-public class OModelProperty {
+public class OModelProperty implements OChangeNotifier.ONotifyingElement {
+
+  private final OChangeNotifier changeNotifier = new OChangeNotifier();   // notifies its changes to the lists and indexes containing it
 
   private String       name;
   private int          ordinalPosition;
@@ -74,6 +78,7 @@ public class OModelProperty {
 
   public void setName(String name) {
     this.name = name;
+    this.changeNotifier.notifyChange();
   }
 
   public int getOrdinalPosition() {
@@ -189,4 +194,9 @@ public class OModelProperty {
     return s;
   }
 
+  @Override
+  public OChangeNotifier getChangeNotifier() {
+    return this.changeNotifier;
+  }
+
 }
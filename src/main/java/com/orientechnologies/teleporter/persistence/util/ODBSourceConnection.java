@@ -39,40 +39,36 @@ import java.sql.DriverManager;
 
 public class ODBSourceConnection {
 
+  /**
+   * Borrows a connection towards the source database from the connection pool owned by the current context.
+   * The connection must be given back through {@link #releaseConnection(OSourceDatabaseInfo, Connection)}.
+   *
+   * @param sourceDBInfo
+   *
+   * @return
+   */
   public static Connection getConnection(OSourceDatabaseInfo sourceDBInfo) {
+    return OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo).borrowConnection();
+  }
 
-    Connection connection = null;
-    String driver = sourceDBInfo.getDriverName();
-    String uri = sourceDBInfo.getUrl();
-    String username = sourceDBInfo.getUsername();
-    String password = sourceDBInfo.getPassword();
-
-    try {
-      URL u = new URL("jar:file:" + OTeleporterContext.getInstance().getDriverDependencyPath() + "!/");
-      URLClassLoader ucl = new URLClassLoader(new URL[] { u });
-      Driver d = (Driver) Class.forName(driver, true, ucl).newInstance();
-      DriverManager.registerDriver(new ODriverShim(d));
-      connection = DriverManager.getConnection(uri, username, password);
-
-    } catch (Exception e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
-    }
-    return connection;
+  public static void releaseConnection(OSourceDatabaseInfo sourceDBInfo, Connection connection) {
+    OTeleporterContext.getInstance().getSourceConnectionPool(sourceDBInfo).releaseConnection(connection);
   }
 
+  /**
+   * Opens a new connection not managed by any pool, it's up to the caller closing it.
+   */
   public static Connection getConnection(String driver, String uri, String username, String password) {
 
     Connection connection = null;
 
     try {
-      URL u = new URL("jar:file:" + OTeleporterContext.getInstance().getDriverDependencyPath() + "!/");
-      URLClassLoader ucl = new URLClassLoader(new URL[] { u });
-      Driver d = (Driver) Class.forName(driver, true, ucl).newInstance();
-      DriverManager.registerDriver(new ODriverShim(d));
-      connection = DriverManager.getConnection(uri, username, password);
+      Driver d = loadDriver(driver);
+      try {
+        connection = DriverManager.getConnection(uri, username, password);
+      } finally {
+        DriverManager.deregisterDriver(d);
+      }
 
     } catch (Exception e) {
       String mess = "";
@@ -83,4 +79,22 @@ public class ODBSourceConnection {
     return connection;
   }
 
-}
\ No newline at end of file
+  /**
+   * Loads the driver class from the driver dependency path and registers it into the DriverManager.
+   *
+   * @param driver
+   *
+   * @return the registered driver
+   *
+   * @throws Exception
+   */
+  static Driver loadDriver(String driver) throws Exception {
+
+    URL u = new URL("jar:file:" + OTeleporterContext.getInstance().getDriverDependencyPath() + "!/");
+    URLClassLoader ucl = new URLClassLoader(new URL[] { u });
+    Driver d = new ODriverShim((Driver) Class.forName(driver, true, ucl).newInstance());
+    DriverManager.registerDriver(d);
+    return d;
+  }
+
+}
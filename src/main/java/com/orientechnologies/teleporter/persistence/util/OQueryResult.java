@@ -36,14 +36,29 @@ import java.sql.Statement;
 
 public class OQueryResult {
 
-  private Connection dbConnection;
-  private Statement  statement;
-  private ResultSet  result;
+  private Connection             dbConnection;
+  private Statement              statement;
+  private ResultSet              result;
+  private OSourceConnectionPool  connectionPool;        // pool the connection was borrowed from, null if not pooled
+  private boolean                connectionReleased;
+  private boolean                statementCached;       // prepared statement owned by the pool cache, never closed here
 
   public OQueryResult(Connection connection, Statement statement, ResultSet result) {
+    this(connection, statement, result, null);
+  }
+
+  public OQueryResult(Connection connection, Statement statement, ResultSet result, OSourceConnectionPool connectionPool) {
+    this(connection, statement, result, connectionPool, false);
+  }
+
+  public OQueryResult(Connection connection, Statement statement, ResultSet result, OSourceConnectionPool connectionPool,
+      boolean statementCached) {
     this.dbConnection = connection;
     this.statement = statement;
     this.result = result;
+    this.connectionPool = connectionPool;
+    this.connectionReleased = false;
+    this.statementCached = statementCached;
   }
 
   public Connection getDbConnection() {
@@ -70,15 +85,40 @@ public class OQueryResult {
     this.result = result;
   }
 
+  public OSourceConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  public boolean isStatementCached() {
+    return statementCached;
+  }
+
+  /**
+   * Closes statement and result set. The connection is given back to the pool it was borrowed from,
+   * or closed if it's not pooled. A cached prepared statement is left open for reuse.
+   */
   public void closeAll() {
 
     try {
-      if (this.statement != null && !this.statement.isClosed())
-        this.statement.close();
       if (this.result != null && !this.result.isClosed())
         this.result.close();
-      if (this.dbConnection != null && !this.dbConnection.isClosed())
+      if (!this.statementCached && this.statement != null && !this.statement.isClosed())
+        this.statement.close();
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+    }
+
+    try {
+      if (this.connectionPool != null) {
+        if (!this.connectionReleased) {
+          this.connectionPool.releaseConnection(this.dbConnection);
+          this.connectionReleased = true;
+        }
+      } else if (this.dbConnection != null && !this.dbConnection.isClosed()) {
         this.dbConnection.close();
+      }
     } catch (SQLException e) {
       String mess = "";
       OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
@@ -87,6 +127,8 @@ public class OQueryResult {
   }
 
   public boolean isConnectionClosed(OTeleporterContext context) {
+    if (this.connectionReleased)
+      return true;
     try {
       if (this.dbConnection != null)
         return dbConnection.isClosed();
@@ -99,6 +141,8 @@ public class OQueryResult {
   }
 
   public boolean isStatementClosed(OTeleporterContext context) {
+    if (this.statementCached && this.connectionReleased)
+      return true;    // handed back to the pool cache together with the connection
     try {
       if (this.statement != null)
         return statement.isClosed();
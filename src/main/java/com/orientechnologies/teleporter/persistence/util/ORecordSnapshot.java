@@ -0,0 +1,337 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.persistence.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory copy of the current row of a result set, exposed as a read-only ResultSet positioned on that row.
+ * Only the values returned by getObject() are copied when the snapshot is taken, so the row can be imported again after
+ * the source cursor moved on, e.g. when a batch of writes has to be retried: the other getters convert them on demand.
+ * Blob and Clob values are kept as locators and read only when they're accessed, so they must be read before the
+ * transaction of the source connection ends.
+ * Only the getters used during the import are supported: getString, getObject, the numeric and boolean getters, getDate,
+ * getTime, getTimestamp, getBytes, wasNull, findColumn and getMetaData.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ORecordSnapshot implements InvocationHandler {
+
+  private final ResultSetMetaData    metaData;
+  private final Map<String, Integer> label2index;
+  private final Object[]             objects;
+  private final long                 estimatedSize;
+  private       boolean              lastWasNull;
+
+  private static final int VALUE_SIZE = 16;  // approximate bytes held by a scalar value
+
+  private ORecordSnapshot(ResultSetMetaData metaData, Map<String, Integer> label2index, Object[] objects, long estimatedSize) {
+    this.metaData = metaData;
+    this.label2index = label2index;
+    this.objects = objects;
+    this.estimatedSize = estimatedSize;
+  }
+
+  /**
+   * Maps the (upper case) labels of the result set's columns to their indexes. The map can be shared by all the snapshots
+   * of the same result set.
+   *
+   * @param metaData
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  public static Map<String, Integer> buildLabelIndex(ResultSetMetaData metaData) throws SQLException {
+    Map<String, Integer> label2index = new HashMap<String, Integer>();
+    for (int i = metaData.getColumnCount(); i >= 1; i--) {
+      // the first column wins when labels are duplicated, as in ResultSet.findColumn()
+      label2index.put(metaData.getColumnLabel(i).toUpperCase(Locale.ENGLISH), i);
+    }
+    return label2index;
+  }
+
+  /**
+   * Takes the snapshot of the current row.
+   *
+   * @param record      the result set, positioned on the row to copy
+   * @param label2index built through {@link #buildLabelIndex(ResultSetMetaData)} on the same result set
+   *
+   * @return the snapshot
+   *
+   * @throws SQLException
+   */
+  public static ORecordSnapshot take(ResultSet record, Map<String, Integer> label2index) throws SQLException {
+    return take(record, record.getMetaData(), label2index);
+  }
+
+  /**
+   * Takes the snapshot of the current row, sharing the metadata already read from the result set: all the snapshots of the
+   * result set expose the same metadata object, so the column bindings based on it can be reused among them.
+   *
+   * @param record      the result set, positioned on the row to copy
+   * @param metaData    metadata of the result set
+   * @param label2index built through {@link #buildLabelIndex(ResultSetMetaData)} on the same result set
+   *
+   * @return the snapshot
+   *
+   * @throws SQLException
+   */
+  public static ORecordSnapshot take(ResultSet record, ResultSetMetaData metaData, Map<String, Integer> label2index)
+      throws SQLException {
+
+    int columns = metaData.getColumnCount();
+    Object[] objects = new Object[columns];
+    long size = 0;
+
+    for (int i = 1; i <= columns; i++) {
+      Object value = record.getObject(i);
+
+      if (value instanceof String) {
+        size += 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        size += ((byte[]) value).length;
+      } else if (value instanceof Blob) {
+        size += ((Blob) value).length();
+      } else if (value instanceof Clob) {
+        size += 2L * ((Clob) value).length();
+      } else if (value != null) {
+        size += VALUE_SIZE;
+      }
+
+      objects[i - 1] = value;
+    }
+
+    return new ORecordSnapshot(metaData, label2index, objects, size);
+  }
+
+  /**
+   * @return the snapshot as a ResultSet positioned on the copied row
+   */
+  public ResultSet asResultSet() {
+    return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+  }
+
+  /**
+   * @param record
+   *
+   * @return the snapshot backing the result set if it was obtained through {@link #asResultSet()}, null otherwise
+   */
+  public static ORecordSnapshot unwrap(ResultSet record) {
+    if (record != null && Proxy.isProxyClass(record.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(record);
+      if (handler instanceof ORecordSnapshot) {
+        return (ORecordSnapshot) handler;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the approximate number of bytes held by the snapshot
+   */
+  public long getEstimatedSize() {
+    return this.estimatedSize;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+    String name = method.getName();
+
+    switch (name) {
+    case "wasNull":
+      return this.lastWasNull;
+    case "findColumn":
+      return this.indexOf(args[0]);
+    case "getMetaData":
+      return this.metaData;
+    case "isClosed":
+      return false;
+    case "close":
+      return null;
+    case "next":
+      return false;
+    case "toString":
+      return "Snapshot of record " + Arrays.toString(this.objects);
+    case "hashCode":
+      return System.identityHashCode(proxy);
+    case "equals":
+      return proxy == args[0];
+    default:
+      break;
+    }
+
+    if (!name.startsWith("get") || args == null || args.length != 1) {
+      throw new SQLFeatureNotSupportedException("Record snapshots don't support " + name + "()");
+    }
+
+    int index = this.indexOf(args[0]);
+    Object value = this.objects[index - 1];
+    this.lastWasNull = value == null;
+
+    try {
+      return this.convert(name, value);
+    } catch (RuntimeException e) {
+      throw new SQLException("Cannot convert the value of column " + index + " (" + value + ") through " + name + "()", e);
+    }
+  }
+
+  private int indexOf(Object column) throws SQLException {
+    if (column instanceof Integer) {
+      int index = (Integer) column;
+      if (index < 1 || index > this.objects.length) {
+        throw new SQLException("Invalid column index: " + index);
+      }
+      return index;
+    }
+    Integer index = this.label2index.get(((String) column).toUpperCase(Locale.ENGLISH));
+    if (index == null) {
+      throw new SQLException("Column not found: " + column);
+    }
+    return index;
+  }
+
+  private Object convert(String getter, Object value) throws SQLException {
+
+    switch (getter) {
+    case "getString":
+    case "getNString":
+      return this.toString(value);
+    case "getObject":
+      return value;
+    case "getBytes":
+      if (value == null || value instanceof byte[])
+        return value;
+      if (value instanceof Blob)
+        return ((Blob) value).getBytes(1, (int) ((Blob) value).length());
+      return this.toString(value).getBytes();
+    case "getBoolean":
+      if (value == null)
+        return false;
+      if (value instanceof Boolean)
+        return value;
+      if (value instanceof Number)
+        return ((Number) value).intValue() != 0;
+      String s = this.toString(value).trim();
+      return s.equalsIgnoreCase("true") || s.equalsIgnoreCase("t") || s.equalsIgnoreCase("y") || s.equals("1");
+    case "getByte":
+      return value == null ? (byte) 0 : this.toNumber(value).byteValue();
+    case "getShort":
+      return value == null ? (short) 0 : this.toNumber(value).shortValue();
+    case "getInt":
+      return value == null ? 0 : this.toNumber(value).intValue();
+    case "getLong":
+      return value == null ? 0L : this.toNumber(value).longValue();
+    case "getFloat":
+      return value == null ? 0F : this.toNumber(value).floatValue();
+    case "getDouble":
+      return value == null ? 0D : this.toNumber(value).doubleValue();
+    case "getBigDecimal":
+      if (value == null || value instanceof BigDecimal)
+        return value;
+      return new BigDecimal(value instanceof Number ? value.toString() : this.toString(value).trim());
+    case "getDate":
+      if (value == null || value instanceof Date)
+        return value;
+      if (value instanceof java.util.Date)
+        return new Date(((java.util.Date) value).getTime());
+      if (value instanceof LocalDate)
+        return Date.valueOf((LocalDate) value);
+      if (value instanceof LocalDateTime)
+        return Date.valueOf(((LocalDateTime) value).toLocalDate());
+      return new Date(Timestamp.valueOf(this.normalizeTimestamp(this.toString(value))).getTime());
+    case "getTime":
+      if (value == null || value instanceof Time)
+        return value;
+      if (value instanceof java.util.Date)
+        return new Time(((java.util.Date) value).getTime());
+      if (value instanceof LocalTime)
+        return Time.valueOf((LocalTime) value);
+      return Time.valueOf(this.toString(value).trim());
+    case "getTimestamp":
+      if (value == null || value instanceof Timestamp)
+        return value;
+      if (value instanceof java.util.Date)
+        return new Timestamp(((java.util.Date) value).getTime());
+      if (value instanceof LocalDateTime)
+        return Timestamp.valueOf((LocalDateTime) value);
+      if (value instanceof LocalDate)
+        return Timestamp.valueOf(((LocalDate) value).atStartOfDay());
+      return Timestamp.valueOf(this.normalizeTimestamp(this.toString(value)));
+    default:
+      throw new SQLFeatureNotSupportedException("Record snapshots don't support " + getter + "()");
+    }
+  }
+
+  /**
+   * Converts the value to the string the drivers return through getString(): decimals are not written in scientific
+   * notation and LOBs are read through their locators.
+   */
+  private String toString(Object value) throws SQLException {
+    if (value == null || value instanceof String)
+      return (String) value;
+    if (value instanceof byte[])
+      return new String((byte[]) value);
+    if (value instanceof BigDecimal)
+      return ((BigDecimal) value).toPlainString();
+    if (value instanceof Clob)
+      return ((Clob) value).getSubString(1, (int) ((Clob) value).length());
+    if (value instanceof Blob)
+      return new String(((Blob) value).getBytes(1, (int) ((Blob) value).length()));
+    return value.toString();
+  }
+
+  private Number toNumber(Object value) {
+    if (value instanceof Number)
+      return (Number) value;
+    if (value instanceof Boolean)
+      return ((Boolean) value) ? 1 : 0;
+    return new BigDecimal(value.toString().trim());
+  }
+
+  private String normalizeTimestamp(String value) {
+    value = value.trim();
+    return value.length() == 10 ? value + " 00:00:00" : value;
+  }
+
+}
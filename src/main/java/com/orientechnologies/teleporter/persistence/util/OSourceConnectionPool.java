@@ -0,0 +1,363 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.persistence.util;
+
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterStatistics;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections towards a source database.
+ * The driver is loaded and registered just once when the pool is built, then connections are lazily opened up to the
+ * maximum size of the pool, validated when borrowed and reset (rollback of any pending transaction, auto-commit restored)
+ * when they are given back, so an idle connection never holds locks on the source database.
+ * Each pooled connection keeps a bounded LRU cache of prepared statements keyed by query template, so repeated lookups
+ * are parsed and planned by the source database just once per connection.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OSourceConnectionPool {
+
+  public static final int  DEFAULT_MAX_SIZE           = 8;
+  public static final long DEFAULT_BORROW_TIMEOUT     = 60000;   // milliseconds
+  public static final int  DEFAULT_VALIDATION_TIMEOUT = 5;       // seconds
+  public static final int  DEFAULT_STATEMENT_CACHE_SIZE = 64;    // statements per connection
+
+  private final OSourceDatabaseInfo sourceDBInfo;
+  private final int                 maxSize;
+  private final long                borrowTimeout;
+  private final int                 validationTimeout;
+  private final Semaphore           permits;
+  private final LinkedList<Connection> idleConnections;
+  private final Set<Connection>     activeConnections;
+  private final Map<Connection, Map<String, PreparedStatement>> statementCaches;
+  private       Driver              driver;
+  private volatile boolean          closed;
+
+  public OSourceConnectionPool(OSourceDatabaseInfo sourceDBInfo) {
+    this(sourceDBInfo, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT, DEFAULT_VALIDATION_TIMEOUT);
+  }
+
+  public OSourceConnectionPool(OSourceDatabaseInfo sourceDBInfo, int maxSize, long borrowTimeout, int validationTimeout) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("The source connection pool size must be greater than 0.");
+    }
+    this.sourceDBInfo = sourceDBInfo;
+    this.maxSize = maxSize;
+    this.borrowTimeout = borrowTimeout;
+    this.validationTimeout = validationTimeout;
+    this.permits = new Semaphore(maxSize, true);
+    this.idleConnections = new LinkedList<Connection>();
+    this.activeConnections = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+    this.statementCaches = new IdentityHashMap<Connection, Map<String, PreparedStatement>>();
+    this.closed = false;
+
+    try {
+      this.driver = ODBSourceConnection.loadDriver(sourceDBInfo.getDriverName());
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  /**
+   * Borrows a connection from the pool, waiting at most the borrow timeout if all the connections are in use.
+   * Idle connections are validated before being handed out: broken ones are discarded and replaced by a new one.
+   *
+   * @return a valid connection towards the source database
+   */
+  public Connection borrowConnection() {
+
+    if (this.closed) {
+      throw new OTeleporterRuntimeException("The connection pool for the source '" + this.sourceDBInfo.getSourceIdName() + "' is closed.");
+    }
+
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = this.permits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OTeleporterRuntimeException(e);
+    }
+    if (!acquired) {
+      throw new OTeleporterRuntimeException(
+          "Timeout expired while waiting for a connection to the source '" + this.sourceDBInfo.getSourceIdName() + "' ("
+              + this.maxSize + " connections in use).");
+    }
+    long waitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    Connection connection = null;
+    try {
+      while (connection == null) {
+        Connection candidate;
+        synchronized (this) {
+          candidate = this.idleConnections.pollFirst();
+        }
+        if (candidate == null) {
+          connection = this.openConnection();
+        } else if (this.isValid(candidate)) {
+          connection = candidate;
+        } else {
+          this.closeQuietly(candidate);
+          if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+            OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nDiscarded a broken idle connection to the source database.\n");
+          }
+        }
+      }
+    } catch (Exception e) {
+      this.permits.release();
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+
+    synchronized (this) {
+      this.activeConnections.add(connection);
+      OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
+      statistics.sourceConnectionsBorrowed++;
+      statistics.sourceConnectionsBorrowWaitTime += waitTime;
+      if (waitTime > statistics.sourceConnectionsMaxBorrowWaitTime) {
+        statistics.sourceConnectionsMaxBorrowWaitTime = waitTime;
+      }
+      this.updateStatistics(statistics);
+    }
+    return connection;
+  }
+
+  /**
+   * Gives a connection back to the pool. Pending work is rolled back and the auto-commit mode restored, so that the idle
+   * connection does not keep any lock on the source database.
+   *
+   * @param connection
+   */
+  public void releaseConnection(Connection connection) {
+
+    if (connection == null) {
+      return;
+    }
+
+    synchronized (this) {
+      if (!this.activeConnections.remove(connection)) {
+        // not borrowed from this pool (or already released)
+        return;
+      }
+    }
+
+    boolean reusable = !this.closed;
+    if (reusable) {
+      try {
+        if (connection.isClosed()) {
+          reusable = false;
+        } else {
+          if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+          }
+          connection.clearWarnings();
+        }
+      } catch (SQLException e) {
+        reusable = false;
+        String mess = "";
+        OTeleporterContext.getInstance().printExceptionMessage(e, mess, "debug");
+      }
+    }
+
+    synchronized (this) {
+      if (reusable) {
+        this.idleConnections.addFirst(connection);
+      }
+      this.updateStatistics(OTeleporterContext.getInstance().getStatistics());
+    }
+    if (!reusable) {
+      this.closeQuietly(connection);
+    }
+    this.permits.release();
+  }
+
+  /**
+   * Returns a forward-only, read-only prepared statement for the template on a connection borrowed from this pool.
+   * Statements are cached per connection and must not be closed by the caller: the least recently used one is closed
+   * when the cache is full, the others when the connection is discarded.
+   *
+   * @param connection a connection borrowed from this pool
+   * @param template   the query template, with a '?' placeholder for each parameter
+   * @return the cached (or just prepared) statement
+   */
+  public PreparedStatement prepareStatement(Connection connection, String template) throws SQLException {
+
+    Map<String, PreparedStatement> cache;
+    synchronized (this) {
+      if (!this.activeConnections.contains(connection)) {
+        throw new IllegalArgumentException("The connection was not borrowed from this pool.");
+      }
+      cache = this.statementCaches.get(connection);
+      if (cache == null) {
+        cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (this.size() > DEFAULT_STATEMENT_CACHE_SIZE) {
+              closeQuietly(eldest.getValue());
+              return true;
+            }
+            return false;
+          }
+        };
+        this.statementCaches.put(connection, cache);
+      }
+    }
+
+    // a connection is used by a single borrower at a time, so its cache is not shared between threads
+    PreparedStatement statement = cache.get(template);
+    if (statement == null || statement.isClosed()) {
+      statement = connection.prepareStatement(template, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      cache.put(template, statement);
+      OTeleporterContext.getInstance().getStatistics().incrementPreparedStatements(false);
+    } else {
+      statement.clearParameters();
+      OTeleporterContext.getInstance().getStatistics().incrementPreparedStatements(true);
+    }
+    return statement;
+  }
+
+  public synchronized int getCachedStatementsCount(Connection connection) {
+    Map<String, PreparedStatement> cache = this.statementCaches.get(connection);
+    return cache == null ? 0 : cache.size();
+  }
+
+  /**
+   * Closes all the idle connections and deregisters the driver. Connections still borrowed are closed when released.
+   */
+  public void close() {
+
+    this.closed = true;
+    LinkedList<Connection> toClose;
+    synchronized (this) {
+      toClose = new LinkedList<Connection>(this.idleConnections);
+      this.idleConnections.clear();
+      this.updateStatistics(OTeleporterContext.getInstance().getStatistics());
+    }
+    for (Connection connection : toClose) {
+      this.closeQuietly(connection);
+    }
+
+    try {
+      DriverManager.deregisterDriver(this.driver);
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "debug");
+    }
+  }
+
+  public synchronized int getActiveCount() {
+    return this.activeConnections.size();
+  }
+
+  public synchronized int getIdleCount() {
+    return this.idleConnections.size();
+  }
+
+  public int getMaxSize() {
+    return this.maxSize;
+  }
+
+  public boolean isClosed() {
+    return this.closed;
+  }
+
+  public OSourceDatabaseInfo getSourceDBInfo() {
+    return this.sourceDBInfo;
+  }
+
+  private Connection openConnection() throws SQLException {
+    return DriverManager.getConnection(this.sourceDBInfo.getUrl(), this.sourceDBInfo.getUsername(), this.sourceDBInfo.getPassword());
+  }
+
+  private boolean isValid(Connection connection) {
+    try {
+      return !connection.isClosed() && connection.isValid(this.validationTimeout);
+    } catch (SQLException e) {
+      return false;
+    } catch (AbstractMethodError e) {
+      // pre JDBC 4 drivers: isValid() not implemented
+      try {
+        return !connection.isClosed();
+      } catch (SQLException e1) {
+        return false;
+      }
+    }
+  }
+
+  private void closeQuietly(Connection connection) {
+    Map<String, PreparedStatement> cache;
+    synchronized (this) {
+      cache = this.statementCaches.remove(connection);
+    }
+    if (cache != null) {
+      for (PreparedStatement statement : cache.values()) {
+        this.closeQuietly(statement);
+      }
+    }
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "debug");
+    }
+  }
+
+  private void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "debug");
+    }
+  }
+
+  private void updateStatistics(OTeleporterStatistics statistics) {
+    statistics.activeSourceConnections = this.activeConnections.size();
+    statistics.idleSourceConnections = this.idleConnections.size();
+  }
+
+}
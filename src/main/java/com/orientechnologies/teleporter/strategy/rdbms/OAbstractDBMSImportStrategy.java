@@ -21,8 +21,14 @@
 package com.orientechnologies.teleporter.strategy.rdbms;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.OVertex;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.output.OOutputStreamManager;
 import com.orientechnologies.teleporter.configuration.OConfigurationHandler;
 import com.orientechnologies.teleporter.configuration.api.OConfiguration;
 import com.orientechnologies.teleporter.configuration.api.OConfiguredVertexClass;
@@ -33,24 +39,38 @@ import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
 import com.orientechnologies.teleporter.factory.ODataTypeHandlerFactory;
 import com.orientechnologies.teleporter.factory.ONameResolverFactory;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OHierarchicalBagKeyIndex;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphBatchWriter;
 import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphEngineForDB;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphSessionPool;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OLogicalRelationshipJoin;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OParallelGraphWriter;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
 import com.orientechnologies.teleporter.mapper.OSource2GraphMapper;
 import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
 import com.orientechnologies.teleporter.mapper.rdbms.classmapper.OEEClassMapper;
+import com.orientechnologies.teleporter.mapper.rdbms.classmapper.OEVClassMapper;
 import com.orientechnologies.teleporter.model.OSourceInfo;
 import com.orientechnologies.teleporter.model.dbschema.*;
 import com.orientechnologies.teleporter.model.graphmodel.OEdgeType;
-import com.orientechnologies.teleporter.model.graphmodel.OModelProperty;
 import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
 import com.orientechnologies.teleporter.nameresolver.ONameResolver;
 import com.orientechnologies.teleporter.persistence.handler.ODBMSDataTypeHandler;
 import com.orientechnologies.teleporter.persistence.util.OQueryResult;
 import com.orientechnologies.teleporter.strategy.OWorkflowStrategy;
 import com.orientechnologies.teleporter.util.OFunctionsHandler;
+import com.orientechnologies.teleporter.util.OMigrationConfigManager;
+import com.orientechnologies.teleporter.writer.ODeferredIndexBuilder;
 
 import java.sql.ResultSet;
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Gabriele Ponzi
@@ -63,11 +83,22 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
   protected String protocol;
   protected String serverInitUrl;
   protected String dbName;
+  protected OVertexRidMap vertexRidMap;              // external key -> vertex id, set during a two-phase import
+  protected boolean       importingVerticesOnly;     // true during the first phase of a two-phase import
+  protected Map<OHierarchicalBag, OHierarchicalBagKeyIndex> bag2keyIndex;   // key indexes of the bags referenced by foreign keys
+  protected ODeferredIndexBuilder deferredIndexes;   // indexes to build after the import, null when built with the schema
+  protected String outOrientGraphUri;
+  protected Map<String, ODocument> watermarks;       // watermark of each source table with a change-tracking column
+  protected Map<String, ODocument> fingerprints;     // record count and aggregate hash of each source table read by full scan
+  protected Set<String> unchangedTables;             // tables whose fingerprint didn't change since the last sync
+  protected OImportCheckpoint checkpoint;            // progress of the import, stored to resume it if interrupted
+  protected boolean       resuming;                  // true if the import is resumed from the checkpoint of an interrupted one
 
   public OAbstractDBMSImportStrategy(String protocol, String serverInitUrl, String dbName) {
     this.protocol = protocol;
     this.serverInitUrl = serverInitUrl;
     this.dbName = dbName;
+    this.bag2keyIndex = new IdentityHashMap<OHierarchicalBag, OHierarchicalBagKeyIndex>();
   }
 
   @Override
@@ -75,6 +106,7 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
       String nameResolverConvention, List<String> includedTables, List<String> excludedTables, ODocument migrationConfigDoc) {
 
     OSourceDatabaseInfo sourceDBInfo = (OSourceDatabaseInfo) sourceInfo;
+    this.outOrientGraphUri = outOrientGraphUri;
 
     Date globalStart = new Date();
 
@@ -144,6 +176,699 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
   public abstract void executeImport(OSourceDatabaseInfo sourceDBInfo, String outOrientGraphUri, OSource2GraphMapper mapper,
       ODBMSDataTypeHandler handler);
 
+  /**
+   * Starts a two-phase import if the target database doesn't contain vertices yet (or a fresh import is forced), or if it's
+   * enabled: in the first phase all the vertices of the vertex classes mapped with (not hierarchical) entities are inserted
+   * without any lookup, recording the id of each one; in the second phase the records are read again and the edges are built
+   * from the recorded ids, so no placeholder vertex is inserted for the referenced records.
+   * In a fresh import the graph engine doesn't check the vertices and edges still upserted (records of hierarchies and edges
+   * of the vertices without key) against the existing ones, nor compares their versions.
+   * On a database already populated (synchronization) vertices must be upserted, so the single-phase import is performed.
+   * The same holds for an import resumed from a checkpoint, even if a fresh import is forced.
+   *
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @return true if the first phase starts
+   */
+  protected boolean beginTwoPhaseImport(OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) {
+
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    boolean emptyTarget = orientGraph.countClass("V") == 0;
+    boolean freshImport = emptyTarget || (context.isFreshImport() && !this.resuming);
+    graphEngine.setFreshImport(freshImport);
+
+    if (!freshImport) {
+      if (context.isTwoPhaseImport()) {
+        context.getMessageHandler()
+            .info(this, "\nThe target database already contains vertices: the two-phase import is not available, a single-phase "
+                + "import will be performed.\n");
+      }
+      return false;
+    }
+    if (!emptyTarget) {
+      context.getMessageHandler()
+          .info(this, "\nFresh import: the records will be inserted without checking the vertices already in the target "
+              + "database.\n");
+    }
+    this.vertexRidMap = new OVertexRidMap(context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory());
+    this.importingVerticesOnly = true;
+    if (this.deferredIndexes != null) {
+      graphEngine.setIndexesDeferred(true, this.vertexRidMap);
+    }
+    return true;
+  }
+
+  /**
+   * Ends the first phase of a two-phase import: from now on the records are imported as edges between the inserted vertices.
+   */
+  protected void beginEdgesPhase() {
+    this.importingVerticesOnly = false;
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\nVertices inserted in the first phase: %s (key map: %s bytes in memory, %s bytes spilled). Building the "
+              + "edges.\n", this.vertexRidMap.size(), this.vertexRidMap.getAllocatedBytes(), this.vertexRidMap.getSpilledBytes());
+    }
+  }
+
+  protected void endTwoPhaseImport() {
+    if (this.vertexRidMap != null) {
+      this.vertexRidMap.clear();
+      this.vertexRidMap = null;
+    }
+    this.importingVerticesOnly = false;
+  }
+
+  /**
+   * Opens the checkpoint of the import, just when the import is resumable: the checkpoint stored by an interrupted import is
+   * loaded, and the vertex classes it completed are set as 'analyzed' so that they're skipped. Without a stored checkpoint an
+   * empty one is stored, so that this import can be resumed in turn. A checkpoint is ignored if the target database contains
+   * no vertex, as nothing was imported. Otherwise no checkpoint is kept and the tables are read as usual.
+   * Must be called before starting the two-phase import, as a resumed import is never a fresh one.
+   *
+   * @param orientGraph
+   */
+  protected void openCheckpoint(ODatabaseDocument orientGraph) {
+
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    this.checkpoint = null;
+    this.resuming = false;
+    if (!context.isResumedImport()) {
+      return;
+    }
+
+    this.checkpoint = orientGraph.countClass("V") > 0 ? OImportCheckpoint.load(this.outOrientGraphUri) : null;
+    if (this.checkpoint == null) {
+      context.getMessageHandler()
+          .info(this, "\nNo checkpoint of an interrupted import found: the whole import will be performed.\n");
+      this.checkpoint = new OImportCheckpoint(this.outOrientGraphUri);
+      this.checkpoint.save();
+    } else {
+      this.resuming = true;
+      int completedVertexTypes = 0;
+      for (String vertexTypeName : this.checkpoint.getCompletedVertexTypes()) {
+        OVertexType vertexType = this.mapper.getGraphModel().getVertexTypeByName(vertexTypeName);
+        if (vertexType != null) {
+          vertexType.setAnalyzedInLastMigration(true);
+          completedVertexTypes++;
+        }
+      }
+      context.getMessageHandler()
+          .info(this, "\nResuming the interrupted import: %s vertex classes already imported will be skipped.\n",
+              completedVertexTypes);
+    }
+  }
+
+  /**
+   * Deletes the checkpoint once the import is complete, so the next import starts from scratch even if resumed.
+   */
+  protected void closeCheckpoint() {
+    if (this.checkpoint != null) {
+      this.checkpoint.delete();
+      this.checkpoint = null;
+    }
+    this.resuming = false;
+  }
+
+  /**
+   * Sets the vertex class as 'analyzed' (edges still to import in the first phase of a two-phase import) and records it as
+   * completed in the checkpoint, along with the source table whose last committed key is no more needed.
+   *
+   * @param vertexType
+   * @param table      key of the source table in the checkpoint, null if none
+   */
+  protected void completeVertexType(OVertexType vertexType, String table) {
+    vertexType.setAnalyzedInLastMigration(!this.importingVerticesOnly);
+    if (!this.importingVerticesOnly && this.checkpoint != null) {
+      this.checkpoint.completeVertexType(vertexType.getName(), table);
+    }
+  }
+
+  /**
+   * Opens the pool of the graph writer workers when the import is configured with more than one writer: from now on the
+   * records of the vertex classes are written in parallel by the workers, each through its own session and clusters.
+   *
+   * @param graphEngine
+   * @param orientGraph
+   */
+  protected void openGraphSessionPool(OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) {
+
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    int writers = context.getGraphWriters();
+    if (writers > 1 && this.deferredIndexes != null) {
+      context.getMessageHandler().info(this, "\nThe indexes are built after the import: the records will be written by a single "
+          + "writer, as the vertices inserted by the other writers can't be looked up without indexes.\n");
+      writers = 1;
+    }
+    if (writers > 1) {
+      try {
+        graphEngine.setSessionPool(new OGraphSessionPool(context.getOrientDBInstance(), this.dbName, orientGraph, writers));
+      } catch (Exception e) {
+        String mess = "Problem encountered while preparing the graph writer workers.";
+        context.printExceptionMessage(e, mess, "error");
+        context.printExceptionStackTrace(e, "error");
+        throw new OTeleporterRuntimeException(e);
+      } finally {
+        orientGraph.activateOnCurrentThread();
+      }
+    }
+  }
+
+  protected void closeGraphSessionPool(OGraphEngineForDB graphEngine) {
+    if (graphEngine != null && graphEngine.getSessionPool() != null) {
+      graphEngine.getSessionPool().close();
+      graphEngine.setSessionPool(null);
+    }
+  }
+
+  /**
+   * Releases the off-heap memory of the vertex key cache, of the edge sets and of the key maps used while the indexes are
+   * deferred.
+   *
+   * @param graphEngine
+   */
+  protected void releaseVertexKeyCache(OGraphEngineForDB graphEngine) {
+    if (graphEngine != null) {
+      graphEngine.getVertexKeyCache().clear();
+      graphEngine.releaseEdgeSets();
+      graphEngine.setIndexesDeferred(false, null);
+    }
+  }
+
+  /**
+   * Builds the indexes deferred by the writing of the schema, at the end of the first import. The indexes are built in
+   * parallel unless the target database is remote.
+   */
+  protected void buildDeferredIndexes() {
+    if (this.deferredIndexes != null) {
+      int threads = "remote".equals(this.protocol) ? 1 : Runtime.getRuntime().availableProcessors();
+      this.deferredIndexes.buildIndexes(this.dbName, threads);
+      this.deferredIndexes = null;
+    }
+  }
+
+  /**
+   * Sets the range of the change-tracking column read by the current sync for each entity with a watermark column: the
+   * records changed since the mark stored by the last sync, up to the current maximum of the column. The whole table is read
+   * when no mark was stored, when the watermark column changed, and in a fresh import.
+   * The maximum is read before the records, so the records changed while they're read are caught by the next sync.
+   * Records whose watermark column is null are read only by the full scans.
+   *
+   * @param dbQueryEngine
+   * @param graphEngine
+   *
+   * @throws SQLException
+   */
+  protected void openWatermarks(ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine) throws SQLException {
+
+    this.watermarks = new LinkedHashMap<String, ODocument>();
+    ODocument storedWatermarks = OMigrationConfigManager.loadWatermarks(this.outOrientGraphUri);
+    if (storedWatermarks != null) {
+      List<ODocument> tables = storedWatermarks.field("watermarks");
+      for (ODocument table : tables) {
+        this.watermarks.put(this.buildWatermarkKey((String) table.field("dataSource"), (String) table.field("tableName")), table);
+      }
+    }
+
+    for (OEntity entity : this.mapper.getDataBaseSchema().getEntities()) {
+      String watermarkColumn = entity.getWatermarkColumn();
+      if (watermarkColumn == null) {
+        continue;
+      }
+
+      Object lowerBound = null;
+      ODocument storedWatermark = this.watermarks.get(this.buildWatermarkKey(entity));
+      if (storedWatermark != null && !graphEngine.isFreshImport() && watermarkColumn.equals(storedWatermark.field("column"))) {
+        lowerBound = OWatermark.decode((String) storedWatermark.field("type"), (String) storedWatermark.field("value"));
+      }
+      Object upperBound = dbQueryEngine.getWatermarkMaximum(entity, watermarkColumn);
+      entity.setWatermark(new OWatermark(watermarkColumn, lowerBound, upperBound));
+
+      if (lowerBound != null) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .info(this, "\nReading the records of %s changed since %s = %s.\n", entity.getName(), watermarkColumn,
+                OWatermark.encode(lowerBound));
+      }
+    }
+  }
+
+  /**
+   * Stores the upper bound of the range read for each entity as the mark of the next sync. Called once the import is
+   * complete, so a failed sync reads again the same records.
+   */
+  protected void saveWatermarks() {
+
+    boolean changed = false;
+    for (OEntity entity : this.mapper.getDataBaseSchema().getEntities()) {
+      OWatermark watermark = entity.getWatermark();
+      if (watermark == null || watermark.getNextMark() == null) {
+        continue;
+      }
+      ODocument table = new ODocument();
+      table.field("dataSource", entity.getSourceDataseInfo().getSourceIdName());
+      table.field("tableName", entity.getName());
+      table.field("column", watermark.getColumn());
+      table.field("type", OWatermark.typeOf(watermark.getNextMark()));
+      table.field("value", OWatermark.encode(watermark.getNextMark()));
+      this.watermarks.put(this.buildWatermarkKey(entity), table);
+      changed = true;
+    }
+
+    if (changed) {
+      ODocument watermarksDoc = new ODocument();
+      watermarksDoc.field("watermarks", new ArrayList<ODocument>(this.watermarks.values()));
+      OMigrationConfigManager.writeWatermarks(watermarksDoc, this.outOrientGraphUri);
+    }
+  }
+
+  /**
+   * Sets the changes consumed by the current sync for each entity whose changes are captured by triggers: the changes in
+   * the change-log table up to the last change id read when the sync starts. On the first sync the change-log table and the
+   * triggers are installed in the source database and the whole table is read, as in a fresh import.
+   * The changes made while the sync runs are consumed by the next one.
+   *
+   * @param dbQueryEngine
+   * @param graphEngine
+   *
+   * @throws SQLException
+   */
+  protected void openChangeLogs(ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine) throws SQLException {
+
+    for (OEntity entity : this.mapper.getDataBaseSchema().getEntities()) {
+      if (!entity.isChangeCapture()) {
+        continue;
+      }
+
+      List<String> keyColumns = new ArrayList<String>();
+      if (entity.getPrimaryKey() != null) {
+        for (OAttribute attribute : entity.getPrimaryKey().getInvolvedAttributes()) {
+          keyColumns.add(attribute.getName());
+        }
+      }
+      if (keyColumns.isEmpty()) {
+        OTeleporterContext.getInstance().getStatistics().warningMessages
+            .add("The changes of the table " + entity.getName() + " can't be captured without primary key, the table will be read "
+                + "with a full scan.");
+        continue;
+      }
+
+      String changeLogTable = OChangeLog.buildTableName(entity);
+      if (!dbQueryEngine.existsChangeLog(entity, changeLogTable)) {
+        if (!dbQueryEngine.installChangeCapture(entity, changeLogTable, keyColumns)) {
+          OTeleporterContext.getInstance().getStatistics().warningMessages
+              .add("The change capture is not supported by the driver " + entity.getSourceDataseInfo().getDriverName()
+                  + ", the table " + entity.getName() + " will be read with a full scan.");
+          continue;
+        }
+        OTeleporterContext.getInstance().getMessageHandler()
+            .info(this, "\nChanges of %s captured from now on in %s.\n", entity.getName(), changeLogTable);
+        entity.setChangeLog(new OChangeLog(changeLogTable, keyColumns, null, false));
+        continue;
+      }
+
+      // in a fresh import the whole table is read, and the changes logged so far are purged. The same for a table not
+      // completed by an interrupted import, as its change-log table could have been installed by it
+      boolean incremental = !graphEngine.isFreshImport();
+      OVertexType vertexType = this.findVertexTypeByEntity(entity);
+      if (this.resuming && vertexType != null && !this.checkpoint.isVertexTypeCompleted(vertexType.getName())) {
+        incremental = false;
+      }
+      Long upperBound = dbQueryEngine.getChangeLogMaximum(entity, changeLogTable);
+      entity.setChangeLog(new OChangeLog(changeLogTable, keyColumns, upperBound, incremental));
+
+      if (incremental) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .info(this, "\nReading the records of %s changed since the last sync from %s.\n", entity.getName(), changeLogTable);
+      }
+    }
+  }
+
+  /**
+   * Computes the fingerprint of each table read with a full scan (neither a watermark nor a change-log table lets the sync
+   * read just its changed records) and compares it with the one stored by the last sync: the unchanged tables are not read.
+   * The fingerprint is computed by the source database over the columns read by the import, so a table whose projection
+   * changed is read again. In a fresh import all the tables are read, and their fingerprints stored.
+   * The fingerprints are computed before the records are read, so the changes made while they're read are caught by the
+   * next sync.
+   *
+   * @param dbQueryEngine
+   * @param graphEngine
+   */
+  protected void openFingerprints(ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine) {
+
+    this.fingerprints = new LinkedHashMap<String, ODocument>();
+    this.unchangedTables = new HashSet<String>();
+    if (!OTeleporterContext.getInstance().isTableFingerprinting()) {
+      return;
+    }
+
+    ODocument storedFingerprints = OMigrationConfigManager.loadFingerprints(this.outOrientGraphUri);
+    if (storedFingerprints != null) {
+      List<ODocument> tables = storedFingerprints.field("fingerprints");
+      for (ODocument table : tables) {
+        this.fingerprints.put(this.buildWatermarkKey((String) table.field("dataSource"), (String) table.field("tableName")), table);
+      }
+    }
+
+    for (OEntity entity : this.mapper.getDataBaseSchema().getEntities()) {
+      // hierarchies and split tables are always read
+      OVertexType vertexType = this.findVertexTypeByEntity(entity);
+      if (vertexType == null || entity.getHierarchicalBag() != null || this.mapper.getEVClassMappersByEntity(entity).size() != 1
+          || entity.getWatermark() != null || entity.getChangeLog() != null) {
+        continue;
+      }
+
+      List<String> columns = this.mapper.getProjectedAttributes(entity, vertexType);
+      if (columns == null) {
+        columns = new ArrayList<String>();
+        for (OAttribute attribute : entity.getAttributes()) {
+          columns.add(attribute.getName());
+        }
+      }
+
+      String fingerprint;
+      try {
+        fingerprint = dbQueryEngine.getTableFingerprint(entity, columns);
+      } catch (SQLException e) {
+        OTeleporterContext.getInstance().getStatistics().warningMessages
+            .add("The fingerprint of the table " + entity.getName() + " can't be computed, the table will be read with a full "
+                + "scan.");
+        continue;
+      }
+      if (fingerprint == null) {
+        OTeleporterContext.getInstance().getStatistics().warningMessages
+            .add("The table fingerprints are not supported by the driver " + entity.getSourceDataseInfo().getDriverName()
+                + ", the tables will be read with a full scan.");
+        return;
+      }
+
+      String tableKey = this.buildWatermarkKey(entity);
+      ODocument storedTable = this.fingerprints.get(tableKey);
+      if (!graphEngine.isFreshImport() && storedTable != null && columns.equals(storedTable.field("columns")) && fingerprint
+          .equals(storedTable.field("fingerprint"))) {
+        this.unchangedTables.add(tableKey);
+      }
+
+      ODocument table = new ODocument();
+      table.field("dataSource", entity.getSourceDataseInfo().getSourceIdName());
+      table.field("tableName", entity.getName());
+      table.field("columns", columns);
+      table.field("fingerprint", fingerprint);
+      this.fingerprints.put(tableKey, table);
+    }
+
+    if (!this.unchangedTables.isEmpty()) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .info(this, "\n%s tables unchanged since the last sync will not be read.\n", this.unchangedTables.size());
+    }
+  }
+
+  /**
+   * Stores the fingerprints computed by the current sync. Called once the import is complete, so a failed sync reads again
+   * the same tables.
+   */
+  protected void saveFingerprints() {
+
+    if (!OTeleporterContext.getInstance().isTableFingerprinting() || this.fingerprints == null || this.fingerprints.isEmpty()) {
+      return;
+    }
+    ODocument fingerprintsDoc = new ODocument();
+    fingerprintsDoc.field("fingerprints", new ArrayList<ODocument>(this.fingerprints.values()));
+    OMigrationConfigManager.writeFingerprints(fingerprintsDoc, this.outOrientGraphUri);
+  }
+
+  protected boolean isUnchanged(OEntity entity) {
+    return this.unchangedTables != null && this.unchangedTables.contains(this.buildWatermarkKey(entity));
+  }
+
+  /**
+   * Deletes the changes consumed by the current sync from the change-log tables. Called once the import is complete, so a
+   * failed sync consumes again the same changes.
+   *
+   * @param dbQueryEngine
+   *
+   * @throws SQLException
+   */
+  protected void purgeChangeLogs(ODBQueryEngine dbQueryEngine) throws SQLException {
+
+    for (OEntity entity : this.mapper.getDataBaseSchema().getEntities()) {
+      OChangeLog changeLog = entity.getChangeLog();
+      if (changeLog == null || changeLog.getUpperBound() == null) {
+        continue;
+      }
+      int purgedChanges = dbQueryEngine.purgeChangeLog(entity, changeLog);
+      if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .debug(this, "\n%s changes purged from %s.\n", purgedChanges, changeLog.getTableName());
+      }
+    }
+  }
+
+  /**
+   * Deletes the vertices whose records are no more in the source tables, together with their edges. Just the vertex classes
+   * mapped 1-1 on a table are checked, and the tables whose deletes are already read from a change-log or whose fingerprint
+   * didn't change are skipped. Nothing is done in a fresh import.
+   *
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  protected void propagateDeletes(ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph)
+      throws SQLException {
+
+    if (!OTeleporterContext.getInstance().isDeletePropagation() || graphEngine.isFreshImport()) {
+      return;
+    }
+
+    for (OVertexType vertexType : this.mapper.getVertexType2EVClassMappers().keySet()) {
+      List<OEVClassMapper> classMappers = this.mapper.getEVClassMappersByVertex(vertexType);
+      if (classMappers.size() != 1) {
+        continue;
+      }
+      OEntity entity = classMappers.get(0).getEntity();
+      if (entity.getHierarchicalBag() != null || this.mapper.getEVClassMappersByEntity(entity).size() != 1) {
+        continue;
+      }
+      if ((entity.getChangeLog() != null && entity.getChangeLog().isIncremental()) || this.isUnchanged(entity)) {
+        continue;
+      }
+      this.deleteOrphanVertices(entity, vertexType, dbQueryEngine, graphEngine, orientGraph);
+    }
+  }
+
+  /**
+   * Anti-join between the keys of the table and the vertices of the class: the keys of the table are streamed into an
+   * off-heap key map (spilling to disk beyond its memory budget), then the vertices of the class are scanned and those whose
+   * key is not in the map are buffered as orphans. The primary key index of the class is a hash index, so the keys can't be
+   * merged in order. Each time the buffer reaches the graph batch size its orphans are looked up again in the table with a
+   * single query, so a record inserted during the scan is never lost, and the missing ones are deleted in one transaction.
+   *
+   * @param entity
+   * @param vertexType
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  private void deleteOrphanVertices(OEntity entity, OVertexType vertexType, ODBQueryEngine dbQueryEngine,
+      OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) throws SQLException {
+
+    String[] propertyOfKey = vertexType.getExternalKey().toArray(new String[vertexType.getExternalKey().size()]);
+    String[] keyColumns = new String[propertyOfKey.length];
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      keyColumns[i] = this.mapper.getAttributeNameByVertexTypeAndProperty(vertexType, propertyOfKey[i]);
+      if (keyColumns[i] == null) {
+        return;
+      }
+    }
+    orientGraph.activateOnCurrentThread();
+    OClass vertexClass = orientGraph.getMetadata().getSchema().getClass(vertexType.getName());
+    if (propertyOfKey.length == 0 || vertexClass == null) {
+      return;
+    }
+    OType[] keyTypes = new OType[propertyOfKey.length];
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      OProperty keyProperty = vertexClass.getProperty(propertyOfKey[i]);
+      keyTypes[i] = keyProperty != null ? keyProperty.getType() : null;
+    }
+
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    int batchSize = Math.max(context.getGraphBatchSize(), 1);
+    int deletedVertices = 0;
+    OVertexRidMap sourceKeys = new OVertexRidMap(context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory());
+    try {
+
+      // keys of the table
+      ORID present = new ORecordId(0, 0);
+      OQueryResult keys = dbQueryEngine.getRecordsByEntity(entity, Arrays.asList(keyColumns));
+      try {
+        ResultSet keysResult = keys.getResult();
+        if (keysResult == null) {
+          throw new SQLException("The keys of the table " + entity.getName() + " can't be read.");
+        }
+        while (keysResult.next()) {
+          String[] valueOfKey = this.readKey(keysResult, keyTypes);
+          if (valueOfKey != null) {
+            sourceKeys.put(vertexType.getName(), propertyOfKey, valueOfKey, present);
+          }
+        }
+      } finally {
+        keys.closeAll();
+      }
+
+      // vertices of the class whose key is not in the table
+      List<OOrphanVertex> orphans = new ArrayList<OOrphanVertex>(batchSize);
+      for (ODocument vertex : orientGraph.browseClass(vertexType.getName(), false)) {
+        String[] valueOfKey = new String[propertyOfKey.length];
+        Object[] typedValueOfKey = new Object[propertyOfKey.length];
+        boolean nullValue = false;
+        for (int i = 0; i < propertyOfKey.length; i++) {
+          typedValueOfKey[i] = vertex.getProperty(propertyOfKey[i]);
+          if (typedValueOfKey[i] == null) {
+            nullValue = true;   // vertex without key, never imported from a record
+            break;
+          }
+          valueOfKey[i] = this.toKeyString(typedValueOfKey[i], keyTypes[i]);
+        }
+        if (!nullValue && sourceKeys.get(vertexType.getName(), propertyOfKey, valueOfKey) == null) {
+          orphans.add(new OOrphanVertex(vertex.getIdentity().copy(), valueOfKey, typedValueOfKey));
+          if (orphans.size() == batchSize) {
+            deletedVertices += this.deleteOrphanBatch(entity, vertexType, propertyOfKey, keyColumns, keyTypes, orphans,
+                dbQueryEngine, graphEngine, orientGraph);
+            orphans.clear();
+          }
+        }
+      }
+      if (!orphans.isEmpty()) {
+        deletedVertices += this.deleteOrphanBatch(entity, vertexType, propertyOfKey, keyColumns, keyTypes, orphans,
+            dbQueryEngine, graphEngine, orientGraph);
+      }
+    } finally {
+      sourceKeys.clear();
+    }
+
+    if (deletedVertices > 0) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .info(this, "\n%s vertices of %s deleted, their records are no more in %s.\n", deletedVertices, vertexType.getName(),
+              entity.getName());
+    }
+  }
+
+  /**
+   * Looks the orphans up again in the table with a single query and deletes, in one transaction, the vertices whose record is
+   * still missing. If the lookup fails no vertex is deleted.
+   *
+   * @return the number of deleted vertices
+   *
+   * @throws SQLException
+   */
+  private int deleteOrphanBatch(OEntity entity, OVertexType vertexType, String[] propertyOfKey, String[] keyColumns,
+      OType[] keyTypes, List<OOrphanVertex> orphans, ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine,
+      ODatabaseDocument orientGraph) throws SQLException {
+
+    List<Object[]> valuesOfKeys = new ArrayList<Object[]>(orphans.size());
+    for (OOrphanVertex orphan : orphans) {
+      valuesOfKeys.add(orphan.typedValueOfKey);
+    }
+
+    // keys inserted in the meantime
+    Set<List<String>> existingKeys = new HashSet<List<String>>();
+    OQueryResult keys = dbQueryEngine.getRecordsByKeys(entity, keyColumns, valuesOfKeys);
+    try {
+      ResultSet keysResult = keys.getResult();
+      if (keysResult == null) {
+        return 0;   // not verifiable
+      }
+      while (keysResult.next()) {
+        String[] valueOfKey = this.readKey(keysResult, keyTypes);
+        if (valueOfKey != null) {
+          existingKeys.add(Arrays.asList(valueOfKey));
+        }
+      }
+    } finally {
+      keys.closeAll();
+    }
+
+    int deletedVertices = 0;
+    orientGraph.begin();
+    try {
+      for (OOrphanVertex orphan : orphans) {
+        if (existingKeys.contains(Arrays.asList(orphan.valueOfKey))) {
+          continue;
+        }
+        if (graphEngine.deleteVertexById(orientGraph, vertexType, orphan.vertexId, propertyOfKey, orphan.valueOfKey)) {
+          deletedVertices++;
+        }
+      }
+      orientGraph.commit();
+    } catch (RuntimeException e) {
+      orientGraph.rollback();
+      throw e;
+    }
+    return deletedVertices;
+  }
+
+  /**
+   * Reads the key columns of the current record, projected first in the result set, in their string form.
+   *
+   * @return null if a key column is null
+   *
+   * @throws SQLException
+   */
+  private String[] readKey(ResultSet keysResult, OType[] keyTypes) throws SQLException {
+    String[] valueOfKey = new String[keyTypes.length];
+    for (int i = 0; i < keyTypes.length; i++) {
+      Object value = keysResult.getObject(i + 1);
+      if (value == null) {
+        return null;
+      }
+      valueOfKey[i] = this.toKeyString(value, keyTypes[i]);
+    }
+    return valueOfKey;
+  }
+
+  /**
+   * String form of a key value shared by the values read from the source and from the graph database: the value is converted
+   * to the type of the property, dates are compared by instant and decimals by value.
+   */
+  private String toKeyString(Object value, OType type) {
+    Object converted = type != null ? OType.convert(value, type.getDefaultJavaType()) : value;
+    if (converted == null) {
+      converted = value;
+    }
+    if (converted instanceof Date) {
+      return String.valueOf(((Date) converted).getTime());
+    }
+    if (converted instanceof BigDecimal) {
+      return ((BigDecimal) converted).stripTrailingZeros().toPlainString();
+    }
+    if (converted instanceof byte[]) {
+      return Arrays.toString((byte[]) converted);
+    }
+    return converted.toString();
+  }
+
+  /**
+   * @param entity
+   *
+   * @return the vertex class mapped with the entity, null if the entity is not mapped
+   */
+  private OVertexType findVertexTypeByEntity(OEntity entity) {
+    List<OEVClassMapper> classMappers = this.mapper.getEVClassMappersByEntity(entity);
+    return classMappers != null && !classMappers.isEmpty() ? classMappers.get(0).getVertexType() : null;
+  }
+
+  private String buildWatermarkKey(OEntity entity) {
+    return this.buildWatermarkKey(entity.getSourceDataseInfo().getSourceIdName(), entity.getName());
+  }
+
+  private String buildWatermarkKey(String dataSource, String tableName) {
+    return dataSource + "." + tableName;
+  }
+
   /**
    * It imports all vertices into a Vertex Class (so 1 or more mapped entities). It's used to import all the vertices and the edges
    * belonging to an Edge Class coming from a Canonical Relationship in the source database.
@@ -160,14 +885,78 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
       OVertexType currentOutVertexType, ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph)
       throws SQLException {
 
-    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
     OQueryResult queryResult;
-    ResultSet records;
 
-    OEdgeType edgeType;// for each entity in dbSchema all records are retrieved
+    // tables whose fingerprint didn't change since the last sync are not read
+    boolean unchanged = true;
+    for (OEntity entity : mappedEntities) {
+      unchanged &= this.isUnchanged(entity);
+    }
+    if (unchanged) {
+      if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .debug(this, "\nSkipping %s: unchanged since the last sync.\n", currentOutVertexType.getName());
+      }
+      this.completeVertexType(currentOutVertexType, null);
+      return;
+    }
+
+    // just the columns read during the import are fetched from a single table (excluded columns never leave the source)
     int numberOfAggregatedClasses = mappedEntities.size();
+    List<String> projection = null;
     if (numberOfAggregatedClasses == 1) {
-      queryResult = dbQueryEngine.getRecordsByEntity(mappedEntities.get(0));
+      projection = this.mapper.getProjectedAttributes(mappedEntities.get(0), currentOutVertexType);
+      if (projection != null && OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel()
+          == OOutputStreamManager.DEBUG_LEVEL) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .debug(this, "\nFetching %s of %s columns from '%s'.\n", projection.size(), mappedEntities.get(0).getAttributes().size(),
+                mappedEntities.get(0).getName());
+      }
+    }
+
+    // just the records whose key was logged since the last sync are read from a table whose changes are captured
+    if (numberOfAggregatedClasses == 1 && mappedEntities.get(0).getChangeLog() != null && mappedEntities.get(0).getChangeLog()
+        .isIncremental()) {
+      this.importChangedRecordsIntoVertexClass(mappedEntities, currentOutVertexType, dbQueryEngine, graphEngine, orientGraph);
+
+      // setting the vertex type as 'analyzed' (edges still to import in the first phase of a two-phase import)
+      this.completeVertexType(currentOutVertexType, null);
+      return;
+    }
+
+    // a single table with a partitioned key is read through parallel scans of its key ranges (unless just the changed records
+    // are read). The table is read through a single scan while the indexes are deferred, as the workers would share the keys
+    // of the vertices pending in the uncommitted transactions of the other sessions
+    if (numberOfAggregatedClasses == 1 && mappedEntities.get(0).getPartitions() != null
+        && mappedEntities.get(0).getPartitions() > 1 && !this.isIncremental(mappedEntities.get(0)) && this.deferredIndexes == null) {
+      List<Object[]> keyPartitions = dbQueryEngine.buildKeyPartitions(mappedEntities.get(0), mappedEntities.get(0).getPartitions());
+      if (keyPartitions.size() > 1) {
+        this.importKeyPartitionsIntoVertexClass(keyPartitions, projection, mappedEntities, currentOutVertexType, dbQueryEngine,
+            graphEngine, orientGraph);
+
+        // setting the vertex type as 'analyzed' (edges still to import in the first phase of a two-phase import)
+        this.completeVertexType(currentOutVertexType, null);
+        return;
+      }
+    }
+
+    // for each entity in dbSchema all records are retrieved: in the order of the key when the progress can be checkpointed,
+    // starting after the last key committed by the interrupted import being resumed
+    String checkpointedTable = null;
+    String checkpointKeyColumn = null;
+    if (numberOfAggregatedClasses == 1) {
+      checkpointKeyColumn = this.getCheckpointKeyColumn(mappedEntities.get(0), projection, graphEngine);
+    }
+    if (checkpointKeyColumn != null) {
+      checkpointedTable = this.buildWatermarkKey(mappedEntities.get(0));
+      Object lastKey = this.checkpoint.getLastKey(checkpointedTable, checkpointKeyColumn);
+      if (lastKey != null) {
+        OTeleporterContext.getInstance().getMessageHandler()
+            .info(this, "\nResuming the import of %s after the key %s.\n", mappedEntities.get(0).getName(), lastKey);
+      }
+      queryResult = dbQueryEngine.getRecordsByEntityInKeyOrder(mappedEntities.get(0), projection, checkpointKeyColumn, lastKey);
+    } else if (numberOfAggregatedClasses == 1) {
+      queryResult = dbQueryEngine.getChangedRecordsByEntity(mappedEntities.get(0), projection);
     } else {
       queryResult = dbQueryEngine.getRecordsFromMultipleEntities(mappedEntities, aggregationColumns);
     }
@@ -177,30 +966,461 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
     //  queryResult = dbQueryEngine.executeQuery(query);
     //}
 
-    records = queryResult.getResult();
-    ResultSet currentRecord = null;
+    try {
+      this.importRecordsIntoVertexClass(queryResult.getResult(), mappedEntities, currentOutVertexType, graphEngine, orientGraph,
+          checkpointedTable, checkpointKeyColumn);
+    } finally {
+      // closing resultset, connection and statement
+      queryResult.closeAll();
+    }
 
-    // each record is imported as vertex in the orient graph
-    while (records.next()) {
+    // setting the vertex type as 'analyzed' (edges still to import in the first phase of a two-phase import)
+    this.completeVertexType(currentOutVertexType, checkpointedTable);
+  }
 
-      // upsert of the vertex
-      currentRecord = records;
-      OVertex currentOutVertex = graphEngine.upsertVisitedVertex(orientGraph, currentRecord, currentOutVertexType, currentOutVertexType.getExternalKey());
+  private boolean isIncremental(OEntity entity) {
+    return entity.getWatermark() != null && entity.getWatermark().isIncremental();
+  }
 
-      // navigating relationships outgoing from the current mapped entities and for each of them all the correspondent edges are built
-      // and all the in-vertices are upserted in the graph database
-      this.navigateRelationshipsAndInsertReachableVertices(orientGraph, graphEngine, mappedEntities, currentRecord,
-          currentOutVertexType, currentOutVertex);
+  /**
+   * Returns the key column whose last committed value is recorded in the checkpoint while the entity is read. The progress
+   * within a table is checkpointed only if it's read with a full scan of a single-column primary key (included in the
+   * projection) by a single writer, after the first phase of a two-phase import: the other imports are resumed from the
+   * beginning of the table.
+   *
+   * @param entity
+   * @param projection
+   * @param graphEngine
+   *
+   * @return null if the progress within the table can't be checkpointed
+   */
+  private String getCheckpointKeyColumn(OEntity entity, List<String> projection, OGraphEngineForDB graphEngine) {
+
+    if (this.checkpoint == null || this.importingVerticesOnly || entity.getWatermark() != null || entity.getChangeLog() != null) {
+      return null;
+    }
+    if (graphEngine.getSessionPool() != null && !graphEngine.getSessionPool().isWorkerThread()) {
+      return null;
+    }
+    if (entity.getPrimaryKey() == null || entity.getPrimaryKey().getInvolvedAttributes().size() != 1) {
+      return null;
+    }
+    String keyColumn = entity.getPrimaryKey().getInvolvedAttributes().get(0).getName();
+    if (projection != null && !projection.contains(keyColumn)) {
+      return null;
+    }
+    return keyColumn;
+  }
+
+  /**
+   * Applies to the vertex class the changes logged in the change-log table of the single mapped entity: each changed key is
+   * looked up in the source table, its record is upserted when present and its vertex deleted when absent. So the cost of a
+   * sync depends on the number of changes, not on the size of the table.
+   * The change-log is read in pages of consecutive change ids as large as the graph batch size, so the changed keys are never
+   * held all together: a key changed more times is applied once per page, each time with the current state of its record.
+   *
+   * @param mappedEntities
+   * @param currentOutVertexType
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  private void importChangedRecordsIntoVertexClass(List<OEntity> mappedEntities, OVertexType currentOutVertexType,
+      ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) throws SQLException {
 
-      // Statistics updated
-      statistics.analyzedRecords += 1 * numberOfAggregatedClasses;
+    OEntity entity = mappedEntities.get(0);
+    OChangeLog changeLog = entity.getChangeLog();
+    if (changeLog.getUpperBound() == null) {
+      return;   // no change since the last sync
+    }
+    Long firstChangeId = dbQueryEngine.getChangeLogMinimum(entity, changeLog.getTableName());
+    if (firstChangeId == null) {
+      return;
     }
 
-    // closing resultset, connection and statement
-    queryResult.closeAll();
+    int keySize = changeLog.getKeyColumns().size();
+    String[] keyColumns = changeLog.getKeyColumns().toArray(new String[keySize]);
+    OGraphBatchWriter.ORecordImporter recordImporter = this
+        .buildVertexRecordImporter(mappedEntities, currentOutVertexType, graphEngine, orientGraph);
+    int pageSize = Math.max(OTeleporterContext.getInstance().getGraphBatchSize(), 1);
+    long changedKeys = 0;
+
+    for (long lowerBound = firstChangeId - 1; lowerBound < changeLog.getUpperBound(); lowerBound += pageSize) {
+      long upperBound = Math.min(lowerBound + pageSize, changeLog.getUpperBound());
+
+      // the changed keys of the page, each one once in the order of its first change
+      Map<List<String>, String[]> pageKeys = new LinkedHashMap<List<String>, String[]>();
+      OQueryResult changes = dbQueryEngine.getChangesInLog(entity, changeLog, lowerBound, upperBound);
+      try {
+        ResultSet changesResult = changes.getResult();
+        if (changesResult == null) {
+          throw new SQLException(
+              "Not valid change-log table '" + changeLog.getTableName() + "' for the table " + entity.getName() + ".");
+        }
+        while (changesResult.next()) {
+          String[] valueOfKey = new String[keySize];
+          for (int i = 0; i < keySize; i++) {
+            valueOfKey[i] = changesResult.getString(i + 2);
+          }
+          pageKeys.put(Arrays.asList(valueOfKey), valueOfKey);
+        }
+      } finally {
+        changes.closeAll();
+      }
 
-    // setting the vertex type as 'analyzed'
-    currentOutVertexType.setAnalyzedInLastMigration(true);
+      if (!pageKeys.isEmpty()) {
+        this.importChangedKeys(pageKeys.values(), entity, keyColumns, currentOutVertexType, recordImporter, dbQueryEngine,
+            graphEngine, orientGraph);
+        changedKeys += pageKeys.size();
+      }
+    }
+
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\n%s keys of %s changed since the last sync.\n", changedKeys, entity.getName());
+    }
+  }
+
+  /**
+   * Upserts the vertices of the changed keys whose record is still present in the source table, then deletes the vertices of
+   * the others.
+   *
+   * @param changedKeys
+   * @param entity
+   * @param keyColumns
+   * @param vertexType
+   * @param recordImporter
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  private void importChangedKeys(Collection<String[]> changedKeys, OEntity entity, String[] keyColumns, OVertexType vertexType,
+      OGraphBatchWriter.ORecordImporter recordImporter, ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine,
+      ODatabaseDocument orientGraph) throws SQLException {
+
+    List<String[]> deletedKeys = new ArrayList<String[]>();
+    OGraphBatchWriter batchWriter = new OGraphBatchWriter(orientGraph);
+    batchWriter.begin();
+    try {
+      for (String[] valueOfKey : changedKeys) {
+        OQueryResult queryResult = dbQueryEngine.getRecordById(entity, keyColumns, valueOfKey);
+        try {
+          ResultSet record = queryResult.getResult();
+          if (record != null && record.next()) {
+            batchWriter.importRecord(record, recordImporter, 1);
+          } else {
+            deletedKeys.add(valueOfKey);
+          }
+        } finally {
+          queryResult.closeAll();
+        }
+      }
+      batchWriter.commit();
+    } finally {
+      batchWriter.close();
+    }
+
+    if (!deletedKeys.isEmpty()) {
+      this.deleteVerticesOfDeletedRecords(deletedKeys, keyColumns, vertexType, graphEngine, orientGraph);
+    }
+  }
+
+  /**
+   * Deletes the vertices of the records deleted from the source table, looking them up by the external key of the vertex
+   * type, in transactions of the graph batch size. Nothing is deleted when the external key is not made of the key columns of
+   * the table.
+   *
+   * @param deletedKeys
+   * @param keyColumns
+   * @param vertexType
+   * @param graphEngine
+   * @param orientGraph
+   */
+  private void deleteVerticesOfDeletedRecords(List<String[]> deletedKeys, String[] keyColumns, OVertexType vertexType,
+      OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) {
+
+    String[] propertyOfKey = vertexType.getExternalKey().toArray(new String[vertexType.getExternalKey().size()]);
+    int[] keySlots = new int[propertyOfKey.length];
+    for (int i = 0; i < propertyOfKey.length; i++) {
+      String keyColumn = this.mapper.getAttributeNameByVertexTypeAndProperty(vertexType, propertyOfKey[i]);
+      keySlots[i] = Arrays.asList(keyColumns).indexOf(keyColumn);
+      if (keySlots[i] < 0) {
+        OTeleporterContext.getInstance().getStatistics().warningMessages
+            .add("The external key of " + vertexType.getName() + " is not the primary key of the source table: the vertices of "
+                + "the deleted records were not deleted.");
+        return;
+      }
+    }
+
+    orientGraph.activateOnCurrentThread();
+    int batchSize = Math.max(OTeleporterContext.getInstance().getGraphBatchSize(), 1);
+    for (int start = 0; start < deletedKeys.size(); start += batchSize) {
+      orientGraph.begin();
+      try {
+        for (String[] deletedKey : deletedKeys.subList(start, Math.min(start + batchSize, deletedKeys.size()))) {
+          String[] valueOfKey = new String[propertyOfKey.length];
+          for (int i = 0; i < propertyOfKey.length; i++) {
+            valueOfKey[i] = deletedKey[keySlots[i]];
+          }
+          graphEngine.deleteVisitedVertex(orientGraph, vertexType, propertyOfKey, valueOfKey);
+        }
+        orientGraph.commit();
+      } catch (RuntimeException e) {
+        orientGraph.rollback();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Imports each record of the result set as vertex of the vertex class, navigating the relationships outgoing from it.
+   *
+   * @param records
+   * @param mappedEntities
+   * @param currentOutVertexType
+   * @param graphEngine
+   * @param orientGraph
+   * @param checkpointedTable   key of the table in the checkpoint, null if the progress isn't checkpointed
+   * @param checkpointKeyColumn key column the records are ordered by, null if the progress isn't checkpointed
+   *
+   * @throws SQLException
+   */
+  private void importRecordsIntoVertexClass(ResultSet records, final List<OEntity> mappedEntities,
+      final OVertexType currentOutVertexType, final OGraphEngineForDB graphEngine, final ODatabaseDocument orientGraph,
+      final String checkpointedTable, final String checkpointKeyColumn) throws SQLException {
+
+    // in the second phase of a two-phase import the records were already counted as analyzed in the first one
+    int numberOfAggregatedClasses = this.vertexRidMap != null && !this.importingVerticesOnly ? 0 : mappedEntities.size();
+
+    // the records are spread over the graph writer workers, unless the current thread is already one of them
+    OGraphSessionPool sessionPool = graphEngine.getSessionPool();
+    if (sessionPool != null && !sessionPool.isWorkerThread()) {
+      OParallelGraphWriter parallelWriter = new OParallelGraphWriter(sessionPool);
+      parallelWriter.importRecords(records, this.getRoutingColumns(mappedEntities, currentOutVertexType),
+          new OParallelGraphWriter.ORecordImporterFactory() {
+            @Override
+            public OGraphBatchWriter.ORecordImporter create(ODatabaseDocument session) {
+              return buildVertexRecordImporter(mappedEntities, currentOutVertexType, graphEngine, session);
+            }
+          }, numberOfAggregatedClasses);
+      orientGraph.activateOnCurrentThread();
+      return;
+    }
+
+    final OGraphBatchWriter batchWriter = new OGraphBatchWriter(orientGraph);
+    OGraphBatchWriter.ORecordImporter recordImporter = this
+        .buildVertexRecordImporter(mappedEntities, currentOutVertexType, graphEngine, orientGraph);
+
+    // the key of each record is recorded in the checkpoint once its batch is committed (registered by the importer, so it's
+    // registered again when the batch is replayed)
+    if (checkpointedTable != null) {
+      final OGraphBatchWriter.ORecordImporter vertexImporter = recordImporter;
+      final OImportCheckpoint checkpoint = this.checkpoint;
+      recordImporter = new OGraphBatchWriter.ORecordImporter() {
+        @Override
+        public void importRecord(ResultSet currentRecord) throws Exception {
+          vertexImporter.importRecord(currentRecord);
+          final Object key = currentRecord.getObject(checkpointKeyColumn);
+          batchWriter.afterCommit(new Runnable() {
+            @Override
+            public void run() {
+              checkpoint.commitKey(checkpointedTable, checkpointKeyColumn, key);
+            }
+          });
+        }
+      };
+    }
+
+    // each record is imported as vertex in the orient graph, statistics are updated when the batch is committed
+    batchWriter.begin();
+    try {
+      while (records.next()) {
+        batchWriter.importRecord(records, recordImporter, numberOfAggregatedClasses);
+      }
+      batchWriter.commit();
+    } finally {
+      batchWriter.close();
+    }
+  }
+
+  private OGraphBatchWriter.ORecordImporter buildVertexRecordImporter(final List<OEntity> mappedEntities,
+      final OVertexType currentOutVertexType, final OGraphEngineForDB graphEngine, final ODatabaseDocument orientGraph) {
+
+    final OVertexRidMap vertexRidMap = this.vertexRidMap;
+
+    // first phase of a two-phase import: just the vertex
+    if (vertexRidMap != null && this.importingVerticesOnly) {
+      return new OGraphBatchWriter.ORecordImporter() {
+        @Override
+        public void importRecord(ResultSet currentRecord) throws Exception {
+          graphEngine.insertVisitedVertex(orientGraph, currentRecord, currentOutVertexType, currentOutVertexType.getExternalKey(),
+              vertexRidMap);
+        }
+      };
+    }
+
+    // second phase of a two-phase import: just the edges, between the vertices inserted in the first phase
+    if (vertexRidMap != null) {
+      return new OGraphBatchWriter.ORecordImporter() {
+        @Override
+        public void importRecord(ResultSet currentRecord) throws Exception {
+
+          ORID currentOutVertexId = graphEngine
+              .getVisitedVertexId(currentRecord, currentOutVertexType, currentOutVertexType.getExternalKey(), vertexRidMap);
+          if (currentOutVertexId == null) {
+            // vertex without key: importing it as in the single-phase import
+            OVertex currentOutVertex = graphEngine
+                .upsertVisitedVertex(orientGraph, currentRecord, currentOutVertexType, currentOutVertexType.getExternalKey());
+            navigateRelationshipsAndInsertReachableVertices(orientGraph, graphEngine, mappedEntities, currentRecord,
+                currentOutVertexType, currentOutVertex);
+            return;
+          }
+
+          for (OEntity entity : mappedEntities) {
+            for (OCanonicalRelationship currentRelationship : entity.getOutCanonicalRelationships()) {
+              OEntity currentParentEntity = mapper.getDataBaseSchema()
+                  .getEntityByName(currentRelationship.getParentEntity().getName());
+              OVertexType currentInVertexType = mapper.getVertexTypeByEntityAndRelationship(currentParentEntity, currentRelationship);
+              OEdgeType edgeType = mapper.getRelationship2edgeType().get(currentRelationship);
+              graphEngine.insertEdgeToReachedVertex(orientGraph, currentRecord, currentRelationship, currentOutVertexId,
+                  currentInVertexType, edgeType.getName(), vertexRidMap);
+            }
+          }
+        }
+      };
+    }
+
+    return new OGraphBatchWriter.ORecordImporter() {
+      @Override
+      public void importRecord(ResultSet currentRecord) throws Exception {
+
+        // upsert of the vertex
+        OVertex currentOutVertex = graphEngine
+            .upsertVisitedVertex(orientGraph, currentRecord, currentOutVertexType, currentOutVertexType.getExternalKey());
+
+        // navigating relationships outgoing from the current mapped entities and for each of them all the correspondent edges are built
+        // and all the in-vertices are upserted in the graph database
+        navigateRelationshipsAndInsertReachableVertices(orientGraph, graphEngine, mappedEntities, currentRecord,
+            currentOutVertexType, currentOutVertex);
+      }
+    };
+  }
+
+  /**
+   * Returns the source columns holding the external key of the vertex type, so that all the records of the same vertex are
+   * imported by the same graph writer worker. Returns null when the records come from several entities.
+   *
+   * @param mappedEntities
+   * @param vertexType
+   *
+   * @return
+   */
+  private String[] getRoutingColumns(List<OEntity> mappedEntities, OVertexType vertexType) {
+
+    if (mappedEntities.size() != 1) {
+      return null;
+    }
+    String[] routingColumns = new String[vertexType.getExternalKey().size()];
+    int i = 0;
+    for (String keyProperty : vertexType.getExternalKey()) {
+      routingColumns[i] = this.mapper.getAttributeNameByVertexTypeAndProperty(vertexType, keyProperty);
+      if (routingColumns[i] == null) {
+        return null;
+      }
+      i++;
+    }
+    return routingColumns.length > 0 ? routingColumns : null;
+  }
+
+  /**
+   * Imports the key partitions of a single table in parallel: each partition is read by a worker through its own source
+   * connection and written through its own OrientDB session. The statistics are updated by all the workers, so they're
+   * rolled up over the whole table.
+   *
+   * @param keyPartitions
+   * @param projection
+   * @param mappedEntities
+   * @param currentOutVertexType
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   */
+  private void importKeyPartitionsIntoVertexClass(List<Object[]> keyPartitions, final List<String> projection,
+      final List<OEntity> mappedEntities, final OVertexType currentOutVertexType, final ODBQueryEngine dbQueryEngine,
+      final OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) {
+
+    final OTeleporterContext context = OTeleporterContext.getInstance();
+    final OEntity entity = mappedEntities.get(0);
+
+    // lazy structures of the model shared among the workers are built before starting them
+    currentOutVertexType.getAllProperties();
+    for (OCanonicalRelationship currentRelationship : entity.getOutCanonicalRelationships()) {
+      OEntity currentParentEntity = mapper.getDataBaseSchema().getEntityByName(currentRelationship.getParentEntity().getName());
+      mapper.getVertexTypeByEntityAndRelationship(currentParentEntity, currentRelationship).getAllProperties();
+    }
+
+    // with a graph session pool each partition worker writes through a pooled session into its own clusters
+    final OGraphSessionPool sessionPool = graphEngine.getSessionPool();
+    int workers = Math.min(keyPartitions.size(), context.getSourceConnectionPoolSize());
+    if (sessionPool != null) {
+      workers = Math.min(workers, sessionPool.getWorkers());
+    }
+    if(context.getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      context.getMessageHandler().debug(this, "\nImporting '%s' table through %s key partitions (%s workers).\n", entity.getName(),
+          keyPartitions.size(), workers);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    List<Future<Void>> partitionImports = new ArrayList<Future<Void>>();
+    try {
+      for (final Object[] keyPartition : keyPartitions) {
+        partitionImports.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            ODatabaseDocument partitionGraph =
+                sessionPool != null ? sessionPool.acquire() : context.getOrientDBInstance().open(dbName, "admin", "admin");
+            OQueryResult queryResult = null;
+            try {
+              queryResult = dbQueryEngine.getRecordsByEntityInKeyPartition(entity, keyPartition, projection);
+              importRecordsIntoVertexClass(queryResult.getResult(), mappedEntities, currentOutVertexType, graphEngine,
+                  partitionGraph, null, null);
+            } finally {
+              if (queryResult != null) {
+                queryResult.closeAll();
+              }
+              if (sessionPool != null) {
+                sessionPool.release(partitionGraph);
+              } else {
+                partitionGraph.close();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> partitionImport : partitionImports) {
+        partitionImport.get();
+      }
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      String mess = "Problem encountered during the parallel import of the '" + entity.getName() + "' table.";
+      Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      context.printExceptionMessage(cause, mess, "error");
+      context.printExceptionStackTrace(cause, "error");
+      throw new OTeleporterRuntimeException(cause);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new OTeleporterRuntimeException(e);
+    } finally {
+      executor.shutdown();
+      orientGraph.activateOnCurrentThread();
+    }
   }
 
   /**
@@ -243,115 +1463,167 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
    * @param orientGraph
    */
 
-  public void importRecordsFromSplitEntityIntoVertexClasses(List<OEntity> mappedEntities, List<OVertexType> mappedVertices,
-      ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) throws SQLException {
+  public void importRecordsFromSplitEntityIntoVertexClasses(final List<OEntity> mappedEntities,
+      final List<OVertexType> mappedVertices, ODBQueryEngine dbQueryEngine, final OGraphEngineForDB graphEngine,
+      final ODatabaseDocument orientGraph) throws SQLException {
+
+    // split entities are imported in a single phase, after the first phase of a two-phase import
+    if (this.importingVerticesOnly) {
+      return;
+    }
 
-    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
-    OEntity entity = mappedEntities.get(0);     // we have just a mapped entity in the splitting case
+    final OEntity entity = mappedEntities.get(0);     // we have just a mapped entity in the splitting case
     OQueryResult queryResult;
     ResultSet records;
 
-    queryResult = dbQueryEngine.getRecordsByEntity(entity);
+    queryResult = dbQueryEngine.getChangedRecordsByEntity(entity, null);
     records = queryResult.getResult();
-    ResultSet currentRecord = null;
-
-    // each record is imported as many vertices in the orient graph
-    while (records.next()) {
-
-      currentRecord = records;
-
-      // building vertices from the record
-      Map<String, OVertex> className2insertedVertex = new LinkedHashMap<String, OVertex>();
-      for (OVertexType currentVertexType : mappedVertices) {
-        OVertex currentOutVertex = (OVertex) graphEngine
-            .upsertVisitedVertex(orientGraph, currentRecord, currentVertexType, currentVertexType.getExternalKey());
-
-        boolean navigate = false;
-        for (ORelationship currentRelationship : entity.getAllOutCanonicalRelationships()) {
-          OEdgeType currEdgeType = mapper.getRelationship2edgeType().get(currentRelationship);
-          if (currEdgeType != null) {
-            if (currentRelationship.getDirection().equals("direct") && currentVertexType.getOutEdgesType().contains(currEdgeType)) {
-              navigate = true;
-              break;
-            } else if (currentRelationship.getDirection().equals("inverse") && currentVertexType.getInEdgesType()
-                .contains(currEdgeType)) {
-              navigate = true;
-              break;
+
+    OGraphBatchWriter batchWriter = new OGraphBatchWriter(orientGraph);
+    OGraphBatchWriter.ORecordImporter recordImporter = new OGraphBatchWriter.ORecordImporter() {
+      @Override
+      public void importRecord(ResultSet currentRecord) throws Exception {
+
+        // building vertices from the record
+        Map<String, OVertex> className2insertedVertex = new LinkedHashMap<String, OVertex>();
+        for (OVertexType currentVertexType : mappedVertices) {
+          OVertex currentOutVertex = (OVertex) graphEngine
+              .upsertVisitedVertex(orientGraph, currentRecord, currentVertexType, currentVertexType.getExternalKey());
+
+          boolean navigate = false;
+          for (ORelationship currentRelationship : entity.getAllOutCanonicalRelationships()) {
+            OEdgeType currEdgeType = mapper.getRelationship2edgeType().get(currentRelationship);
+            if (currEdgeType != null) {
+              if (currentRelationship.getDirection().equals("direct") && currentVertexType.getOutEdgesType().contains(currEdgeType)) {
+                navigate = true;
+                break;
+              } else if (currentRelationship.getDirection().equals("inverse") && currentVertexType.getInEdgesType()
+                  .contains(currEdgeType)) {
+                navigate = true;
+                break;
+              }
             }
           }
-        }
 
-        // navigating relationships outgoing from the current mapped entities and for each of them all the correspondent edges are built
-        // and all the in-vertices are upserted in the graph database
-        if (navigate) {
-          this.navigateRelationshipsAndInsertReachableVertices(orientGraph, graphEngine, mappedEntities, currentRecord,
-              currentVertexType, currentOutVertex);
+          // navigating relationships outgoing from the current mapped entities and for each of them all the correspondent edges are built
+          // and all the in-vertices are upserted in the graph database
+          if (navigate) {
+            navigateRelationshipsAndInsertReachableVertices(orientGraph, graphEngine, mappedEntities, currentRecord,
+                currentVertexType, currentOutVertex);
+          }
+
+          className2insertedVertex.put(currentVertexType.getName(), currentOutVertex);
         }
 
-        className2insertedVertex.put(currentVertexType.getName(), currentOutVertex);
-      }
+        /*
+         * Adding coherently the splitting edges between the just added vertices
+         */
+
+        List<OEEClassMapper> classMappers = ((OER2GraphMapper) mapper).getEEClassMappersByEntity(entity);
+
+        // checking that: total number of edges = number of mapped vertices -1
+        int numberOfEdges = classMappers.size();
+        int numberOfVertices = mappedVertices.size();
+        if (numberOfEdges != numberOfVertices - 1) {
+          OTeleporterContext.getInstance().getMessageHandler().error(OAbstractDBMSImportStrategy.this,
+              "There are %s edges-type and %s vertices-type detected for the split entity %s. "
+                  + "For a correct splitting you must have: total number of edges = number of mapped vertices -1.", numberOfEdges,
+              numberOfVertices, entity.getName());
+          throw new OTeleporterRuntimeException();
+        }
 
-      /*
-       * Adding coherently the splitting edges between the just added vertices
-       */
+        for (OEEClassMapper classMapper : classMappers) {
+          OEdgeType currentEdgeType = classMapper.getEdgeType();
+          String currentOutVertexName = currentEdgeType.getOutVertexType().getName();
+          String currentInVertexName = currentEdgeType.getInVertexType().getName();
+          OVertex currentOutVertex = className2insertedVertex.get(currentOutVertexName);
+          OVertex currentInVertex = className2insertedVertex.get(currentInVertexName);
 
-      List<OEEClassMapper> classMappers = ((OER2GraphMapper) this.mapper).getEEClassMappersByEntity(entity);
+          Map<String, Object> properties = graphEngine.readEdgeProperties(currentRecord, currentEdgeType);
+          graphEngine.upsertEdge(orientGraph, currentOutVertex, currentInVertex, currentEdgeType.getName(), properties, "direct");
+        }
+      }
+    };
 
-      // checking that: total number of edges = number of mapped vertices -1
-      int numberOfEdges = classMappers.size();
-      int numberOfVertices = mappedVertices.size();
-      if (numberOfEdges != numberOfVertices - 1) {
-        OTeleporterContext.getInstance().getMessageHandler().error(this,
-            "There are %s edges-type and %s vertices-type detected for the split entity %s. "
-                + "For a correct splitting you must have: total number of edges = number of mapped vertices -1.", numberOfEdges,
-            numberOfVertices, entity.getName());
-        throw new OTeleporterRuntimeException();
+    // each record is imported as many vertices in the orient graph, statistics are updated when the batch is committed
+    batchWriter.begin();
+    try {
+      while (records.next()) {
+        batchWriter.importRecord(records, recordImporter, 1);
       }
+      batchWriter.commit();
+    } finally {
+      batchWriter.close();
 
-      for (OEEClassMapper classMapper : classMappers) {
-        OEdgeType currentEdgeType = classMapper.getEdgeType();
-        String currentOutVertexName = currentEdgeType.getOutVertexType().getName();
-        String currentInVertexName = currentEdgeType.getInVertexType().getName();
-        OVertex currentOutVertex = className2insertedVertex.get(currentOutVertexName);
-        OVertex currentInVertex = className2insertedVertex.get(currentInVertexName);
+      // closing resultset, connection and statement
+      queryResult.closeAll();
+    }
 
-        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+    // setting the vertex type as 'analyzed'
+    for (OVertexType currentVertexType : mappedVertices) {
+      this.completeVertexType(currentVertexType, null);
+    }
 
-        // filling properties
-        for (OModelProperty currentProperty : currentEdgeType.getAllProperties()) {
-          if (currentProperty.isIncludedInMigration()) {
-            String currentPropertyName = currentProperty.getName();
-            String currentPropertyType = OTeleporterContext.getInstance().getDataTypeHandler()
-                .resolveType(currentProperty.getOriginalType().toLowerCase(Locale.ENGLISH)).toString();
-            String currentOriginalType = currentProperty.getOriginalType();
+  }
 
-            try {
-              graphEngine.extractPropertiesFromRecordIntoEdge(currentRecord, properties, currentPropertyType, currentPropertyName,
-                  currentOriginalType, currentEdgeType);
-            } catch (Exception e) {
-              String mess =
-                  "Problem encountered during the extraction of the values from the records. Edge Type: " + currentEdgeType
-                      .getName() + ";\tProperty: " + currentPropertyName;
-              OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-              OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
-            }
-          }
-        }
-        graphEngine.upsertEdge(orientGraph, currentOutVertex, currentInVertex, currentEdgeType.getName(), properties, "direct");
+  /**
+   * Step 5: builds the edges representing the logical relationships, each one with a hash join between the vertex classes
+   * mapped with the two entities (see {@link OLogicalRelationshipJoin}). Vertices must be already imported and committed.
+   * An edge class is recorded as completed in the checkpoint once all its relationships are joined, and skipped by the
+   * import resuming the interrupted one.
+   *
+   * @param graphEngine
+   * @param orientGraph
+   */
+  protected void buildLogicalRelationshipEdges(OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) {
+
+    List<OLogicalRelationship> logicalRelationships = new ArrayList<OLogicalRelationship>();
+    for (OLogicalRelationship currentRelationship : this.mapper.getDataBaseSchema().getLogicalRelationships()) {
+      // relationships involving entities not imported (e.g. filtered out) are skipped
+      if (this.mapper.getRelationship2edgeType().get(currentRelationship) != null
+          && this.mapper.getEVClassMappersByEntity(currentRelationship.getForeignEntity()) != null
+          && this.mapper.getEVClassMappersByEntity(currentRelationship.getParentEntity()) != null) {
+        logicalRelationships.add(currentRelationship);
       }
-
-      // Statistics updated
-      statistics.analyzedRecords += 1;
+    }
+    if (logicalRelationships.isEmpty()) {
+      return;
     }
 
-    // closing resultset, connection and statement
-    queryResult.closeAll();
-
-    // setting the vertex type as 'analyzed'
-    for (OVertexType currentVertexType : mappedVertices) {
-      currentVertexType.setAnalyzedInLastMigration(true);
+    // relationships still to join for each edge class
+    Map<String, Integer> pendingRelationships = new HashMap<String, Integer>();
+    for (OLogicalRelationship currentRelationship : logicalRelationships) {
+      String edgeTypeName = this.mapper.getRelationship2edgeType().get(currentRelationship).getName();
+      Integer pending = pendingRelationships.get(edgeTypeName);
+      pendingRelationships.put(edgeTypeName, pending == null ? 1 : pending + 1);
     }
 
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    OTeleporterStatistics statistics = context.getStatistics();
+    context.getMessageHandler().info(this, "\n");
+    statistics.startWork5Time = new Date();
+    statistics.runningStepNumber = 5;
+    statistics.totalNumberOfLogicalRelationships = logicalRelationships.size();
+    statistics.doneLogicalRelationships = 0;
+
+    orientGraph.activateOnCurrentThread();
+    OLogicalRelationshipJoin join = new OLogicalRelationshipJoin(graphEngine, this.mapper, context.getKeyMapMemoryBudget(),
+        context.getKeyMapSpillDirectory(), context.getGraphBatchSize());
+    for (OLogicalRelationship currentRelationship : logicalRelationships) {
+      String edgeTypeName = this.mapper.getRelationship2edgeType().get(currentRelationship).getName();
+      if (!(this.resuming && this.checkpoint.isEdgeTypeCompleted(edgeTypeName))) {
+        join.execute(orientGraph, currentRelationship, this.mapper.getVertexTypeByEntity(currentRelationship.getForeignEntity()),
+            this.mapper.getVertexTypeByEntity(currentRelationship.getParentEntity()));
+        int pending = pendingRelationships.get(edgeTypeName) - 1;
+        pendingRelationships.put(edgeTypeName, pending);
+        if (pending == 0 && this.checkpoint != null) {
+          this.checkpoint.completeEdgeType(edgeTypeName);
+        }
+      }
+      statistics.doneLogicalRelationships++;
+      statistics.notifyListeners();
+    }
+    statistics.runningStepNumber = -1;
   }
 
   /**
@@ -363,8 +1635,27 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
   protected void importEntitiesBelongingToHierarchies(ODBQueryEngine dbQueryEngine, OGraphEngineForDB graphEngine,
       ODatabaseDocument orientGraph) {
 
+    // the key indexes are built on demand and shared by the imports of all the bags
+    this.bag2keyIndex.clear();
+
     for (OHierarchicalBag bag : this.mapper.getDataBaseSchema().getHierarchicalBags()) {
 
+      // each bag is checkpointed as a whole: skipped if all its vertex classes were completed by the import being resumed
+      List<OVertexType> bagVertexTypes = new ArrayList<OVertexType>();
+      boolean bagCompleted = true;
+      for (Set<OEntity> entities : bag.getDepth2entities().values()) {
+        for (OEntity entity : entities) {
+          OVertexType vertexType = this.findVertexTypeByEntity(entity);
+          if (vertexType != null) {
+            bagVertexTypes.add(vertexType);
+            bagCompleted &= this.resuming && this.checkpoint.isVertexTypeCompleted(vertexType.getName());
+          }
+        }
+      }
+      if (bagCompleted && !bagVertexTypes.isEmpty()) {
+        continue;
+      }
+
       switch (bag.getInheritancePattern()) {
 
       case "table-per-hierarchy":
@@ -380,7 +1671,12 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
         break;
 
       }
+
+      for (OVertexType vertexType : bagVertexTypes) {
+        this.completeVertexType(vertexType, null);
+      }
     }
+    this.bag2keyIndex.clear();
   }
 
   /**
@@ -466,12 +1762,10 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
                   }
                 }
                 if (ok) {
-                  it = currentParentEntity.getHierarchicalBag().getDepth2entities().get(0).iterator();
-                  OEntity physicalArrivalEntity = it.next();
                   String currentArrivalEntityName = searchParentEntityType(currentParentEntity, propertyOfKey, valueOfKey,
-                      physicalArrivalEntity, dbQueryEngine);
+                      dbQueryEngine);
                   OEntity currentArrivalEntity = mapper.getDataBaseSchema().getEntityByName(currentArrivalEntityName);
-                  currentInVertexType = mapper.getVertexTypeByEntity(currentArrivalEntity);
+                  currentInVertexType = currentArrivalEntity != null ? mapper.getVertexTypeByEntity(currentArrivalEntity) : null;
                 }
               }
 
@@ -485,7 +1779,7 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
             }
 
             // Statistics updated
-            statistics.analyzedRecords++;
+            statistics.incrementAnalyzedRecords(1);
           }
           // closing resultset, connection and statement
           queryResult.closeAll();
@@ -510,6 +1804,8 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
   /**
    * Performs import of all records of the entities contained in the hierarchical bag passed as parameter.
    * Adopted in case of "Table per Type" inheritance strategy.
+   * The whole hierarchy is read with a single query joining the root table with all the subclass tables: each record is imported
+   * as vertex of the deepest entity whose table contains it.
    *
    * @param bag
    * @param mapper
@@ -524,139 +1820,131 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
 
       OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
 
-      ResultSet aggregateTableRecords = null;
-
       OEntity currentParentEntity = null;
 
       OVertexType currentOutVertexType = null;
       OVertexType currentInVertexType = null;
       OVertex currentOutVertex = null;
       OEdgeType edgeType = null;
-      ResultSet records;
-      ResultSet currentRecord;
       ResultSet fullRecord;
 
-      OQueryResult queryResult1 = null;
-      OQueryResult queryResult2 = null;
-
       Iterator<OEntity> it = bag.getDepth2entities().get(0).iterator();
       OEntity rootEntity = it.next();
 
-      for (int i = bag.getDepth2entities().size() - 1; i >= 0; i--) {
-        for (OEntity currentEntity : bag.getDepth2entities().get(i)) {
-
-          // for each entity in dbSchema all records are retrieved
-          queryResult1 = dbQueryEngine.getRecordsByEntity(currentEntity);
-          records = queryResult1.getResult();
-          currentRecord = null;
-
-          currentOutVertexType = mapper.getVertexTypeByEntity(currentEntity);
-
-          // each record is imported as vertex in the orient graph
-          while (records.next()) {
-            queryResult2 = dbQueryEngine.buildAggregateTableFromHierarchicalBag(bag);
-            aggregateTableRecords = queryResult2.getResult();
-
-            // upsert of the vertex
-            currentRecord = records;
+      String[] aggregateTablePropertyOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes().size()];
+      for (int k = 0; k < aggregateTablePropertyOfKey.length; k++) {
+        aggregateTablePropertyOfKey[k] = rootEntity.getPrimaryKey().getInvolvedAttributes().get(k).getName();
+      }
 
-            // lookup in the aggregateTable
-            String[] propertyOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes().size()];
-            String[] valueOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes().size()];
-            String[] aggregateTablePropertyOfKey = new String[rootEntity.getPrimaryKey().getInvolvedAttributes().size()];
+      // the markers of the subclass entities follow all the columns of the joined tables
+      List<OEntity> subclassEntities = bag.getSubclassEntities();
+      OQueryResult queryResult = dbQueryEngine.getRecordsFromHierarchicalBag(bag);
+      ResultSet records = queryResult.getResult();
+      int firstMarkerColumn = records.getMetaData().getColumnCount() - subclassEntities.size() + 1;
+      Map<OEntity, Integer> entity2markerColumn = new IdentityHashMap<OEntity, Integer>();
+      for (int k = 0; k < subclassEntities.size(); k++) {
+        entity2markerColumn.put(subclassEntities.get(k), firstMarkerColumn + k);
+      }
 
-            for (int k = 0; k < propertyOfKey.length; k++) {
-              propertyOfKey[k] = currentEntity.getPrimaryKey().getInvolvedAttributes().get(k).getName();
-            }
+      Map<OEntity, Set<String>> entity2propertiesOfIndex = new IdentityHashMap<OEntity, Set<String>>();
 
-            for (int k = 0; k < propertyOfKey.length; k++) {
-              valueOfKey[k] = currentRecord.getString(propertyOfKey[k]);
-            }
+      while (records.next()) {
+        fullRecord = records;
 
-            for (int k = 0; k < aggregateTablePropertyOfKey.length; k++) {
-              aggregateTablePropertyOfKey[k] = rootEntity.getPrimaryKey().getInvolvedAttributes().get(k).getName();
+        // the record belongs to the deepest entity whose table contains it, each table containing it counts as analyzed record
+        OEntity currentEntity = null;
+        int analyzedRecords = 1;
+        for (int i = bag.getDepth2entities().size() - 1; i > 0; i--) {
+          for (OEntity subclassEntity : bag.getDepth2entities().get(i)) {
+            if (records.getObject(entity2markerColumn.get(subclassEntity)) != null) {
+              analyzedRecords++;
+              if (currentEntity == null) {
+                currentEntity = subclassEntity;
+              }
             }
-            // lookup
-            fullRecord = this.getFullRecordByAggregateTable(aggregateTableRecords, aggregateTablePropertyOfKey, valueOfKey);
+          }
+        }
+        if (currentEntity == null) {
+          currentEntity = rootEntity;
+        }
 
-            // record imported if is not present in OrientDB
-            Set<String> propertiesOfIndex = this.transformAggregateTablePropertyOfKey(aggregateTablePropertyOfKey, currentEntity);
+        currentOutVertexType = mapper.getVertexTypeByEntity(currentEntity);
 
-            if (!graphDBCommandEngine
-                .alreadyFullImportedInOrient(orientGraph, fullRecord, currentOutVertexType, propertiesOfIndex)) {
+        // record imported if is not present in OrientDB
+        Set<String> propertiesOfIndex = entity2propertiesOfIndex.get(currentEntity);
+        if (propertiesOfIndex == null) {
+          propertiesOfIndex = this.transformAggregateTablePropertyOfKey(aggregateTablePropertyOfKey, currentEntity);
+          entity2propertiesOfIndex.put(currentEntity, propertiesOfIndex);
+        }
 
-              currentOutVertex = (OVertex) graphDBCommandEngine
-                  .upsertVisitedVertex(orientGraph, fullRecord, currentOutVertexType, propertiesOfIndex);
+        if (!graphDBCommandEngine.alreadyFullImportedInOrient(orientGraph, fullRecord, currentOutVertexType, propertiesOfIndex)) {
 
-              // for each attribute of the entity belonging to the primary key, correspondent relationship is
-              // built as edge and for the referenced record a vertex is built (only id)
-              for (OCanonicalRelationship currentRelation : currentEntity.getAllOutCanonicalRelationships()) {
+          currentOutVertex = (OVertex) graphDBCommandEngine
+              .upsertVisitedVertex(orientGraph, fullRecord, currentOutVertexType, propertiesOfIndex);
 
-                currentParentEntity = mapper.getDataBaseSchema()
-                    .getEntityByNameIgnoreCase(currentRelation.getParentEntity().getName());
-                currentInVertexType = null; // reset for the current iteration
+          // for each attribute of the entity belonging to the primary key, correspondent relationship is
+          // built as edge and for the referenced record a vertex is built (only id)
+          for (OCanonicalRelationship currentRelation : currentEntity.getAllOutCanonicalRelationships()) {
 
-                // checking if parent table belongs to a hierarchical bag
-                if (currentParentEntity.getHierarchicalBag() == null) {
-                  currentInVertexType = mapper.getVertexTypeByEntity(currentRelation.getParentEntity());
-                }
+            currentParentEntity = mapper.getDataBaseSchema().getEntityByNameIgnoreCase(currentRelation.getParentEntity().getName());
+            currentInVertexType = null; // reset for the current iteration
 
-                // if the parent entity belongs to hierarchical bag, we need to know which is it the more stringent subclass of the record with a certain id
-                else if (!currentEntity.getHierarchicalBag().equals(currentParentEntity.getHierarchicalBag())) {
-                  propertyOfKey = new String[currentRelation.getFromColumns().size()];
-                  valueOfKey = new String[currentRelation.getFromColumns().size()];
+            // checking if parent table belongs to a hierarchical bag
+            if (currentParentEntity.getHierarchicalBag() == null) {
+              currentInVertexType = mapper.getVertexTypeByEntity(currentRelation.getParentEntity());
+            }
 
-                  int index = 0;
-                  for (OAttribute foreignAttribute : currentRelation.getFromColumns()) {
-                    propertyOfKey[index] = currentRelation.getToColumns().get(index).getName();
-                    valueOfKey[index] = fullRecord.getString((foreignAttribute.getName()));
-                    index++;
-                  }
+            // if the parent entity belongs to hierarchical bag, we need to know which is it the more stringent subclass of the record with a certain id
+            else if (!currentEntity.getHierarchicalBag().equals(currentParentEntity.getHierarchicalBag())) {
+              String[] propertyOfKey = new String[currentRelation.getFromColumns().size()];
+              String[] valueOfKey = new String[currentRelation.getFromColumns().size()];
 
-                  // search is performed only if all the values in the foreign key are different from null (the relationship is inherited and is also consistent)
-                  boolean ok = true;
+              int index = 0;
+              for (OAttribute foreignAttribute : currentRelation.getFromColumns()) {
+                propertyOfKey[index] = currentRelation.getToColumns().get(index).getName();
+                valueOfKey[index] = fullRecord.getString((foreignAttribute.getName()));
+                index++;
+              }
 
-                  for (int j = 0; j < valueOfKey.length; j++) {
-                    if (valueOfKey[j] == null) {
-                      ok = false;
-                      break;
-                    }
-                  }
-                  if (ok) {
-                    String currentArrivalEntityName = searchParentEntityType(currentParentEntity, propertyOfKey, valueOfKey, null,
-                        dbQueryEngine);
-                    OEntity currentArrivalEntity = mapper.getDataBaseSchema().getEntityByName(currentArrivalEntityName);
-                    currentInVertexType = mapper.getVertexTypeByEntity(currentArrivalEntity);
-                  }
-                }
+              // search is performed only if all the values in the foreign key are different from null (the relationship is inherited and is also consistent)
+              boolean ok = true;
 
-                // if currentInVertexType is null then there isn't a relationship between to records, thus the edge will not be added.
-                if (currentInVertexType != null) {
-                  edgeType = mapper.getRelationship2edgeType().get(currentRelation);
-                  graphDBCommandEngine
-                      .upsertReachedVertexWithEdge(orientGraph, fullRecord, currentRelation, currentOutVertex, currentInVertexType,
-                          edgeType.getName());
+              for (int j = 0; j < valueOfKey.length; j++) {
+                if (valueOfKey[j] == null) {
+                  ok = false;
+                  break;
                 }
               }
+              if (ok) {
+                String currentArrivalEntityName = searchParentEntityType(currentParentEntity, propertyOfKey, valueOfKey,
+                    dbQueryEngine);
+                OEntity currentArrivalEntity = mapper.getDataBaseSchema().getEntityByName(currentArrivalEntityName);
+                currentInVertexType = currentArrivalEntity != null ? mapper.getVertexTypeByEntity(currentArrivalEntity) : null;
+              }
             }
 
-            // closing aggregateTable result
-            queryResult2.closeAll();
-
-            // Statistics updated
-            statistics.analyzedRecords++;
-
+            // if currentInVertexType is null then there isn't a relationship between to records, thus the edge will not be added.
+            if (currentInVertexType != null) {
+              edgeType = mapper.getRelationship2edgeType().get(currentRelation);
+              graphDBCommandEngine
+                  .upsertReachedVertexWithEdge(orientGraph, fullRecord, currentRelation, currentOutVertex, currentInVertexType,
+                      edgeType.getName());
+            }
           }
-          // closing resultset, connection and statement
-          queryResult1.closeAll();
         }
+
+        // Statistics updated
+        statistics.incrementAnalyzedRecords(analyzedRecords);
       }
+      // closing resultset, connection and statement
+      queryResult.closeAll();
+
       statistics.notifyListeners();
       statistics.runningStepNumber = -1;
       OTeleporterContext.getInstance().getMessageHandler().info(this, "\n");
 
       // setting the vertex type as 'analyzed'
-      currentOutVertexType.setAnalyzedInLastMigration(true);
+      mapper.getVertexTypeByEntity(rootEntity).setAnalyzedInLastMigration(true);
 
     } catch (Exception e) {
       String mess = "";
@@ -759,10 +2047,11 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
                     }
                   }
                   if (ok) {
-                    String currentArrivalEntityName = searchParentEntityType(currentParentEntity, propertyOfKey, valueOfKey, null,
+                    String currentArrivalEntityName = searchParentEntityType(currentParentEntity, propertyOfKey, valueOfKey,
                         dbQueryEngine);
                     OEntity currentArrivalEntity = mapper.getDataBaseSchema().getEntityByName(currentArrivalEntityName);
-                    currentInVertexType = mapper.getVertexTypeByEntity(currentArrivalEntity);
+                    currentInVertexType =
+                        currentArrivalEntity != null ? mapper.getVertexTypeByEntity(currentArrivalEntity) : null;
                   }
                 }
 
@@ -776,7 +2065,7 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
             }
 
             // Statistics updated
-            statistics.analyzedRecords++;
+            statistics.incrementAnalyzedRecords(1);
           }
           // closing resultset, connection and statement
           queryResult.closeAll();
@@ -809,221 +2098,26 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
   }
 
   /**
-   * @param currentParentEntity
-   * @param propertyOfKey
-   * @param valueOfKey
-   * @param physicalArrivalEntity
-   * @param dbQueryEngine
-   *
-   * @return
-   */
-  private String searchParentEntityType(OEntity currentParentEntity, String[] propertyOfKey, String[] valueOfKey,
-      OEntity physicalArrivalEntity, ODBQueryEngine dbQueryEngine) {
-
-    switch (currentParentEntity.getHierarchicalBag().getInheritancePattern()) {
-
-    case "table-per-hierarchy":
-      return searchParentEntityTypeFromSingleTable(currentParentEntity, propertyOfKey, valueOfKey, physicalArrivalEntity,
-          dbQueryEngine);
-
-    case "table-per-type":
-      return searchParentEntityTypeFromSubclassTable(currentParentEntity, propertyOfKey, valueOfKey, dbQueryEngine);
-
-    case "table-per-concrete-type":
-      return searchParentEntityTypeFromConcreteTable(currentParentEntity, propertyOfKey, valueOfKey, dbQueryEngine);
-
-    }
-
-    return null;
-  }
-
-  /**
-   * @param currentParentEntity
-   * @param valueOfKey
-   * @param propertyOfKey
-   * @param physicalEntity
-   * @param dbQueryEngine
-   *
-   * @return
-   */
-  private String searchParentEntityTypeFromSingleTable(OEntity currentParentEntity, String[] propertyOfKey, String[] valueOfKey,
-      OEntity physicalEntity, ODBQueryEngine dbQueryEngine) {
-
-    OHierarchicalBag hierarchicalBag = currentParentEntity.getHierarchicalBag();
-    String discriminatorColumn = hierarchicalBag.getDiscriminatorColumn();
-    String entityName = null;
-
-    try {
-
-      OQueryResult queryResult = dbQueryEngine
-          .getEntityTypeFromSingleTable(discriminatorColumn, physicalEntity, propertyOfKey, valueOfKey);
-      ResultSet result = queryResult.getResult();
-      result.next();
-      String discriminatorValue = result.getString(discriminatorColumn);
-
-      for (String currentEntityName : hierarchicalBag.getEntityName2discriminatorValue().keySet()) {
-        if (hierarchicalBag.getEntityName2discriminatorValue().get(currentEntityName).equals(discriminatorValue)) {
-          entityName = currentEntityName;
-          break;
-        }
-      }
-
-    } catch (Exception e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
-    }
-
-    return entityName;
-  }
-
-  /**
-   * @param currentParentEntity
-   * @param propertyOfKey
-   * @param valueOfKey
-   * @param dbQueryEngine
+   * Resolves the most specific entity containing the record referenced by a foreign key into a hierarchical bag.
+   * The resolutions go through a key index built once per bag (see {@link OHierarchicalBagKeyIndex}).
    *
-   * @return
-   */
-  private String searchParentEntityTypeFromSubclassTable(OEntity currentParentEntity, String[] propertyOfKey, String[] valueOfKey,
-      ODBQueryEngine dbQueryEngine) {
-
-    OHierarchicalBag hierarchicalBag = currentParentEntity.getHierarchicalBag();
-    String entityName = null;
-
-    try {
-
-      OQueryResult queryResult = null;
-      ResultSet result = null;
-
-      for (int i = hierarchicalBag.getDepth2entities().size() - 1; i >= 0; i--) {
-        for (OEntity currentEntity : hierarchicalBag.getDepth2entities().get(i)) {
-
-          // Overwriting propertyOfKey with the currentEntity attributes' names
-          for (int j = 0; j < currentEntity.getPrimaryKey().getInvolvedAttributes().size(); j++) {
-            propertyOfKey[j] = currentEntity.getPrimaryKey().getInvolvedAttributes().get(j).getName();
-          }
-
-          queryResult = dbQueryEngine.getRecordById(currentEntity, propertyOfKey, valueOfKey);
-          result = queryResult.getResult();
-
-          if (result != null) {
-            entityName = currentEntity.getName();
-            break;
-          }
-        }
-
-        if (result != null) {
-          break;
-        }
-      }
-
-    } catch (Exception e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
-    }
-
-    return entityName;
-  }
-
-  /**
    * @param currentParentEntity
    * @param propertyOfKey
    * @param valueOfKey
    * @param dbQueryEngine
    *
-   * @return
+   * @return the entity name, null if the record is not present in the bag
    */
-  private String searchParentEntityTypeFromConcreteTable(OEntity currentParentEntity, String[] propertyOfKey, String[] valueOfKey,
+  private String searchParentEntityType(OEntity currentParentEntity, String[] propertyOfKey, String[] valueOfKey,
       ODBQueryEngine dbQueryEngine) {
 
     OHierarchicalBag hierarchicalBag = currentParentEntity.getHierarchicalBag();
-    String entityName = null;
-
-    try {
-
-      OQueryResult queryResult = null;
-      ResultSet result = null;
-
-      for (int i = hierarchicalBag.getDepth2entities().size() - 1; i >= 0; i--) {
-        for (OEntity currentEntity : hierarchicalBag.getDepth2entities().get(i)) {
-
-          // Overwriting propertyOfKey with the currentEntity attributes' names
-          for (int j = 0; j < currentEntity.getPrimaryKey().getInvolvedAttributes().size(); j++) {
-            propertyOfKey[j] = currentEntity.getPrimaryKey().getInvolvedAttributes().get(j).getName();
-          }
-
-          queryResult = dbQueryEngine.getRecordById(currentEntity, propertyOfKey, valueOfKey);
-          result = queryResult.getResult();
-
-          if (result != null) {
-            entityName = currentEntity.getName();
-            break;
-          }
-        }
-
-        if (result != null) {
-          break;
-        }
-      }
-
-    } catch (Exception e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
-    }
-
-    return entityName;
-  }
-
-  /**
-   * @param aggregateTableRecords
-   * @param aggregateTablePropertyOfKey
-   * @param valueOfKey
-   *
-   * @return
-   */
-  private ResultSet getFullRecordByAggregateTable(ResultSet aggregateTableRecords, String[] aggregateTablePropertyOfKey,
-      String[] valueOfKey) {
-
-    ResultSet fullRecord = null;
-    String[] currentValueOfKey = new String[aggregateTablePropertyOfKey.length];
-    boolean equals;
-
-    try {
-
-      while (aggregateTableRecords.next()) {
-
-        for (int i = 0; i < aggregateTablePropertyOfKey.length; i++) {
-          currentValueOfKey[i] = aggregateTableRecords.getString(aggregateTablePropertyOfKey[i]);
-        }
-
-        equals = true;
-        for (int j = 0; j < valueOfKey.length; j++) {
-          if (!valueOfKey[j].equals(currentValueOfKey[j])) {
-            equals = false;
-            break;
-          }
-        }
-
-        if (equals) {
-          fullRecord = aggregateTableRecords;
-          return fullRecord;
-        }
-
-      }
-    } catch (Exception e) {
-      String mess = "";
-      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
-      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
-      throw new OTeleporterRuntimeException(e);
+    OHierarchicalBagKeyIndex keyIndex = this.bag2keyIndex.get(hierarchicalBag);
+    if (keyIndex == null) {
+      keyIndex = new OHierarchicalBagKeyIndex(hierarchicalBag, dbQueryEngine);
+      this.bag2keyIndex.put(hierarchicalBag, keyIndex);
     }
-
-    return fullRecord;
+    return keyIndex.resolveEntityName(propertyOfKey, valueOfKey);
   }
 
   protected boolean hasGeospatialAttributes(OEntity entity, ODBMSDataTypeHandler handler) {
@@ -1057,4 +2151,21 @@ public abstract class OAbstractDBMSImportStrategy implements OWorkflowStrategy {
     return columns;
   }
 
+  /**
+   * Vertex whose key was not found in the source table, with its key as string (for the key cache) and as typed values (for
+   * the lookup in the source table).
+   */
+  private static class OOrphanVertex {
+
+    private final ORID     vertexId;
+    private final String[] valueOfKey;
+    private final Object[] typedValueOfKey;
+
+    private OOrphanVertex(ORID vertexId, String[] valueOfKey, Object[] typedValueOfKey) {
+      this.vertexId = vertexId;
+      this.valueOfKey = valueOfKey;
+      this.typedValueOfKey = typedValueOfKey;
+    }
+  }
+
 }
@@ -30,7 +30,9 @@ import com.orientechnologies.teleporter.context.OTeleporterStatistics;
 import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
 import com.orientechnologies.teleporter.factory.OMapperFactory;
 import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphBatchWriter;
 import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OGraphEngineForDB;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
 import com.orientechnologies.teleporter.mapper.OSource2GraphMapper;
 import com.orientechnologies.teleporter.mapper.rdbms.OAggregatorEdge;
 import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
@@ -106,6 +108,7 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
     // Step 5: Writing schema on OrientDB
     OGraphModelWriter graphModelWriter = new OGraphModelWriter(migrationConfig);
     boolean success = graphModelWriter.writeModelOnOrient(mapper, handler, dbName, protocol);
+    this.deferredIndexes = graphModelWriter.getDeferredIndexes();
 
     if (!success) {
       OTeleporterContext.getInstance().getMessageHandler().error(this, "Writing not complete. Something gone wrong.\n");
@@ -124,6 +127,7 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
   public void executeImport(OSourceDatabaseInfo sourceDBInfo, String dbName, OSource2GraphMapper genericMapper,
       ODBMSDataTypeHandler handler) {
 
+    OGraphEngineForDB graphEngine = null;
     try {
 
       OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
@@ -132,7 +136,7 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
 
       OER2GraphMapper mapper = (OER2GraphMapper) genericMapper;
       ODBQueryEngine dbQueryEngine = OTeleporterContext.getInstance().getDbQueryEngine();
-      OGraphEngineForDB graphEngine = new OGraphEngineForDB((OER2GraphMapper) mapper, handler);
+      graphEngine = new OGraphEngineForDB((OER2GraphMapper) mapper, handler);
 
       // OrientDB graph initialization/connection
       ODatabaseDocument orientGraph;
@@ -145,69 +149,34 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
         throw new OTeleporterRuntimeException(e);
       }
 
-      // Importing from Entities belonging to hierarchical bags
-      super.importEntitiesBelongingToHierarchies(dbQueryEngine, graphEngine, orientGraph);
+      // several graph writer workers can be used to import the records
+      super.openGraphSessionPool(graphEngine, orientGraph);
 
-      // Importing from Entities NOT belonging to hierarchical bags NOR corresponding to join tables
-      for (OVertexType currentOutVertexType : mapper.getVertexType2EVClassMappers().keySet()) {
+      // progress stored to resume the import if interrupted, or loaded from the interrupted import being resumed (-resume only)
+      super.openCheckpoint(orientGraph);
 
-        List<OEVClassMapper> classMappersByVertex = ((OER2GraphMapper) super.mapper)
-            .getEVClassMappersByVertex(currentOutVertexType);
-        List<OEntity> mappedEntities = new LinkedList<OEntity>();
+      // on an empty database (fresh import) all the vertices can be inserted before the edges
+      boolean twoPhaseImport = super.beginTwoPhaseImport(graphEngine, orientGraph);
 
-        // checking condition
-        boolean allEntitiesNotAggregableAndNotBelongingToHierarchies = true;
-        for (OEVClassMapper classMapper : classMappersByVertex) {
-          OEntity currentEntity = classMapper.getEntity();
-          if (currentEntity.getHierarchicalBag() != null || currentEntity.isAggregableJoinTable()) {
-            allEntitiesNotAggregableAndNotBelongingToHierarchies = false;
-            break;
-          } else {
-            mappedEntities.add(currentEntity);
-          }
-        }
-
-        if (allEntitiesNotAggregableAndNotBelongingToHierarchies) {
+      // just the records changed since the last sync are read from the tables with a watermark column
+      super.openWatermarks(dbQueryEngine, graphEngine);
 
-          String aggregationColumns[][] = null;
+      // and from the tables whose changes are captured by triggers just the records whose key was logged since the last sync
+      super.openChangeLogs(dbQueryEngine, graphEngine);
 
-          //  classes' aggregation case
-          if (mappedEntities.size() > 1) {
-            OConfiguredVertexClass configuredVertex = mapper.getMigrationConfig().getVertexByMappedEntities(mappedEntities);
-            aggregationColumns = super.buildAggregationColumnsFromAggregatedVertex(configuredVertex);
-            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-              super
-                  .importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType, dbQueryEngine,
-                      graphEngine, orientGraph);
-            }
-          } else if (mappedEntities.size() == 1) {
+      // the tables read with a full scan are skipped if their fingerprint didn't change since the last sync
+      super.openFingerprints(dbQueryEngine, graphEngine);
 
-            List<OEVClassMapper> classMappersByEntity = ((OER2GraphMapper) super.mapper)
-                .getEVClassMappersByEntity(mappedEntities.get(0));
-
-            // 1-1 mapping
-            if (classMappersByEntity.size() == 1) {
-              if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-                super.importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType,
-                    dbQueryEngine, graphEngine, orientGraph);
-              }
-            }
+      if (twoPhaseImport) {
+        this.importEntitiesNotBelongingToHierarchies(mapper, dbQueryEngine, graphEngine, orientGraph);
+        super.beginEdgesPhase();
+      }
 
-            // splitting case (1-N)
-            else if (classMappersByEntity.size() > 1) {
-              List<OVertexType> mappedVertices = new LinkedList<OVertexType>();
-              for (OEVClassMapper classMapper : classMappersByVertex) {
-                mappedVertices.add(classMapper.getVertexType());
-              }
-              if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-                super.importRecordsFromSplitEntityIntoVertexClasses(mappedEntities, mappedVertices, dbQueryEngine, graphEngine,
-                    orientGraph);
-              }
-            }
+      // Importing from Entities belonging to hierarchical bags
+      super.importEntitiesBelongingToHierarchies(dbQueryEngine, graphEngine, orientGraph);
 
-          }
-        }
-      }
+      // Importing from Entities NOT belonging to hierarchical bags NOR corresponding to join tables
+      this.importEntitiesNotBelongingToHierarchies(mapper, dbQueryEngine, graphEngine, orientGraph);
 
       // Importing from Entities NOT belonging to hierarchical bags and corresponding to join tables
       for (OVertexType currentOutVertexType : mapper.getVertexType2EVClassMappers().keySet()) {
@@ -241,7 +210,20 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
 
       statistics.notifyListeners();
       statistics.runningStepNumber = -1;
+
+      // vertices of the records deleted from the source since the last sync
+      super.propagateDeletes(dbQueryEngine, graphEngine, orientGraph);
+
+      // Step 5: building the edges of the logical relationships
+      super.buildLogicalRelationshipEdges(graphEngine, orientGraph);
       orientGraph.close();
+
+      // indexes deferred by the writing of the schema, built on the loaded data
+      super.buildDeferredIndexes();
+      super.saveWatermarks();
+      super.saveFingerprints();
+      super.purgeChangeLogs(dbQueryEngine);
+      super.closeCheckpoint();
       OTeleporterContext.getInstance().getMessageHandler().info(this, "\n");
 
     } catch (OTeleporterRuntimeException e) {
@@ -250,13 +232,91 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
       String mess = "";
       OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
       OTeleporterContext.getInstance().printExceptionStackTrace(e, "debug");
+    } finally {
+      super.endTwoPhaseImport();
+      super.closeGraphSessionPool(graphEngine);
+      super.releaseVertexKeyCache(graphEngine);
     }
   }
 
-  protected void importJoinTableRecordIntoEdgeClass(List<OEntity> mappedEntities, ODBQueryEngine dbQueryEngine,
+  /**
+   * Imports the records of the entities neither belonging to hierarchical bags nor corresponding to join tables into the mapped
+   * vertex classes.
+   *
+   * @param mapper
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  private void importEntitiesNotBelongingToHierarchies(OER2GraphMapper mapper, ODBQueryEngine dbQueryEngine,
       OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) throws SQLException {
 
-    OTeleporterStatistics statistics = OTeleporterContext.getInstance().getStatistics();
+    for (OVertexType currentOutVertexType : mapper.getVertexType2EVClassMappers().keySet()) {
+
+      List<OEVClassMapper> classMappersByVertex = ((OER2GraphMapper) super.mapper)
+          .getEVClassMappersByVertex(currentOutVertexType);
+      List<OEntity> mappedEntities = new LinkedList<OEntity>();
+
+      // checking condition
+      boolean allEntitiesNotAggregableAndNotBelongingToHierarchies = true;
+      for (OEVClassMapper classMapper : classMappersByVertex) {
+        OEntity currentEntity = classMapper.getEntity();
+        if (currentEntity.getHierarchicalBag() != null || currentEntity.isAggregableJoinTable()) {
+          allEntitiesNotAggregableAndNotBelongingToHierarchies = false;
+          break;
+        } else {
+          mappedEntities.add(currentEntity);
+        }
+      }
+
+      if (allEntitiesNotAggregableAndNotBelongingToHierarchies) {
+
+        String aggregationColumns[][] = null;
+
+        //  classes' aggregation case
+        if (mappedEntities.size() > 1) {
+          OConfiguredVertexClass configuredVertex = mapper.getMigrationConfig().getVertexByMappedEntities(mappedEntities);
+          aggregationColumns = super.buildAggregationColumnsFromAggregatedVertex(configuredVertex);
+          if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+            super
+                .importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType, dbQueryEngine,
+                    graphEngine, orientGraph);
+          }
+        } else if (mappedEntities.size() == 1) {
+
+          List<OEVClassMapper> classMappersByEntity = ((OER2GraphMapper) super.mapper)
+              .getEVClassMappersByEntity(mappedEntities.get(0));
+
+          // 1-1 mapping
+          if (classMappersByEntity.size() == 1) {
+            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+              super.importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType,
+                  dbQueryEngine, graphEngine, orientGraph);
+            }
+          }
+
+          // splitting case (1-N)
+          else if (classMappersByEntity.size() > 1) {
+            List<OVertexType> mappedVertices = new LinkedList<OVertexType>();
+            for (OEVClassMapper classMapper : classMappersByVertex) {
+              mappedVertices.add(classMapper.getVertexType());
+            }
+            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+              super.importRecordsFromSplitEntityIntoVertexClasses(mappedEntities, mappedVertices, dbQueryEngine, graphEngine,
+                  orientGraph);
+            }
+          }
+
+        }
+      }
+    }
+  }
+
+  protected void importJoinTableRecordIntoEdgeClass(List<OEntity> mappedEntities, ODBQueryEngine dbQueryEngine,
+      final OGraphEngineForDB graphEngine, final ODatabaseDocument orientGraph) throws SQLException {
+
     OQueryResult queryResult;
     ResultSet records;
 
@@ -267,25 +327,51 @@ public class ODBMSNaiveAggregationStrategy extends OAbstractDBMSImportStrategy {
     //  queryResult = dbQueryEngine.executeQuery(query);
     //}
 
-    OEntity joinTable = mappedEntities.get(0);
+    final OEntity joinTable = mappedEntities.get(0);
+    final OAggregatorEdge aggregatorEdge = this.mapper
+        .getAggregatorEdgeByJoinVertexTypeName(this.mapper.getVertexTypeByEntity(joinTable).getName());
+
+    // edge class completed by the interrupted import being resumed, or join table unchanged since the last sync
+    String edgeTypeName = aggregatorEdge.getEdgeType().getName();
+    if ((this.resuming && this.checkpoint.isEdgeTypeCompleted(edgeTypeName)) || super.isUnchanged(joinTable)) {
+      return;
+    }
+
     queryResult = dbQueryEngine.getRecordsByEntity(joinTable);
     records = queryResult.getResult();
-    ResultSet currentRecord = null;
 
-    OAggregatorEdge aggregatorEdge = this.mapper
-        .getAggregatorEdgeByJoinVertexTypeName(this.mapper.getVertexTypeByEntity(joinTable).getName());
+    // in a two-phase import the vertices are resolved through the ids recorded in the first phase
+    final OVertexRidMap vertexRidMap = this.vertexRidMap;
+
+    OGraphBatchWriter batchWriter = new OGraphBatchWriter(orientGraph);
+    OGraphBatchWriter.ORecordImporter recordImporter = new OGraphBatchWriter.ORecordImporter() {
+      @Override
+      public void importRecord(ResultSet currentRecord) throws Exception {
+        if (vertexRidMap != null) {
+          graphEngine.insertAggregatorEdge(orientGraph, currentRecord, joinTable, aggregatorEdge, vertexRidMap);
+        } else {
+          graphEngine.upsertAggregatorEdge(orientGraph, currentRecord, joinTable, aggregatorEdge);
+        }
+      }
+    };
 
-    // each record of the join table used to add an edge
-    while (records.next()) {
-      currentRecord = records;
-      graphEngine.upsertAggregatorEdge(orientGraph, currentRecord, joinTable, aggregatorEdge);
+    // each record of the join table used to add an edge, statistics are updated when the batch is committed
+    batchWriter.begin();
+    try {
+      while (records.next()) {
+        batchWriter.importRecord(records, recordImporter, 1);
+      }
+      batchWriter.commit();
+    } finally {
+      batchWriter.close();
 
-      // Statistics updated
-      statistics.analyzedRecords++;
+      // closing resultset, connection and statement
+      queryResult.closeAll();
+    }
 
+    if (this.checkpoint != null) {
+      this.checkpoint.completeEdgeType(edgeTypeName);
     }
-    // closing resultset, connection and statement
-    queryResult.closeAll();
   }
 
 }
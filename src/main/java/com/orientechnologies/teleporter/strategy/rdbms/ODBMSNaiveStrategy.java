@@ -41,6 +41,7 @@ import com.orientechnologies.teleporter.nameresolver.ONameResolver;
 import com.orientechnologies.teleporter.persistence.handler.ODBMSDataTypeHandler;
 import com.orientechnologies.teleporter.writer.OGraphModelWriter;
 
+import java.sql.SQLException;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -93,6 +94,7 @@ public class ODBMSNaiveStrategy extends OAbstractDBMSImportStrategy {
     // Step 4: Writing schema on OrientDB
     OGraphModelWriter graphModelWriter = new OGraphModelWriter(migrationConfig);
     boolean success = graphModelWriter.writeModelOnOrient(mapper, handler, dbName, protocol);
+    this.deferredIndexes = graphModelWriter.getDeferredIndexes();
 
     if (!success) {
       OTeleporterContext.getInstance().getMessageHandler().error(this, "Writing not complete. Something gone wrong.\n");
@@ -111,6 +113,7 @@ public class ODBMSNaiveStrategy extends OAbstractDBMSImportStrategy {
       ODBMSDataTypeHandler handler) {
 
     ODatabaseDocument orientGraph = null;
+    OGraphEngineForDB graphEngine = null;
 
     try {
 
@@ -120,7 +123,7 @@ public class ODBMSNaiveStrategy extends OAbstractDBMSImportStrategy {
 
       OER2GraphMapper mapper = (OER2GraphMapper) genericMapper;
       ODBQueryEngine dbQueryEngine = OTeleporterContext.getInstance().getDbQueryEngine();
-      OGraphEngineForDB graphEngine = new OGraphEngineForDB((OER2GraphMapper) mapper, handler);
+      graphEngine = new OGraphEngineForDB((OER2GraphMapper) mapper, handler);
 
       // OrientDB graph initialization/connection
 
@@ -133,73 +136,52 @@ public class ODBMSNaiveStrategy extends OAbstractDBMSImportStrategy {
         throw new OTeleporterRuntimeException(e);
       }
 
-      // Importing from Entities belonging to hierarchical bags
-      super.importEntitiesBelongingToHierarchies(dbQueryEngine, graphEngine, orientGraph);
+      // several graph writer workers can be used to import the records
+      super.openGraphSessionPool(graphEngine, orientGraph);
 
-      // Importing from Entities NOT belonging to hierarchical bags
-      for (OVertexType currentOutVertexType : mapper.getVertexType2EVClassMappers().keySet()) {
-
-        List<OEVClassMapper> classMappersByVertex = ((OER2GraphMapper) super.mapper)
-            .getEVClassMappersByVertex(currentOutVertexType);
-        List<OEntity> mappedEntities = new LinkedList<OEntity>();
-
-        // checking condition
-        boolean allEntitiesNotBelongingToHierarchies = true;
-        for (OEVClassMapper classMapper : classMappersByVertex) {
-          OEntity currentEntity = classMapper.getEntity();
-          if (currentEntity.getHierarchicalBag() != null) {
-            allEntitiesNotBelongingToHierarchies = false;
-            break;
-          } else {
-            mappedEntities.add(currentEntity);
-          }
-        }
+      // progress stored to resume the import if interrupted, or loaded from the interrupted import being resumed (-resume only)
+      super.openCheckpoint(orientGraph);
 
-        if (allEntitiesNotBelongingToHierarchies) {
+      // on an empty database (fresh import) all the vertices can be inserted before the edges
+      boolean twoPhaseImport = super.beginTwoPhaseImport(graphEngine, orientGraph);
 
-          String aggregationColumns[][] = null;
+      // just the records changed since the last sync are read from the tables with a watermark column
+      super.openWatermarks(dbQueryEngine, graphEngine);
 
-          //  classes' aggregation case
-          if (mappedEntities.size() > 1) {
-            OConfiguredVertexClass configuredVertex = mapper.getMigrationConfig().getVertexByMappedEntities(mappedEntities);
-            aggregationColumns = super.buildAggregationColumnsFromAggregatedVertex(configuredVertex);
-            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-              super
-                  .importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType, dbQueryEngine,
-                      graphEngine, orientGraph);
-            }
-          } else if (mappedEntities.size() == 1) {
-
-            List<OEVClassMapper> classMappersByEntity = ((OER2GraphMapper) super.mapper)
-                .getEVClassMappersByEntity(mappedEntities.get(0));
+      // and from the tables whose changes are captured by triggers just the records whose key was logged since the last sync
+      super.openChangeLogs(dbQueryEngine, graphEngine);
 
-            // 1-1 mapping
-            if (classMappersByEntity.size() == 1) {
-              if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-                super.importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType,
-                    dbQueryEngine, graphEngine, orientGraph);
-              }
-            }
+      // the tables read with a full scan are skipped if their fingerprint didn't change since the last sync
+      super.openFingerprints(dbQueryEngine, graphEngine);
 
-            // splitting case (1-N)
-            else if (classMappersByEntity.size() > 1) {
-              List<OVertexType> mappedVertices = new LinkedList<OVertexType>();
-              for (OEVClassMapper classMapper : classMappersByEntity) {
-                mappedVertices.add(classMapper.getVertexType());
-              }
-              if (!currentOutVertexType.isAnalyzedInLastMigration()) {
-                super.importRecordsFromSplitEntityIntoVertexClasses(mappedEntities, mappedVertices, dbQueryEngine, graphEngine,
-                    orientGraph);
-              }
-            }
-          }
-        }
+      if (twoPhaseImport) {
+        this.importEntitiesNotBelongingToHierarchies(mapper, dbQueryEngine, graphEngine, orientGraph);
+        super.beginEdgesPhase();
       }
 
+      // Importing from Entities belonging to hierarchical bags
+      super.importEntitiesBelongingToHierarchies(dbQueryEngine, graphEngine, orientGraph);
+
+      // Importing from Entities NOT belonging to hierarchical bags
+      this.importEntitiesNotBelongingToHierarchies(mapper, dbQueryEngine, graphEngine, orientGraph);
+
       statistics.notifyListeners();
       statistics.runningStepNumber = -1;
+
+      // vertices of the records deleted from the source since the last sync
+      super.propagateDeletes(dbQueryEngine, graphEngine, orientGraph);
+
+      // Step 5: building the edges of the logical relationships
+      super.buildLogicalRelationshipEdges(graphEngine, orientGraph);
       orientGraph.close();
 
+      // indexes deferred by the writing of the schema, built on the loaded data
+      super.buildDeferredIndexes();
+      super.saveWatermarks();
+      super.saveFingerprints();
+      super.purgeChangeLogs(dbQueryEngine);
+      super.closeCheckpoint();
+
       OTeleporterContext.getInstance().getMessageHandler().info(this, "\n");
 
     } catch (OTeleporterRuntimeException e) {
@@ -213,6 +195,83 @@ public class ODBMSNaiveStrategy extends OAbstractDBMSImportStrategy {
         orientGraph.close();
       }
       throw new OTeleporterRuntimeException(e);
+    } finally {
+      super.endTwoPhaseImport();
+      super.closeGraphSessionPool(graphEngine);
+      super.releaseVertexKeyCache(graphEngine);
+    }
+  }
+
+  /**
+   * Imports the records of the entities not belonging to hierarchical bags into the mapped vertex classes.
+   *
+   * @param mapper
+   * @param dbQueryEngine
+   * @param graphEngine
+   * @param orientGraph
+   *
+   * @throws SQLException
+   */
+  private void importEntitiesNotBelongingToHierarchies(OER2GraphMapper mapper, ODBQueryEngine dbQueryEngine,
+      OGraphEngineForDB graphEngine, ODatabaseDocument orientGraph) throws SQLException {
+
+    for (OVertexType currentOutVertexType : mapper.getVertexType2EVClassMappers().keySet()) {
+
+      List<OEVClassMapper> classMappersByVertex = ((OER2GraphMapper) super.mapper)
+          .getEVClassMappersByVertex(currentOutVertexType);
+      List<OEntity> mappedEntities = new LinkedList<OEntity>();
+
+      // checking condition
+      boolean allEntitiesNotBelongingToHierarchies = true;
+      for (OEVClassMapper classMapper : classMappersByVertex) {
+        OEntity currentEntity = classMapper.getEntity();
+        if (currentEntity.getHierarchicalBag() != null) {
+          allEntitiesNotBelongingToHierarchies = false;
+          break;
+        } else {
+          mappedEntities.add(currentEntity);
+        }
+      }
+
+      if (allEntitiesNotBelongingToHierarchies) {
+
+        String aggregationColumns[][] = null;
+
+        //  classes' aggregation case
+        if (mappedEntities.size() > 1) {
+          OConfiguredVertexClass configuredVertex = mapper.getMigrationConfig().getVertexByMappedEntities(mappedEntities);
+          aggregationColumns = super.buildAggregationColumnsFromAggregatedVertex(configuredVertex);
+          if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+            super
+                .importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType, dbQueryEngine,
+                    graphEngine, orientGraph);
+          }
+        } else if (mappedEntities.size() == 1) {
+
+          List<OEVClassMapper> classMappersByEntity = ((OER2GraphMapper) super.mapper)
+              .getEVClassMappersByEntity(mappedEntities.get(0));
+
+          // 1-1 mapping
+          if (classMappersByEntity.size() == 1) {
+            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+              super.importRecordsFromEntitiesIntoVertexClass(mappedEntities, aggregationColumns, currentOutVertexType,
+                  dbQueryEngine, graphEngine, orientGraph);
+            }
+          }
+
+          // splitting case (1-N)
+          else if (classMappersByEntity.size() > 1) {
+            List<OVertexType> mappedVertices = new LinkedList<OVertexType>();
+            for (OEVClassMapper classMapper : classMappersByEntity) {
+              mappedVertices.add(classMapper.getVertexType());
+            }
+            if (!currentOutVertexType.isAnalyzedInLastMigration()) {
+              super.importRecordsFromSplitEntityIntoVertexClasses(mappedEntities, mappedVertices, dbQueryEngine, graphEngine,
+                  orientGraph);
+            }
+          }
+        }
+      }
     }
   }
 
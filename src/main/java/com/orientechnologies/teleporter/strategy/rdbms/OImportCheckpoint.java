@@ -0,0 +1,186 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.strategy.rdbms;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.teleporter.model.dbschema.OWatermark;
+import com.orientechnologies.teleporter.util.OMigrationConfigManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progress of an import, stored in the <db-path>/teleporter-config/ path so that an import interrupted by a crash or a
+ * cancellation can be resumed: the vertex and edge classes completed, and for each table still being read the last key
+ * committed into the graph database.
+ * Completed classes are saved immediately, while the committed keys at most every {@link #SAVE_INTERVAL} milliseconds: on
+ * resume the records committed after the last saved key are read again and upserted.
+ * The checkpoint is deleted when the import completes.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OImportCheckpoint {
+
+  public static final long SAVE_INTERVAL = 5000;   // milliseconds between two saves of the committed keys
+
+  private final String                 outOrientGraphUri;
+  private final Set<String>            completedVertexTypes;
+  private final Set<String>            completedEdgeTypes;
+  private final Map<String, ODocument> lastKeys;           // table -> key column, type and value of the last committed key
+  private long                         lastSave;
+
+  public OImportCheckpoint(String outOrientGraphUri) {
+    this.outOrientGraphUri = outOrientGraphUri;
+    this.completedVertexTypes = new LinkedHashSet<String>();
+    this.completedEdgeTypes = new LinkedHashSet<String>();
+    this.lastKeys = new LinkedHashMap<String, ODocument>();
+    this.lastSave = System.currentTimeMillis();
+  }
+
+  /**
+   * Loads the checkpoint stored by the last import.
+   *
+   * @param outOrientGraphUri
+   *
+   * @return null if no checkpoint was stored, that is the last import completed
+   */
+  public static OImportCheckpoint load(String outOrientGraphUri) {
+
+    ODocument checkpointDoc = OMigrationConfigManager.loadCheckpoint(outOrientGraphUri);
+    if (checkpointDoc == null) {
+      return null;
+    }
+
+    OImportCheckpoint checkpoint = new OImportCheckpoint(outOrientGraphUri);
+    List<String> vertexTypes = checkpointDoc.field("completedVertexTypes");
+    if (vertexTypes != null) {
+      checkpoint.completedVertexTypes.addAll(vertexTypes);
+    }
+    List<String> edgeTypes = checkpointDoc.field("completedEdgeTypes");
+    if (edgeTypes != null) {
+      checkpoint.completedEdgeTypes.addAll(edgeTypes);
+    }
+    List<ODocument> tables = checkpointDoc.field("lastKeys");
+    if (tables != null) {
+      for (ODocument table : tables) {
+        checkpoint.lastKeys.put((String) table.field("table"), table);
+      }
+    }
+    return checkpoint;
+  }
+
+  public synchronized boolean isVertexTypeCompleted(String vertexType) {
+    return this.completedVertexTypes.contains(vertexType);
+  }
+
+  public synchronized Set<String> getCompletedVertexTypes() {
+    return new LinkedHashSet<String>(this.completedVertexTypes);
+  }
+
+  public synchronized boolean isEdgeTypeCompleted(String edgeType) {
+    return this.completedEdgeTypes.contains(edgeType);
+  }
+
+  /**
+   * Records the vertex class as completed, that is all its records and their edges are committed. The key committed last
+   * for the source table is no more needed.
+   *
+   * @param vertexType
+   * @param table      the source table of the vertex class, null if none was read by key
+   */
+  public synchronized void completeVertexType(String vertexType, String table) {
+    this.completedVertexTypes.add(vertexType);
+    if (table != null) {
+      this.lastKeys.remove(table);
+    }
+    this.save();
+  }
+
+  public synchronized void completeEdgeType(String edgeType) {
+    this.completedEdgeTypes.add(edgeType);
+    this.save();
+  }
+
+  /**
+   * Returns the last key committed for the table, if it was read in the order of the same key column.
+   *
+   * @param table
+   * @param keyColumn
+   *
+   * @return the key to bind to the statement parameters, null if the table must be read from its first record
+   */
+  public synchronized Object getLastKey(String table, String keyColumn) {
+    ODocument lastKey = this.lastKeys.get(table);
+    if (lastKey == null || !keyColumn.equals(lastKey.field("keyColumn"))) {
+      return null;
+    }
+    return OWatermark.decode((String) lastKey.field("type"), (String) lastKey.field("value"));
+  }
+
+  /**
+   * Records the key of a record of the table committed into the graph database. The table is read in the order of the key
+   * column, so all the records with a lower key are committed too.
+   *
+   * @param table
+   * @param keyColumn
+   * @param key       the key as read through ResultSet.getObject()
+   */
+  public synchronized void commitKey(String table, String keyColumn, Object key) {
+    if (key == null) {
+      return;
+    }
+    ODocument lastKey = new ODocument();
+    lastKey.field("table", table);
+    lastKey.field("keyColumn", keyColumn);
+    lastKey.field("type", OWatermark.typeOf(key));
+    lastKey.field("value", OWatermark.encode(key));
+    this.lastKeys.put(table, lastKey);
+
+    if (System.currentTimeMillis() - this.lastSave >= SAVE_INTERVAL) {
+      this.save();
+    }
+  }
+
+  public synchronized void save() {
+    ODocument checkpointDoc = new ODocument();
+    checkpointDoc.field("completedVertexTypes", new ArrayList<String>(this.completedVertexTypes));
+    checkpointDoc.field("completedEdgeTypes", new ArrayList<String>(this.completedEdgeTypes));
+    checkpointDoc.field("lastKeys", new ArrayList<ODocument>(this.lastKeys.values()));
+    OMigrationConfigManager.writeCheckpoint(checkpointDoc, this.outOrientGraphUri);
+    this.lastSave = System.currentTimeMillis();
+  }
+
+  /**
+   * Deletes the stored checkpoint, once the import completed.
+   */
+  public synchronized void delete() {
+    OMigrationConfigManager.deleteCheckpoint(this.outOrientGraphUri);
+    this.completedVertexTypes.clear();
+    this.completedEdgeTypes.clear();
+    this.lastKeys.clear();
+  }
+}
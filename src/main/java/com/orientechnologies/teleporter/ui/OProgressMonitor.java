@@ -210,7 +210,9 @@ public class OProgressMonitor implements OStatisticsListener {
 
     int work4DonePercentage;
     if (statistics.totalNumberOfEntities > 0) {
-      work4DonePercentage = (int) (((double) statistics.analyzedRecords / (double) statistics.totalNumberOfRecords) * 100);
+      // the total may be an estimate, lower than the records actually read
+      work4DonePercentage = (int) Math
+          .min(((double) statistics.analyzedRecords / (double) statistics.totalNumberOfRecords) * 100, 100);
     } else {
       work4DonePercentage = 0;
     }
@@ -234,25 +236,23 @@ public class OProgressMonitor implements OStatisticsListener {
     Date currentTime = new Date();
     int numberOfLogicalRelationships = statistics.totalNumberOfLogicalRelationships;
 
-    // TO CHECK
-
+    // done relationships plus the done fraction of the current one
     int work5DonePercentage;
     if (numberOfLogicalRelationships > 0) {
 
-      int work5percentage1;
+      double currentRelationshipDone;
       if (statistics.leftVerticesCurrentLogicalRelationship > 0) {
-        work5percentage1 =
-            statistics.doneLeftVerticesCurrentLogicalRelationship / statistics.leftVerticesCurrentLogicalRelationship;
+        currentRelationshipDone = Math.min(1.0,
+            (double) statistics.doneLeftVerticesCurrentLogicalRelationship / statistics.leftVerticesCurrentLogicalRelationship);
       } else {
-        work5percentage1 = 0;
-
+        currentRelationshipDone = 0;
       }
-      int work5percentage2 = statistics.doneLogicalRelationships / statistics.totalNumberOfLogicalRelationships;
 
-      if (work5percentage2 == 1) {
+      if (statistics.doneLogicalRelationships >= numberOfLogicalRelationships) {
         work5DonePercentage = 100;
       } else {
-        work5DonePercentage = (work5percentage2 + (work5percentage1 / numberOfLogicalRelationships)) * 100;
+        work5DonePercentage = (int) ((statistics.doneLogicalRelationships + currentRelationshipDone) * 100
+            / numberOfLogicalRelationships);
       }
 
     } else {
@@ -0,0 +1,103 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Notifies the listeners registered on an element of the model (the versioned lists containing it and the indexes built on
+ * it) when the element changes in a way affecting those indexes, e.g. when it's renamed, so that only the indexes involving
+ * the element are rebuilt.
+ * The listeners are weakly referenced and never unregistered: a list which doesn't contain the element anymore only gets
+ * spurious notifications, costing an index rebuild.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OChangeNotifier {
+
+  private final List<WeakReference<OChangeListener>> listeners = new ArrayList<WeakReference<OChangeListener>>(2);
+
+  /**
+   * Listener of the changes of the elements.
+   */
+  public interface OChangeListener {
+    void elementChanged();
+  }
+
+  /**
+   * Element of the model notifying its changes.
+   */
+  public interface ONotifyingElement {
+    OChangeNotifier getChangeNotifier();
+  }
+
+  /**
+   * Registers the listener, if not registered yet.
+   *
+   * @param listener
+   */
+  public synchronized void addListener(OChangeListener listener) {
+    Iterator<WeakReference<OChangeListener>> it = this.listeners.iterator();
+    while (it.hasNext()) {
+      OChangeListener currentListener = it.next().get();
+      if (currentListener == listener) {
+        return;
+      }
+      if (currentListener == null) {
+        it.remove();
+      }
+    }
+    this.listeners.add(new WeakReference<OChangeListener>(listener));
+  }
+
+  /**
+   * Notifies that the element has been changed.
+   */
+  public synchronized void notifyChange() {
+    Iterator<WeakReference<OChangeListener>> it = this.listeners.iterator();
+    while (it.hasNext()) {
+      OChangeListener currentListener = it.next().get();
+      if (currentListener != null) {
+        currentListener.elementChanged();
+      } else {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Registers the listener on the element, if it notifies its changes.
+   *
+   * @param element
+   * @param listener
+   */
+  public static void listen(Object element, OChangeListener listener) {
+    if (element instanceof ONotifyingElement) {
+      ((ONotifyingElement) element).getChangeNotifier().addListener(listener);
+    }
+  }
+
+}
@@ -21,9 +21,17 @@
 package com.orientechnologies.teleporter.util;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.OVertex;
 import com.orientechnologies.orient.core.sql.executor.OResultSet;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Collects several commands executable on a OrientDb database.
  */
@@ -35,6 +43,8 @@ public class OGraphCommands {
   /**
    * The method performs a lookup on the passed ODatabaseDocument for a OVertex, starting from a record and from a vertex type.
    * It returns the vertex if present, null if not present.
+   * The lookup is performed directly on the '<vertexClassName>.pkey' index when the keys are exactly its fields, otherwise
+   * through a SQL query. The SQL query is performed as well when the index is not unique and the key is duplicated.
    *
    * @param orientGraph
    * @param keys
@@ -45,6 +55,17 @@ public class OGraphCommands {
    */
   public static OVertex getVertexByIndexedKey(ODatabaseDocument orientGraph, String[] keys, String[] values, String vertexClassName) {
 
+    OIndex<?> index = getPrimaryKeyIndex(orientGraph, keys, vertexClassName);
+    if (index != null) {
+      Object result = getVertexIdsByIndex(index, keys, values);
+      if (result instanceof ORID) {
+        return loadVertex(orientGraph, (ORID) result);
+      }
+      if (result == null) {
+        return null;
+      }
+    }
+
     OVertex vertex = null;
 
     final OResultSet vertices = getVertices(orientGraph, vertexClassName, keys, values);
@@ -58,6 +79,80 @@ public class OGraphCommands {
     return vertex;
   }
 
+  /**
+   * Looks the key up on the primary key index, skipping the SQL parsing and execution.
+   * It returns the identity of the vertex, null if the vertex is not present, the collection of the identities when a not
+   * unique index holds the key several times.
+   */
+  private static Object getVertexIdsByIndex(OIndex<?> index, String[] keys, String[] values) {
+
+    // values are passed in the order of the index fields, the definition converts them to the types of the properties
+    List<String> fields = index.getDefinition().getFields();
+    Object[] orderedValues = new Object[fields.size()];
+    for (int i = 0; i < keys.length; i++) {
+      orderedValues[fields.indexOf(keys[i])] = values[i];
+    }
+    Object key = index.getDefinition().createValue(orderedValues);
+    if (key == null) {
+      return null;
+    }
+
+    Object result = index.get(key);
+    if (result instanceof OIdentifiable) {
+      return ((OIdentifiable) result).getIdentity();
+    }
+    if (result instanceof Collection) {
+      Collection<?> identities = (Collection<?>) result;
+      if (identities.isEmpty()) {
+        return null;
+      }
+      if (identities.size() == 1) {
+        Object identity = identities.iterator().next();
+        return identity instanceof OIdentifiable ? ((OIdentifiable) identity).getIdentity() : null;
+      }
+      return identities;
+    }
+    return null;
+  }
+
+  /**
+   * Loads the vertex with the passed identity, null if it's not present.
+   *
+   * @param orientGraph
+   * @param vertexId
+   *
+   * @return
+   */
+  public static OVertex loadVertex(ODatabaseDocument orientGraph, ORID vertexId) {
+
+    ORecord record = orientGraph.load(vertexId);
+    if (record instanceof OElement) {
+      return ((OElement) record).asVertex().orElse(null);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the '<vertexClassName>.pkey' index if its fields are exactly the passed keys, null otherwise.
+   */
+  private static OIndex<?> getPrimaryKeyIndex(ODatabaseDocument orientGraph, String[] keys, String vertexClassName) {
+
+    OIndex<?> index = orientGraph.getMetadata().getIndexManager().getClassIndex(vertexClassName, vertexClassName + ".pkey");
+    if (index == null) {
+      return null;
+    }
+    List<String> fields = index.getDefinition().getFields();
+    if (fields.size() != keys.length) {
+      return null;
+    }
+    for (String key : keys) {
+      if (!fields.contains(key)) {
+        return null;
+      }
+    }
+    return index;
+  }
+
   public static OResultSet getVertices(ODatabaseDocument orientGraph, String vertexClassName, String[] keys, String[] values) {
 
     Object[] params = new Object[values.length];
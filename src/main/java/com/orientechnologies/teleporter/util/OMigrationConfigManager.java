@@ -28,6 +28,9 @@ import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,6 +45,9 @@ public class OMigrationConfigManager {
   private final static String configurationDirectoryName = "teleporter-config/";
   private final static String configFileName             = "migration-config.json";           // path ORIENTDB_HOME/<db-name>/teleporter-config/migration-config.json
   private final static String sourceInfoFileName         = "sources-access-info.json";    // path ORIENTDB_HOME/<db-name>/teleporter-config/sources-access-info.json
+  private final static String watermarksFileName         = "watermarks.json";             // path ORIENTDB_HOME/<db-name>/teleporter-config/watermarks.json
+  private final static String checkpointFileName         = "checkpoint.json";             // path ORIENTDB_HOME/<db-name>/teleporter-config/checkpoint.json
+  private final static String fingerprintsFileName       = "fingerprints.json";           // path ORIENTDB_HOME/<db-name>/teleporter-config/fingerprints.json
   private static boolean configPresentInDB;
 
   /**
@@ -250,6 +256,156 @@ public class OMigrationConfigManager {
     }
   }
 
+  /**
+   * Loading the watermarks stored by the last sync, that is the last value read from the change-tracking column of each
+   * source table, if present in the <db-path>/teleporter-config/ path.
+   *
+   * @param outOrientGraphUri
+   *
+   * @return null if no watermark was stored
+   */
+  public static ODocument loadWatermarks(String outOrientGraphUri) {
+
+    String watermarksPath = buildConfigurationFilePath(outOrientGraphUri, watermarksFileName);
+    if (!new File(watermarksPath).exists()) {
+      return null;
+    }
+
+    try {
+      return OFileManager.buildJsonFromFile(watermarksPath);
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  public static void writeWatermarks(ODocument watermarks, String outOrientGraphUri) {
+
+    String watermarksPath = buildConfigurationFilePath(outOrientGraphUri, watermarksFileName);
+    File watermarksFile = new File(watermarksPath);
+
+    if (watermarksFile.exists()) {
+      watermarksFile.delete();
+    }
+
+    String jsonWatermarks = watermarks.toJSON("prettyPrint");
+    try {
+      OFileManager.writeFileFromText(jsonWatermarks, watermarksPath, false);
+    } catch (IOException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+    }
+  }
+
+  /**
+   * Loading the fingerprints stored by the last sync, that is the number of records and the aggregate hash of each source
+   * table, if present in the <db-path>/teleporter-config/ path.
+   *
+   * @param outOrientGraphUri
+   *
+   * @return null if no fingerprint was stored
+   */
+  public static ODocument loadFingerprints(String outOrientGraphUri) {
+
+    String fingerprintsPath = buildConfigurationFilePath(outOrientGraphUri, fingerprintsFileName);
+    if (!new File(fingerprintsPath).exists()) {
+      return null;
+    }
+
+    try {
+      return OFileManager.buildJsonFromFile(fingerprintsPath);
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  public static void writeFingerprints(ODocument fingerprints, String outOrientGraphUri) {
+
+    String fingerprintsPath = buildConfigurationFilePath(outOrientGraphUri, fingerprintsFileName);
+    File fingerprintsFile = new File(fingerprintsPath);
+
+    if (fingerprintsFile.exists()) {
+      fingerprintsFile.delete();
+    }
+
+    String jsonFingerprints = fingerprints.toJSON("prettyPrint");
+    try {
+      OFileManager.writeFileFromText(jsonFingerprints, fingerprintsPath, false);
+    } catch (IOException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+    }
+  }
+
+  /**
+   * Loading the checkpoint stored by an import not completed, that is the progress it made before being interrupted, if
+   * present in the <db-path>/teleporter-config/ path.
+   *
+   * @param outOrientGraphUri
+   *
+   * @return null if no checkpoint was stored
+   */
+  public static ODocument loadCheckpoint(String outOrientGraphUri) {
+
+    String checkpointPath = buildConfigurationFilePath(outOrientGraphUri, checkpointFileName);
+    if (!new File(checkpointPath).exists()) {
+      return null;
+    }
+
+    try {
+      return OFileManager.buildJsonFromFile(checkpointPath);
+    } catch (Exception e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+      throw new OTeleporterRuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes the checkpoint into a temporary file first and then replaces the previous one with it, so a crash while writing
+   * never leaves a truncated checkpoint.
+   *
+   * @param checkpoint
+   * @param outOrientGraphUri
+   */
+  public static void writeCheckpoint(ODocument checkpoint, String outOrientGraphUri) {
+
+    String checkpointPath = buildConfigurationFilePath(outOrientGraphUri, checkpointFileName);
+    String temporaryPath = checkpointPath + ".tmp";
+    File temporaryFile = new File(temporaryPath);
+
+    if (temporaryFile.exists()) {
+      temporaryFile.delete();
+    }
+
+    String jsonCheckpoint = checkpoint.toJSON("prettyPrint");
+    try {
+      OFileManager.writeFileFromText(jsonCheckpoint, temporaryPath, false);
+      Files.move(Paths.get(temporaryPath), Paths.get(checkpointPath), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      String mess = "";
+      OTeleporterContext.getInstance().printExceptionMessage(e, mess, "error");
+      OTeleporterContext.getInstance().printExceptionStackTrace(e, "error");
+    }
+  }
+
+  public static void deleteCheckpoint(String outOrientGraphUri) {
+
+    File checkpointFile = new File(buildConfigurationFilePath(outOrientGraphUri, checkpointFileName));
+    if (checkpointFile.exists()) {
+      checkpointFile.delete();
+    }
+  }
+
   public static String getConfigurationDirectoryName() {
     return configurationDirectoryName;
   }
@@ -0,0 +1,206 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * List of named elements with name-indexed lookups (case-sensitive and case-insensitive). The indexes are built at the first
+ * lookup and updated in place when elements are appended, so building the model while looking it up stays linear. They are
+ * rebuilt only when the list has been otherwise modified (removals, replacements, insertions shadowing a name) or invalidated,
+ * or an element has been renamed since, so the lookups performed during the import cost a hash lookup instead of a scan of
+ * the list.
+ * As in a scan, when more elements share the same name the first one is returned.
+ * The list is modified by a single thread while the model is built, the concurrent lookups performed during the import don't
+ * need any lock.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ONameIndexedList<T> extends OVersionedList<T> {
+
+  private final ONameReader<T> nameReader;
+  private volatile ONameIndex<T> index;
+
+  /**
+   * Reads the name of an element.
+   */
+  public interface ONameReader<T> {
+    String getName(T element);
+  }
+
+  private static class ONameIndex<T> {
+    private long                 version;
+    private final Map<String, T> name2element;
+    private final Map<String, T> lowerCaseName2element;
+
+    private ONameIndex(long version, int size) {
+      this.version = version;
+      this.name2element = new HashMap<String, T>(size * 2);
+      this.lowerCaseName2element = new HashMap<String, T>(size * 2);
+    }
+
+    /**
+     * Indexes the element, unless its names are already indexed.
+     *
+     * @return false if an element with one of its names was already indexed
+     */
+    private boolean putIfAbsent(String name, T element) {
+      if (name == null) {
+        return true;
+      }
+      boolean absent = true;
+      if (!this.name2element.containsKey(name)) {
+        this.name2element.put(name, element);
+      } else {
+        absent = false;
+      }
+      String lowerCaseName = toLowerCase(name);
+      if (!this.lowerCaseName2element.containsKey(lowerCaseName)) {
+        this.lowerCaseName2element.put(lowerCaseName, element);
+      } else {
+        absent = false;
+      }
+      return absent;
+    }
+  }
+
+  public ONameIndexedList(ONameReader<T> nameReader) {
+    super();
+    this.nameReader = nameReader;
+  }
+
+  public ONameIndexedList(ONameReader<T> nameReader, Collection<? extends T> elements) {
+    super(elements);
+    this.nameReader = nameReader;
+  }
+
+  @Override
+  public boolean add(T element) {
+    ONameIndex<T> index = this.getValidIndex();
+    boolean added = super.add(element);
+    if (index != null) {
+      // appended: an element with the same name, if any, precedes it
+      index.putIfAbsent(this.nameReader.getName(element), element);
+      index.version = this.getVersion();
+    }
+    return added;
+  }
+
+  @Override
+  public void add(int position, T element) {
+    ONameIndex<T> index = this.getValidIndex();
+    super.add(position, element);
+    if (index != null) {
+      String name = this.nameReader.getName(element);
+      if (position == this.size() - 1 || name == null || (!index.name2element.containsKey(name)
+          && !index.lowerCaseName2element.containsKey(toLowerCase(name)))) {
+        index.putIfAbsent(name, element);
+        index.version = this.getVersion();
+      }
+      // otherwise the inserted element may shadow an indexed one: the index is rebuilt at the next lookup
+    }
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends T> elements) {
+    ONameIndex<T> index = this.getValidIndex();
+    boolean added = super.addAll(elements);
+    if (index != null) {
+      for (T element : elements) {
+        index.putIfAbsent(this.nameReader.getName(element), element);
+      }
+      index.version = this.getVersion();
+    }
+    return added;
+  }
+
+  /**
+   * @param name
+   *
+   * @return the first element with the name, null if not present
+   */
+  public T getByName(String name) {
+    return this.getIndex().name2element.get(name);
+  }
+
+  /**
+   * @param name
+   *
+   * @return the first element with the name ignoring the case, null if not present
+   */
+  public T getByNameIgnoreCase(String name) {
+
+    if (name == null) {
+      return null;
+    }
+    T element = this.getIndex().lowerCaseName2element.get(toLowerCase(name));
+    if (element == null && !isAscii(name)) {
+      // case folding of some non-ASCII characters differs from equalsIgnoreCase()
+      for (T currentElement : this) {
+        if (name.equalsIgnoreCase(this.nameReader.getName(currentElement))) {
+          return currentElement;
+        }
+      }
+    }
+    return element;
+  }
+
+  /**
+   * @return the index if it's up to date with the list, null otherwise
+   */
+  private ONameIndex<T> getValidIndex() {
+    ONameIndex<T> index = this.index;
+    return index != null && index.version == this.getVersion() ? index : null;
+  }
+
+  private ONameIndex<T> getIndex() {
+
+    ONameIndex<T> index = this.getValidIndex();
+    if (index != null) {
+      return index;
+    }
+
+    index = new ONameIndex<T>(this.getVersion(), this.size());
+    for (T element : this) {
+      index.putIfAbsent(this.nameReader.getName(element), element);
+    }
+    this.index = index;
+    return index;
+  }
+  private static String toLowerCase(String name) {
+    return name.toUpperCase(Locale.ENGLISH).toLowerCase(Locale.ENGLISH);
+  }
+
+  private static boolean isAscii(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) > 127) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
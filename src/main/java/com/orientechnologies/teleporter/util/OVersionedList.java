@@ -0,0 +1,196 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.UnaryOperator;
+
+/**
+ * List exposing a version number which changes whenever the list is modified, so that the indexes built on its elements can
+ * be validated before being used. Besides the structural modifications, the version changes when an element is replaced,
+ * also through a sub-list or an iterator, and when {@link #invalidate()} is called.
+ * The list listens to the changes of its elements affecting the indexes (renames, entities of a relationship), notified by the
+ * setters of the model classes through their {@link OChangeNotifier}, and invalidates itself when one of them changes.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class OVersionedList<T> extends ArrayList<T> implements OChangeNotifier.OChangeListener {
+
+  private volatile int invalidations;   // replacements and explicit invalidations, which don't change the modification count
+
+  public OVersionedList() {
+    super();
+  }
+
+  public OVersionedList(Collection<? extends T> elements) {
+    super(elements);
+    for (T element : this) {
+      OChangeNotifier.listen(element, this);
+    }
+  }
+
+  @Override
+  public void elementChanged() {
+    this.invalidate();
+  }
+
+  /**
+   * Invalidates the indexes built on the list, e.g. after an element has been changed in place.
+   */
+  public void invalidate() {
+    this.invalidations++;
+  }
+
+  /**
+   * @return a number changing at each modification of the list
+   */
+  public long getVersion() {
+    return (long) this.modCount + this.invalidations;
+  }
+
+  @Override
+  public boolean add(T element) {
+    OChangeNotifier.listen(element, this);
+    return super.add(element);
+  }
+
+  @Override
+  public void add(int index, T element) {
+    OChangeNotifier.listen(element, this);
+    super.add(index, element);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends T> elements) {
+    for (T element : elements) {
+      OChangeNotifier.listen(element, this);
+    }
+    return super.addAll(elements);
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends T> elements) {
+    for (T element : elements) {
+      OChangeNotifier.listen(element, this);
+    }
+    return super.addAll(index, elements);
+  }
+
+  @Override
+  public T set(int index, T element) {
+    OChangeNotifier.listen(element, this);
+    T previous = super.set(index, element);
+    this.invalidate();
+    return previous;
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<T> operator) {
+    super.replaceAll(operator);
+    for (T element : this) {
+      OChangeNotifier.listen(element, this);
+    }
+    this.invalidate();
+  }
+
+  /**
+   * The sub-list of an ArrayList replaces its elements bypassing set(): the returned view performs all the modifications
+   * through this list.
+   */
+  @Override
+  public List<T> subList(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > this.size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + this.size());
+    }
+    return new OVersionedSubList(fromIndex, toIndex);
+  }
+
+  private class OVersionedSubList extends AbstractList<T> implements RandomAccess {
+
+    private final int offset;
+    private       int size;
+    private       int expectedModCount;
+
+    private OVersionedSubList(int fromIndex, int toIndex) {
+      this.offset = fromIndex;
+      this.size = toIndex - fromIndex;
+      this.expectedModCount = OVersionedList.this.modCount;
+    }
+
+    @Override
+    public T get(int index) {
+      this.check(index, this.size);
+      return OVersionedList.this.get(this.offset + index);
+    }
+
+    @Override
+    public T set(int index, T element) {
+      this.check(index, this.size);
+      return OVersionedList.this.set(this.offset + index, element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+      this.check(index, this.size + 1);
+      OVersionedList.this.add(this.offset + index, element);
+      this.expectedModCount = OVersionedList.this.modCount;
+      this.size++;
+      this.modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+      this.check(index, this.size);
+      T removed = OVersionedList.this.remove(this.offset + index);
+      this.expectedModCount = OVersionedList.this.modCount;
+      this.size--;
+      this.modCount++;
+      return removed;
+    }
+
+    @Override
+    public int size() {
+      this.checkModification();
+      return this.size;
+    }
+
+    private void check(int index, int bound) {
+      this.checkModification();
+      if (index < 0 || index >= bound) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+      }
+    }
+
+    private void checkModification() {
+      if (OVersionedList.this.modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,280 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.writer;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.output.OOutputStreamManager;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Indexes of the graph model whose build is deferred to the end of the first import, so that the bulk load doesn't pay the
+ * maintenance of the indexes for each inserted vertex.
+ * Indexes are built by a pool of workers, each one through its own session. Before building a unique index the keys of the
+ * class are checked: when some key is duplicated the index is not built and the duplicates are reported in a summary (count
+ * and first keys for each index), then the build fails. The declared type is never downgraded, as the lookups of the vertices
+ * and the replay of the duplicated keys rely on the unique constraint.
+ *
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ODeferredIndexBuilder {
+
+  public static final int MAX_REPORTED_DUPLICATES = 10;   // keys reported for each index
+
+  private final List<ODeferredIndex> indexes;
+
+  /**
+   * Index to build: name, class and properties as in the "create index" statement.
+   */
+  public static class ODeferredIndex {
+
+    private final String       name;
+    private final String       className;
+    private final List<String> properties;
+    private final boolean      unique;
+
+    public ODeferredIndex(String name, String className, List<String> properties, boolean unique) {
+      this.name = name;
+      this.className = className;
+      this.properties = new ArrayList<String>(properties);
+      this.unique = unique;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public String getClassName() {
+      return this.className;
+    }
+
+    public List<String> getProperties() {
+      return this.properties;
+    }
+
+    public boolean isUnique() {
+      return this.unique;
+    }
+  }
+
+  /**
+   * Outcome of the build of an index: the duplicated keys found in the class of a unique index.
+   */
+  private static class OBuildResult {
+
+    private final ODeferredIndex index;
+    private final List<String>   duplicatedKeys;
+    private       long           duplicates;
+
+    private OBuildResult(ODeferredIndex index) {
+      this.index = index;
+      this.duplicatedKeys = new ArrayList<String>();
+    }
+  }
+
+  public ODeferredIndexBuilder() {
+    this.indexes = new ArrayList<ODeferredIndex>();
+  }
+
+  /**
+   * Records the index, unless an index with the same name was already recorded.
+   *
+   * @param name
+   * @param className
+   * @param properties
+   * @param unique
+   */
+  public synchronized void addIndex(String name, String className, List<String> properties, boolean unique) {
+    for (ODeferredIndex index : this.indexes) {
+      if (index.getName().equals(name)) {
+        return;
+      }
+    }
+    this.indexes.add(new ODeferredIndex(name, className, properties, unique));
+  }
+
+  public synchronized List<ODeferredIndex> getIndexes() {
+    return Collections.unmodifiableList(new ArrayList<ODeferredIndex>(this.indexes));
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.indexes.isEmpty();
+  }
+
+  /**
+   * Builds all the deferred indexes, 'threads' at a time.
+   *
+   * @param dbName
+   * @param threads
+   */
+  public void buildIndexes(final String dbName, int threads) {
+
+    final OTeleporterContext context = OTeleporterContext.getInstance();
+    List<ODeferredIndex> toBuild = this.getIndexes();
+    if (toBuild.isEmpty()) {
+      return;
+    }
+    context.getMessageHandler().info(this, "\nBuilding %s indexes deferred at the end of the import...\n", toBuild.size());
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, toBuild.size())));
+    List<Future<OBuildResult>> results = new ArrayList<Future<OBuildResult>>();
+    try {
+      for (final ODeferredIndex index : toBuild) {
+        results.add(executor.submit(new Callable<OBuildResult>() {
+          @Override
+          public OBuildResult call() throws Exception {
+            ODatabaseDocument session = context.getOrientDBInstance().open(dbName, "admin", "admin");
+            try {
+              return buildIndex(session, index);
+            } finally {
+              session.close();
+            }
+          }
+        }));
+      }
+
+      List<OBuildResult> withDuplicates = new ArrayList<OBuildResult>();
+      for (Future<OBuildResult> result : results) {
+        OBuildResult buildResult = result.get();
+        if (buildResult.duplicates > 0) {
+          withDuplicates.add(buildResult);
+        }
+      }
+      if (!withDuplicates.isEmpty()) {
+        this.reportDuplicates(withDuplicates);
+        throw new OTeleporterRuntimeException(
+            "Duplicated keys found while building the deferred unique indexes: the indexes were not built (see the summary above).");
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OTeleporterRuntimeException(e);
+    } catch (ExecutionException e) {
+      Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      String mess = "Problem encountered while building the deferred indexes.";
+      context.printExceptionMessage(cause, mess, "error");
+      context.printExceptionStackTrace(cause, "error");
+      throw new OTeleporterRuntimeException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    synchronized (this) {
+      this.indexes.clear();
+    }
+  }
+
+  private OBuildResult buildIndex(ODatabaseDocument session, ODeferredIndex index) {
+
+    OBuildResult result = new OBuildResult(index);
+    if (session.getMetadata().getIndexManager().existsIndex(index.getName())) {
+      return result;
+    }
+    if (index.isUnique()) {
+      this.findDuplicates(session, result);
+      if (result.duplicates > 0) {
+        return result;
+      }
+    }
+
+    String type = index.isUnique() ? "unique_hash_index" : "notunique_hash_index";
+    String propertiesList = "";
+    for (String property : index.getProperties()) {
+      propertiesList += propertiesList.isEmpty() ? property : "," + property;
+    }
+    if (OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
+      OTeleporterContext.getInstance().getMessageHandler()
+          .debug(this, "\nBuilding deferred index '%s' on %s (%s)...\n", index.getName(), index.getClassName(), propertiesList);
+    }
+    String statement = "create index `" + index.getName() + "` on `" + index.getClassName() + "` (" + propertiesList + ") " + type;
+    session.command(new OCommandSQL(statement)).execute();
+    return result;
+  }
+
+  /**
+   * Scans the records of the class (and of its subclasses, covered by the index as well) storing their keys in an off-heap
+   * map: a key already in the map is a duplicate. Keys with null values are not indexed, so they're skipped.
+   */
+  private void findDuplicates(ODatabaseDocument session, OBuildResult result) {
+
+    OTeleporterContext context = OTeleporterContext.getInstance();
+    ODeferredIndex index = result.index;
+    String[] keys = index.getProperties().toArray(new String[index.getProperties().size()]);
+    OVertexRidMap seenKeys = new OVertexRidMap(context.getKeyMapMemoryBudget(), context.getKeyMapSpillDirectory());
+    try {
+      for (ODocument record : session.browseClass(index.getClassName())) {
+        String[] values = new String[keys.length];
+        boolean nullValue = false;
+        for (int i = 0; i < keys.length; i++) {
+          Object value = record.getProperty(keys[i]);
+          if (value == null) {
+            nullValue = true;
+            break;
+          }
+          values[i] = value.toString();
+        }
+        if (nullValue) {
+          continue;
+        }
+        if (seenKeys.get(index.getClassName(), keys, values) != null) {
+          result.duplicates++;
+          if (result.duplicatedKeys.size() < MAX_REPORTED_DUPLICATES) {
+            result.duplicatedKeys.add(Arrays.toString(values));
+          }
+        } else {
+          seenKeys.put(index.getClassName(), keys, values, record.getIdentity());
+        }
+      }
+    } finally {
+      seenKeys.clear();
+    }
+  }
+
+  private void reportDuplicates(List<OBuildResult> withDuplicates) {
+
+    StringBuilder summary = new StringBuilder("\nDuplicated keys found while building the deferred indexes:\n");
+    for (OBuildResult result : withDuplicates) {
+      ODeferredIndex index = result.index;
+      String message = "The class '" + index.getClassName() + "' contains " + result.duplicates + " duplicated keys on "
+          + index.getProperties() + " (e.g. " + result.duplicatedKeys + "): the index '" + index.getName()
+          + "' was not built.";
+      summary.append("- ").append(message).append("\n");
+      OTeleporterContext.getInstance().getStatistics().errorMessages.add(message);
+    }
+    OTeleporterContext.getInstance().getMessageHandler().error(this, summary.toString());
+  }
+
+}
@@ -55,6 +55,8 @@ public class OGraphModelWriter {
 
   private OConfiguration     previousConfiguration;
 
+  private ODeferredIndexBuilder deferredIndexes;   // indexes to build after the import, null when they're built with the schema
+
   public OGraphModelWriter() {
     this.init();
   }
@@ -127,6 +129,17 @@ public class OGraphModelWriter {
     // orient graph schema
     OSchema orientSchema = orientGraph.getMetadata().getSchema();
 
+    // on the first import the indexes can be built after the bulk load
+    this.deferredIndexes = null;
+    if (OTeleporterContext.getInstance().isDeferredIndexBuild()) {
+      if (orientGraph.countClass("V") == 0) {
+        this.deferredIndexes = new ODeferredIndexBuilder();
+      } else {
+        OTeleporterContext.getInstance().getMessageHandler().info(this,
+            "\nThe target database already contains vertices: the indexes can't be deferred, they will be built with the schema.\n");
+      }
+    }
+
     int numberOfVertices = graphModel.getVerticesType().size();
     statistics.totalNumberOfVertexTypes = numberOfVertices;
     int numberOfEdges = graphModel.getEdgesType().size();
@@ -406,9 +419,16 @@ public class OGraphModelWriter {
     return success;
   }
 
+  /**
+   * @return the indexes whose build was deferred by the last writing of the model, null if they were built with the schema
+   */
+  public ODeferredIndexBuilder getDeferredIndexes() {
+    return this.deferredIndexes;
+  }
+
   /**
    * It builds an index on the properties correspondent to the columns belonging to the original primary key (external key).
-   * If the index is already defined no more indexes will be added.
+   * If the index is already defined no more indexes will be added. In a deferred index build the index is just recorded.
    * During the sync if the properties changed names, the old index will be dropped.
    *
    * @param orientGraph
@@ -463,10 +483,14 @@ public class OGraphModelWriter {
                   numberOfVertices);
         }
 
-        statement =
-            "create index `" + currentType + ".pkey`" + " on `" + currentType + "` (" + propertiesList + ") unique_hash_index";
-        sqlCommand = new OCommandSQL(statement);
-        orientGraph.command(sqlCommand).execute();
+        if (this.deferredIndexes != null) {
+          this.deferredIndexes.addIndex(indexClassName, currentType, properties, true);
+        } else {
+          statement =
+              "create index `" + currentType + ".pkey`" + " on `" + currentType + "` (" + propertiesList + ") unique_hash_index";
+          sqlCommand = new OCommandSQL(statement);
+          orientGraph.command(sqlCommand).execute();
+        }
 
         if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
           OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nIndex for %s built.\n", currentVertexType.getName());
@@ -485,7 +509,7 @@ public class OGraphModelWriter {
   }
 
   /**
-   * It build an index if it's not already present in the database.
+   * It build an index if it's not already present in the database. In a deferred index build the index is just recorded.
    *
    * @param orientGraph
    * @param numberOfVertices
@@ -525,9 +549,13 @@ public class OGraphModelWriter {
               .debug("\nBuilding index for '%s' on %s  (%s/%s)...\n", currentVertexType.getName(), propertiesList, iteration,
                   numberOfVertices);
         }
-        statement = "create index `" + indexClassName + "` on `" + currentType + "` (" + propertiesList + ") notunique_hash_index";
-        sqlCommand = new OCommandSQL(statement);
-        orientGraph.command(sqlCommand).execute();
+        if (this.deferredIndexes != null) {
+          this.deferredIndexes.addIndex(indexClassName, currentType, properties, false);
+        } else {
+          statement = "create index `" + indexClassName + "` on `" + currentType + "` (" + propertiesList + ") notunique_hash_index";
+          sqlCommand = new OCommandSQL(statement);
+          orientGraph.command(sqlCommand).execute();
+        }
         if(OTeleporterContext.getInstance().getMessageHandler().getOutputManagerLevel() == OOutputStreamManager.DEBUG_LEVEL) {
           OTeleporterContext.getInstance().getMessageHandler().debug(this, "\nIndex for %s built.\n", currentVertexType.getName());
         }
@@ -0,0 +1,200 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.importing;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.writer.ODeferredIndexBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class DeferredIndexBuildTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy importStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.importStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:", ""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  First import with the deferred indexes: vertices and edges are loaded without indexes, then the unique indexes of both the
+   *  classes are built at the end. A deferred build over a class containing duplicated keys builds the other indexes, doesn't
+   *  build the unique one, reports the duplicates and fails.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String actorTableBuilding = "create memory table ACTOR (ID varchar(256) not null, NAME  varchar(256),"
+          + " SURNAME varchar(256) not null, primary key (ID))";
+      st = connection.createStatement();
+      st.execute(actorTableBuilding);
+
+      String filmTableBuilding = "create memory table FILM (ID varchar(256) not null, TITLE varchar(256) not null,"
+          + " LEADING_ACTOR varchar(256) not null, primary key (ID), foreign key (LEADING_ACTOR) references ACTOR(ID))";
+      st.execute(filmTableBuilding);
+
+      String actorFilling =
+          "insert into ACTOR (ID,NAME,SURNAME) values (" + "('A001','John','Travolta')," + "('A002','Samuel','Lee Jackson'),"
+              + "('A003','Bruce','Willis')," + "('A004','Leonardo','Di Caprio'))";
+      st.execute(actorFilling);
+
+      String filmFilling = "insert into FILM (ID,TITLE,LEADING_ACTOR) values (" + "('F001','Pulp Fiction','A001'),"
+          + "('F002','Shutter Island','A004')," + "('F003','The Departed','A004')," + "('F004','Die Hard','A003'),"
+          + "('F005','Jackie Brown','A002'))";
+      st.execute(filmFilling);
+
+      this.context.setDeferredIndexBuild(true);
+      this.importStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName, "admin", "admin");
+
+      assertEquals(4, orientGraph.countClass("Actor"));
+      assertEquals(5, orientGraph.countClass("Film"));
+      assertEquals(5, orientGraph.countClass("HasLeadingActor"));
+
+      assertTrue(orientGraph.getMetadata().getIndexManager().existsIndex("Actor.pkey"));
+      assertTrue(orientGraph.getMetadata().getIndexManager().existsIndex("Film.pkey"));
+      assertEquals("UNIQUE_HASH_INDEX", orientGraph.getMetadata().getIndexManager().getIndex("Actor.pkey").getType());
+      assertEquals("UNIQUE_HASH_INDEX", orientGraph.getMetadata().getIndexManager().getIndex("Film.pkey").getType());
+
+      /*
+       *  Deferred build over duplicated keys
+       */
+
+      orientGraph.command(new OCommandSQL("drop index `Actor.pkey`")).execute();
+      orientGraph.command(new OCommandSQL("create vertex Actor set id = 'A001', name = 'Johnny', surname = 'Travolta'")).execute();
+      assertFalse(orientGraph.getMetadata().getIndexManager().existsIndex("Actor.pkey"));
+
+      ODeferredIndexBuilder deferredIndexes = new ODeferredIndexBuilder();
+      deferredIndexes.addIndex("Actor.pkey", "Actor", Collections.singletonList("id"), true);
+      deferredIndexes.addIndex("Film.title", "Film", Collections.singletonList("title"), false);
+      int errors = this.context.getStatistics().errorMessages.size();
+      try {
+        deferredIndexes.buildIndexes(this.dbName, 2);
+        fail("The build of a unique index over duplicated keys must fail");
+      } catch (OTeleporterRuntimeException e) {
+        assertTrue(e.getMessage().startsWith("Duplicated keys found"));
+      }
+
+      // the duplicates are summarized, the other index is built anyway
+      assertEquals(errors + 1, this.context.getStatistics().errorMessages.size());
+      String expectedMessage = "The class 'Actor' contains 1 duplicated keys on " + Arrays.asList("id") + " (e.g. [[A001]]): "
+          + "the index 'Actor.pkey' was not built.";
+      assertTrue(this.context.getStatistics().errorMessages.contains(expectedMessage));
+
+      assertFalse(orientGraph.getMetadata().getIndexManager().existsIndex("Actor.pkey"));
+      assertTrue(orientGraph.getMetadata().getIndexManager().existsIndex("Film.title"));
+      assertEquals("NOTUNIQUE_HASH_INDEX", orientGraph.getMetadata().getIndexManager().getIndex("Film.title").getType());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+}
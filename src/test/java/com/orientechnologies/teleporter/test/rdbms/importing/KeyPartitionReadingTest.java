@@ -0,0 +1,154 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.importing;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class KeyPartitionReadingTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  Integer key split in 4 partitions, with records on each split point: the partitions read all the records exactly once,
+   *  comparing the bounds as numbers (as text '100' < '25').
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String tableBuilding = "create memory table ITEM (ID integer not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(tableBuilding);
+
+      String filling = "insert into ITEM (ID,NAME) values ";
+      for (int i = 1; i <= 100; i++) {
+        filling += (i > 1 ? "," : "") + "(" + i + ",'Item " + i + "')";
+      }
+      st.execute(filling);
+
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      OEntity itemEntity = mapper.getDataBaseSchema().getEntityByName("ITEM");
+      List<Object[]> keyPartitions = this.dbQueryEngine.buildKeyPartitions(itemEntity, 4);
+
+      // split points 25, 50 and 75: the first and the last partitions are unbounded
+      assertEquals(4, keyPartitions.size());
+      assertNull(keyPartitions.get(0)[0]);
+      assertEquals("25", keyPartitions.get(0)[1].toString());
+      assertEquals("25", keyPartitions.get(1)[0].toString());
+      assertEquals("50", keyPartitions.get(1)[1].toString());
+      assertEquals("75", keyPartitions.get(3)[0].toString());
+      assertNull(keyPartitions.get(3)[1]);
+
+      int[] expectedSizes = { 25, 25, 25, 25 };
+      Set<Integer> readKeys = new HashSet<Integer>();
+      int readRecords = 0;
+      for (int i = 0; i < keyPartitions.size(); i++) {
+        OQueryResult queryResult = this.dbQueryEngine.getRecordsByEntityInKeyPartition(itemEntity, keyPartitions.get(i), null);
+        try {
+          ResultSet records = queryResult.getResult();
+          int partitionRecords = 0;
+          while (records.next()) {
+            readKeys.add(records.getInt("ID"));
+            partitionRecords++;
+          }
+          assertEquals(expectedSizes[i], partitionRecords);
+          readRecords += partitionRecords;
+        } finally {
+          queryResult.closeAll();
+        }
+      }
+
+      // no record lost nor read twice
+      assertEquals(100, readRecords);
+      assertEquals(100, readKeys.size());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.importing;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class LogicalRelationshipJoinTest {
+
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String spilledDbName = "testOrientDBSpilled";
+  private String outParentDirectory = "embedded:target/";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String relationshipConfig = "{\"vertices\": [], \"edges\": [{\"WorksIn\": {\"isLogical\": true, \"mapping\": [{"
+      + "\"fromTable\": \"EMPLOYEE\", \"fromColumns\": [\"DEPT\"], \"toTable\": \"DEPARTMENT\", \"toColumns\": [\"ID\"], "
+      + "\"direction\": \"direct\"}]}}]}";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directories
+      OFileManager.deleteResource(this.outParentDirectory.replace("embedded:","") + this.dbName);
+      OFileManager.deleteResource(this.outParentDirectory.replace("embedded:","") + this.spilledDbName);
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  Logical relationship EMPLOYEE.DEPT --> DEPARTMENT.ID, declared just in the migration config: the edges built with the hash
+   *  table in memory are the same built by the grace hash join, forced by a memory budget smaller than the hash table.
+   *  Employees without department or with a missing department get no edge.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String departmentTableBuilding = "create memory table DEPARTMENT (ID varchar(256) not null, NAME varchar(256),"
+          + " primary key (ID))";
+      st = connection.createStatement();
+      st.execute(departmentTableBuilding);
+
+      String employeeTableBuilding = "create memory table EMPLOYEE (ID varchar(256) not null, NAME varchar(256),"
+          + " DEPT varchar(256), primary key (ID))";
+      st.execute(employeeTableBuilding);
+
+      st.execute("insert into DEPARTMENT (ID,NAME) values ('D001','Sales'),('D002','Research'),('D003','Support')");
+      st.execute("insert into EMPLOYEE (ID,NAME,DEPT) values ('E001','Joe Black','D001'),('E002','Thomas Anderson','D002'),"
+          + "('E003','Tyler Durden','D001'),('E004','Ellen Ripley','D003'),('E005','Marty McFly','D002'),"
+          + "('E006','John Doe',null),('E007','Jane Doe','D009')");
+
+      Set<String> expectedEdges = new TreeSet<String>();
+      expectedEdges.add("E001->D001");
+      expectedEdges.add("E002->D002");
+      expectedEdges.add("E003->D001");
+      expectedEdges.add("E004->D003");
+      expectedEdges.add("E005->D002");
+
+      // hash table in memory
+      ODocument config = new ODocument();
+      config.fromJSON(this.relationshipConfig, "noMap");
+      new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName)
+          .executeStrategy(this.sourceDBInfo, this.outParentDirectory + this.dbName, "basicDBMapper", null, "java", null, null,
+              config);
+      assertEquals(expectedEdges, this.readEdges(this.dbName));
+
+      // grace hash join: the hash table of the departments exceeds the budget
+      this.context.setKeyMapMemoryBudget(64);
+      config = new ODocument();
+      config.fromJSON(this.relationshipConfig, "noMap");
+      new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.spilledDbName)
+          .executeStrategy(this.sourceDBInfo, this.outParentDirectory + this.spilledDbName, "basicDBMapper", null, "java", null,
+              null, config);
+      assertEquals(expectedEdges, this.readEdges(this.spilledDbName));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+  private Set<String> readEdges(String dbName) {
+
+    Set<String> edges = new TreeSet<String>();
+    ODatabaseDocument orientGraph = this.context.getOrientDBInstance().open(dbName, "admin", "admin");
+    try {
+      assertEquals(3, orientGraph.countClass("Department"));
+      assertEquals(7, orientGraph.countClass("Employee"));
+      for (ODocument document : orientGraph.browseClass("WorksIn")) {
+        OEdge edge = document.asEdge().get();
+        edges.add(edge.getVertex(ODirection.OUT).getProperty("id") + "->" + edge.getVertex(ODirection.IN).getProperty("id"));
+      }
+    } finally {
+      orientGraph.close();
+    }
+    return edges;
+  }
+
+}
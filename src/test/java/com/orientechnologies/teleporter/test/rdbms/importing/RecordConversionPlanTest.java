@@ -0,0 +1,178 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.importing;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.ORecordConversionPlan;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class RecordConversionPlanTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  Values read by column index through the binding of the result set, "t"/"f" booleans converted both in the keys and in
+   *  the properties, missing columns reported and the binding replaced when the plan reads another result set.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String actorTableBuilding = "create memory table ACTOR (ID varchar(256) not null, NAME varchar(256) not null,"
+          + " AGE integer not null, ACTIVE char(1), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(actorTableBuilding);
+
+      st.execute("insert into ACTOR (ID,NAME,AGE,ACTIVE) values ('A001','John Travolta',63,'t')");
+      st.execute("insert into ACTOR (ID,NAME,AGE,ACTIVE) values ('A002','Samuel Jackson',68,'f')");
+      st.execute("insert into ACTOR (ID,NAME,AGE,ACTIVE) values ('A003','Uma Thurman',47,'x')");
+
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      // the ACTIVE column holds the booleans as "t"/"f", as PostgreSQL does
+      OVertexType actorVertexType = mapper.getGraphModel().getVertexTypeByName("Actor");
+      actorVertexType.getPropertyByName("active").setOriginalType("BOOLEAN");
+
+      ORecordConversionPlan plan = ORecordConversionPlan.compile(actorVertexType, mapper, new OHSQLDBDataTypeHandler());
+      String[] propertyOfKey = new String[] { "id", "active" };
+      final List<String> failedProperties = new ArrayList<String>();
+      ORecordConversionPlan.OExtractionErrorHandler errorHandler = new ORecordConversionPlan.OExtractionErrorHandler() {
+        @Override
+        public void onError(String propertyName, Exception e) {
+          failedProperties.add(propertyName);
+        }
+      };
+
+      // columns in an order different from the properties' one
+      ResultSet records = st.executeQuery("select ACTIVE, AGE, NAME, ID from ACTOR order by ID");
+      assertTrue(records.next());
+      assertArrayEquals(new String[] { "A001", "true" }, plan.readKeyValues(records, propertyOfKey));
+      Map<String, Object> properties = plan.readProperties(records, errorHandler);
+      assertEquals("A001", properties.get("id"));
+      assertEquals("John Travolta", properties.get("name"));
+      assertEquals(63, properties.get("age"));
+      assertEquals("true", properties.get("active"));
+
+      assertTrue(records.next());
+      assertArrayEquals(new String[] { "A002", "false" }, plan.readKeyValues(records, propertyOfKey));
+      properties = plan.readProperties(records, errorHandler);
+      assertEquals("Samuel Jackson", properties.get("name"));
+      assertEquals(68, properties.get("age"));
+      assertEquals("false", properties.get("active"));
+
+      // values other than "t"/"f" are kept in the keys and not set in the properties of a vertex
+      assertTrue(records.next());
+      assertArrayEquals(new String[] { "A003", "x" }, plan.readKeyValues(records, propertyOfKey));
+      properties = plan.readProperties(records, errorHandler);
+      assertEquals("Uma Thurman", properties.get("name"));
+      assertFalse(properties.containsKey("active"));
+      assertTrue(failedProperties.isEmpty());
+      records.close();
+
+      // the plan is bound again to a projected result set with another columns order
+      records = st.executeQuery("select ID, NAME from ACTOR where ID = 'A002'");
+      assertTrue(records.next());
+      properties = plan.readProperties(records, errorHandler);
+      assertEquals(Arrays.asList("id", "name"), new ArrayList<String>(properties.keySet()));
+      assertEquals("A002", properties.get("id"));
+      assertEquals("Samuel Jackson", properties.get("name"));
+      assertEquals(Arrays.asList("age", "active"), failedProperties);
+      try {
+        plan.readKeyValues(records, propertyOfKey);
+        fail();
+      } catch (SQLException e) {
+        assertTrue(e.getMessage().contains("ACTIVE"));
+      }
+      assertArrayEquals(new String[] { "A002" }, plan.readKeyValues(records, new String[] { "id" }));
+      records.close();
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.importing;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class StreamingReadTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  Full scan of a table read with the default fetch size, with the fetch size configured for the table and with the
+   *  streaming disabled (fetch size 0): the statement gets the expected fetch size and all the records are read each time.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String tableBuilding = "create memory table ITEM (ID integer not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(tableBuilding);
+
+      String filling = "insert into ITEM (ID,NAME) values ";
+      for (int i = 1; i <= 50; i++) {
+        filling += (i > 1 ? "," : "") + "(" + i + ",'Item " + i + "')";
+      }
+      st.execute(filling);
+
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      OEntity itemEntity = mapper.getDataBaseSchema().getEntityByName("ITEM");
+
+      // default fetch size
+      assertNull(itemEntity.getFetchSize());
+      assertEquals(ODBQueryEngine.DEFAULT_FETCH_SIZE, this.readRecords(itemEntity));
+
+      // fetch size configured for the table
+      itemEntity.setFetchSize(10);
+      assertEquals(10, this.readRecords(itemEntity));
+
+      // streaming disabled: the driver default is kept
+      itemEntity.setFetchSize(0);
+      assertEquals(0, this.readRecords(itemEntity));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+  /**
+   * Reads the records of the entity, checking that all of them are read.
+   *
+   * @return the fetch size of the statement used for the read
+   */
+  private int readRecords(OEntity entity) throws Exception {
+
+    OQueryResult queryResult = this.dbQueryEngine.getRecordsByEntity(entity);
+    try {
+      ResultSet records = queryResult.getResult();
+      int readRecords = 0;
+      while (records.next()) {
+        readRecords++;
+      }
+      assertEquals(50, readRecords);
+      return queryResult.getStatement().getFetchSize();
+    } finally {
+      queryResult.closeAll();
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.inheritance.hibernate;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OHierarchicalBagKeyIndex;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.mapper.rdbms.OHibernate2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OHierarchicalBag;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class HierarchicalBagKeyIndexTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private final static String XML_TABLE_PER_CLASS = "src/test/resources/inheritance/hibernate/tablePerClassHierarchyInheritanceTest.xml";
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  Table per Class Hierarchy: the keys of the bag are preloaded by the first resolution, so the following ones are answered
+   *  from memory even after the source record is deleted. Beyond the preloading limit the keys are resolved with the lookup
+   *  queries and kept in the cache.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String residence = "create memory table RESIDENCE(ID varchar(256) not null, CITY varchar(256), COUNTRY varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(residence);
+
+      String employeeTableBuilding = "create memory table EMPLOYEE (ID varchar(256) not null,"
+          + " TYPE varchar(256), NAME varchar(256), SALARY decimal(10,2), BONUS decimal(10,0), "
+          + "PAY_PER_HOUR decimal(10,2), CONTRACT_DURATION varchar(256), RESIDENCE varchar(256),"
+          + "primary key (id), foreign key (RESIDENCE) references RESIDENCE(ID))";
+      st.execute(employeeTableBuilding);
+
+      st.execute("insert into EMPLOYEE (ID,TYPE,NAME) values ('E001','emp','Joe Black'),('E002','reg_emp','Thomas Anderson'),"
+          + "('E003','cont_emp','Tyler Durden'),('E004','cont_emp','Ellen Ripley')");
+
+      this.mapper = new OHibernate2GraphMapper(this.sourceDBInfo, XML_TABLE_PER_CLASS, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      assertEquals(1, mapper.getDataBaseSchema().getHierarchicalBags().size());
+      OHierarchicalBag hierarchicalBag = mapper.getDataBaseSchema().getHierarchicalBags().get(0);
+      String[] propertyOfKey = { "ID" };
+
+      // preloaded index
+      OHierarchicalBagKeyIndex keyIndex = new OHierarchicalBagKeyIndex(hierarchicalBag, this.dbQueryEngine);
+      assertEquals("EMPLOYEE", keyIndex.resolveEntityName(propertyOfKey, new String[] { "E001" }));
+      assertEquals("Regular_Employee", keyIndex.resolveEntityName(propertyOfKey, new String[] { "E002" }));
+      assertEquals("Contract_Employee", keyIndex.resolveEntityName(propertyOfKey, new String[] { "E003" }));
+      assertNull(keyIndex.resolveEntityName(propertyOfKey, new String[] { "E009" }));
+
+      // the deleted record is still resolved from the preloaded keys, no query is performed
+      st.execute("delete from EMPLOYEE where ID = 'E004'");
+      assertEquals("Contract_Employee", keyIndex.resolveEntityName(propertyOfKey, new String[] { "E004" }));
+
+      // bag exceeding the preloading limit: the keys are resolved with the lookup queries
+      OHierarchicalBagKeyIndex queryIndex = new OHierarchicalBagKeyIndex(hierarchicalBag, this.dbQueryEngine, 1, 10);
+      assertNull(queryIndex.resolveEntityName(propertyOfKey, new String[] { "E004" }));
+      assertEquals("Regular_Employee", queryIndex.resolveEntityName(propertyOfKey, new String[] { "E002" }));
+
+      // and then answered by the cache
+      st.execute("delete from EMPLOYEE where ID = 'E002'");
+      assertEquals("Regular_Employee", queryIndex.resolveEntityName(propertyOfKey, new String[] { "E002" }));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
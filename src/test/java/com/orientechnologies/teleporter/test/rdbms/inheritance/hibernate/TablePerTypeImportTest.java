@@ -0,0 +1,241 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.inheritance.hibernate;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class TablePerTypeImportTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy importStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  private final static String XML_TABLE_PER_SUBCLASS = "src/test/resources/inheritance/hibernate/tablePerSubclassImportTest1.xml";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.importStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:", ""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  "Table-per-type" hierarchy with 300 employees, a third of them in each subclass table: each record is imported once, as
+   *  vertex of the deepest class whose table contains it and with the columns of all the joined tables. A second import of
+   *  the unchanged source adds no vertex.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String managerTableBuilding = "create memory table MANAGER(ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(managerTableBuilding);
+
+      String projectManagerTableBuilding = "create memory table PROJECT_MANAGER(EID varchar(256) not null, PROJECT varchar(256), "
+          + "primary key (EID), foreign key (EID) references MANAGER(ID))";
+      st.execute(projectManagerTableBuilding);
+
+      String employeeTableBuilding = "create memory table EMPLOYEE (ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st.execute(employeeTableBuilding);
+
+      String regularEmployeeTableBuilding = "create memory table REGULAR_EMPLOYEE (EID varchar(256) not null, "
+          + "SALARY decimal(10,2), BONUS decimal(10,0), primary key (EID), foreign key (EID) references EMPLOYEE(ID))";
+      st.execute(regularEmployeeTableBuilding);
+
+      String contractEmployeeTableBuilding = "create memory table CONTRACT_EMPLOYEE (EID varchar(256) not null, "
+          + "PAY_PER_HOUR decimal(10,2), CONTRACT_DURATION varchar(256), primary key (EID), foreign key (EID) references EMPLOYEE(ID))";
+      st.execute(contractEmployeeTableBuilding);
+
+      // Records Inserting
+
+      String managerFilling = "insert into MANAGER (ID,NAME) values (" + "('M001','Bill Right'))";
+      st.execute(managerFilling);
+
+      String projectManagerFilling = "insert into PROJECT_MANAGER (EID,PROJECT) values (" + "('M001','New World'))";
+      st.execute(projectManagerFilling);
+
+      // E001-E100 employees, E101-E200 regular employees, E201-E300 contract employees
+      String employeeFilling = "insert into EMPLOYEE (ID,NAME) values ";
+      String regularEmployeeFilling = "insert into REGULAR_EMPLOYEE (EID,SALARY,BONUS) values ";
+      String contractEmployeeFilling = "insert into CONTRACT_EMPLOYEE (EID,PAY_PER_HOUR,CONTRACT_DURATION) values ";
+      for (int i = 1; i <= 300; i++) {
+        String id = String.format("E%03d", i);
+        employeeFilling += (i > 1 ? "," : "") + "('" + id + "','Employee " + i + "')";
+        if (i > 100 && i <= 200) {
+          regularEmployeeFilling += (i > 101 ? "," : "") + "('" + id + "','1000.00','" + i + "')";
+        } else if (i > 200) {
+          contractEmployeeFilling += (i > 201 ? "," : "") + "('" + id + "','50.00','" + i + "')";
+        }
+      }
+      st.execute(employeeFilling);
+      st.execute(regularEmployeeFilling);
+      st.execute(contractEmployeeFilling);
+
+      this.importStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "hibernate", XML_TABLE_PER_SUBCLASS, "java", null, null,
+              null);
+
+      /*
+       *  Testing context information
+       */
+
+      assertEquals(502, context.getStatistics().totalNumberOfRecords);
+      assertEquals(502, context.getStatistics().analyzedRecords);
+      assertEquals(301, context.getStatistics().orientAddedVertices);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName, "admin", "admin");
+
+      assertEquals(301, orientGraph.countClass("V"));
+      assertEquals(300, orientGraph.countClass("Employee"));
+      assertEquals(100, orientGraph.countClass("Employee", false));
+      assertEquals(100, orientGraph.countClass("RegularEmployee", false));
+      assertEquals(100, orientGraph.countClass("ContractEmployee", false));
+      assertEquals(1, orientGraph.countClass("Manager"));
+      assertEquals(1, orientGraph.countClass("ProjectManager", false));
+
+      String[] keys = { "id" };
+      String[] values = { "E150" };
+
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "RegularEmployee", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertEquals("Employee 150", v.getProperty("name"));
+      assertEquals("1000.00", v.getProperty("salary").toString());
+      assertEquals("150", v.getProperty("bonus").toString());
+      assertNull(v.getProperty("payPerHour"));
+      assertFalse(result.hasNext());
+      result.close();
+
+      values[0] = "E250";
+      result = OGraphCommands.getVertices(orientGraph, "ContractEmployee", keys, values);
+      assertTrue(result.hasNext());
+      v = result.next().getVertex().get();
+      assertEquals("Employee 250", v.getProperty("name"));
+      assertEquals("50.00", v.getProperty("payPerHour").toString());
+      assertEquals("250", v.getProperty("contractDuration").toString());
+      assertNull(v.getProperty("salary"));
+      assertFalse(result.hasNext());
+      result.close();
+      orientGraph.close();
+
+      /*
+       *  Importing again the unchanged source
+       */
+
+      int addedVertices = context.getStatistics().orientAddedVertices;
+      this.importStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "hibernate", XML_TABLE_PER_SUBCLASS, "java", null, null,
+              null);
+      assertEquals(addedVertices, context.getStatistics().orientAddedVertices);
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName, "admin", "admin");
+      assertEquals(301, orientGraph.countClass("V"));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+        if (orientGraph != null) {
+          orientGraph.close();
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.mapper;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OCommonQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ColumnProjectionTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  Only the key, the included properties and the foreign key columns are fetched.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String parentTableBuilding = "create memory table BOOK_AUTHOR (ID varchar(256) not null,"
+          + " NAME varchar(256) not null, AGE integer not null, primary key (ID))";
+      st = connection.createStatement();
+      st.execute(parentTableBuilding);
+
+      String foreignTableBuilding = "create memory table BOOK (ID varchar(256) not null, TITLE  varchar(256),"
+          + " COVER blob, AUTHOR_ID varchar(256) not null, primary key (ID), foreign key (AUTHOR_ID) references BOOK_AUTHOR(ID))";
+      st.execute(foreignTableBuilding);
+
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      OEntity bookEntity = mapper.getDataBaseSchema().getEntityByName("BOOK");
+      OVertexType bookVertexType = mapper.getGraphModel().getVertexTypeByName("Book");
+
+      // all the columns are read when every property is included
+      List<String> projection = mapper.getProjectedAttributes(bookEntity, bookVertexType);
+      assertEquals(Arrays.asList("ID", "TITLE", "COVER", "AUTHOR_ID"), projection);
+
+      // excluded properties are not fetched, the foreign key column is kept for the edge even if excluded
+      bookVertexType.getPropertyByName("cover").setIncludedInMigration(false);
+      bookVertexType.getPropertyByName("authorId").setIncludedInMigration(false);
+      projection = mapper.getProjectedAttributes(bookEntity, bookVertexType);
+      assertEquals(Arrays.asList("ID", "TITLE", "AUTHOR_ID"), projection);
+
+      OCommonQueryBuilder queryBuilder = new OCommonQueryBuilder();
+      assertEquals("select \"ID\", \"TITLE\", \"AUTHOR_ID\" from PUBLIC.\"BOOK\"", queryBuilder.getRecordsByEntity(bookEntity, projection));
+      assertEquals("select * from PUBLIC.\"BOOK\"", queryBuilder.getRecordsByEntity(bookEntity));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.mapper;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OCommonQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class RecordEstimateTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  /**
+   * HSQLDB keeps no row estimates: they're read from the TABLE_STATS table filled by the test.
+   */
+  private static class OStatisticsQueryBuilder extends OCommonQueryBuilder {
+
+    @Override
+    public String estimateTableRecords(String currentTableName, String currentTableSchema) {
+      String query = "select ROW_ESTIMATE from TABLE_STATS where TABLE_NAME = ?";
+      if (currentTableSchema != null)
+        query += " and TABLE_SCHEMA = ?";
+      return query;
+    }
+  }
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(new OStatisticsQueryBuilder());
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  The records of the tables are estimated from the statistics where available (ITEM) and counted otherwise (ORDERS, never
+   *  analyzed, and TABLE_STATS, without statistics); with the exact count enabled all the tables are counted.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String itemTableBuilding = "create memory table ITEM (ID integer not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(itemTableBuilding);
+
+      String ordersTableBuilding = "create memory table ORDERS (ID integer not null, ITEM integer, primary key (ID))";
+      st.execute(ordersTableBuilding);
+
+      String statsTableBuilding = "create memory table TABLE_STATS (TABLE_SCHEMA varchar(128) not null, "
+          + "TABLE_NAME varchar(128) not null, ROW_ESTIMATE bigint, primary key (TABLE_SCHEMA, TABLE_NAME))";
+      st.execute(statsTableBuilding);
+
+      String itemFilling = "insert into ITEM (ID,NAME) values ";
+      for (int i = 1; i <= 10; i++) {
+        itemFilling += (i > 1 ? "," : "") + "(" + i + ",'Item " + i + "')";
+      }
+      st.execute(itemFilling);
+
+      String ordersFilling = "insert into ORDERS (ID,ITEM) values (1,1),(2,1),(3,2),(4,5),(5,7)";
+      st.execute(ordersFilling);
+
+      // stale estimate for ITEM, ORDERS never analyzed
+      String statsFilling = "insert into TABLE_STATS (TABLE_SCHEMA,TABLE_NAME,ROW_ESTIMATE) values "
+          + "('PUBLIC','ITEM',1000),('PUBLIC','ORDERS',null)";
+      st.execute(statsFilling);
+
+      // estimates: 1000 (ITEM) + 5 (ORDERS) + 2 (TABLE_STATS)
+      assertFalse(this.context.isExactRecordCount());
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+
+      assertEquals(3, mapper.getDataBaseSchema().getEntities().size());
+      assertEquals(1007, this.context.getStatistics().totalNumberOfRecords);
+
+      // exact count: 10 (ITEM) + 5 (ORDERS) + 2 (TABLE_STATS)
+      this.context.setExactRecordCount(true);
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+
+      assertEquals(3, mapper.getDataBaseSchema().getEntities().size());
+      assertEquals(17, this.context.getStatistics().totalNumberOfRecords);
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.mapper;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OAttribute;
+import com.orientechnologies.teleporter.model.dbschema.OCanonicalRelationship;
+import com.orientechnologies.teleporter.model.dbschema.ODataBaseSchema;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.ORelationship;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class SchemaIntrospectionTest {
+
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  The schema built reading the metadata with a single thread and with several threads is the same: entities, attributes,
+   *  primary keys and relationships, in the same order.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+      st = connection.createStatement();
+
+      st.execute("create memory table COUNTRY (CODE varchar(2) not null, NAME varchar(256), primary key (CODE))");
+      st.execute("create memory table CITY (ID integer not null, NAME varchar(256), COUNTRY varchar(2),"
+          + " primary key (ID), foreign key (COUNTRY) references COUNTRY(CODE))");
+      st.execute("create memory table PUBLISHER (ID integer not null, NAME varchar(256), CITY integer,"
+          + " primary key (ID), foreign key (CITY) references CITY(ID))");
+      st.execute("create memory table AUTHOR (ID varchar(256) not null, NAME varchar(256), BIRTH_DATE date, CITY integer,"
+          + " COUNTRY varchar(2), primary key (ID), foreign key (CITY) references CITY(ID),"
+          + " foreign key (COUNTRY) references COUNTRY(CODE))");
+      st.execute("create memory table BOOK (ISBN varchar(13) not null, EDITION integer not null, TITLE varchar(256),"
+          + " PRICE decimal(10,2), AUTHOR_ID varchar(256), PUBLISHER_ID integer, primary key (ISBN, EDITION),"
+          + " foreign key (AUTHOR_ID) references AUTHOR(ID), foreign key (PUBLISHER_ID) references PUBLISHER(ID))");
+      st.execute("create memory table REVIEW (ID integer not null, ISBN varchar(13), EDITION integer, AUTHOR_ID varchar(256),"
+          + " TEXT varchar(1024), primary key (ID), foreign key (ISBN, EDITION) references BOOK(ISBN, EDITION),"
+          + " foreign key (AUTHOR_ID) references AUTHOR(ID))");
+      st.execute("create memory table TAG (NAME varchar(256) not null, primary key (NAME))");
+
+      this.context.setSchemaIntrospectionThreads(1);
+      List<String> sequentialSchema = this.describeSchema();
+
+      this.context.setSchemaIntrospectionThreads(4);
+      List<String> parallelSchema = this.describeSchema();
+
+      assertEquals(7, this.countEntities(sequentialSchema));
+      assertEquals(8, this.countRelationships(sequentialSchema));
+      assertEquals(sequentialSchema, parallelSchema);
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+  /**
+   * Builds the source schema and describes it line by line, in the order of the entities and of the relationships.
+   */
+  private List<String> describeSchema() {
+
+    OER2GraphMapper mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+    mapper.buildSourceDatabaseSchema();
+    ODataBaseSchema schema = mapper.getDataBaseSchema();
+
+    List<String> description = new ArrayList<String>();
+    for (OEntity entity : schema.getEntities()) {
+      description.add("entity " + entity.getName());
+      for (OAttribute attribute : entity.getAttributes()) {
+        description.add("  attribute " + attribute.getOrdinalPosition() + " " + attribute.getName() + " " + attribute.getDataType());
+      }
+      for (OAttribute attribute : entity.getPrimaryKey().getInvolvedAttributes()) {
+        description.add("  key " + attribute.getName());
+      }
+      for (OCanonicalRelationship relationship : entity.getOutCanonicalRelationships()) {
+        description.add("  out " + this.describeRelationship(relationship));
+      }
+      for (OCanonicalRelationship relationship : entity.getInCanonicalRelationships()) {
+        description.add("  in " + this.describeRelationship(relationship));
+      }
+    }
+    for (OCanonicalRelationship relationship : schema.getCanonicalRelationships()) {
+      description.add("relationship " + this.describeRelationship(relationship));
+    }
+    return description;
+  }
+
+  private String describeRelationship(ORelationship relationship) {
+
+    String description = relationship.getForeignEntity().getName() + "(";
+    for (OAttribute attribute : relationship.getFromColumns()) {
+      description += " " + attribute.getName();
+    }
+    description += " ) -> " + relationship.getParentEntity().getName() + "(";
+    for (OAttribute attribute : relationship.getToColumns()) {
+      description += " " + attribute.getName();
+    }
+    return description + " )";
+  }
+
+  private int countEntities(List<String> description) {
+    int entities = 0;
+    for (String line : description) {
+      if (line.startsWith("entity ")) {
+        entities++;
+      }
+    }
+    return entities;
+  }
+
+  private int countRelationships(List<String> description) {
+    int relationships = 0;
+    for (String line : description) {
+      if (line.startsWith("relationship ")) {
+        relationships++;
+      }
+    }
+    return relationships;
+  }
+
+}
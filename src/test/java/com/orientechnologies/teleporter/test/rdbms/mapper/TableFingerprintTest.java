@@ -0,0 +1,135 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.mapper;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OCommonQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OMysqlQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OOracleQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OPostgreSQLQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OSQLServerQueryBuilder;
+import com.orientechnologies.teleporter.mapper.rdbms.OER2GraphMapper;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.model.graphmodel.OVertexType;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class TableFingerprintTest {
+
+  private OER2GraphMapper    mapper;
+  private OTeleporterContext context;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @Test
+
+  /*
+   *  The fingerprint is computed over the projected columns with the hash function of each DBMS, HSQLDB provides none.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String tableBuilding = "create memory table BOOK (ID varchar(256) not null, TITLE varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(tableBuilding);
+
+      this.mapper = new OER2GraphMapper(this.sourceDBInfo, null, null, null);
+      mapper.buildSourceDatabaseSchema();
+      mapper.buildGraphModel(new OJavaConventionNameResolver());
+
+      OEntity bookEntity = mapper.getDataBaseSchema().getEntityByName("BOOK");
+      OVertexType bookVertexType = mapper.getGraphModel().getVertexTypeByName("Book");
+      List<String> projection = mapper.getProjectedAttributes(bookEntity, bookVertexType);
+
+      assertNull(new OCommonQueryBuilder().getTableFingerprint(bookEntity, projection));
+      assertNull(this.dbQueryEngine.getTableFingerprint(bookEntity, projection));
+
+      assertEquals("select count(*), coalesce(sum(('x' || substr(md5(row(\"ID\", \"TITLE\")::text), 1, 15))::bit(60)::bigint), 0) "
+          + "from PUBLIC.\"BOOK\"", new OPostgreSQLQueryBuilder().getTableFingerprint(bookEntity, projection));
+      assertEquals("select count(*), coalesce(sum(cast(conv(substring(md5(concat_ws('|', ifnull(cast(`ID` as char), '-'), "
+              + "ifnull(cast(`TITLE` as char), '-'))), 1, 15), 16, 10) as unsigned)), 0) from PUBLIC.`BOOK`",
+          new OMysqlQueryBuilder().getTableFingerprint(bookEntity, projection));
+      assertEquals("select count(*), coalesce(sum(to_number(substr(rawtohex(standard_hash(\"ID\" || '|' || \"TITLE\", 'SHA256')), "
+              + "1, 15), 'XXXXXXXXXXXXXXX')), 0) from PUBLIC.\"BOOK\"",
+          new OOracleQueryBuilder().getTableFingerprint(bookEntity, projection));
+      assertEquals("select count_big(*), coalesce(sum(cast(cast(substring(h, 1, 7) as bigint) as decimal(38, 0))), 0) from "
+              + "(select hashbytes('SHA2_256', (select t.\"ID\", t.\"TITLE\" for xml raw, binary base64)) as h "
+              + "from PUBLIC.\"BOOK\" t) as fingerprints",
+          new OSQLServerQueryBuilder().getTableFingerprint(bookEntity, projection));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ChangeCaptureTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy naiveImportStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.naiveImportStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:",""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  Change capture declared in the migration config: the first sync installs the change-log table and its triggers and reads
+   *  the whole table, the following ones just the records whose key was logged, deleting the vertices of the deleted ones.
+   */
+
+  public void changeCaptureTest() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String actorTableBuilding = "create memory table ACTOR (ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(actorTableBuilding);
+
+      String actorFilling = "insert into ACTOR (ID,NAME) values (" + "('A001','John Travolta'),"
+          + "('A002','Samuel Jackson')," + "('A003','Bruce Willis'))";
+      st.execute(actorFilling);
+
+      // first migration, then the change capture is declared in the resulting config
+      ODocument migrationConfig = this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      this.setChangeCapture(migrationConfig, "Actor");
+
+      // first sync: change capture installed, whole table read
+      int analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(3, this.context.getStatistics().analyzedRecords - analyzedRecords);
+      assertEquals(0, this.countChanges(st));
+
+      // second sync: just the updated and the inserted records are read, the vertex of the deleted one is deleted
+      st.execute("update ACTOR set NAME = 'Samuel Lee Jackson' where ID = 'A002'");
+      st.execute("insert into ACTOR (ID,NAME) values ('A004','Leonardo Di Caprio')");
+      st.execute("delete from ACTOR where ID = 'A001'");
+      assertEquals(4, this.countChanges(st));
+
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      int deletedVertices = this.context.getStatistics().orientDeletedVertices;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(2, this.context.getStatistics().analyzedRecords - analyzedRecords);
+      assertEquals(1, this.context.getStatistics().orientDeletedVertices - deletedVertices);
+      assertEquals(0, this.countChanges(st));
+
+      // third sync: nothing changed
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(0, this.context.getStatistics().analyzedRecords - analyzedRecords);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(3, orientGraph.countClass("Actor"));
+      assertNull(orientGraph.getClass("ActorTlpChanges"));
+
+      String[] keys = { "id" };
+      String[] values = { "A002" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Actor", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertEquals("Samuel Lee Jackson", v.getProperty("name"));
+
+      values[0] = "A001";
+      result = OGraphCommands.getVertices(orientGraph, "Actor", keys, values);
+      assertFalse(result.hasNext());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+  private int countChanges(Statement st) throws Exception {
+    ResultSet changes = st.executeQuery("select count(*) from ACTOR_TLP_CHANGES");
+    changes.next();
+    int count = changes.getInt(1);
+    changes.close();
+    return count;
+  }
+
+  private void setChangeCapture(ODocument migrationConfig, String vertexClassName) {
+    List<ODocument> vertices = migrationConfig.field("vertices");
+    for (ODocument vertex : vertices) {
+      if (vertexClassName.equals(vertex.field("name"))) {
+        ODocument mapping = vertex.field("mapping");
+        List<ODocument> sourceTables = mapping.field("sourceTables");
+        sourceTables.get(0).field("changeCapture", true);
+      }
+    }
+  }
+
+}
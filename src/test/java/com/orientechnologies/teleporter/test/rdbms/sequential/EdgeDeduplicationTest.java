@@ -0,0 +1,181 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class EdgeDeduplicationTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy naiveImportStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.naiveImportStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:",""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  Two syncs after the first import, the first one after updating some records and inserting a new one: the edges already
+   *  present are recognized, so no edge is duplicated and just the edge of the new record is added.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String authorTableBuilding = "create memory table AUTHOR (ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(authorTableBuilding);
+
+      String bookTableBuilding = "create memory table BOOK (ID varchar(256) not null, TITLE varchar(256),"
+          + " AUTHOR_ID varchar(256), primary key (ID), foreign key (AUTHOR_ID) references AUTHOR(ID))";
+      st.execute(bookTableBuilding);
+
+      st.execute("insert into AUTHOR (ID,NAME) values ('A001','Bruce Wayne'),('A002','Clark Kent')");
+      st.execute("insert into BOOK (ID,TITLE,AUTHOR_ID) values ('B001','Gotham','A001'),('B002','Metropolis','A002'),"
+          + "('B003','Smallville','A002')");
+
+      // first migration
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+
+      // first sync: updated records and a new one
+      st.execute("update BOOK set TITLE = 'Gotham City' where ID = 'B001'");
+      st.execute("update AUTHOR set NAME = 'Clark Joseph Kent' where ID = 'A002'");
+      st.execute("insert into BOOK (ID,TITLE,AUTHOR_ID) values ('B004','Krypton','A002')");
+      int addedEdges = this.context.getStatistics().orientAddedEdges;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(1, this.context.getStatistics().orientAddedEdges - addedEdges);
+
+      // second sync: nothing changed
+      addedEdges = this.context.getStatistics().orientAddedEdges;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(0, this.context.getStatistics().orientAddedEdges - addedEdges);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(2, orientGraph.countClass("Author"));
+      assertEquals(4, orientGraph.countClass("Book"));
+      assertEquals(4, orientGraph.countClass("HasAuthor"));
+
+      // each book is connected to its author by exactly one edge
+      Set<String> connectedBooks = new HashSet<String>();
+      for (ODocument document : orientGraph.browseClass("HasAuthor")) {
+        OEdge edge = document.asEdge().get();
+        assertTrue(connectedBooks.add((String) edge.getVertex(ODirection.OUT).getProperty("id")));
+      }
+      assertEquals(4, connectedBooks.size());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+}
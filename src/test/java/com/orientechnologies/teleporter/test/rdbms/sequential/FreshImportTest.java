@@ -0,0 +1,204 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class FreshImportTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy importStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.importStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:", ""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  First import on the empty target (fresh import, detected without any flag): all the vertices are inserted without
+   *  lookups and no vertex is updated. The following sync on the populated target takes the upsert path: the changed actor is
+   *  updated, the new film and its edge are added and nothing is duplicated.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String actorTableBuilding = "create memory table ACTOR (ID varchar(256) not null, NAME  varchar(256),"
+          + " SURNAME varchar(256) not null, primary key (ID))";
+      st = connection.createStatement();
+      st.execute(actorTableBuilding);
+
+      String filmTableBuilding = "create memory table FILM (ID varchar(256) not null, TITLE varchar(256) not null,"
+          + " LEADING_ACTOR varchar(256) not null, primary key (ID), foreign key (LEADING_ACTOR) references ACTOR(ID))";
+      st.execute(filmTableBuilding);
+
+      String actorFilling =
+          "insert into ACTOR (ID,NAME,SURNAME) values (" + "('A001','John','Travolta')," + "('A002','Samuel','Lee Jackson'),"
+              + "('A003','Bruce','Willis')," + "('A004','Leonardo','Di Caprio'))";
+      st.execute(actorFilling);
+
+      String filmFilling = "insert into FILM (ID,TITLE,LEADING_ACTOR) values (" + "('F001','Pulp Fiction','A001'),"
+          + "('F002','Shutter Island','A004')," + "('F003','The Departed','A004')," + "('F004','Die Hard','A003'),"
+          + "('F005','Jackie Brown','A002'))";
+      st.execute(filmFilling);
+
+      assertFalse(this.context.isFreshImport());
+      this.importStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+
+      /*
+       *  Testing context information
+       */
+
+      assertEquals(9, context.getStatistics().orientAddedVertices);
+      assertEquals(0, context.getStatistics().orientUpdatedVertices);
+      assertEquals(5, context.getStatistics().orientAddedEdges);
+
+      /*
+       *  Sync of the changed source
+       */
+
+      st.execute("update ACTOR set NAME = 'Walter Bruce' where ID = 'A003'");
+      st.execute("insert into FILM (ID,TITLE,LEADING_ACTOR) values ('F006','Armageddon','A003')");
+
+      int addedVertices = context.getStatistics().orientAddedVertices;
+      int updatedVertices = context.getStatistics().orientUpdatedVertices;
+      int addedEdges = context.getStatistics().orientAddedEdges;
+      this.importStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+
+      assertEquals(1, context.getStatistics().orientAddedVertices - addedVertices);
+      assertEquals(1, context.getStatistics().orientUpdatedVertices - updatedVertices);
+      assertEquals(1, context.getStatistics().orientAddedEdges - addedEdges);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName, "admin", "admin");
+
+      assertEquals(4, orientGraph.countClass("Actor"));
+      assertEquals(6, orientGraph.countClass("Film"));
+      assertEquals(6, orientGraph.countClass("HasLeadingActor"));
+
+      String[] keys = { "id" };
+      String[] values = { "A003" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Actor", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertFalse(result.hasNext());
+      assertEquals("Walter Bruce", v.getProperty("name"));
+      int films = 0;
+      for (OVertex film : v.getVertices(ODirection.IN, "HasLeadingActor")) {
+        assertNotNull(film.getProperty("title"));
+        films++;
+      }
+      assertEquals(2, films);
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,282 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import com.orientechnologies.teleporter.util.OMigrationConfigManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class IncrementalSyncTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy naiveImportStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.naiveImportStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:",""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  A watermark column declared in the migration config: the first sync reads the whole table, the following ones just the
+   *  records whose watermark is greater than the one stored by the previous sync.
+   */
+
+  public void watermarkTest() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String actorTableBuilding = "create memory table ACTOR (ID varchar(256) not null, NAME varchar(256),"
+          + " VERSION integer not null, primary key (ID))";
+      st = connection.createStatement();
+      st.execute(actorTableBuilding);
+
+      String actorFilling = "insert into ACTOR (ID,NAME,VERSION) values (" + "('A001','John Travolta',1),"
+          + "('A002','Samuel Jackson',1)," + "('A003','Bruce Willis',1))";
+      st.execute(actorFilling);
+
+      // first migration, then the watermark column is declared in the resulting config
+      ODocument migrationConfig = this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      this.setWatermarkColumn(migrationConfig, "Actor", "VERSION");
+
+      // first sync: no stored watermark, whole table read
+      int analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(3, this.context.getStatistics().analyzedRecords - analyzedRecords);
+      assertNotNull(OMigrationConfigManager.loadWatermarks(this.outOrientGraphUri));
+
+      // second sync: just the updated and the inserted records are read
+      st.execute("update ACTOR set NAME = 'Samuel Lee Jackson', VERSION = 2 where ID = 'A002'");
+      st.execute("insert into ACTOR (ID,NAME,VERSION) values ('A004','Leonardo Di Caprio',2)");
+
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(2, this.context.getStatistics().analyzedRecords - analyzedRecords);
+
+      // third sync: nothing changed
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, migrationConfig);
+      assertEquals(0, this.context.getStatistics().analyzedRecords - analyzedRecords);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(4, orientGraph.countClass("Actor"));
+
+      String[] keys = { "id" };
+      String[] values = { "A002" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Actor", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertEquals("Samuel Lee Jackson", v.getProperty("name"));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+  @Test
+
+  /*
+   *  Deletes propagated: the vertices of the records deleted from the source table are deleted by the next sync, together
+   *  with their edges, the other vertices are kept.
+   */
+
+  public void deletePropagationTest() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String parentTableBuilding = "create memory table PARENT (ID integer not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(parentTableBuilding);
+
+      String childTableBuilding = "create memory table CHILD (ID integer not null, NAME varchar(256), PARENT_ID integer,"
+          + " primary key (ID), foreign key (PARENT_ID) references PARENT(ID))";
+      st.execute(childTableBuilding);
+
+      st.execute("insert into PARENT (ID,NAME) values (1,'Jack'),(2,'Mary'),(3,'Bill')");
+      st.execute("insert into CHILD (ID,NAME,PARENT_ID) values (10,'Tom',1),(11,'Ann',2),(12,'Sam',2)");
+
+      this.context.setDeletePropagation(true);
+
+      // first migration: nothing to delete
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(0, this.context.getStatistics().orientDeletedVertices);
+
+      // sync after deleting a child and a parent with its children
+      st.execute("delete from CHILD where PARENT_ID = 2");
+      st.execute("delete from PARENT where ID = 2");
+
+      int deletedVertices = this.context.getStatistics().orientDeletedVertices;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(3, this.context.getStatistics().orientDeletedVertices - deletedVertices);
+
+      // sync without deletes
+      deletedVertices = this.context.getStatistics().orientDeletedVertices;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(0, this.context.getStatistics().orientDeletedVertices - deletedVertices);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(2, orientGraph.countClass("Parent"));
+      assertEquals(1, orientGraph.countClass("Child"));
+      assertEquals(1, orientGraph.countClass("HasParent"));
+
+      String[] keys = { "id" };
+      String[] values = { "2" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Parent", keys, values);
+      assertFalse(result.hasNext());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+  private void setWatermarkColumn(ODocument migrationConfig, String vertexClassName, String watermarkColumn) {
+    List<ODocument> vertices = migrationConfig.field("vertices");
+    for (ODocument vertex : vertices) {
+      if (vertexClassName.equals(vertex.field("name"))) {
+        ODocument mapping = vertex.field("mapping");
+        List<ODocument> sourceTables = mapping.field("sourceTables");
+        sourceTables.get(0).field("watermarkColumn", watermarkColumn);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.strategy.rdbms.OImportCheckpoint;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import com.orientechnologies.teleporter.util.OMigrationConfigManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class ResumedImportTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy naiveImportStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(this.driver);
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.naiveImportStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:",""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  Import resumed from the checkpoint of an interrupted one: the completed vertex class is skipped, the table being read
+   *  is read again after its last committed key, and the checkpoint is deleted once the import completes.
+   */
+
+  public void resumeFromCheckpointTest() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String authorTableBuilding = "create memory table AUTHOR (ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st = connection.createStatement();
+      st.execute(authorTableBuilding);
+
+      String bookTableBuilding = "create memory table BOOK (ID varchar(256) not null, TITLE varchar(256),"
+          + " AUTHOR_ID varchar(256) not null, primary key (ID), foreign key (AUTHOR_ID) references AUTHOR(ID))";
+      st.execute(bookTableBuilding);
+
+      String authorFilling = "insert into AUTHOR (ID,NAME) values (" + "('A001','Italo Calvino'),"
+          + "('A002','Umberto Eco'))";
+      st.execute(authorFilling);
+
+      String bookFilling = "insert into BOOK (ID,TITLE,AUTHOR_ID) values (" + "('B001','Il barone rampante','A001'),"
+          + "('B002','Le citta invisibili','A001')," + "('B003','Il nome della rosa','A002'),"
+          + "('B004','Il pendolo di Foucault','A002'))";
+      st.execute(bookFilling);
+
+      // a completed import leaves no checkpoint
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertNull(OMigrationConfigManager.loadCheckpoint(this.outOrientGraphUri));
+
+      st.execute("update AUTHOR set NAME = 'Italo Giovanni Calvino' where ID = 'A001'");
+      st.execute("update BOOK set TITLE = 'Il barone' where ID = 'B001'");
+      st.execute("insert into BOOK (ID,TITLE,AUTHOR_ID) values ('B005','Baudolino','A002')");
+
+      // checkpoint of an import interrupted after the authors and the books up to B004
+      OImportCheckpoint checkpoint = new OImportCheckpoint(this.outOrientGraphUri);
+      checkpoint.completeVertexType("Author", null);
+      checkpoint.commitKey("source.BOOK", "ID", "B004");
+      checkpoint.save();
+
+      this.context.setResumedImport(true);
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      this.context.setResumedImport(false);
+      assertNull(OMigrationConfigManager.loadCheckpoint(this.outOrientGraphUri));
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(2, orientGraph.countClass("Author"));
+      assertEquals(5, orientGraph.countClass("Book"));
+      assertEquals(5, orientGraph.countClass("HasAuthor"));
+
+      // records before the checkpoint not read again
+      String[] keys = { "id" };
+      String[] values = { "A001" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Author", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertEquals("Italo Calvino", v.getProperty("name"));
+
+      values[0] = "B001";
+      result = OGraphCommands.getVertices(orientGraph, "Book", keys, values);
+      assertTrue(result.hasNext());
+      v = result.next().getVertex().get();
+      assertEquals("Il barone rampante", v.getProperty("title"));
+
+      // records after the checkpoint imported
+      values[0] = "B005";
+      result = OGraphCommands.getVertices(orientGraph, "Book", keys, values);
+      assertTrue(result.hasNext());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.teleporter.test.rdbms.sequential;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.OCommonQueryBuilder;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OEntity;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.nameresolver.OJavaConventionNameResolver;
+import com.orientechnologies.teleporter.persistence.handler.OHSQLDBDataTypeHandler;
+import com.orientechnologies.teleporter.strategy.rdbms.ODBMSNaiveStrategy;
+import com.orientechnologies.teleporter.util.OFileManager;
+import com.orientechnologies.teleporter.util.OGraphCommands;
+import com.orientechnologies.teleporter.util.OMigrationConfigManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class TableFingerprintSyncTest {
+
+  private OTeleporterContext context;
+  private ODBMSNaiveStrategy naiveImportStrategy;
+  private ODBQueryEngine     dbQueryEngine;
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+  private String dbName = "testOrientDB";
+  private String outParentDirectory = "embedded:target/";
+  private String outOrientGraphUri = this.outParentDirectory + this.dbName;
+  private OSourceDatabaseInfo sourceDBInfo;
+
+  /**
+   * HSQLDB provides no hash function: the fingerprint is computed through the ROW_HASH Java routine created by the test.
+   */
+  private static class OHashingQueryBuilder extends OCommonQueryBuilder {
+
+    @Override
+    public String getTableFingerprint(OEntity entity, List<String> columns) {
+      String row = "";
+      for (int i = 0; i < columns.size(); i++) {
+        row += (i > 0 ? " || '|' || " : "") + "coalesce(cast(" + quote + columns.get(i) + quote + " as varchar(1024)), '-')";
+      }
+      return "select count(*), coalesce(sum(ROW_HASH(" + row + ")), 0) from " + this
+          .qualifyName(entity.getSchemaName(), entity.getName());
+    }
+  }
+
+  /**
+   * First 56 bits of the md5 of the record, called by HSQLDB through the ROW_HASH routine.
+   */
+  public static long rowHash(String row) throws Exception {
+    byte[] digest = MessageDigest.getInstance("MD5").digest(row.getBytes(StandardCharsets.UTF_8));
+    long hash = 0;
+    for (int i = 0; i < 7; i++) {
+      hash = (hash << 8) | (digest[i] & 0xFF);
+    }
+    return hash;
+  }
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.initOrientDBInstance(outOrientGraphUri);
+    this.dbQueryEngine = new ODBQueryEngine(new OHashingQueryBuilder());
+    this.context.setDbQueryEngine(this.dbQueryEngine);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setNameResolver(new OJavaConventionNameResolver());
+    this.context.setDataTypeHandler(new OHSQLDBDataTypeHandler());
+    this.naiveImportStrategy = new ODBMSNaiveStrategy("embedded", this.outParentDirectory, this.dbName);
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+
+    // closing OrientDB instance
+    this.context.closeOrientDBInstance();
+
+    try {
+
+      // Deleting database directory
+      OFileManager.deleteResource(this.outOrientGraphUri.replace("embedded:",""));
+
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Test
+
+  /*
+   *  Table fingerprints enabled: a sync skips the tables whose fingerprint is unchanged since the last sync, while a table with
+   *  an updated record is read again.
+   */
+
+  public void test1() {
+
+    Connection connection = null;
+    Statement st = null;
+    ODatabaseDocument orientGraph = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      st = connection.createStatement();
+      st.execute("create function ROW_HASH(V varchar(16384)) returns bigint language java deterministic no sql external name "
+          + "'CLASSPATH:" + TableFingerprintSyncTest.class.getName() + ".rowHash'");
+
+      String authorTableBuilding = "create memory table AUTHOR (ID varchar(256) not null, NAME varchar(256), primary key (ID))";
+      st.execute(authorTableBuilding);
+
+      String bookTableBuilding = "create memory table BOOK (ID varchar(256) not null, TITLE varchar(256), PRICE decimal(10,2),"
+          + " primary key (ID))";
+      st.execute(bookTableBuilding);
+
+      st.execute("insert into AUTHOR (ID,NAME) values ('A001','Bruce Wayne'),('A002','Clark Kent')");
+      st.execute("insert into BOOK (ID,TITLE,PRICE) values ('B001','Gotham',10.50),('B002','Metropolis',12.00),"
+          + "('B003','Smallville',9.90)");
+
+      this.context.setTableFingerprinting(true);
+
+      // first migration: all the tables read, fingerprints stored
+      int analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(5, this.context.getStatistics().analyzedRecords - analyzedRecords);
+      assertNotNull(OMigrationConfigManager.loadFingerprints(this.outOrientGraphUri));
+
+      // sync without changes: both the tables are skipped
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(0, this.context.getStatistics().analyzedRecords - analyzedRecords);
+
+      // sync after updating the fractional part of a price: just the BOOK table is read again
+      st.execute("update BOOK set PRICE = 10.55 where ID = 'B001'");
+
+      analyzedRecords = this.context.getStatistics().analyzedRecords;
+      this.naiveImportStrategy
+          .executeStrategy(this.sourceDBInfo, this.outOrientGraphUri, "basicDBMapper", null, "java", null, null, null);
+      assertEquals(3, this.context.getStatistics().analyzedRecords - analyzedRecords);
+
+      /*
+       *  Testing built OrientDB
+       */
+
+      orientGraph = this.context.getOrientDBInstance().open(this.dbName,"admin","admin");
+
+      assertEquals(2, orientGraph.countClass("Author"));
+      assertEquals(3, orientGraph.countClass("Book"));
+
+      String[] keys = { "id" };
+      String[] values = { "B001" };
+      OResultSet result = OGraphCommands.getVertices(orientGraph, "Book", keys, values);
+      assertTrue(result.hasNext());
+      OVertex v = result.next().getVertex().get();
+      assertEquals("10.55", v.getProperty("price").toString());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+        fail();
+      }
+      if (orientGraph != null) {
+        orientGraph.close();
+      }
+    }
+  }
+
+}
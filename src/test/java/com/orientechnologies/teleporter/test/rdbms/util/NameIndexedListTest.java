@@ -0,0 +1,188 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.util;
+
+import com.orientechnologies.teleporter.util.OChangeNotifier;
+import com.orientechnologies.teleporter.util.ONameIndexedList;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ListIterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class NameIndexedListTest {
+
+  private static class ONamedElement implements OChangeNotifier.ONotifyingElement {
+    private final OChangeNotifier changeNotifier = new OChangeNotifier();
+    private String name;
+
+    private ONamedElement(String name) {
+      this.name = name;
+    }
+
+    private void setName(String name) {
+      this.name = name;
+      this.changeNotifier.notifyChange();
+    }
+
+    @Override
+    public OChangeNotifier getChangeNotifier() {
+      return this.changeNotifier;
+    }
+  }
+
+  private static final ONameIndexedList.ONameReader<ONamedElement> NAME = new ONameIndexedList.ONameReader<ONamedElement>() {
+    @Override
+    public String getName(ONamedElement element) {
+      return element.name;
+    }
+  };
+
+  @Test
+  public void lookupTest() {
+
+    ONameIndexedList<ONamedElement> elements = new ONameIndexedList<ONamedElement>(NAME);
+    ONamedElement actor = new ONamedElement("Actor");
+    ONamedElement film = new ONamedElement("Film");
+    ONamedElement otherFilm = new ONamedElement("FILM");
+    elements.add(actor);
+    elements.add(film);
+    elements.add(otherFilm);
+
+    assertSame(actor, elements.getByName("Actor"));
+    assertSame(film, elements.getByName("Film"));
+    assertSame(otherFilm, elements.getByName("FILM"));
+    assertNull(elements.getByName("actor"));
+    assertNull(elements.getByName(null));
+
+    // first match wins when ignoring the case
+    assertSame(actor, elements.getByNameIgnoreCase("ACTOR"));
+    assertSame(film, elements.getByNameIgnoreCase("film"));
+    assertNull(elements.getByNameIgnoreCase("Category"));
+    assertNull(elements.getByNameIgnoreCase(null));
+  }
+
+  @Test
+  public void invalidationTest() {
+
+    ONameIndexedList<ONamedElement> elements = new ONameIndexedList<ONamedElement>(NAME);
+    ONamedElement actor = new ONamedElement("Actor");
+    ONamedElement film = new ONamedElement("Film");
+    elements.add(actor);
+    elements.add(film);
+    assertSame(actor, elements.getByName("Actor"));
+
+    // renaming
+    actor.setName("Person");
+    assertNull(elements.getByName("Actor"));
+    assertSame(actor, elements.getByName("Person"));
+
+    // removal and replacement
+    elements.remove(film);
+    assertNull(elements.getByName("Film"));
+    ONamedElement category = new ONamedElement("Category");
+    elements.set(0, category);
+    assertNull(elements.getByName("Person"));
+    assertSame(category, elements.getByNameIgnoreCase("CATEGORY"));
+
+    // insertion
+    elements.add(0, film);
+    assertSame(film, elements.getByName("Film"));
+    assertEquals(2, elements.size());
+
+    // replacement through a sub-list and through an iterator
+    ONamedElement person = new ONamedElement("Person");
+    elements.subList(1, 2).set(0, person);
+    assertNull(elements.getByName("Category"));
+    assertSame(person, elements.getByName("Person"));
+    ListIterator<ONamedElement> it = elements.listIterator();
+    it.next();
+    it.set(category);
+    assertNull(elements.getByName("Film"));
+    assertSame(category, elements.getByName("Category"));
+
+    // element changed in place without notification, then explicit invalidation
+    category.name = "Genre";
+    elements.invalidate();
+    assertNull(elements.getByName("Category"));
+    assertSame(category, elements.getByName("Genre"));
+  }
+
+  @Test
+  public void appendTest() {
+
+    ONameIndexedList<ONamedElement> elements = new ONameIndexedList<ONamedElement>(NAME);
+    ONamedElement actor = new ONamedElement("Actor");
+    elements.add(actor);
+    assertSame(actor, elements.getByName("Actor"));
+
+    // appended elements are indexed in place, the first element with a name still wins
+    ONamedElement film = new ONamedElement("Film");
+    ONamedElement otherActor = new ONamedElement("ACTOR");
+    elements.add(film);
+    elements.addAll(Arrays.asList(otherActor, new ONamedElement("Film")));
+    assertSame(film, elements.getByName("Film"));
+    assertSame(otherActor, elements.getByName("ACTOR"));
+    assertSame(actor, elements.getByNameIgnoreCase("actor"));
+
+    // an insertion shadowing an indexed name
+    ONamedElement person = new ONamedElement("actor");
+    elements.add(0, person);
+    assertSame(person, elements.getByNameIgnoreCase("ACTOR"));
+    assertSame(actor, elements.getByName("Actor"));
+    ONamedElement category = new ONamedElement("Category");
+    elements.add(1, category);
+    assertSame(category, elements.getByName("Category"));
+    assertEquals(6, elements.size());
+  }
+
+  @Test
+  public void elementChangeTest() {
+
+    ONamedElement actor = new ONamedElement("Actor");
+    ONamedElement film = new ONamedElement("Film");
+    ONameIndexedList<ONamedElement> actors = new ONameIndexedList<ONamedElement>(NAME, Arrays.asList(actor));
+    ONameIndexedList<ONamedElement> films = new ONameIndexedList<ONamedElement>(NAME);
+    films.add(film);
+    assertSame(actor, actors.getByName("Actor"));
+    assertSame(film, films.getByName("Film"));
+
+    // a rename invalidates only the lists containing the element
+    long actorsVersion = actors.getVersion();
+    long filmsVersion = films.getVersion();
+    actor.setName("Person");
+    assertTrue(actorsVersion != actors.getVersion());
+    assertEquals(filmsVersion, films.getVersion());
+    assertSame(actor, actors.getByName("Person"));
+    assertNull(actors.getByName("Actor"));
+
+    film.setName("Movie");
+    assertSame(film, films.getByNameIgnoreCase("MOVIE"));
+    assertNull(films.getByName("Film"));
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.util;
+
+import com.orientechnologies.teleporter.persistence.util.ORecordSnapshot;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class RecordSnapshotTest {
+
+  private String driver   = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl     = "jdbc:hsqldb:mem:mydb";
+  private String username = "SA";
+  private String password = "";
+
+  @Test
+  public void snapshotReplayTest() {
+
+    Connection connection = null;
+    Statement st = null;
+
+    try {
+
+      Class.forName(this.driver);
+      connection = DriverManager.getConnection(this.jurl, this.username, this.password);
+
+      String tableBuilding = "create memory table PRODUCT (ID varchar(256) not null, NAME varchar(256), PRICE decimal(10,2), "
+          + "QUANTITY integer, primary key (ID))";
+      st = connection.createStatement();
+      st.execute(tableBuilding);
+
+      String productFilling = "insert into PRODUCT (ID,NAME,PRICE,QUANTITY) values (" + "('P001','Laptop',999.90,3),"
+          + "('P002',null,15.50,null))";
+      st.execute(productFilling);
+
+      ResultSet records = st.executeQuery("select * from PRODUCT order by ID");
+      Map<String, Integer> label2index = ORecordSnapshot.buildLabelIndex(records.getMetaData());
+      List<ORecordSnapshot> snapshots = new ArrayList<ORecordSnapshot>();
+      while (records.next()) {
+        snapshots.add(ORecordSnapshot.take(records, label2index));
+      }
+      records.close();
+
+      assertEquals(2, snapshots.size());
+
+      // the snapshots are readable after the source result set has been closed
+      ResultSet first = snapshots.get(0).asResultSet();
+      assertEquals("P001", first.getString("ID"));
+      assertEquals("Laptop", first.getString("name"));
+      assertEquals(new BigDecimal("999.90"), first.getBigDecimal("PRICE"));
+      assertEquals(3, first.getInt("QUANTITY"));
+      assertFalse(first.wasNull());
+      assertTrue(snapshots.get(0).getEstimatedSize() > 0);
+
+      ResultSet second = snapshots.get(1).asResultSet();
+      assertEquals("P002", second.getString(1));
+      assertNull(second.getString("NAME"));
+      assertTrue(second.wasNull());
+      assertEquals(0, second.getInt("QUANTITY"));
+      assertTrue(second.wasNull());
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      try {
+        // Dropping Source DB Schema and OrientGraph
+        String dbDropping = "drop schema public cascade";
+        st.execute(dbDropping);
+        connection.close();
+      } catch (SQLException e) {
+        e.printStackTrace();
+        fail();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.util;
+
+import com.orientechnologies.teleporter.context.OTeleporterContext;
+import com.orientechnologies.teleporter.context.OTeleporterMessageHandler;
+import com.orientechnologies.teleporter.exception.OTeleporterRuntimeException;
+import com.orientechnologies.teleporter.importengine.rdbms.dbengine.ODBQueryEngine;
+import com.orientechnologies.teleporter.model.dbschema.OSourceDatabaseInfo;
+import com.orientechnologies.teleporter.persistence.util.OQueryResult;
+import com.orientechnologies.teleporter.persistence.util.OSourceConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class SourceConnectionPoolTest {
+
+  private OTeleporterContext  context;
+  private OSourceDatabaseInfo sourceDBInfo;
+  private String driver             = "org.hsqldb.jdbc.JDBCDriver";
+  private String jurl               = "jdbc:hsqldb:mem:mydb";
+  private String username           = "SA";
+  private String password           = "";
+  private String outParentDirectory = "embedded:target/";
+
+  @Before
+  public void init() {
+    this.context = OTeleporterContext.newInstance(this.outParentDirectory);
+    this.context.setMessageHandler(new OTeleporterMessageHandler(0));
+    this.context.setDbQueryEngine(new ODBQueryEngine(this.driver));
+    this.sourceDBInfo = new OSourceDatabaseInfo("source", this.driver, this.jurl, this.username, this.password);
+  }
+
+  @After
+  public void tearDown() {
+    this.context.closeSourceConnectionPools();
+    this.context.closeOrientDBInstance();
+  }
+
+  @Test
+  public void connectionReuseTest() {
+
+    OSourceConnectionPool pool = this.context.getSourceConnectionPool(this.sourceDBInfo);
+
+    Connection first = pool.borrowConnection();
+    assertEquals(1, pool.getActiveCount());
+    assertEquals(0, pool.getIdleCount());
+    pool.releaseConnection(first);
+    assertEquals(0, pool.getActiveCount());
+    assertEquals(1, pool.getIdleCount());
+
+    // the idle connection is handed out again
+    Connection second = pool.borrowConnection();
+    assertSame(first, second);
+    pool.releaseConnection(second);
+
+    // query results give the connection back to the pool instead of closing it
+    OQueryResult queryResult = this.context.getDbQueryEngine()
+        .executeQuery("select count(*) from INFORMATION_SCHEMA.SYSTEM_TABLES", this.sourceDBInfo);
+    assertEquals(1, pool.getActiveCount());
+    queryResult.closeAll();
+    assertEquals(0, pool.getActiveCount());
+    assertEquals(1, pool.getIdleCount());
+    assertTrue(queryResult.isConnectionClosed(this.context));
+
+    assertEquals(3, this.context.getStatistics().sourceConnectionsBorrowed);
+    assertEquals(0, this.context.getStatistics().activeSourceConnections);
+    assertEquals(1, this.context.getStatistics().idleSourceConnections);
+  }
+
+  @Test
+  public void connectionResetTest() {
+
+    OSourceConnectionPool pool = this.context.getSourceConnectionPool(this.sourceDBInfo);
+
+    try {
+      Connection connection = pool.borrowConnection();
+      connection.setAutoCommit(false);
+      pool.releaseConnection(connection);
+
+      connection = pool.borrowConnection();
+      assertTrue(connection.getAutoCommit());
+      pool.releaseConnection(connection);
+
+      // broken idle connections are replaced on borrow
+      connection = pool.borrowConnection();
+      connection.close();
+      pool.releaseConnection(connection);
+      assertEquals(0, pool.getIdleCount());
+      connection = pool.borrowConnection();
+      assertFalse(connection.isClosed());
+      pool.releaseConnection(connection);
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    }
+  }
+
+  @Test
+  public void boundedPoolTest() {
+
+    OSourceConnectionPool pool = new OSourceConnectionPool(this.sourceDBInfo, 2, 100, 1);
+
+    Connection first = pool.borrowConnection();
+    Connection second = pool.borrowConnection();
+    assertEquals(2, pool.getActiveCount());
+
+    try {
+      pool.borrowConnection();
+      fail();
+    } catch (OTeleporterRuntimeException e) {
+      // expected: no connection available before the timeout
+    }
+
+    pool.releaseConnection(first);
+    Connection third = pool.borrowConnection();
+    assertSame(first, third);
+
+    pool.releaseConnection(second);
+    pool.releaseConnection(third);
+    pool.close();
+    assertEquals(0, pool.getIdleCount());
+    assertTrue(pool.isClosed());
+  }
+
+  @Test
+  public void preparedStatementCacheTest() {
+
+    OSourceConnectionPool pool = this.context.getSourceConnectionPool(this.sourceDBInfo);
+    Connection connection = null;
+
+    try {
+      connection = pool.borrowConnection();
+      Statement st = connection.createStatement();
+      st.execute("create memory table PERSON (ID varchar(256) not null, NAME varchar(256), primary key (ID))");
+      st.execute("insert into PERSON (ID,NAME) values ('P''1','Joe')");
+      st.close();
+      pool.releaseConnection(connection);
+      connection = null;
+
+      String template = "select * from PERSON where ID = ?";
+
+      // values containing quotes are bound, not inlined
+      OQueryResult queryResult = this.context.getDbQueryEngine()
+          .executePreparedQuery(template, new String[] { "P'1" }, this.sourceDBInfo, 0);
+      assertTrue(queryResult.isStatementCached());
+      assertTrue(queryResult.getResult().next());
+      assertEquals("Joe", queryResult.getResult().getString("NAME"));
+      PreparedStatement firstStatement = (PreparedStatement) queryResult.getStatement();
+      queryResult.closeAll();
+      assertTrue(queryResult.isAllClosed(this.context));
+      assertFalse(firstStatement.isClosed());
+
+      // the same template is served by the statement cached on the pooled connection
+      queryResult = this.context.getDbQueryEngine().executePreparedQuery(template, new String[] { "P2" }, this.sourceDBInfo, 0);
+      assertSame(firstStatement, queryResult.getStatement());
+      assertFalse(queryResult.getResult().next());
+      queryResult.closeAll();
+
+      assertEquals(1, this.context.getStatistics().preparedStatementsCreated);
+      assertEquals(1, this.context.getStatistics().preparedStatementsReused);
+
+      connection = pool.borrowConnection();
+      assertEquals(1, pool.getCachedStatementsCount(connection));
+      st = connection.createStatement();
+      st.execute("drop table PERSON");
+      st.close();
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    } finally {
+      pool.releaseConnection(connection);
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.util;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.teleporter.context.OTeleporterStatistics;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexKeyCache;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class VertexKeyCacheTest {
+
+  @Test
+  public void lookupTest() {
+
+    OTeleporterStatistics statistics = new OTeleporterStatistics();
+    OVertexKeyCache cache = new OVertexKeyCache(10, statistics);
+
+    cache.put("Employee", new String[] { "firstName", "lastName" }, new String[] { "John", "Black" }, new ORecordId(10, 1));
+
+    // the same key is found whatever the order of its properties
+    assertEquals(new ORecordId(10, 1),
+        cache.get("Employee", new String[] { "lastName", "firstName" }, new String[] { "Black", "John" }));
+    assertNull(cache.get("Employee", new String[] { "firstName", "lastName" }, new String[] { "Black", "John" }));
+    assertNull(cache.get("Department", new String[] { "firstName", "lastName" }, new String[] { "John", "Black" }));
+
+    // temporary ids are not cached
+    cache.put("Employee", new String[] { "firstName", "lastName" }, new String[] { "Jack", "White" }, new ORecordId(10, -2));
+    assertEquals(1, cache.size("Employee"));
+
+    assertEquals(1, statistics.vertexKeyCacheHits);
+    assertEquals(2, statistics.vertexKeyCacheMisses);
+  }
+
+  @Test
+  public void evictionTest() {
+
+    OTeleporterStatistics statistics = new OTeleporterStatistics();
+    OVertexKeyCache cache = new OVertexKeyCache(2, statistics);
+    String[] keys = new String[] { "id" };
+
+    cache.put("Book", keys, new String[] { "B1" }, new ORecordId(11, 1));
+    cache.put("Book", keys, new String[] { "B2" }, new ORecordId(11, 2));
+    assertNotNull(cache.get("Book", keys, new String[] { "B1" }));   // B2 is now the least recently used
+    cache.put("Book", keys, new String[] { "B3" }, new ORecordId(11, 3));
+
+    assertEquals(2, cache.size("Book"));
+    assertNotNull(cache.get("Book", keys, new String[] { "B1" }));
+    assertNull(cache.get("Book", keys, new String[] { "B2" }));
+    assertNotNull(cache.get("Book", keys, new String[] { "B3" }));
+
+    // capacity is per class
+    cache.put("Author", keys, new String[] { "A1" }, new ORecordId(12, 1));
+    assertEquals(2, cache.size("Book"));
+    assertEquals(1, cache.size("Author"));
+
+    // a disabled cache never stores keys
+    OVertexKeyCache disabled = new OVertexKeyCache(0, statistics);
+    disabled.put("Book", keys, new String[] { "B1" }, new ORecordId(11, 1));
+    assertNull(disabled.get("Book", keys, new String[] { "B1" }));
+    assertEquals(0, disabled.size("Book"));
+  }
+
+  @Test
+  public void backingMapTest() {
+
+    OTeleporterStatistics statistics = new OTeleporterStatistics();
+    OVertexKeyCache cache = new OVertexKeyCache(1, statistics, new OVertexRidMap(OVertexRidMap.DEFAULT_MEMORY_BUDGET, null));
+    String[] keys = new String[] { "id" };
+
+    try {
+      cache.put("Book", keys, new String[] { "B1" }, new ORecordId(11, 1));
+      cache.put("Book", keys, new String[] { "B2" }, new ORecordId(11, 2));
+      assertEquals(1, cache.size("Book"));
+
+      // the evicted key is found in the backing map
+      assertEquals(new ORecordId(11, 1), cache.get("Book", keys, new String[] { "B1" }));
+      assertEquals(new ORecordId(11, 2), cache.get("Book", keys, new String[] { "B2" }));
+      assertEquals(2, statistics.vertexKeyCacheHits);
+
+      cache.remove("Book", keys, new String[] { "B1" });
+      assertNull(cache.get("Book", keys, new String[] { "B1" }));
+      assertEquals(1, cache.getBackingMap().size());
+    } finally {
+      cache.clear();
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ *  *  Copyright 2010-2017 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.teleporter.test.rdbms.util;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.teleporter.importengine.rdbms.graphengine.OVertexRidMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Gabriele Ponzi
+ * @email <g.ponzi--at--orientdb.com>
+ */
+
+public class VertexRidMapTest {
+
+  @Test
+  public void lookupTest() {
+
+    OVertexRidMap map = new OVertexRidMap(OVertexRidMap.DEFAULT_MEMORY_BUDGET, null);
+    try {
+      String[] id = new String[] { "id" };
+
+      // long keys
+      map.put("Book", id, new String[] { "1024" }, new ORecordId(11, 7));
+      map.put("Book", id, new String[] { "-3" }, new ORecordId(11, 8));
+      assertEquals(new ORecordId(11, 7), map.get("Book", id, new String[] { "1024" }));
+      assertEquals(new ORecordId(11, 8), map.get("Book", id, new String[] { "-3" }));
+      assertNull(map.get("Book", id, new String[] { "01024" }));
+      assertNull(map.get("Author", id, new String[] { "1024" }));
+
+      // string and composite keys, found whatever the order of their properties
+      map.put("Book", id, new String[] { "B001" }, new ORecordId(12, 1));
+      map.put("Employee", new String[] { "firstName", "lastName" }, new String[] { "John", "Black" }, new ORecordId(13, 1));
+      assertEquals(new ORecordId(12, 1), map.get("Book", id, new String[] { "B001" }));
+      assertEquals(new ORecordId(13, 1),
+          map.get("Employee", new String[] { "lastName", "firstName" }, new String[] { "Black", "John" }));
+      assertNull(map.get("Employee", new String[] { "firstName", "lastName" }, new String[] { "Black", "John" }));
+
+      // temporary ids are not stored
+      map.put("Book", id, new String[] { "B002" }, new ORecordId(12, -2));
+      assertNull(map.get("Book", id, new String[] { "B002" }));
+      assertEquals(4, map.size());
+
+      map.remove("Book", id, new String[] { "1024" });
+      assertNull(map.get("Book", id, new String[] { "1024" }));
+      assertEquals(3, map.size());
+    } finally {
+      map.clear();
+    }
+    assertEquals(0, map.size());
+    assertEquals(0, map.getAllocatedBytes());
+  }
+
+  @Test
+  public void growthAndRemovalTest() {
+
+    OVertexRidMap map = new OVertexRidMap(OVertexRidMap.DEFAULT_MEMORY_BUDGET, null);
+    try {
+      String[] id = new String[] { "id" };
+      int keys = 50000;
+      for (int i = 0; i < keys; i++) {
+        map.put("Book", id, new String[] { String.valueOf(i) }, new ORecordId(11, i));
+        map.put("Author", id, new String[] { "A" + i }, new ORecordId(12, i));
+      }
+      assertEquals(2 * keys, map.size());
+
+      // removals must not break the probe sequences of the remaining keys
+      for (int i = 0; i < keys; i += 2) {
+        map.remove("Book", id, new String[] { String.valueOf(i) });
+        map.remove("Author", id, new String[] { "A" + i });
+      }
+      for (int i = 0; i < keys; i++) {
+        if (i % 2 == 0) {
+          assertNull(map.get("Book", id, new String[] { String.valueOf(i) }));
+          assertNull(map.get("Author", id, new String[] { "A" + i }));
+        } else {
+          assertEquals(new ORecordId(11, i), map.get("Book", id, new String[] { String.valueOf(i) }));
+          assertEquals(new ORecordId(12, i), map.get("Author", id, new String[] { "A" + i }));
+        }
+      }
+      assertEquals(keys, map.size());
+    } finally {
+      map.clear();
+    }
+  }
+
+  @Test
+  public void spillTest() {
+
+    // without memory budget all the tables are mapped on files
+    OVertexRidMap map = new OVertexRidMap(0, null);
+    try {
+      String[] id = new String[] { "id" };
+      for (int i = 0; i < 5000; i++) {
+        map.put("Book", id, new String[] { "B" + i }, new ORecordId(11, i));
+      }
+      assertEquals(0, map.getAllocatedBytes());
+      assertTrue(map.getSpilledBytes() > 0);
+      for (int i = 0; i < 5000; i++) {
+        assertEquals(new ORecordId(11, i), map.get("Book", id, new String[] { "B" + i }));
+      }
+    } finally {
+      map.clear();
+    }
+    assertEquals(0, map.getSpilledBytes());
+  }
+
+}